@@ -19,9 +19,11 @@ public enum ContainerHostOperationType {
     VERSION("Host.Container.Version"),
     PING("Host.Container.Ping"),
     LIST_ENTITIES("Host.Generic.ListEntities"),
+    WATCH_ENTITIES("Host.Generic.WatchEntities"),
     LIST_CONTAINERS("Host.Container.ListContainers"),
     LIST_NETWORKS("Host.Network.ListNetworks"),
     LIST_VOLUMES("Host.Volume.ListVolumes"),
+    EVENTS("Host.Container.Events"),
     STATS("Host.Container.Stats");
 
     ContainerHostOperationType(String id) {
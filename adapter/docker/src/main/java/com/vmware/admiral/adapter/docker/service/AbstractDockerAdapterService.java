@@ -101,7 +101,9 @@ public abstract class AbstractDockerAdapterService extends StatelessService {
 
         logFine("Performing maintenance for: %s", getUri());
 
-        getCommandExecutor().handlePeriodicMaintenance(Operation.createPost(post.getUri()));
+        DockerAdapterCommandExecutor commandExecutor = getCommandExecutor();
+        commandExecutor.handlePeriodicMaintenance(Operation.createPost(post.getUri()));
+        commandExecutor.getStats().forEach((name, value) -> setStat(name, value));
 
         post.complete();
     }
@@ -11,6 +11,8 @@
 
 package com.vmware.admiral.adapter.docker.service;
 
+import java.util.Map;
+
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Operation.CompletionHandler;
 
@@ -157,6 +159,8 @@ public interface DockerAdapterCommandExecutor {
     String DOCKER_IMAGE_TAG_PROP_NAME = "tag";
     String DOCKER_IMAGE_NAME_PROP_NAME = "imageName";
     String DOCKER_IMAGE_DATA_PROP_NAME = "imageData";
+    // image tar file streamed to the host by load image, instead of the in-memory image data
+    String DOCKER_IMAGE_FILE_PROP_NAME = "imageFile";
     String DOCKER_IMAGE_REGISTRY_AUTH = "X-Registry-Auth";
 
     String DOCKER_VOLUME_NAME_PROP_NAME = "Name";
@@ -185,6 +189,17 @@ public interface DockerAdapterCommandExecutor {
     String SINCE = "since";
     int DEFAULT_VALUE_TAIL = 1000;
 
+    // Host events query params and properties
+    String DOCKER_EVENTS_UNTIL_PROP_NAME = "until";
+    String DOCKER_EVENT_TYPE_PROP_NAME = "Type";
+    String DOCKER_EVENT_ACTION_PROP_NAME = "Action";
+    String DOCKER_EVENT_ACTOR_PROP_NAME = "Actor";
+    String DOCKER_EVENT_ACTOR_ID_PROP_NAME = "ID";
+    // events of API versions before 1.22 are container events without type and actor
+    String DOCKER_EVENT_STATUS_PROP_NAME = "status";
+    String DOCKER_EVENT_ID_PROP_NAME = "id";
+    String DOCKER_EVENT_TIME_PROP_NAME = "time";
+
     // Management operations:
     void stop();
 
@@ -227,6 +242,8 @@ public interface DockerAdapterCommandExecutor {
 
     void listContainers(CommandInput input, CompletionHandler completionHandler);
 
+    void hostEvents(CommandInput input, CompletionHandler completionHandler);
+
     // Network operations:
     void createNetwork(CommandInput input, CompletionHandler completionHandler);
 
@@ -252,4 +269,9 @@ public interface DockerAdapterCommandExecutor {
 
     void handlePeriodicMaintenance(Operation post);
 
+    /**
+     * @return the statistics of the executor, e.g. of its caches, by stat name
+     */
+    Map<String, Long> getStats();
+
 }
\ No newline at end of file
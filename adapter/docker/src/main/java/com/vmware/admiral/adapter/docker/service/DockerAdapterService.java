@@ -58,8 +58,9 @@ import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExec
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EXEC_ATTACH_STDERR_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EXEC_ATTACH_STDOUT_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EXEC_COMMAND_PROP_NAME;
-import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_IMAGE_DATA_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_IMAGE_FILE_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_IMAGE_FROM_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_IMAGE_REGISTRY_AUTH;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.SINCE;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.STD_ERR;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.STD_OUT;
@@ -77,6 +78,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -144,8 +147,26 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
 
     public static final String PROVISION_CONTAINER_RETRIES_COUNT_PARAM_NAME = "provision.container.retries.count";
 
+    private static final int IMAGE_INVENTORY_SIZE_PER_HOST = Integer.getInteger(
+            "com.vmware.admiral.adapter.docker.image.inventory.size", 512);
+
+    private static final long IMAGE_TAG_REUSE_MICROS = Long.getLong(
+            "com.vmware.admiral.adapter.docker.image.tag.reuse.micros",
+            TimeUnit.MINUTES.toMicros(5));
+
+    private static final int LOG_TAIL_TRACKER_SIZE = Integer.getInteger(
+            "com.vmware.admiral.adapter.docker.log.tail.tracker.size", 1000);
+
+    private static final long LOG_TAIL_TRACKER_MAX_BYTES = Long.getLong(
+            "com.vmware.admiral.adapter.docker.log.tail.tracker.max.bytes", 64 * 1024 * 1024);
+
     private SystemImageRetrievalManager imageRetrievalManager;
 
+    private ImagePullCoordinator imagePullCoordinator;
+
+    private final LogTailTracker logTailTracker = new LogTailTracker(LOG_TAIL_TRACKER_SIZE,
+            LOG_TAIL_TRACKER_MAX_BYTES);
+
     /**
      * Properties in an inspect response that we want to filter out
      *
@@ -178,6 +199,14 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
          * state after inspecting a container.
          */
         public boolean requestFailed;
+        /**
+         * Set when the image is not pulled because it is known to be present on the host.
+         */
+        public boolean imagePullSkipped;
+        /**
+         * Set when the image has to be pulled even if it is known to be present on the host.
+         */
+        public boolean imagePullRequired;
     }
 
     public static class AuthConfig {
@@ -191,6 +220,8 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
     @Override
     public void handleStart(Operation startPost) {
         imageRetrievalManager = new SystemImageRetrievalManager(getHost());
+        imagePullCoordinator = new ImagePullCoordinator(IMAGE_INVENTORY_SIZE_PER_HOST,
+                IMAGE_TAG_REUSE_MICROS);
         super.handleStart(startPost);
     }
 
@@ -323,6 +354,8 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
     private void processFetchContainerLog(RequestContext context) {
         CommandInput fetchLogCommandInput = constructFetchLogCommandInput(context.request,
                 context.commandInput, context.containerState);
+        // the executor consumes some of the properties
+        String fetchKey = new TreeMap<>(fetchLogCommandInput.getProperties()).toString();
 
         context.executor.fetchContainerLog(fetchLogCommandInput,
                 (operation, excep) -> {
@@ -356,9 +389,12 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                                 String containerId = Service
                                         .getId(context.containerState.documentSelfLink);
                                 logWarning("Found empty logs for container %s", containerId);
+                                // the placeholder is not a part of the log to append to
+                                processContainerLogResponse(context, log, null);
+                                return;
                             }
 
-                            processContainerLogResponse(context, log);
+                            processContainerLogResponse(context, log, fetchKey);
                         });
                     }
                 });
@@ -401,7 +437,51 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
         return fetchLogCommandInput;
     }
 
-    private void processContainerLogResponse(RequestContext context, byte[] log) {
+    /**
+     * Appends the new tail of the fetched log to the log document, or replaces the log with it if
+     * the previous fetch is not known on this node.
+     */
+    private void processContainerLogResponse(RequestContext context, byte[] log,
+            String fetchKey) {
+        String logLink = UriUtils.buildUriPath(LogService.FACTORY_LINK,
+                Service.getId(context.containerState.documentSelfLink));
+        byte[] newTail = null;
+        if (fetchKey != null) {
+            newTail = logTailTracker.update(logLink, fetchKey, log);
+        } else {
+            logTailTracker.reset(logLink);
+        }
+
+        if (newTail == null) {
+            replaceContainerLog(context, logLink, log);
+            return;
+        }
+        if (newTail.length == 0) {
+            // nothing new is logged
+            completeContainerLog(context);
+            return;
+        }
+
+        LogService.LogServiceState logServiceState = new LogService.LogServiceState();
+        logServiceState.logs = newTail;
+        logServiceState.tenantLinks = context.containerState.tenantLinks;
+
+        sendRequest(Operation.createPatch(this, logLink)
+                .setBody(logServiceState)
+                .setContextId(context.request.getRequestId())
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        // e.g. the log expired, write the whole log again
+                        logFine("Failed to append to log %s, replacing it: %s", logLink,
+                                Utils.toString(ex));
+                        replaceContainerLog(context, logLink, log);
+                    } else {
+                        completeContainerLog(context);
+                    }
+                }));
+    }
+
+    private void replaceContainerLog(RequestContext context, String logLink, byte[] log) {
         LogService.LogServiceState logServiceState = new LogService.LogServiceState();
         logServiceState.documentSelfLink = Service.getId(context.containerState.documentSelfLink);
         logServiceState.logs = log;
@@ -413,16 +493,21 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                 .setContextId(context.request.getRequestId())
                 .setCompletion((o, ex) -> {
                     if (ex != null) {
+                        logTailTracker.reset(logLink);
                         fail(context.request, ex);
                     } else {
-                        if (context.request.serviceTaskCallback.isEmpty()) {
-                            /* avoid logging warnings */
-                            patchTaskStage(context.request, TaskStage.FINISHED, null);
-                        }
+                        completeContainerLog(context);
                     }
                 }));
     }
 
+    private void completeContainerLog(RequestContext context) {
+        if (context.request.serviceTaskCallback.isEmpty()) {
+            /* avoid logging warnings */
+            patchTaskStage(context.request, TaskStage.FINISHED, null);
+        }
+    }
+
     private void processCreateImage(RequestContext context) {
         sendRequest(Operation.createGet(this, context.containerState.descriptionLink)
                 .setContextId(context.request.getRequestId())
@@ -467,8 +552,11 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                 .equals(context.containerDescription.image)) {
             String ref = SystemContainerDescriptions.AGENT_IMAGE_REFERENCE;
 
-            imageRetrievalManager.retrieveAgentImage(ref, context.request, (imageData) -> {
-                processLoadedImageData(context, imageData, ref, imageCompletionHandler);
+            imageRetrievalManager.retrieveAgentImage(ref, context.request, (imageFile) -> {
+                processImageFile(context, imageFile, ref, (o, ex) -> {
+                    imageRetrievalManager.releaseAgentImage(imageFile);
+                    imageCompletionHandler.handle(o, ex);
+                }, false);
             });
         } else if (shouldTryCreateFromLocalImage(context.containerDescription)) {
             // try to create the container from a local image first. Only if the image is not
@@ -482,14 +570,38 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
             // canonicalize the image name (add latest tag if needed)
             String fullImageName = DockerImage.fromImageName(context.containerDescription.image)
                     .toString();
+            String hostLink = context.computeState.documentSelfLink;
+            String registryAuth = (String) createImageCommandInput.getProperties()
+                    .get(DOCKER_IMAGE_REGISTRY_AUTH);
+
+            if (!context.imagePullRequired
+                    && imagePullCoordinator.isPresent(hostLink, fullImageName, registryAuth)) {
+                logInfo("Image %s is present on host %s, skipping the pull %s", fullImageName,
+                        hostLink, context.request.getRequestTrackingLog());
+                adjustStat(ImagePullCoordinator.STAT_NAME_SKIPPED_PULLS, 1);
+                context.imagePullSkipped = true;
+                handleExceptions(
+                        context.request,
+                        context.operation,
+                        () -> processCreateContainer(context, 0));
+                return;
+            }
 
             // use 'fromImage' - this will perform a docker pull
             createImageCommandInput.withProperty(DOCKER_IMAGE_FROM_PROP_NAME,
                     fullImageName);
 
-            getHost().log(Level.INFO, "Pulling image: %s %s", fullImageName,
-                    context.request.getRequestTrackingLog());
-            processPullImageFromRegistry(context, createImageCommandInput, imageCompletionHandler);
+            boolean pulling = imagePullCoordinator.pull(hostLink, fullImageName, registryAuth,
+                    (handler) -> {
+                        getHost().log(Level.INFO, "Pulling image: %s %s", fullImageName,
+                                context.request.getRequestTrackingLog());
+                        processPullImageFromRegistry(context, createImageCommandInput, handler);
+                    }, imageCompletionHandler);
+            if (!pulling) {
+                getHost().log(Level.INFO, "Waiting for the pull of image %s in progress %s",
+                        fullImageName, context.request.getRequestTrackingLog());
+                adjustStat(ImagePullCoordinator.STAT_NAME_COALESCED_PULLS, 1);
+            }
         } else {
             // fetch the image first, then execute a image load command
             getHost().log(Level.INFO, "Downloading image from: %s %s", imageReference,
@@ -497,8 +609,8 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
             try {
                 if (FILE_SCHEME.equals(imageReference.getScheme())) {
                     // for file scheme use the file and do not delete it (it is not a temp copy)
-                    processDownloadedImage(context, new File(imageReference),
-                            imageCompletionHandler, false);
+                    processImageFile(context, new File(imageReference),
+                            imageReference.toString(), imageCompletionHandler, false);
                 } else {
                     // for not file scheme, download it to a temp file
                     File tempFile = File.createTempFile(DOWNLOAD_TEMPFILE_PREFIX, null);
@@ -525,8 +637,9 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                                             tempFile.getAbsolutePath(),
                                             context.request.getRequestTrackingLog());
 
-                                    processDownloadedImage(context, tempFile,
-                                            imageCompletionHandler, true);
+                                    processImageFile(context, tempFile,
+                                            imageReference.toString(), imageCompletionHandler,
+                                            true);
                                 }
                             });
 
@@ -542,42 +655,22 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
     }
 
     /**
-     * read the temp file containing the downloaded image from the file system and proceed with
-     * imageCompletionHandler
+     * stream the file containing the image to the host, without reading it in memory, and
+     * proceed with imageCompletionHandler. A temp file is deleted once the load completes.
      *
      * @param context
-     * @param tempFile
+     * @param imageFile
+     * @param fileName
      * @param imageCompletionHandler
+     * @param isTempFile
      */
-    private void processDownloadedImage(RequestContext context, File tempFile,
+    private void processImageFile(RequestContext context, File imageFile, String fileName,
             CompletionHandler imageCompletionHandler, boolean isTempFile) {
-
-        Operation fileReadOp = Operation.createPatch(null)
-                .setContextId(context.request.getRequestId())
-                .setCompletion((o, ex) -> {
-                    if (ex != null) {
-                        fail(context.request, ex);
-                        return;
-                    }
-
-                    byte[] imageData = o.getBody(byte[].class);
-                    if (isTempFile && !tempFile.delete()) {
-                        this.logWarning("Failed to delete temp file: %s %s", tempFile,
-                                context.request.getRequestTrackingLog());
-                    }
-
-                    processLoadedImageData(context, imageData,
-                            context.containerDescription.imageReference.toString(),
-                            imageCompletionHandler);
-                });
-
-        FileUtils.readFileAndComplete(fileReadOp, tempFile);
-    }
-
-    private void processLoadedImageData(RequestContext context, byte[] imageData,
-            String fileName,
-            CompletionHandler imageCompletionHandler) {
-        if (imageData == null || imageData.length == 0) {
+        if (imageFile == null || imageFile.length() == 0) {
+            if (isTempFile && !imageFile.delete()) {
+                this.logWarning("Failed to delete temp file: %s %s", imageFile,
+                        context.request.getRequestTrackingLog());
+            }
             String errMsg = String.format("No content loaded for file: %s %s",
                     fileName,
                     context.request.getRequestTrackingLog());
@@ -588,12 +681,18 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
             return;
         }
 
-        logInfo("Loaded content for file: %s %s. Now sending to host...", fileName,
+        logInfo("Streaming file: %s %s to host...", fileName,
                 context.request.getRequestTrackingLog());
 
         CommandInput loadCommandInput = new CommandInput(context.commandInput)
-                .withProperty(DOCKER_IMAGE_DATA_PROP_NAME, imageData);
-        context.executor.loadImage(loadCommandInput, imageCompletionHandler);
+                .withProperty(DOCKER_IMAGE_FILE_PROP_NAME, imageFile.getAbsolutePath());
+        context.executor.loadImage(loadCommandInput, (o, ex) -> {
+            if (isTempFile && !imageFile.delete()) {
+                this.logWarning("Failed to delete temp file: %s %s", imageFile,
+                        context.request.getRequestTrackingLog());
+            }
+            imageCompletionHandler.handle(o, ex);
+        });
     }
 
     private void processPullImageFromRegistry(RequestContext context,
@@ -755,7 +854,16 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
         ensurePropertyExists((retryCountProperty) -> {
             context.executor.createContainer(createCommandInput, (o, ex) -> {
                 if (ex != null) {
-                    if (shouldTryCreateFromLocalImage(context.containerDescription)) {
+                    if (context.imagePullSkipped
+                            && o.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                        logInfo("Image %s is missing on host %s, pulling it...",
+                                fullImageName, context.computeState.documentSelfLink);
+                        imagePullCoordinator.invalidate(context.computeState.documentSelfLink,
+                                fullImageName);
+                        context.imagePullSkipped = false;
+                        context.imagePullRequired = true;
+                        processContainerDescription(context);
+                    } else if (shouldTryCreateFromLocalImage(context.containerDescription)) {
                         logInfo("Unable to create container using local image. Will be fetched from a remote "
                                 + "location...");
                         context.containerDescription.customProperties
@@ -1022,6 +1130,7 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                                 context.operation,
                                 () -> {
                                     Map<String, Object> properties = o.getBody(Map.class);
+                                    recordContainerImage(context, properties);
                                     patchContainerState(context.request, context.containerState,
                                             properties, context);
                                 });
@@ -1029,6 +1138,29 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                 });
     }
 
+    /**
+     * Records the image of an inspected container in the inventory of the host, so that creating
+     * containers from the same image on the host doesn't pull it again.
+     */
+    @SuppressWarnings("unchecked")
+    private void recordContainerImage(RequestContext context, Map<String, Object> properties) {
+        Object config = properties.get(DOCKER_CONTAINER_CONFIG_PROP_NAME);
+        if (!(config instanceof Map)) {
+            return;
+        }
+        Object image = ((Map<String, Object>) config).get(DOCKER_CONTAINER_IMAGE_PROP_NAME);
+        if (image == null) {
+            return;
+        }
+        try {
+            imagePullCoordinator.recordContainerImage(context.computeState.documentSelfLink,
+                    DockerImage.fromImageName(image.toString()).toString());
+        } catch (IllegalArgumentException e) {
+            logFine("Not recording image %s of container %s: %s", image,
+                    context.containerState.documentSelfLink, e.getMessage());
+        }
+    }
+
     private void execContainer(RequestContext context) {
         String command = context.request.customProperties
                 .get(ShellContainerExecutorService.COMMAND_KEY);
@@ -16,10 +16,20 @@ import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExec
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_CONTAINER_NAMES_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_CONTAINER_NETWORK_ID_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_CONTAINER_NETWORK_NAME_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_CONTAINER_STATE_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_CONTAINER_VOLUMES_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EVENTS_UNTIL_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EVENT_ACTION_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EVENT_ACTOR_ID_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EVENT_ACTOR_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EVENT_ID_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EVENT_STATUS_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EVENT_TIME_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EVENT_TYPE_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_VOLUME_DRIVER_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_VOLUME_NAME_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_VOLUME_SCOPE_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.SINCE;
 import static com.vmware.admiral.adapter.docker.service.DockerNetworkAdapterService.DOCKER_PREDEFINED_NETWORKS;
 import static com.vmware.admiral.compute.ContainerHostService.SSL_TRUST_ALIAS_PROP_NAME;
 import static com.vmware.admiral.compute.ContainerHostService.SSL_TRUST_CERT_PROP_NAME;
@@ -40,6 +50,9 @@ import com.vmware.admiral.common.util.PropertyUtils;
 import com.vmware.admiral.compute.ContainerHostService;
 import com.vmware.admiral.compute.ContainerHostUtil;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerHostEventsCollectionService;
+import com.vmware.admiral.compute.container.ContainerHostEventsCollectionService.HostEvent;
+import com.vmware.admiral.compute.container.ContainerHostEventsCollectionService.HostEventsCallback;
 import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerListCallback;
 import com.vmware.admiral.compute.container.HostNetworkListDataCollection.NetworkListCallback;
 import com.vmware.admiral.compute.container.HostVolumeListDataCollection.VolumeListCallback;
@@ -112,6 +125,10 @@ public class DockerHostAdapterService extends AbstractDockerAdapterService {
             getContainerHost(request, op, request.resourceReference,
                     (computeState, commandInput) -> directListVolumes(request, op, computeState,
                             commandInput));
+        } else if (ContainerHostOperationType.EVENTS == request.getOperationType()) {
+            getContainerHost(request, op, request.resourceReference,
+                    (computeState, commandInput) -> directHostEvents(request, op, computeState,
+                            commandInput));
         } else {
             // debugging dockerHostAddress is null issue
             logInfo("DockerHostAdapterService.handlePatch (else): compute: %s",
@@ -341,6 +358,76 @@ public class DockerHostAdapterService extends AbstractDockerAdapterService {
             callbackResponse.addIdAndNames(id, names);
             callbackResponse.containerIdsAndImage.put(id,
                     (String) containerData.get(DOCKER_CONTAINER_IMAGE_PROP_NAME));
+            Object state = containerData.get(DOCKER_CONTAINER_STATE_PROP_NAME);
+            if (state instanceof String) {
+                callbackResponse.containerIdsAndState.put(id, (String) state);
+            }
+        }
+        return callbackResponse;
+    }
+
+    // get the events within the current operation without using callback
+    private void directHostEvents(ContainerHostRequest request, Operation op,
+            ComputeState computeState, CommandInput commandInput) {
+        updateSslTrust(request, commandInput);
+        commandInput.withProperty(SINCE, request.customProperties.get(
+                ContainerHostEventsCollectionService.EVENTS_SINCE_PROP_NAME));
+        commandInput.withProperty(DOCKER_EVENTS_UNTIL_PROP_NAME, request.customProperties.get(
+                ContainerHostEventsCollectionService.EVENTS_UNTIL_PROP_NAME));
+
+        getCommandExecutor().hostEvents(
+                commandInput,
+                (o, ex) -> {
+                    if (ex != null) {
+                        op.fail(ex);
+                    } else {
+                        HostEventsCallback callbackResponse = createHostEventsCallback(
+                                computeState, o);
+                        logFine("Host [%s] returned %d events %s",
+                                computeState.documentSelfLink, callbackResponse.events.size(),
+                                request.getRequestTrackingLog());
+                        op.setBody(callbackResponse);
+                        op.complete();
+                    }
+                });
+    }
+
+    /**
+     * The events are streamed as a sequence of JSON objects, one per line.
+     */
+    @SuppressWarnings("unchecked")
+    private HostEventsCallback createHostEventsCallback(ComputeState computeState,
+            Operation o) {
+        HostEventsCallback callbackResponse = new HostEventsCallback();
+        callbackResponse.containerHostLink = computeState.documentSelfLink;
+        if (!o.hasBody()) {
+            return callbackResponse;
+        }
+
+        String body = o.getBody(String.class);
+        for (String line : body.split("\n")) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            Map<String, Object> eventData = Utils.fromJson(line, Map.class);
+            HostEvent event = new HostEvent();
+            event.type = (String) eventData.get(DOCKER_EVENT_TYPE_PROP_NAME);
+            event.action = (String) eventData.get(DOCKER_EVENT_ACTION_PROP_NAME);
+            Object actor = eventData.get(DOCKER_EVENT_ACTOR_PROP_NAME);
+            if (actor instanceof Map) {
+                event.id = (String) ((Map<String, Object>) actor)
+                        .get(DOCKER_EVENT_ACTOR_ID_PROP_NAME);
+            }
+            if (event.type == null) {
+                event.type = ContainerHostEventsCollectionService.EVENT_TYPE_CONTAINER;
+                event.action = (String) eventData.get(DOCKER_EVENT_STATUS_PROP_NAME);
+                event.id = (String) eventData.get(DOCKER_EVENT_ID_PROP_NAME);
+            }
+            Object time = eventData.get(DOCKER_EVENT_TIME_PROP_NAME);
+            if (time instanceof Number) {
+                event.time = ((Number) time).longValue();
+            }
+            callbackResponse.events.add(event);
         }
         return callbackResponse;
     }
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.CompletionHandler;
+import com.vmware.xenon.common.OperationContext;
+import com.vmware.xenon.common.Service;
+
+/**
+ * Streams image tar files to the docker <code>/images/load</code> API with chunked transfer
+ * encoding, transferring the file straight from a {@link FileChannel} to the connection, so the
+ * image is never held in memory as a whole.
+ *
+ * The number of concurrent loads to a docker host is bounded, the loads over the bound wait in a
+ * FIFO queue of the host. The blocking I/O runs on a dedicated pool and not on the I/O threads of
+ * the service clients or the host executor.
+ *
+ * The docker service clients do not match the host name against the server certificate, the
+ * certificate is trusted if the trust manager of the adapter accepts it. The loads apply the same
+ * decision to the host name verification of {@link HttpsURLConnection}, instead of its default
+ * verifier.
+ */
+class ImageLoadStreamer {
+    static final String STAT_NAME_ACTIVE_LOADS = "imageLoadActiveCount";
+    static final String STAT_NAME_QUEUED_LOADS = "imageLoadQueuedCount";
+    static final String STAT_NAME_LOADED_BYTES = "imageLoadBytesCount";
+
+    private static final Logger logger = Logger.getLogger(ImageLoadStreamer.class.getName());
+
+    private static final Pattern ERROR_PATTERN = Pattern.compile("\"error\":\"(.*)\"");
+
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+
+    private static final Pattern KEY_EXCHANGE_PATTERN = Pattern.compile("^TLS_(.+)_WITH_");
+
+    private final SSLContext sslContext;
+    private final HostnameVerifier hostnameVerifier;
+    private final String contentType;
+    private final int maxLoadsPerHost;
+    private final int chunkSize;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            r -> new Thread(r, ImageLoadStreamer.class.getSimpleName()));
+    private final Map<String, HostLoads> loadsByHost = new HashMap<>();
+    private final AtomicLong loadedBytes = new AtomicLong();
+
+    /** The running and the waiting loads of a docker host. */
+    private static class HostLoads {
+        int active;
+        final Queue<Runnable> pending = new ArrayDeque<>();
+    }
+
+    ImageLoadStreamer(SSLContext sslContext, TrustManager trustManager, String contentType,
+            int maxLoadsPerHost, int chunkSize, long connectTimeoutSeconds,
+            long readTimeoutSeconds) {
+        this.sslContext = sslContext;
+        this.hostnameVerifier = createHostnameVerifier(trustManager);
+        this.contentType = contentType;
+        this.maxLoadsPerHost = Math.max(1, maxLoadsPerHost);
+        this.chunkSize = chunkSize;
+        this.connectTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(connectTimeoutSeconds);
+        this.readTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(readTimeoutSeconds);
+    }
+
+    /**
+     * Streams the given image file to the load URI of a docker host once there is a free load
+     * slot for the host. The completion handler is called with the response of docker, in the
+     * operation context of the caller.
+     */
+    void load(URI loadUri, File imageFile, CompletionHandler completionHandler) {
+        String hostKey = loadUri.getScheme() + "://" + loadUri.getAuthority();
+        OperationContext origContext = OperationContext.getOperationContext();
+
+        Runnable load = () -> {
+            Operation op = Operation.createPost(loadUri);
+            Throwable failure;
+            try {
+                failure = stream(loadUri, imageFile, op);
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                release(hostKey);
+            }
+
+            OperationContext.setFrom(origContext);
+            completionHandler.handle(op, failure);
+        };
+
+        synchronized (loadsByHost) {
+            HostLoads loads = loadsByHost.computeIfAbsent(hostKey, k -> new HostLoads());
+            if (loads.active >= maxLoadsPerHost) {
+                logger.info(String.format("Queueing image load of %s to %s, %d loads queued",
+                        imageFile, hostKey, loads.pending.size() + 1));
+                loads.pending.add(load);
+                return;
+            }
+            loads.active++;
+        }
+        executor.execute(load);
+    }
+
+    Map<String, Long> getStats() {
+        long active = 0;
+        long queued = 0;
+        synchronized (loadsByHost) {
+            for (HostLoads loads : loadsByHost.values()) {
+                active += loads.active;
+                queued += loads.pending.size();
+            }
+        }
+        Map<String, Long> stats = new HashMap<>();
+        stats.put(STAT_NAME_ACTIVE_LOADS, active);
+        stats.put(STAT_NAME_QUEUED_LOADS, queued);
+        stats.put(STAT_NAME_LOADED_BYTES, loadedBytes.get());
+        return stats;
+    }
+
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    private void release(String hostKey) {
+        Runnable next;
+        synchronized (loadsByHost) {
+            HostLoads loads = loadsByHost.get(hostKey);
+            next = loads.pending.poll();
+            if (next == null && --loads.active == 0) {
+                loadsByHost.remove(hostKey);
+            }
+        }
+        if (next != null) {
+            executor.execute(next);
+        }
+    }
+
+    /**
+     * Sends the file and sets the response of docker to the given operation. Returns the failure
+     * of the load, if any.
+     */
+    private Throwable stream(URI loadUri, File imageFile, Operation op) throws IOException {
+        logger.info(String.format("Streaming image %s (%d bytes) to %s", imageFile,
+                imageFile.length(), loadUri));
+
+        HttpURLConnection connection = (HttpURLConnection) loadUri.toURL().openConnection();
+        try {
+            if (connection instanceof HttpsURLConnection) {
+                HttpsURLConnection httpsConnection = (HttpsURLConnection) connection;
+                httpsConnection.setSSLSocketFactory(sslContext.getSocketFactory());
+                httpsConnection.setHostnameVerifier(hostnameVerifier);
+            }
+            connection.setRequestMethod(Service.Action.POST.name());
+            connection.setRequestProperty(CONTENT_TYPE_HEADER, contentType);
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(chunkSize);
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
+
+            try (FileChannel channel = FileChannel.open(imageFile.toPath(),
+                    StandardOpenOption.READ);
+                    OutputStream out = connection.getOutputStream()) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long size = channel.size();
+                long position = 0;
+                while (position < size) {
+                    position += channel.transferTo(position, size - position, target);
+                }
+                loadedBytes.addAndGet(size);
+            }
+
+            int statusCode = connection.getResponseCode();
+            boolean success = statusCode < Operation.STATUS_CODE_FAILURE_THRESHOLD;
+            String body = readBody(success ? connection.getInputStream()
+                    : connection.getErrorStream());
+            op.setStatusCode(statusCode);
+            op.setBodyNoCloning(body);
+
+            if (!success) {
+                return new IllegalStateException(String.format(
+                        "Loading image to %s failed with status %d: %s", loadUri, statusCode,
+                        body));
+            }
+            // docker reports load errors in the streamed response
+            Matcher matcher = ERROR_PATTERN.matcher(body);
+            if (matcher.find()) {
+                return new RuntimeException("Error: " + matcher.group(1));
+            }
+            return null;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Returns a verifier which accepts the peer of the session if the given trust manager trusts
+     * its certificate chain, as for the requests of the docker service clients.
+     */
+    static HostnameVerifier createHostnameVerifier(TrustManager trustManager) {
+        if (!(trustManager instanceof X509TrustManager)) {
+            return HttpsURLConnection.getDefaultHostnameVerifier();
+        }
+        X509TrustManager x509TrustManager = (X509TrustManager) trustManager;
+        return (hostname, session) -> {
+            try {
+                x509TrustManager.checkServerTrusted(getPeerCertificates(session),
+                        getAuthType(session));
+                return true;
+            } catch (CertificateException | SSLPeerUnverifiedException e) {
+                logger.warning(String.format("Untrusted certificate of %s: %s", hostname,
+                        e.getMessage()));
+                return false;
+            }
+        };
+    }
+
+    private static X509Certificate[] getPeerCertificates(SSLSession session)
+            throws SSLPeerUnverifiedException {
+        Certificate[] certificates = session.getPeerCertificates();
+        return Arrays.copyOf(certificates, certificates.length, X509Certificate[].class);
+    }
+
+    private static String getAuthType(SSLSession session) {
+        Matcher matcher = KEY_EXCHANGE_PATTERN.matcher(session.getCipherSuite());
+        return matcher.find() ? matcher.group(1) : "UNKNOWN";
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
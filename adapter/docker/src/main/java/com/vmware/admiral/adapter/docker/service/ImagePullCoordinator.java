@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.CompletionHandler;
+import com.vmware.xenon.common.OperationContext;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Coordinates the image pulls of the container creations on the docker hosts.
+ *
+ * Concurrent pulls of the same image to the same host are coalesced into a single pull, which
+ * all the waiting creations complete with. The coordinator also keeps an inventory of the images
+ * known to be present on each host:
+ * <ul>
+ * <li>images referenced by digest, which are immutable, are present for as long as they are in
+ * the inventory. They are recorded when pulled and when the data collection inspects a container
+ * created from them.</li>
+ * <li>images referenced by tag are only considered present for a short period after they are
+ * pulled, so that replicas created right after each other do not pull them again, while later
+ * creations still get updated tags.</li>
+ * </ul>
+ * The pulls and the inventory are kept per registry credentials, so that a creation with other
+ * credentials, or without any, pulls the image itself and the registry checks its access.
+ *
+ * The inventory of a host is a bounded LRU map, an image which turns out to be missing when the
+ * container is created has to be {@link #invalidate(String, String) invalidated} and pulled.
+ */
+class ImagePullCoordinator {
+    static final String STAT_NAME_COALESCED_PULLS = "imagePullCoalescedCount";
+    static final String STAT_NAME_SKIPPED_PULLS = "imagePullSkippedCount";
+
+    private static final String DIGEST_SEPARATOR = "@";
+    private static final String KEY_SEPARATOR = " ";
+    private static final String NO_CREDENTIALS = "";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final int maxImagesPerHost;
+    private final long tagReuseMicros;
+
+    private final Map<String, List<CompletionHandler>> inFlightPulls = new HashMap<>();
+    /** The images by host, and the time they were recorded by credentials identity. */
+    private final Map<String, Map<String, Map<String, Long>>> inventory = new HashMap<>();
+
+    ImagePullCoordinator(int maxImagesPerHost, long tagReuseMicros) {
+        this.maxImagesPerHost = maxImagesPerHost;
+        this.tagReuseMicros = tagReuseMicros;
+    }
+
+    /**
+     * Returns whether the given image is known to be present on the host for the given registry
+     * credentials, so it doesn't have to be pulled.
+     */
+    boolean isPresent(String hostLink, String image, String registryAuth) {
+        synchronized (inventory) {
+            Map<String, Map<String, Long>> images = inventory.get(hostLink);
+            Map<String, Long> identities = images == null ? null : images.get(image);
+            Long recordedMicros = identities == null ? null
+                    : identities.get(identity(registryAuth));
+            if (recordedMicros == null) {
+                return false;
+            }
+            return isDigestReference(image)
+                    || Utils.getSystemNowMicrosUtc() - recordedMicros < tagReuseMicros;
+        }
+    }
+
+    /**
+     * Records an image of a container inspected on the host. Only the images referenced by digest
+     * are recorded, a container created from a tag says nothing about the current image of the
+     * tag. They are recorded as present for the creations without registry credentials only.
+     */
+    void recordContainerImage(String hostLink, String image) {
+        if (image != null && isDigestReference(image)) {
+            record(hostLink, image, NO_CREDENTIALS);
+        }
+    }
+
+    /**
+     * Removes the given image of the host from the inventory, for all registry credentials.
+     */
+    void invalidate(String hostLink, String image) {
+        synchronized (inventory) {
+            Map<String, Map<String, Long>> images = inventory.get(hostLink);
+            if (images != null) {
+                images.remove(image);
+                if (images.isEmpty()) {
+                    inventory.remove(hostLink);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pulls the image to the host with the given puller, unless there is a pull of the same image
+     * to the host with the same registry credentials in progress already, in which case the
+     * handler is completed with the result of that pull. Returns <code>false</code> if the pull
+     * is coalesced with a pull in progress.
+     */
+    boolean pull(String hostLink, String image, String registryAuth,
+            Consumer<CompletionHandler> puller, CompletionHandler completionHandler) {
+        String identity = identity(registryAuth);
+        String key = hostLink + KEY_SEPARATOR + image + KEY_SEPARATOR + identity;
+        CompletionHandler handler = inContext(completionHandler);
+        synchronized (inFlightPulls) {
+            List<CompletionHandler> waiting = inFlightPulls.get(key);
+            if (waiting != null) {
+                waiting.add(handler);
+                return false;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(handler);
+            inFlightPulls.put(key, waiting);
+        }
+
+        puller.accept((o, ex) -> {
+            if (ex == null) {
+                record(hostLink, image, identity);
+            }
+            List<CompletionHandler> waiting;
+            synchronized (inFlightPulls) {
+                waiting = inFlightPulls.remove(key);
+            }
+            for (CompletionHandler h : waiting) {
+                // a failing handler must not keep the other creations waiting
+                try {
+                    h.handle(o, ex);
+                } catch (Throwable t) {
+                    Utils.logWarning("Failed to complete the pull of image %s: %s", image,
+                            Utils.toString(t));
+                }
+            }
+        });
+        return true;
+    }
+
+    private void record(String hostLink, String image, String identity) {
+        synchronized (inventory) {
+            inventory.computeIfAbsent(hostLink, k -> new LinkedHashMap<String, Map<String, Long>>(
+                    16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, Map<String, Long>> eldest) {
+                    return size() > maxImagesPerHost;
+                }
+            }).computeIfAbsent(image, k -> new HashMap<>())
+                    .put(identity, Utils.getSystemNowMicrosUtc());
+        }
+    }
+
+    /**
+     * Returns the identity of the given registry credentials, their SHA-256 digest, so that the
+     * credentials are not kept in the keys.
+     */
+    private static String identity(String registryAuth) {
+        if (registryAuth == null || registryAuth.isEmpty()) {
+            return NO_CREDENTIALS;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance(DIGEST_ALGORITHM)
+                    .digest(registryAuth.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The waiting handlers are completed on the thread of the pull, in the operation context of
+     * the pull. Each handler has to continue in the context of its own request.
+     */
+    private static CompletionHandler inContext(CompletionHandler handler) {
+        OperationContext origContext = OperationContext.getOperationContext();
+        return (Operation o, Throwable ex) -> {
+            OperationContext.setFrom(origContext);
+            handler.handle(o, ex);
+        };
+    }
+
+    private static boolean isDigestReference(String image) {
+        return image.contains(DIGEST_SEPARATOR);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.X509ExtendedKeyManager;
+
+import com.vmware.admiral.common.util.DelegatingX509KeyManager;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsServiceState;
+
+/**
+ * Bounded LRU cache of the client certificate {@link X509ExtendedKeyManager}s registered in a
+ * {@link DelegatingX509KeyManager} by trust alias.
+ *
+ * A cached KeyManager is reused as long as it was built from the same version (self link and
+ * update time) of the credentials, otherwise it is rebuilt, so changed credentials are picked up
+ * on their next use, and the entries of credentials that are updated or deleted are invalidated
+ * when the change is notified. KeyManagers of credentials that are not persisted are rebuilt on
+ * every use.
+ *
+ * Evicted, invalidated and idle entries are removed from the {@link DelegatingX509KeyManager} as
+ * well, but only after the handshake grace time, since a handshake that already chose the alias
+ * of the KeyManager still has to get its key and certificate chain.
+ */
+class KeyManagerCache {
+    static final String STAT_NAME_HIT_COUNT = "keyManagerCacheHitCount";
+    static final String STAT_NAME_MISS_COUNT = "keyManagerCacheMissCount";
+    static final String STAT_NAME_EVICTION_COUNT = "keyManagerCacheEvictionCount";
+    static final String STAT_NAME_INVALIDATION_COUNT = "keyManagerCacheInvalidationCount";
+    static final String STAT_NAME_SIZE = "keyManagerCacheSize";
+
+    /**
+     * Creates the KeyManager for the given alias from the credentials, <code>null</code> if the
+     * credentials have no client key.
+     */
+    @FunctionalInterface
+    interface KeyManagerFactory {
+        X509ExtendedKeyManager create(String alias, AuthCredentialsServiceState credentials);
+    }
+
+    private static class Entry {
+        private final X509ExtendedKeyManager delegate;
+        private final String credentialsLink;
+        private final long credentialsVersion;
+        private volatile long lastUsedMicros;
+
+        private Entry(X509ExtendedKeyManager delegate, AuthCredentialsServiceState credentials,
+                long nowMicrosUtc) {
+            this.delegate = delegate;
+            this.credentialsLink = credentials.documentSelfLink;
+            this.credentialsVersion = credentials.documentUpdateTimeMicros;
+            this.lastUsedMicros = nowMicrosUtc;
+        }
+
+        private boolean matches(AuthCredentialsServiceState credentials) {
+            // not persisted credentials have no version to compare
+            return credentialsLink != null && credentialsVersion != 0
+                    && credentialsLink.equals(credentials.documentSelfLink)
+                    && credentialsVersion == credentials.documentUpdateTimeMicros;
+        }
+    }
+
+    /** A KeyManager removed from the cache, to be removed from the delegates later. */
+    private static class RetiredDelegate {
+        private final String alias;
+        private final X509ExtendedKeyManager delegate;
+        private final long retiredMicros;
+
+        private RetiredDelegate(String alias, X509ExtendedKeyManager delegate,
+                long retiredMicros) {
+            this.alias = alias;
+            this.delegate = delegate;
+            this.retiredMicros = retiredMicros;
+        }
+    }
+
+    private final DelegatingX509KeyManager keyManager;
+    private final KeyManagerFactory keyManagerFactory;
+    private final int maxSize;
+    private final long maxIdleMicros;
+    private final long handshakeGraceMicros;
+
+    // access ordered, guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // guarded by this
+    private final List<RetiredDelegate> retiredDelegates = new ArrayList<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    KeyManagerCache(DelegatingX509KeyManager keyManager, KeyManagerFactory keyManagerFactory,
+            int maxSize, long maxIdleMicros, long handshakeGraceMicros) {
+        this.keyManager = keyManager;
+        this.keyManagerFactory = keyManagerFactory;
+        this.maxSize = maxSize;
+        this.maxIdleMicros = maxIdleMicros;
+        this.handshakeGraceMicros = handshakeGraceMicros;
+    }
+
+    /**
+     * Makes sure a KeyManager built from the given credentials is registered for the alias.
+     */
+    void ensureKeyManager(String alias, AuthCredentialsServiceState credentials) {
+        long nowMicrosUtc = Utils.getSystemNowMicrosUtc();
+        synchronized (this) {
+            Entry entry = entries.get(alias);
+            if (entry != null && entry.matches(credentials)) {
+                entry.lastUsedMicros = nowMicrosUtc;
+                hits.incrementAndGet();
+                return;
+            }
+        }
+        misses.incrementAndGet();
+
+        // parsing the key is expensive, so do it outside of the lock
+        X509ExtendedKeyManager delegate = keyManagerFactory.create(alias, credentials);
+
+        synchronized (this) {
+            if (delegate == null) {
+                Entry removed = entries.remove(alias);
+                if (removed != null) {
+                    retire(alias, removed, nowMicrosUtc);
+                }
+                return;
+            }
+
+            keyManager.putDelegate(alias, delegate);
+            entries.put(alias, new Entry(delegate, credentials, nowMicrosUtc));
+
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxSize && it.hasNext()) {
+                Map.Entry<String, Entry> evicted = it.next();
+                it.remove();
+                retire(evicted.getKey(), evicted.getValue(), nowMicrosUtc);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes the KeyManagers built from the given credentials, which were updated or deleted, so
+     * that they are rebuilt on their next use.
+     */
+    synchronized void invalidate(String credentialsLink) {
+        long nowMicrosUtc = Utils.getSystemNowMicrosUtc();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> entry = it.next();
+            if (credentialsLink.equals(entry.getValue().credentialsLink)) {
+                it.remove();
+                retire(entry.getKey(), entry.getValue(), nowMicrosUtc);
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes the KeyManagers that were not used in the max idle time, e.g. because their host or
+     * credentials were removed, and removes the delegates retired before the handshake grace time.
+     */
+    synchronized void purgeIdle(long nowMicrosUtc) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> entry = it.next();
+            if (entry.getValue().lastUsedMicros + maxIdleMicros < nowMicrosUtc) {
+                it.remove();
+                retire(entry.getKey(), entry.getValue(), nowMicrosUtc);
+                evictions.incrementAndGet();
+            }
+        }
+
+        Iterator<RetiredDelegate> retired = retiredDelegates.iterator();
+        while (retired.hasNext()) {
+            RetiredDelegate delegate = retired.next();
+            if (delegate.retiredMicros + handshakeGraceMicros >= nowMicrosUtc) {
+                // the delegates are retired in chronological order
+                break;
+            }
+            retired.remove();
+            // the alias may have been registered again with a new KeyManager
+            keyManager.removeDelegate(delegate.alias, delegate.delegate);
+        }
+    }
+
+    private void retire(String alias, Entry entry, long nowMicrosUtc) {
+        retiredDelegates.add(new RetiredDelegate(alias, entry.delegate, nowMicrosUtc));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put(STAT_NAME_HIT_COUNT, hits.get());
+        stats.put(STAT_NAME_MISS_COUNT, misses.get());
+        stats.put(STAT_NAME_EVICTION_COUNT, evictions.get());
+        stats.put(STAT_NAME_INVALIDATION_COUNT, invalidations.get());
+        stats.put(STAT_NAME_SIZE, (long) size());
+        return stats;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Node local tracker of the container logs written to the LogService documents, so that a log
+ * refresh appends only the new tail of the docker log instead of replacing the log with the whole
+ * fetched window.
+ *
+ * The docker logs are fetched as the last lines of the log, so a refresh window starts inside the
+ * previous one and the lines they share are a suffix of the previous window and a prefix of the new
+ * one. The previous window of each log is kept and the longest such overlap which starts at a line
+ * of the previous window is looked up, the bytes after it are the new tail. Taking the longest one
+ * keeps repeated content, e.g. heartbeat lines, from being appended again. When there is no
+ * overlap, e.g. because more lines than the window were written or the fetch parameters changed,
+ * the whole window replaces the log. The least recently refreshed logs are evicted when there are
+ * too many of them or their windows take too much memory.
+ */
+class LogTailTracker {
+
+    private static class LogTail {
+        private final String fetchKey;
+        private final byte[] window;
+
+        private LogTail(String fetchKey, byte[] window) {
+            this.fetchKey = fetchKey;
+            this.window = window;
+        }
+    }
+
+    private final int maxLogs;
+    private final long maxBytes;
+
+    // access ordered, guarded by this
+    private final LinkedHashMap<String, LogTail> tails = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    LogTailTracker(int maxLogs, long maxBytes) {
+        this.maxLogs = maxLogs;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Records the window fetched for a log and returns the bytes of the window after the previous
+     * one, which may be empty, or <code>null</code> if the whole window replaces the log.
+     *
+     * @param fetchKey the parameters the window was fetched with, e.g. the number of lines
+     */
+    synchronized byte[] update(String logLink, String fetchKey, byte[] window) {
+        LogTail previous = remove(logLink);
+        if (window.length <= maxBytes) {
+            tails.put(logLink, new LogTail(fetchKey, window));
+            bytes += window.length;
+            evict();
+        }
+
+        if (previous == null || !previous.fetchKey.equals(fetchKey)
+                || previous.window.length == 0) {
+            return null;
+        }
+
+        int overlap = overlap(previous.window, window);
+        if (overlap == 0) {
+            return null;
+        }
+        return Arrays.copyOfRange(window, overlap, window.length);
+    }
+
+    /**
+     * Forgets a log, e.g. when writing it failed, so that its next window replaces it.
+     */
+    synchronized void reset(String logLink) {
+        remove(logLink);
+    }
+
+    synchronized int size() {
+        return tails.size();
+    }
+
+    private LogTail remove(String logLink) {
+        LogTail removed = tails.remove(logLink);
+        if (removed != null) {
+            bytes -= removed.window.length;
+        }
+        return removed;
+    }
+
+    private void evict() {
+        Iterator<LogTail> it = tails.values().iterator();
+        while ((tails.size() > maxLogs || bytes > maxBytes) && it.hasNext()) {
+            bytes -= it.next().window.length;
+            it.remove();
+        }
+    }
+
+    /**
+     * Returns the length of the longest prefix of the window which is a suffix of the previous
+     * window starting at a line of it, or 0 if there is none.
+     */
+    private static int overlap(byte[] previous, byte[] window) {
+        if (window.length == 0) {
+            return 0;
+        }
+
+        // KMP prefix function of the window, matched against the previous window
+        int[] prefix = new int[window.length];
+        for (int i = 1, k = 0; i < window.length; i++) {
+            while (k > 0 && window[i] != window[k]) {
+                k = prefix[k - 1];
+            }
+            if (window[i] == window[k]) {
+                k++;
+            }
+            prefix[i] = k;
+        }
+
+        int matched = 0;
+        for (byte b : previous) {
+            while (matched > 0 && (matched == window.length || b != window[matched])) {
+                matched = prefix[matched - 1];
+            }
+            if (b == window[matched]) {
+                matched++;
+            }
+        }
+
+        // an overlap not starting at a line of the previous window is a false match, fall back
+        // to the next shorter one
+        while (matched > 0 && matched < previous.length
+                && previous[previous.length - matched - 1] != '\n') {
+            matched = prefix[matched - 1];
+        }
+        return matched;
+    }
+}
@@ -14,6 +14,7 @@ package com.vmware.admiral.adapter.docker.service;
 import static com.vmware.admiral.compute.ContainerHostService.SSL_TRUST_ALIAS_PROP_NAME;
 import static com.vmware.admiral.compute.ContainerHostService.SSL_TRUST_CERT_PROP_NAME;
 
+import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -35,6 +36,8 @@ import com.vmware.admiral.common.util.DelegatingX509KeyManager;
 import com.vmware.admiral.common.util.ServerX509TrustManager;
 import com.vmware.admiral.common.util.ServiceClientFactory;
 import com.vmware.admiral.common.util.ServiceUtils;
+import com.vmware.admiral.compute.CommonContinuousQueries;
+import com.vmware.admiral.compute.CommonContinuousQueries.ContinuousQueryId;
 import com.vmware.photon.controller.model.security.util.CertificateUtil;
 import com.vmware.photon.controller.model.security.util.EncryptionUtils;
 import com.vmware.xenon.common.Operation;
@@ -45,6 +48,7 @@ import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsServiceState;
+import com.vmware.xenon.services.common.QueryTask;
 
 /**
  * Docker command executor implementation based on DCP and the docker remote API
@@ -65,13 +69,19 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
     private static RemoteApiDockerAdapterCommandExecutorImpl INSTANCE;
 
     private static final Pattern ERROR_PATTERN = Pattern.compile("\"error\":\"(.*)\"");
+
+    private static final String EVENTS_FILTER = "{\"type\":[\"container\",\"network\",\"volume\"]}";
+
     private final ServiceHost host;
     private final ServiceClient serviceClient;
     // Used for commands like exec start
     private final ServiceClient attachServiceClient;
     // Used for commands like load image from tar
     private final ServiceClient largeDataClient;
+    // Used for load image from a tar file, streaming the file instead of buffering it
+    private final ImageLoadStreamer imageLoadStreamer;
     private final DelegatingX509KeyManager keyManager = new DelegatingX509KeyManager();
+    private final KeyManagerCache keyManagerCache;
     private ServerX509TrustManager trustManager;
 
     private final int DOCKER_REQUEST_PAYLOAD_SIZE_LIMIT = Integer.getInteger(
@@ -83,6 +93,24 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
     private final int DOCKER_IMAGE_REQUEST_TIMEOUT_SECONDS = Integer.getInteger(
             "adapter.docker.api.client.image_request_timeout_seconds", 60 * 10);
 
+    private static final int IMAGE_LOAD_CONCURRENCY_PER_HOST = Integer.getInteger(
+            "adapter.docker.api.client.image_load_concurrency_per_host", 2);
+
+    private static final int IMAGE_LOAD_CHUNK_SIZE = Integer.getInteger(
+            "adapter.docker.api.client.image_load_chunk_size", 1024 * 64);
+
+    private static final int KEY_MANAGER_CACHE_SIZE = Integer.getInteger(
+            "adapter.docker.api.client.key_manager_cache_size", 1000);
+
+    private static final long KEY_MANAGER_CACHE_IDLE_MICROS = Long.getLong(
+            "adapter.docker.api.client.key_manager_cache_idle_micros",
+            TimeUnit.HOURS.toMicros(1));
+
+    // a handshake does not outlast the default request timeout
+    private static final long KEY_MANAGER_HANDSHAKE_GRACE_MICROS = Long.getLong(
+            "adapter.docker.api.client.key_manager_handshake_grace_micros",
+            TimeUnit.MINUTES.toMicros(2));
+
     private enum ClientMode {
         DEFAULT,
         ATTACH,
@@ -92,11 +120,22 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
     protected RemoteApiDockerAdapterCommandExecutorImpl(ServiceHost host,
             final TrustManager trustManager) {
         this.host = host;
+        this.keyManagerCache = new KeyManagerCache(keyManager,
+                RemoteApiDockerAdapterCommandExecutorImpl::createKeyManager,
+                KEY_MANAGER_CACHE_SIZE, KEY_MANAGER_CACHE_IDLE_MICROS,
+                KEY_MANAGER_HANDSHAKE_GRACE_MICROS);
+        CommonContinuousQueries.subscribeTo(host, ContinuousQueryId.AUTH_CREDENTIALS,
+                this::onCredentialsChange);
         this.serviceClient = ServiceClientFactory.createServiceClient(trustManager, keyManager);
         this.attachServiceClient = ServiceClientFactory.createServiceClient(trustManager,
                 keyManager);
         this.largeDataClient = ServiceClientFactory.createServiceClient(
                 trustManager, keyManager, DOCKER_REQUEST_PAYLOAD_SIZE_LIMIT);
+        this.imageLoadStreamer = new ImageLoadStreamer(
+                CertificateUtil.createSSLContext(trustManager, keyManager), trustManager,
+                MEDIA_TYPE_APPLICATION_TAR, IMAGE_LOAD_CONCURRENCY_PER_HOST,
+                IMAGE_LOAD_CHUNK_SIZE, DOCKER_REQUEST_TIMEOUT_SECONDS,
+                DOCKER_IMAGE_REQUEST_TIMEOUT_SECONDS);
 
         if (trustManager instanceof ServerX509TrustManager) {
             this.trustManager = (ServerX509TrustManager) trustManager;
@@ -188,8 +227,13 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
     @Override
     public void loadImage(CommandInput input, CompletionHandler completionHandler) {
         createOrUpdateTargetSsl(input);
-        Object imageData = input.getProperties().get(DOCKER_IMAGE_DATA_PROP_NAME);
         URI targetUri = UriUtils.extendUri(input.getDockerUri(), "/images/load");
+        Object imageFile = input.getProperties().get(DOCKER_IMAGE_FILE_PROP_NAME);
+        if (imageFile != null) {
+            imageLoadStreamer.load(targetUri, new File(imageFile.toString()), completionHandler);
+            return;
+        }
+        Object imageData = input.getProperties().get(DOCKER_IMAGE_DATA_PROP_NAME);
         sendPost(targetUri, imageData, ClientMode.LARGE_DATA, completionHandler);
     }
 
@@ -419,6 +463,27 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         sendGet(uri, null, completionHandler);
     }
 
+    /**
+     * https://docs.docker.com/engine/reference/api/docker_remote_api_v1.24/#monitor-docker-s-events
+     * Mandatory properties for <code>input</code>:
+     * <li>{@link DockerAdapterCommandExecutor#SINCE}
+     * <li>{@link DockerAdapterCommandExecutor#DOCKER_EVENTS_UNTIL_PROP_NAME}
+     *
+     * The time frame is closed, so the daemon streams the container, network and volume events
+     * recorded in it and completes the response instead of keeping it open.
+     */
+    @Override
+    public void hostEvents(CommandInput input, CompletionHandler completionHandler) {
+        createOrUpdateTargetSsl(input);
+        URI uri = UriUtils.extendUri(input.getDockerUri(), "/events");
+        uri = UriUtils.extendUriWithQuery(uri,
+                SINCE, String.valueOf(input.getProperties().get(SINCE)),
+                DOCKER_EVENTS_UNTIL_PROP_NAME,
+                String.valueOf(input.getProperties().get(DOCKER_EVENTS_UNTIL_PROP_NAME)),
+                "filters", UriEncoder.encode(EVENTS_FILTER));
+        sendGet(uri, null, completionHandler);
+    }
+
     /**
      * https://docs.docker.com/engine/reference/api/docker_remote_api_v1.24/#create-a-network
      * Mandatory properties for <code>input</code>:
@@ -502,12 +567,14 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         if (largeDataClient != null) {
             largeDataClient.stop();
         }
+        imageLoadStreamer.stop();
 
         INSTANCE = null;
     }
 
     @Override
     public void handlePeriodicMaintenance(Operation post) {
+        keyManagerCache.purgeIdle(Utils.getSystemNowMicrosUtc());
         if (attachServiceClient != null) {
             attachServiceClient.handleMaintenance(post);
         }
@@ -519,6 +586,13 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         }
     }
 
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>(keyManagerCache.getStats());
+        stats.putAll(imageLoadStreamer.getStats());
+        return stats;
+    }
+
     private void createExec(CommandInput input, CompletionHandler completionHandler) {
         String containerId = (String) input.getProperties().remove(DOCKER_CONTAINER_ID_PROP_NAME);
         if (containerId == null || containerId.isEmpty()) {
@@ -635,17 +709,26 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
             trustManager.putDelegate(trustAlias, sslTrust);
         }
 
-        String clientKey = EncryptionUtils.decrypt(input.getCredentials().privateKey);
-        String clientCert = input.getCredentials().publicKey;
+        keyManagerCache.ensureKeyManager(trustAlias, input.getCredentials());
+    }
+
+    private void onCredentialsChange(Operation op) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
+        }
+        queryTask.results.documents.keySet().forEach(keyManagerCache::invalidate);
+    }
 
-        // TODO use an LRU cache to limit the number of stored
-        // KeyManagers while minimizing time wasted repeatedly
-        // recreating them
-        if (clientKey != null && !clientKey.isEmpty()) {
-            X509ExtendedKeyManager delegateKeyManager = (X509ExtendedKeyManager) CertificateUtil
-                    .getKeyManagers(trustAlias, clientKey, clientCert)[0];
-            keyManager.putDelegate(trustAlias, delegateKeyManager);
+    private static X509ExtendedKeyManager createKeyManager(String trustAlias,
+            AuthCredentialsServiceState credentials) {
+        String clientKey = EncryptionUtils.decrypt(credentials.privateKey);
+        if (clientKey == null || clientKey.isEmpty()) {
+            return null;
         }
+        return (X509ExtendedKeyManager) CertificateUtil
+                .getKeyManagers(trustAlias, clientKey, credentials.publicKey)[0];
     }
 
     private boolean isSecure(URI dockerUri) {
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Node local, size bounded cache of the system image tar files. The images are stored as content
+ * addressed files (named by the SHA-256 of their content) under the storage sandbox of the host,
+ * so that they can be streamed to the docker hosts without being held in memory.
+ *
+ * Lookups do not lock. Each entry expires when it is not used for the expiration period, and the
+ * least recently used entries are evicted when the size of the cache exceeds its limit. The files
+ * acquired for a load are pinned until they are released, a pinned file is neither expired nor
+ * evicted, and the file of an entry replaced while pinned is deleted on its last release.
+ */
+class SystemImageCache {
+    static final long MAX_SIZE_BYTES = Long.getLong(
+            "com.vmware.admiral.system.image.cache.size.bytes", 1024L * 1024 * 1024);
+
+    private static final String IMAGES_DIRECTORY = "system-images";
+    private static final String IMAGE_FILE_SUFFIX = ".tar";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final Map<String, SystemImageCache> CACHES = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /** The number of the loads using each file, guarded by the cache. */
+    private final Map<File, Integer> pins = new HashMap<>();
+
+    private static class Entry {
+        final File file;
+        final long size;
+        volatile long lastUsedMicros;
+
+        Entry(File file, long size) {
+            this.file = file;
+            this.size = size;
+            this.lastUsedMicros = Utils.getSystemNowMicrosUtc();
+        }
+    }
+
+    SystemImageCache(Path directory, long maxSizeBytes) {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Returns the image cache of the given host, starting the cache and its expiration sweep on
+     * first use. The images cached before a restart of the host are not reused.
+     */
+    static SystemImageCache forHost(ServiceHost host, long expirationMicros) {
+        return CACHES.computeIfAbsent(host.getId(), id -> {
+            SystemImageCache cache = new SystemImageCache(Paths.get(host.getStorageSandbox())
+                    .resolve(IMAGES_DIRECTORY), MAX_SIZE_BYTES);
+            cache.clear(host);
+            scheduleSweep(host, cache, expirationMicros);
+            return cache;
+        });
+    }
+
+    private static void scheduleSweep(ServiceHost host, SystemImageCache cache,
+            long expirationMicros) {
+        host.schedule(() -> {
+            if (!host.isStarted()) {
+                CACHES.remove(host.getId(), cache);
+                return;
+            }
+            List<String> expired = cache.sweep(Utils.getSystemNowMicrosUtc() - expirationMicros);
+            if (!expired.isEmpty()) {
+                host.log(Level.INFO, "System image(s) removed from cache: %s", expired);
+            }
+            scheduleSweep(host, cache, expirationMicros);
+        }, expirationMicros, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Returns the cached file of the given image, or <code>null</code> if it is not cached.
+     */
+    File get(String imagePath) {
+        Entry entry = entries.get(imagePath);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.file.exists()) {
+            entries.remove(imagePath, entry);
+            return null;
+        }
+        entry.lastUsedMicros = Utils.getSystemNowMicrosUtc();
+        return entry.file;
+    }
+
+    /**
+     * Returns the cached file of the given image pinned, or <code>null</code> if it is not cached.
+     * The file is kept until it is {@link #release(File) released}.
+     */
+    synchronized File acquire(String imagePath) {
+        File file = get(imagePath);
+        if (file != null) {
+            pins.merge(file, 1, Integer::sum);
+        }
+        return file;
+    }
+
+    /**
+     * Releases a file returned by {@link #acquire(String)}. The file is deleted if it is no longer
+     * pinned and its image was removed from the cache meanwhile.
+     */
+    synchronized void release(File file) {
+        Integer count = pins.get(file);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            pins.put(file, count - 1);
+            return;
+        }
+        pins.remove(file);
+        long nowMicros = Utils.getSystemNowMicrosUtc();
+        boolean cached = false;
+        for (Entry entry : entries.values()) {
+            if (entry.file.equals(file)) {
+                // the expiration period starts when the load completes
+                entry.lastUsedMicros = nowMicros;
+                cached = true;
+            }
+        }
+        if (!cached) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Stores the image read from the given stream and returns its cached file. The stream is
+     * closed.
+     */
+    File put(String imagePath, InputStream content) throws IOException {
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, null, TEMP_FILE_SUFFIX);
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            try (InputStream in = new DigestInputStream(content, digest);
+                    OutputStream out = Files.newOutputStream(tempFile)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            Path imageFile = directory.resolve(toHex(digest.digest()) + IMAGE_FILE_SUFFIX);
+            synchronized (this) {
+                Files.move(tempFile, imageFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+
+                Entry entry = new Entry(imageFile.toFile(), Files.size(imageFile));
+                Entry previous = entries.put(imagePath, entry);
+                if (previous != null) {
+                    delete(previous);
+                }
+                evict();
+                return entry.file;
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Removes the images which are not used since the given time and returns their paths.
+     */
+    synchronized List<String> sweep(long expirationTimeMicros) {
+        List<String> expired = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue().lastUsedMicros < expirationTimeMicros
+                    && !pins.containsKey(e.getValue().file)
+                    && entries.remove(e.getKey(), e.getValue())) {
+                delete(e.getValue());
+                expired.add(e.getKey());
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the size of the cached files, the files shared by several images are counted once.
+     */
+    long size() {
+        Map<File, Long> sizes = new HashMap<>();
+        entries.values().forEach(e -> sizes.put(e.file, e.size));
+        return sizes.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private void evict() {
+        List<Map.Entry<String, Entry>> lru = new ArrayList<>(entries.entrySet());
+        // the usage times change concurrently, sort by a snapshot of them
+        Map<Entry, Long> lastUsedMicros = new HashMap<>();
+        lru.forEach(e -> lastUsedMicros.put(e.getValue(), e.getValue().lastUsedMicros));
+        lru.sort(Comparator.comparingLong(e -> lastUsedMicros.get(e.getValue())));
+        // the most recently used image is kept even if it alone exceeds the limit
+        for (int i = 0; i < lru.size() - 1 && size() > maxSizeBytes; i++) {
+            Map.Entry<String, Entry> e = lru.get(i);
+            if (!pins.containsKey(e.getValue().file) && entries.remove(e.getKey(), e.getValue())) {
+                delete(e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Deletes the file of a removed entry, unless another image has the same content or the file
+     * is pinned.
+     */
+    private void delete(Entry removed) {
+        if (pins.containsKey(removed.file)) {
+            return;
+        }
+        for (Entry entry : entries.values()) {
+            if (entry.file.equals(removed.file)) {
+                return;
+            }
+        }
+        removed.file.delete();
+    }
+
+    private void clear(ServiceHost host) {
+        File[] files = directory.toFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                host.log(Level.WARNING, "Failed to delete cached system image %s", file);
+            }
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -15,6 +15,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -25,13 +26,10 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 
-import org.apache.commons.io.IOUtils;
-
 import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.FileUtil;
 import com.vmware.admiral.service.common.ConfigurationService.ConfigurationState;
-import com.vmware.xenon.common.FileUtils;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
@@ -46,36 +44,40 @@ public class SystemImageRetrievalManager {
 
     private final Object RETRIEVE_LOCK = new Object();
 
-    private Map<String, List<Consumer<byte[]>>> pendingCallbacksByImagePath = new HashMap<>();
+    private Map<String, List<Consumer<File>>> pendingCallbacksByImagePath = new HashMap<>();
 
     /**
-     * Map to keep a reference to loaded system images. Once loaded, the data will be added using
-     * the image file path as a key and time of the last usage will be stored. The timestamp is
-     * global for all the images. Once the defined timeout expires all the images will be cleared.
+     * Node local cache of the loaded system images. Once loaded, the image is stored in a file
+     * using the image file path as a key, and it is removed when not used for the defined timeout.
      */
-    private static Map<String, byte[]> cachedImages = new HashMap<>();
-    private static long lastUsed;
+    private final SystemImageCache cachedImages;
     private static final long CACHED_DATA_MICROS = Integer.getInteger(
             "com.vmware.admiral.system.image.cache.micros",
             (int) TimeUnit.SECONDS.toMicros(60));
 
     public SystemImageRetrievalManager(ServiceHost host) {
         this.host = host;
+        this.cachedImages = SystemImageCache.forHost(host, CACHED_DATA_MICROS);
     }
 
+    /**
+     * Retrieves the given system image and calls the callback with its cached file, or with
+     * <code>null</code> if the image does not exist. The file should be streamed and must not be
+     * modified or deleted. The file is kept in the cache until it is released with
+     * {@link #releaseAgentImage(File)}, which must be called once the load completes or fails.
+     */
     public void retrieveAgentImage(String containerImageFilePath, AdapterRequest adapterRequest,
-            Consumer<byte[]> callback) {
+            Consumer<File> callback) {
 
-        synchronized (RETRIEVE_LOCK) {
-            byte[] imageData = cachedImages.get(containerImageFilePath);
-            if (imageData != null) {
-                host.log(Level.INFO, "Cached image found, %s\n", containerImageFilePath);
-                lastUsed = Utils.getSystemNowMicrosUtc();
-                callback.accept(imageData);
-                return;
-            }
+        File imageFile = cachedImages.acquire(containerImageFilePath);
+        if (imageFile != null) {
+            host.log(Level.INFO, "Cached image found, %s\n", containerImageFilePath);
+            callback.accept(imageFile);
+            return;
+        }
 
-            List<Consumer<byte[]>> pendingCallbacks = pendingCallbacksByImagePath
+        synchronized (RETRIEVE_LOCK) {
+            List<Consumer<File>> pendingCallbacks = pendingCallbacksByImagePath
                     .computeIfAbsent(containerImageFilePath, k -> new ArrayList<>());
 
             pendingCallbacks.add(callback);
@@ -104,94 +106,85 @@ public class SystemImageRetrievalManager {
                 }));
     }
 
-    private void notifyCallbacks(String containerImageFilePath, byte[] imageData) {
-        List<Consumer<byte[]>> pendingCallbacks;
+    /**
+     * Releases an image file passed to the callback of
+     * {@link #retrieveAgentImage(String, AdapterRequest, Consumer)}, so that it can be removed
+     * from the cache. Releasing <code>null</code> has no effect.
+     */
+    public void releaseAgentImage(File imageFile) {
+        if (imageFile != null) {
+            cachedImages.release(imageFile);
+        }
+    }
+
+    private void notifyCallbacks(String containerImageFilePath, boolean cached) {
+        List<Consumer<File>> pendingCallbacks;
         synchronized (RETRIEVE_LOCK) {
-            cachedImages.put(containerImageFilePath, imageData);
-            lastUsed = Utils.getSystemNowMicrosUtc();
             pendingCallbacks = pendingCallbacksByImagePath.remove(containerImageFilePath);
         }
-        host.log(Level.INFO, "Caching system agent image data for %s", containerImageFilePath);
-        host.schedule(this::cleanCache, CACHED_DATA_MICROS, TimeUnit.MICROSECONDS);
 
         if (pendingCallbacks != null) {
-            for (Consumer<byte[]> consumer : pendingCallbacks) {
-                consumer.accept(imageData);
+            for (Consumer<File> consumer : pendingCallbacks) {
+                // each callback pins the file until it releases it
+                consumer.accept(cached ? cachedImages.acquire(containerImageFilePath) : null);
             }
         }
     }
 
     private void retrieveAgentImage(String resourcesPath, String containerImageFilePath) {
-        Consumer<byte[]> finalCallback = (fileBytes) -> {
-            if (fileBytes == null) {
-                host.log(Level.WARNING, "System image " + containerImageFilePath
-                        + " does not exists.");
-            }
-            notifyCallbacks(containerImageFilePath, fileBytes);
-        };
+        // a retrieval which completed while the configuration was fetched is reused
+        if (cachedImages.get(containerImageFilePath) != null) {
+            notifyCallbacks(containerImageFilePath, true);
+            return;
+        }
 
+        InputStream content = null;
         if (resourcesPath != null) {
-            getExternalAgentImage(resourcesPath, containerImageFilePath, (fileBytes) -> {
-                if (fileBytes != null) {
-                    notifyCallbacks(containerImageFilePath, fileBytes);
-                } else {
-                    // Fetch the data from resources when the image is not found in user resources
-                    getResourceAgentImage(containerImageFilePath, finalCallback);
-                }
-            });
+            content = getExternalAgentImage(resourcesPath, containerImageFilePath);
+        }
+        if (content == null) {
+            // Fetch the data from resources when the image is not found in user resources
+            content = getResourceAgentImage(containerImageFilePath);
+        }
+
+        File imageFile = null;
+        if (content == null) {
+            host.log(Level.WARNING, "System image " + containerImageFilePath
+                    + " does not exists.");
         } else {
-            getResourceAgentImage(containerImageFilePath, finalCallback);
+            try {
+                imageFile = cachedImages.put(containerImageFilePath, content);
+                host.log(Level.INFO, "Caching system agent image data for %s in %s",
+                        containerImageFilePath, imageFile);
+            } catch (IOException e) {
+                host.log(Level.WARNING, "Failed to cache system image %s: %s",
+                        containerImageFilePath, Utils.toString(e));
+            }
         }
+        notifyCallbacks(containerImageFilePath, imageFile != null);
     }
 
-    private void getExternalAgentImage(String resourcesPath, String containerImage,
-            Consumer<byte[]> callback) {
+    private InputStream getExternalAgentImage(String resourcesPath, String containerImage) {
         Path imageResourcePath = Paths.get(resourcesPath,
                 SYSTEM_IMAGES_PATH, containerImage);
 
         File file = imageResourcePath.toFile();
         if (!file.exists()) {
-            callback.accept(null);
-            return;
+            return null;
         }
 
-        Operation operation = new Operation();
-        operation.setCompletion((op, ex) -> {
-            if (op.hasBody()) {
-                callback.accept(op.getBody(byte[].class));
-            } else {
-                callback.accept(null);
-            }
-
-        });
-
-        FileUtils.readFileAndComplete(operation, file);
-    }
-
-    private void getResourceAgentImage(String containerImage, Consumer<byte[]> callback) {
-        InputStream resourceAsStream = Thread.currentThread().getContextClassLoader()
-                .getResourceAsStream(containerImage);
-        if (resourceAsStream == null) {
-            callback.accept(null);
-        } else {
-            try {
-                callback.accept(IOUtils.toByteArray(resourceAsStream));
-            } catch (IOException e) {
-                callback.accept(null);
-            }
+        try {
+            return Files.newInputStream(imageResourcePath);
+        } catch (IOException e) {
+            host.log(Level.WARNING, "Failed to read system image %s: %s", file,
+                    Utils.toString(e));
+            return null;
         }
     }
 
-    private void cleanCache() {
-        if (lastUsed + CACHED_DATA_MICROS < Utils.getSystemNowMicrosUtc()) {
-            // expired, clean the reference
-            cachedImages.clear();
-            lastUsed = 0;
-            host.log(Level.INFO, "System image(s) removed from cache");
-        } else {
-            // schedule next check
-            host.schedule(this::cleanCache, CACHED_DATA_MICROS, TimeUnit.MICROSECONDS);
-        }
+    private InputStream getResourceAgentImage(String containerImage) {
+        return Thread.currentThread().getContextClassLoader()
+                .getResourceAsStream(containerImage);
     }
 
 }
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedKeyManager;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsExchange;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.util.DelegatingX509KeyManager;
+import com.vmware.photon.controller.model.security.util.CertificateUtil;
+import com.vmware.photon.controller.model.security.util.CertificateUtil.CertChainKeyPair;
+import com.vmware.photon.controller.model.security.util.KeyUtil;
+import com.vmware.xenon.common.Operation;
+
+public class ImageLoadStreamerTest {
+    private static final String LOAD_PATH = "/images/load";
+    private static final String CONTENT_TYPE = "application/x-tar";
+    private static final int MAX_LOADS_PER_HOST = 2;
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final String CA_CERT = readResource("/certs/default-ca.pem");
+    private static final String CA_KEY = readResource("/certs/default-ca-key.pem");
+
+    private HttpServer server;
+    private ImageLoadStreamer streamer;
+    private final List<File> imageFiles = new ArrayList<>();
+
+    /** The response of the stub docker endpoint, set by each test. */
+    private volatile StubResponse response;
+    private volatile CountDownLatch blockResponses;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+    private final List<byte[]> receivedBodies = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicReference<Certificate> clientCertificate = new AtomicReference<>();
+
+    private static class StubResponse {
+        final int statusCode;
+        final String body;
+
+        StubResponse(int statusCode, String body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        response = new StubResponse(Operation.STATUS_CODE_OK, "{\"stream\":\"Loaded image\"}");
+        blockResponses = new CountDownLatch(0);
+
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext(LOAD_PATH, this::handleLoad);
+        server.start();
+
+        streamer = new ImageLoadStreamer(null, null, CONTENT_TYPE, MAX_LOADS_PER_HOST, 1024,
+                TIMEOUT_SECONDS, TIMEOUT_SECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        streamer.stop();
+        server.stop(0);
+        imageFiles.forEach(File::delete);
+    }
+
+    @Test
+    public void testImageIsStreamedInChunks() throws Throwable {
+        byte[] content = new byte[10 * 1024 + 7];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        File imageFile = createImageFile(content);
+
+        LoadResult result = load(imageFile);
+        result.await();
+
+        assertNull(result.failure.get());
+        assertEquals(Operation.STATUS_CODE_OK, result.operation.get().getStatusCode());
+        assertEquals(1, receivedBodies.size());
+        assertArrayEquals(content, receivedBodies.get(0));
+        assertEquals(Long.valueOf(content.length),
+                streamer.getStats().get(ImageLoadStreamer.STAT_NAME_LOADED_BYTES));
+    }
+
+    @Test
+    public void testImageIsStreamedWithClientCertificate() throws Throwable {
+        X509Certificate caCertificate = CertificateUtil.createCertificate(CA_CERT);
+        PrivateKey caKey = CertificateUtil.createKeyPair(CA_KEY).getPrivate();
+        CertChainKeyPair serverPair = CertificateUtil.generateSigned("localhost",
+                caCertificate, caKey);
+        CertChainKeyPair clientPair = CertificateUtil.generateSignedForClient("client",
+                caCertificate, caKey);
+
+        // a docker host with --tlsverify, which requires a client certificate
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(CertificateUtil.getKeyManagers("server",
+                KeyUtil.toPEMFormat(serverPair.getPrivateKey()),
+                CertificateUtil.toPEMformat(serverPair.getCertificate())),
+                CertificateUtil.getTrustManagers("ca", CA_CERT), null);
+        HttpsServer tlsServer = HttpsServer.create(new InetSocketAddress(0), 0);
+        tlsServer.setHttpsConfigurator(new HttpsConfigurator(serverContext) {
+            @Override
+            public void configure(HttpsParameters params) {
+                SSLParameters sslParameters = getSSLContext().getDefaultSSLParameters();
+                sslParameters.setNeedClientAuth(true);
+                params.setSSLParameters(sslParameters);
+            }
+        });
+        tlsServer.setExecutor(Executors.newCachedThreadPool());
+        tlsServer.createContext(LOAD_PATH, this::handleLoad);
+        tlsServer.start();
+
+        // the key manager of the adapter, with the client credentials of the host
+        String alias = CertificateUtil.generatePureFingerPrint(serverPair.getCertificate());
+        DelegatingX509KeyManager keyManager = new DelegatingX509KeyManager();
+        keyManager.putDelegate(alias, (X509ExtendedKeyManager) CertificateUtil.getKeyManagers(
+                alias, KeyUtil.toPEMFormat(clientPair.getPrivateKey()),
+                CertificateUtil.toPEMformat(clientPair.getCertificate()))[0]);
+        TrustManager trustManager = CertificateUtil.getTrustManagers("ca", CA_CERT)[0];
+        ImageLoadStreamer tlsStreamer = new ImageLoadStreamer(
+                CertificateUtil.createSSLContext(trustManager, keyManager), trustManager,
+                CONTENT_TYPE, MAX_LOADS_PER_HOST, 1024, TIMEOUT_SECONDS, TIMEOUT_SECONDS);
+        try {
+            byte[] content = new byte[] { 1, 2, 3 };
+            LoadResult result = new LoadResult();
+            File imageFile = createImageFile(content);
+            tlsStreamer.load(URI.create("https://127.0.0.1:" + tlsServer.getAddress().getPort()
+                    + LOAD_PATH), imageFile, (o, e) -> {
+                        result.operation.set(o);
+                        result.failure.set(e);
+                        result.done.countDown();
+                    });
+            result.await();
+
+            assertNull(result.failure.get());
+            assertEquals(Operation.STATUS_CODE_OK, result.operation.get().getStatusCode());
+            assertArrayEquals(content, receivedBodies.get(0));
+            assertEquals(clientPair.getCertificate(), clientCertificate.get());
+        } finally {
+            tlsStreamer.stop();
+            tlsServer.stop(0);
+        }
+    }
+
+    @Test
+    public void testLoadsOverTheBoundOfTheHostAreQueued() throws Throwable {
+        blockResponses = new CountDownLatch(1);
+
+        List<LoadResult> results = new ArrayList<>();
+        for (int i = 0; i < MAX_LOADS_PER_HOST + 2; i++) {
+            results.add(load(createImageFile(new byte[] { (byte) i })));
+        }
+
+        waitFor(() -> activeRequests.get() == MAX_LOADS_PER_HOST);
+        assertEquals(Long.valueOf(MAX_LOADS_PER_HOST),
+                streamer.getStats().get(ImageLoadStreamer.STAT_NAME_ACTIVE_LOADS));
+        assertEquals(Long.valueOf(2),
+                streamer.getStats().get(ImageLoadStreamer.STAT_NAME_QUEUED_LOADS));
+
+        blockResponses.countDown();
+        for (LoadResult result : results) {
+            result.await();
+            assertNull(result.failure.get());
+        }
+
+        assertEquals(MAX_LOADS_PER_HOST, maxActiveRequests.get());
+        assertEquals(MAX_LOADS_PER_HOST + 2, receivedBodies.size());
+        assertEquals(Long.valueOf(0),
+                streamer.getStats().get(ImageLoadStreamer.STAT_NAME_ACTIVE_LOADS));
+        assertEquals(Long.valueOf(0),
+                streamer.getStats().get(ImageLoadStreamer.STAT_NAME_QUEUED_LOADS));
+    }
+
+    @Test
+    public void testLoadsToOtherHostsAreNotQueued() throws Throwable {
+        blockResponses = new CountDownLatch(1);
+
+        List<LoadResult> results = new ArrayList<>();
+        for (int i = 0; i < MAX_LOADS_PER_HOST; i++) {
+            results.add(load(createImageFile(new byte[] { (byte) i })));
+        }
+        // the same stub endpoint under another host name is another docker host
+        results.add(load(URI.create("http://localhost:" + server.getAddress().getPort()
+                + LOAD_PATH), createImageFile(new byte[] { 1 })));
+
+        waitFor(() -> activeRequests.get() == MAX_LOADS_PER_HOST + 1);
+        assertEquals(Long.valueOf(0),
+                streamer.getStats().get(ImageLoadStreamer.STAT_NAME_QUEUED_LOADS));
+
+        blockResponses.countDown();
+        for (LoadResult result : results) {
+            result.await();
+            assertNull(result.failure.get());
+        }
+    }
+
+    @Test
+    public void testErrorStatusFailsWithResponseBody() throws Throwable {
+        response = new StubResponse(Operation.STATUS_CODE_INTERNAL_ERROR,
+                "{\"message\":\"invalid tar header\"}");
+        File imageFile = createImageFile(new byte[] { 1, 2, 3 });
+
+        LoadResult result = load(imageFile);
+        result.await();
+
+        assertNotNull(result.failure.get());
+        assertTrue(result.failure.get().getMessage(),
+                result.failure.get().getMessage().contains("invalid tar header"));
+        assertEquals(Operation.STATUS_CODE_INTERNAL_ERROR,
+                result.operation.get().getStatusCode());
+        assertEquals(response.body, result.operation.get().getBodyRaw());
+        assertTrue(result.fileDeleted.get());
+        assertFalse(imageFile.exists());
+    }
+
+    @Test
+    public void testErrorInStreamedResponseFails() throws Throwable {
+        response = new StubResponse(Operation.STATUS_CODE_OK,
+                "{\"stream\":\"Loading layer\"}\r\n{\"error\":\"no space left on device\"}");
+        File imageFile = createImageFile(new byte[] { 1, 2, 3 });
+
+        LoadResult result = load(imageFile);
+        result.await();
+
+        assertNotNull(result.failure.get());
+        assertEquals("Error: no space left on device", result.failure.get().getMessage());
+        assertEquals(Operation.STATUS_CODE_OK, result.operation.get().getStatusCode());
+        assertTrue(result.fileDeleted.get());
+        assertFalse(imageFile.exists());
+    }
+
+    @Test
+    public void testUnreachableHostFailsAndReleasesTheSlot() throws Throwable {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        URI unreachable = URI.create("http://127.0.0.1:" + closedPort + LOAD_PATH);
+
+        for (int i = 0; i < MAX_LOADS_PER_HOST + 1; i++) {
+            File imageFile = createImageFile(new byte[] { 1 });
+            LoadResult result = load(unreachable, imageFile);
+            result.await();
+
+            assertNotNull(result.failure.get());
+            assertTrue(result.fileDeleted.get());
+            assertFalse(imageFile.exists());
+        }
+        assertEquals(Long.valueOf(0),
+                streamer.getStats().get(ImageLoadStreamer.STAT_NAME_ACTIVE_LOADS));
+    }
+
+    /** The outcome of a load, whose completion deletes the file as the adapter does. */
+    private static class LoadResult {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Operation> operation = new AtomicReference<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicReference<Boolean> fileDeleted = new AtomicReference<>();
+
+        void await() throws InterruptedException {
+            assertTrue("Image load did not complete", done.await(TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS));
+        }
+    }
+
+    private LoadResult load(File imageFile) {
+        return load(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + LOAD_PATH),
+                imageFile);
+    }
+
+    private LoadResult load(URI loadUri, File imageFile) {
+        LoadResult result = new LoadResult();
+        streamer.load(loadUri, imageFile, (o, e) -> {
+            result.operation.set(o);
+            result.failure.set(e);
+            result.fileDeleted.set(imageFile.delete());
+            result.done.countDown();
+        });
+        return result;
+    }
+
+    private void handleLoad(HttpExchange exchange) throws IOException {
+        int active = activeRequests.incrementAndGet();
+        maxActiveRequests.accumulateAndGet(active, Math::max);
+        try {
+            assertEquals(CONTENT_TYPE, exchange.getRequestHeaders().getFirst("Content-Type"));
+            if (exchange instanceof HttpsExchange) {
+                clientCertificate.set(((HttpsExchange) exchange).getSSLSession()
+                        .getPeerCertificates()[0]);
+            }
+            receivedBodies.add(readFully(exchange.getRequestBody()));
+            blockResponses.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            StubResponse stubResponse = response;
+            byte[] body = stubResponse.body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(stubResponse.statusCode, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            activeRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private File createImageFile(byte[] content) throws IOException {
+        File imageFile = File.createTempFile("image-load-test", ".tar");
+        Files.write(imageFile.toPath(), content);
+        imageFiles.add(imageFile);
+        return imageFile;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String readResource(String name) {
+        try (InputStream in = ImageLoadStreamerTest.class.getResourceAsStream(name)) {
+            return new String(readFully(in), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Condition not met", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.CompletionHandler;
+
+public class ImagePullCoordinatorTest {
+    private static final String HOST_LINK = "/resources/compute/host1";
+    private static final String OTHER_HOST_LINK = "/resources/compute/host2";
+    private static final String TAG_IMAGE = "alpine:latest";
+    private static final String DIGEST_IMAGE = "alpine@sha256:1234";
+    private static final String REGISTRY_AUTH = "registry-auth";
+    private static final String OTHER_REGISTRY_AUTH = "other-registry-auth";
+
+    private ImagePullCoordinator coordinator;
+    private List<CompletionHandler> pulls;
+
+    @Before
+    public void setUp() {
+        coordinator = new ImagePullCoordinator(2, TimeUnit.MINUTES.toMicros(5));
+        pulls = new ArrayList<>();
+    }
+
+    @Test
+    public void testConcurrentPullsAreCoalesced() {
+        List<Operation> completed = new ArrayList<>();
+        CompletionHandler handler = (o, ex) -> completed.add(o);
+
+        assertTrue(coordinator.pull(HOST_LINK, TAG_IMAGE, null, pulls::add, handler));
+        assertFalse(coordinator.pull(HOST_LINK, TAG_IMAGE, null, pulls::add, handler));
+        // pulls to another host are not coalesced
+        assertTrue(coordinator.pull(OTHER_HOST_LINK, TAG_IMAGE, null, pulls::add, handler));
+        assertEquals(2, pulls.size());
+
+        Operation pullOp = Operation.createPost(null);
+        pulls.get(0).handle(pullOp, null);
+        assertEquals(2, completed.size());
+        assertSame(pullOp, completed.get(0));
+        assertSame(pullOp, completed.get(1));
+
+        // the next pull starts over
+        assertTrue(coordinator.pull(HOST_LINK, TAG_IMAGE, null, pulls::add, handler));
+    }
+
+    @Test
+    public void testPulledImagesArePresent() {
+        coordinator.pull(HOST_LINK, TAG_IMAGE, null, pulls::add, (o, ex) -> { });
+        coordinator.pull(HOST_LINK, DIGEST_IMAGE, null, pulls::add, (o, ex) -> { });
+        assertFalse(coordinator.isPresent(HOST_LINK, TAG_IMAGE, null));
+
+        pulls.get(0).handle(null, null);
+        pulls.get(1).handle(null, new IllegalStateException("pull failed"));
+
+        assertTrue(coordinator.isPresent(HOST_LINK, TAG_IMAGE, null));
+        assertFalse(coordinator.isPresent(HOST_LINK, DIGEST_IMAGE, null));
+        assertFalse(coordinator.isPresent(OTHER_HOST_LINK, TAG_IMAGE, null));
+
+        coordinator.invalidate(HOST_LINK, TAG_IMAGE);
+        assertFalse(coordinator.isPresent(HOST_LINK, TAG_IMAGE, null));
+    }
+
+    @Test
+    public void testPullsAreCoalescedForSameCredentials() {
+        List<Operation> completed = new ArrayList<>();
+        CompletionHandler handler = (o, ex) -> completed.add(o);
+
+        assertTrue(coordinator.pull(HOST_LINK, TAG_IMAGE, REGISTRY_AUTH, pulls::add, handler));
+        assertFalse(coordinator.pull(HOST_LINK, TAG_IMAGE, REGISTRY_AUTH, pulls::add, handler));
+        assertTrue(coordinator.pull(HOST_LINK, TAG_IMAGE, OTHER_REGISTRY_AUTH, pulls::add,
+                handler));
+        assertTrue(coordinator.pull(HOST_LINK, TAG_IMAGE, null, pulls::add, handler));
+        assertEquals(3, pulls.size());
+
+        pulls.get(0).handle(null, null);
+        assertEquals(2, completed.size());
+
+        // the image is present for the credentials it was pulled with only
+        assertTrue(coordinator.isPresent(HOST_LINK, TAG_IMAGE, REGISTRY_AUTH));
+        assertFalse(coordinator.isPresent(HOST_LINK, TAG_IMAGE, OTHER_REGISTRY_AUTH));
+        assertFalse(coordinator.isPresent(HOST_LINK, TAG_IMAGE, null));
+
+        coordinator.recordContainerImage(HOST_LINK, DIGEST_IMAGE);
+        assertFalse(coordinator.isPresent(HOST_LINK, DIGEST_IMAGE, REGISTRY_AUTH));
+    }
+
+    @Test
+    public void testFailingHandlerDoesNotBlockOthers() {
+        List<Operation> completed = new ArrayList<>();
+
+        coordinator.pull(HOST_LINK, TAG_IMAGE, null, pulls::add, (o, ex) -> {
+            throw new IllegalStateException("handler failed");
+        });
+        coordinator.pull(HOST_LINK, TAG_IMAGE, null, pulls::add, (o, ex) -> completed.add(o));
+
+        Operation pullOp = Operation.createPost(null);
+        pulls.get(0).handle(pullOp, null);
+        assertEquals(1, completed.size());
+        assertSame(pullOp, completed.get(0));
+    }
+
+    @Test
+    public void testTaggedImagesExpire() {
+        coordinator = new ImagePullCoordinator(2, 0);
+        coordinator.pull(HOST_LINK, TAG_IMAGE, null, pulls::add, (o, ex) -> { });
+        coordinator.pull(HOST_LINK, DIGEST_IMAGE, null, pulls::add, (o, ex) -> { });
+        pulls.forEach(h -> h.handle(null, null));
+
+        assertFalse(coordinator.isPresent(HOST_LINK, TAG_IMAGE, null));
+        assertTrue(coordinator.isPresent(HOST_LINK, DIGEST_IMAGE, null));
+    }
+
+    @Test
+    public void testContainerImagesAreRecordedByDigestOnly() {
+        coordinator.recordContainerImage(HOST_LINK, TAG_IMAGE);
+        coordinator.recordContainerImage(HOST_LINK, DIGEST_IMAGE);
+
+        assertFalse(coordinator.isPresent(HOST_LINK, TAG_IMAGE, null));
+        assertTrue(coordinator.isPresent(HOST_LINK, DIGEST_IMAGE, null));
+    }
+
+    @Test
+    public void testInventoryIsBounded() {
+        coordinator.recordContainerImage(HOST_LINK, "image1@sha256:1");
+        coordinator.recordContainerImage(HOST_LINK, "image2@sha256:2");
+        coordinator.recordContainerImage(HOST_LINK, "image3@sha256:3");
+
+        assertFalse(coordinator.isPresent(HOST_LINK, "image1@sha256:1", null));
+        assertTrue(coordinator.isPresent(HOST_LINK, "image2@sha256:2", null));
+        assertTrue(coordinator.isPresent(HOST_LINK, "image3@sha256:3", null));
+    }
+}
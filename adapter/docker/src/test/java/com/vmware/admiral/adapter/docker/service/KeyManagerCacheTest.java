@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.net.ssl.X509KeyManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.util.DelegatingX509KeyManager;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsServiceState;
+
+public class KeyManagerCacheTest {
+    private static final long MAX_IDLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final long HANDSHAKE_GRACE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private TestDelegatingKeyManager keyManager;
+    private AtomicInteger createdCount;
+    private KeyManagerCache cache;
+
+    @Before
+    public void setUp() {
+        keyManager = new TestDelegatingKeyManager();
+        createdCount = new AtomicInteger();
+        cache = new KeyManagerCache(keyManager, (alias, credentials) -> {
+            createdCount.incrementAndGet();
+            return credentials.privateKey == null ? null : new TestKeyManager();
+        }, 2, MAX_IDLE_MICROS, HANDSHAKE_GRACE_MICROS);
+    }
+
+    @Test
+    public void testReuseForSameCredentialsVersion() {
+        AuthCredentialsServiceState credentials = createCredentials("/creds/1", 1);
+
+        cache.ensureKeyManager("alias1", credentials);
+        cache.ensureKeyManager("alias1", credentials);
+
+        assertEquals(1, createdCount.get());
+        assertNotNull(keyManager.get("alias1"));
+        assertEquals(Long.valueOf(1),
+                cache.getStats().get(KeyManagerCache.STAT_NAME_HIT_COUNT));
+        assertEquals(Long.valueOf(1),
+                cache.getStats().get(KeyManagerCache.STAT_NAME_MISS_COUNT));
+    }
+
+    @Test
+    public void testRebuildOnCredentialsChange() {
+        cache.ensureKeyManager("alias1", createCredentials("/creds/1", 1));
+        X509ExtendedKeyManager first = keyManager.get("alias1");
+
+        cache.ensureKeyManager("alias1", createCredentials("/creds/1", 2));
+
+        assertEquals(2, createdCount.get());
+        assertNotNull(keyManager.get("alias1"));
+        assertNotSame(first, keyManager.get("alias1"));
+
+        // credentials without client key remove the key manager
+        AuthCredentialsServiceState noKey = createCredentials("/creds/1", 3);
+        noKey.privateKey = null;
+        cache.ensureKeyManager("alias1", noKey);
+        assertEquals(0, cache.size());
+        // the key manager is removed after the handshake grace time
+        assertNotNull(keyManager.get("alias1"));
+        purgeAfterHandshakeGrace();
+        assertNull(keyManager.get("alias1"));
+    }
+
+    @Test
+    public void testNotPersistedCredentialsAreRebuilt() {
+        AuthCredentialsServiceState credentials = createCredentials(null, 0);
+
+        cache.ensureKeyManager("alias1", credentials);
+        cache.ensureKeyManager("alias1", credentials);
+
+        assertEquals(2, createdCount.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        AuthCredentialsServiceState credentials1 = createCredentials("/creds/1", 1);
+        cache.ensureKeyManager("alias1", credentials1);
+        cache.ensureKeyManager("alias2", createCredentials("/creds/2", 1));
+        // alias1 becomes the most recently used one
+        cache.ensureKeyManager("alias1", credentials1);
+        cache.ensureKeyManager("alias3", createCredentials("/creds/3", 1));
+
+        assertEquals(2, cache.size());
+        assertEquals(Long.valueOf(1),
+                cache.getStats().get(KeyManagerCache.STAT_NAME_EVICTION_COUNT));
+
+        purgeAfterHandshakeGrace();
+        assertNotNull(keyManager.get("alias1"));
+        assertNull(keyManager.get("alias2"));
+        assertNotNull(keyManager.get("alias3"));
+    }
+
+    @Test
+    public void testInvalidateOnCredentialsChange() {
+        AuthCredentialsServiceState credentials1 = createCredentials("/creds/1", 1);
+        cache.ensureKeyManager("alias1", credentials1);
+        cache.ensureKeyManager("alias2", createCredentials("/creds/2", 1));
+
+        cache.invalidate("/creds/1");
+
+        assertEquals(1, cache.size());
+        assertEquals(Long.valueOf(1),
+                cache.getStats().get(KeyManagerCache.STAT_NAME_INVALIDATION_COUNT));
+
+        // the next use rebuilds the key manager, even with the same credentials version
+        cache.ensureKeyManager("alias1", credentials1);
+        assertEquals(3, createdCount.get());
+        X509ExtendedKeyManager rebuilt = keyManager.get("alias1");
+
+        // the retired key manager does not remove the rebuilt one
+        purgeAfterHandshakeGrace();
+        assertSame(rebuilt, keyManager.get("alias1"));
+        assertNotNull(keyManager.get("alias2"));
+    }
+
+    @Test
+    public void testRetiredKeyManagerIsKeptForHandshakes() {
+        cache.ensureKeyManager("alias1", createCredentials("/creds/1", 1));
+        cache.invalidate("/creds/1");
+
+        long nowMicrosUtc = Utils.getSystemNowMicrosUtc();
+        cache.purgeIdle(nowMicrosUtc);
+        assertNotNull(keyManager.get("alias1"));
+
+        cache.purgeIdle(nowMicrosUtc + 2 * HANDSHAKE_GRACE_MICROS);
+        assertNull(keyManager.get("alias1"));
+    }
+
+    @Test
+    public void testPurgeIdle() {
+        cache.ensureKeyManager("alias1", createCredentials("/creds/1", 1));
+
+        cache.purgeIdle(Utils.getSystemNowMicrosUtc());
+        assertEquals(1, cache.size());
+
+        long idleMicrosUtc = Utils.getSystemNowMicrosUtc() + 2 * MAX_IDLE_MICROS;
+        cache.purgeIdle(idleMicrosUtc);
+        assertEquals(0, cache.size());
+
+        cache.purgeIdle(idleMicrosUtc + 2 * HANDSHAKE_GRACE_MICROS);
+        assertNull(keyManager.get("alias1"));
+    }
+
+    private void purgeAfterHandshakeGrace() {
+        cache.purgeIdle(Utils.getSystemNowMicrosUtc() + 2 * HANDSHAKE_GRACE_MICROS);
+    }
+
+    private static AuthCredentialsServiceState createCredentials(String link, long version) {
+        AuthCredentialsServiceState credentials = new AuthCredentialsServiceState();
+        credentials.documentSelfLink = link;
+        credentials.documentUpdateTimeMicros = version;
+        credentials.privateKey = "key";
+        credentials.publicKey = "cert";
+        return credentials;
+    }
+
+    private static class TestDelegatingKeyManager extends DelegatingX509KeyManager {
+        private final Map<String, X509ExtendedKeyManager> delegates = new HashMap<>();
+
+        @Override
+        public void putDelegate(String alias, X509ExtendedKeyManager newDelegate) {
+            super.putDelegate(alias, newDelegate);
+            delegates.put(alias, newDelegate);
+        }
+
+        @Override
+        public boolean removeDelegate(String alias, X509KeyManager delegate) {
+            boolean removed = super.removeDelegate(alias, delegate);
+            if (removed) {
+                delegates.remove(alias);
+            }
+            return removed;
+        }
+
+        X509ExtendedKeyManager get(String alias) {
+            return delegates.get(alias);
+        }
+    }
+
+    private static class TestKeyManager extends X509ExtendedKeyManager {
+        @Override
+        public String[] getClientAliases(String keyType, Principal[] issuers) {
+            return null;
+        }
+
+        @Override
+        public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+            return null;
+        }
+
+        @Override
+        public String[] getServerAliases(String keyType, Principal[] issuers) {
+            return null;
+        }
+
+        @Override
+        public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+            return null;
+        }
+
+        @Override
+        public X509Certificate[] getCertificateChain(String alias) {
+            return null;
+        }
+
+        @Override
+        public PrivateKey getPrivateKey(String alias) {
+            return null;
+        }
+    }
+}
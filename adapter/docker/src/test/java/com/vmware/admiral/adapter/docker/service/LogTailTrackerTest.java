@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogTailTrackerTest {
+    private static final String LOG_LINK = "/logs/container1";
+    private static final String FETCH_KEY = "{tail=3}";
+
+    private LogTailTracker tracker;
+
+    @Before
+    public void setUp() {
+        tracker = new LogTailTracker(2, 1024 * 1024);
+    }
+
+    @Test
+    public void testFirstWindowReplacesLog() {
+        assertNull(tracker.update(LOG_LINK, FETCH_KEY, bytes("a\nb\n")));
+    }
+
+    @Test
+    public void testOnlyNewTailIsReturned() {
+        tracker.update(LOG_LINK, FETCH_KEY, bytes("a\nb\n"));
+
+        // the log grows within the window
+        assertArrayEquals(bytes("c\n"), tracker.update(LOG_LINK, FETCH_KEY, bytes("a\nb\nc\n")));
+        assertArrayEquals(bytes("d\ne\n"),
+                tracker.update(LOG_LINK, FETCH_KEY, bytes("a\nb\nc\nd\ne\n")));
+        // nothing new is logged
+        assertArrayEquals(new byte[0],
+                tracker.update(LOG_LINK, FETCH_KEY, bytes("a\nb\nc\nd\ne\n")));
+    }
+
+    @Test
+    public void testSlidingWindowIsMatchedByItsEnd() {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; log.length() < 10000; i++) {
+            log.append("line ").append(i).append('\n');
+        }
+        tracker.update(LOG_LINK, FETCH_KEY, bytes(log.toString()));
+
+        // the window slides
+        String newLog = log.substring(log.indexOf("\n") + 1) + "new line\n";
+        assertArrayEquals(bytes("new line\n"),
+                tracker.update(LOG_LINK, FETCH_KEY, bytes(newLog)));
+    }
+
+    @Test
+    public void testRepeatedContentIsNotAppendedAgain() {
+        String heartbeat = repeat("heartbeat\n", 1000);
+        tracker.update(LOG_LINK, FETCH_KEY, bytes(heartbeat));
+
+        // the whole window matches, not only its first repetition
+        assertArrayEquals(new byte[0], tracker.update(LOG_LINK, FETCH_KEY, bytes(heartbeat)));
+
+        // the window slides by a stack trace repeated in the log
+        String trace = "error\n  at a\n  at b\n";
+        String log = repeat(trace, 300);
+        tracker.reset(LOG_LINK);
+        tracker.update(LOG_LINK, FETCH_KEY, bytes(log));
+        assertArrayEquals(bytes("done\n"), tracker.update(LOG_LINK, FETCH_KEY,
+                bytes(log.substring(trace.length()) + "done\n")));
+    }
+
+    @Test
+    public void testOverlapStartsAtLine() {
+        tracker.update(LOG_LINK, FETCH_KEY, bytes("a\nxb\n"));
+
+        // "b\n" ends the previous window, but it is not a line of it
+        assertNull(tracker.update(LOG_LINK, FETCH_KEY, bytes("b\nc\n")));
+    }
+
+    @Test
+    public void testWindowWithoutPreviousEndReplacesLog() {
+        tracker.update(LOG_LINK, FETCH_KEY, bytes("a\nb\n"));
+
+        // more lines than the window were logged
+        assertNull(tracker.update(LOG_LINK, FETCH_KEY, bytes("c\nd\ne\n")));
+        // the new window is the one to match next
+        assertArrayEquals(bytes("f\n"),
+                tracker.update(LOG_LINK, FETCH_KEY, bytes("c\nd\ne\nf\n")));
+    }
+
+    @Test
+    public void testChangedFetchParametersReplaceLog() {
+        tracker.update(LOG_LINK, FETCH_KEY, bytes("a\nb\n"));
+
+        assertNull(tracker.update(LOG_LINK, "{tail=10}", bytes("a\nb\nc\n")));
+    }
+
+    @Test
+    public void testResetAndEviction() {
+        tracker.update(LOG_LINK, FETCH_KEY, bytes("a\n"));
+        tracker.reset(LOG_LINK);
+        assertNull(tracker.update(LOG_LINK, FETCH_KEY, bytes("a\nb\n")));
+
+        tracker.update("/logs/container2", FETCH_KEY, bytes("a\n"));
+        tracker.update("/logs/container3", FETCH_KEY, bytes("a\n"));
+        assertEquals(2, tracker.size());
+        // the least recently refreshed log is evicted
+        assertNull(tracker.update(LOG_LINK, FETCH_KEY, bytes("a\nb\nc\n")));
+    }
+
+    @Test
+    public void testEvictionByBytes() {
+        tracker = new LogTailTracker(10, 8);
+        tracker.update(LOG_LINK, FETCH_KEY, bytes("a\nb\n"));
+        tracker.update("/logs/container2", FETCH_KEY, bytes("a\nb\nc\n"));
+        assertEquals(1, tracker.size());
+
+        // windows over the limit are not tracked
+        tracker.update("/logs/container3", FETCH_KEY, bytes("a\nb\nc\nd\ne\n"));
+        assertNull(tracker.update("/logs/container3", FETCH_KEY, bytes("a\nb\nc\nd\ne\n")));
+    }
+
+    private static String repeat(String content, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(content);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
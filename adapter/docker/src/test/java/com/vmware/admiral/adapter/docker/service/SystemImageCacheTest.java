@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.vmware.xenon.common.Utils;
+
+public class SystemImageCacheTest {
+    private static final int MAX_SIZE_BYTES = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SystemImageCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new SystemImageCache(folder.getRoot().toPath(), MAX_SIZE_BYTES);
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        assertNull(cache.get("image1.tar"));
+
+        File file = put("image1.tar", "image1");
+        assertArrayEquals("image1".getBytes(), Files.readAllBytes(file.toPath()));
+        assertEquals(file, cache.get("image1.tar"));
+    }
+
+    @Test
+    public void testSameContentIsStoredOnce() throws IOException {
+        File file1 = put("image1.tar", "image");
+        File file2 = put("image2.tar", "image");
+
+        assertEquals(file1, file2);
+        assertEquals(5, cache.size());
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedImagesAreEvicted() throws IOException {
+        put("image1.tar", "image1");
+        put("image2.tar", "image2");
+
+        assertNull(cache.get("image1.tar"));
+        assertNotNull(cache.get("image2.tar"));
+        assertEquals(6, cache.size());
+
+        // an image over the limit is still cached
+        File file = put("image3.tar", "image3-over-the-limit");
+        assertEquals(file, cache.get("image3.tar"));
+        assertNull(cache.get("image2.tar"));
+    }
+
+    @Test
+    public void testSweep() throws IOException {
+        File file = put("image1.tar", "image1");
+
+        assertEquals(Collections.emptyList(), cache.sweep(Utils.getSystemNowMicrosUtc() - 1000000));
+        assertEquals(Collections.singletonList("image1.tar"),
+                cache.sweep(Utils.getSystemNowMicrosUtc() + 1));
+        assertNull(cache.get("image1.tar"));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testPinnedImageIsKeptUntilReleased() throws IOException {
+        put("image1.tar", "image1");
+        File file = cache.acquire("image1.tar");
+        assertNotNull(file);
+
+        // the image expires and is evicted while the load is still streaming it
+        assertEquals(Collections.emptyList(), cache.sweep(Utils.getSystemNowMicrosUtc() + 1));
+        put("image2.tar", "image2");
+        assertTrue(file.exists());
+        assertEquals(file, cache.get("image1.tar"));
+
+        cache.release(file);
+        assertTrue(file.exists());
+        assertTrue(cache.sweep(Utils.getSystemNowMicrosUtc() + 1).contains("image1.tar"));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testReplacedPinnedImageIsDeletedOnRelease() throws IOException {
+        put("image1.tar", "image1");
+        File file = cache.acquire("image1.tar");
+
+        File replacement = put("image1.tar", "image2");
+        assertTrue(file.exists());
+        assertEquals(replacement, cache.get("image1.tar"));
+
+        cache.release(file);
+        assertFalse(file.exists());
+        assertTrue(replacement.exists());
+    }
+
+    private File put(String imagePath, String content) throws IOException {
+        return cache.put(imagePath, new ByteArrayInputStream(content.getBytes()));
+    }
+}
@@ -78,6 +78,10 @@ public class KubernetesRemoteApiClient {
     public static final String pingPath = "/healthz";
 
     public static final String LABEL_SELECTOR_QUERY = "labelSelector";
+    public static final String WATCH_QUERY = "watch";
+    public static final String RESOURCE_VERSION_QUERY = "resourceVersion";
+    public static final String TIMEOUT_SECONDS_QUERY = "timeoutSeconds";
+    public static final String ALLOW_WATCH_BOOKMARKS_QUERY = "allowWatchBookmarks";
 
     private static final Logger logger = Logger
             .getLogger(KubernetesRemoteApiClient.class.getName());
@@ -415,6 +419,34 @@ public class KubernetesRemoteApiClient {
         sendRequest(Action.GET, uri, null, context, completionHandler);
     }
 
+    /**
+     * Watches the changes of the entities of the given kind in the namespace of the host, starting
+     * from the given resource version. The response is completed by the server after the given
+     * timeout, with the events as a sequence of JSON objects, one per line.
+     */
+    public void watchEntities(KubernetesContext context, String entityType,
+            String resourceVersion, int timeoutSeconds, CompletionHandler completionHandler) {
+        String apiPrefix = DEPLOYMENT_TYPE.equals(entityType)
+                || REPLICA_SET_TYPE.equals(entityType)
+                        ? API_PREFIX_EXTENSIONS_V1BETA : API_PREFIX_V1;
+        URI uri = UriUtils.buildUri(ApiUtil.namespacePrefix(context, apiPrefix)
+                + getKubernetesPath(entityType));
+        uri = UriUtils.extendUriWithQuery(uri,
+                WATCH_QUERY, Boolean.TRUE.toString(),
+                RESOURCE_VERSION_QUERY, resourceVersion,
+                TIMEOUT_SECONDS_QUERY, Integer.toString(timeoutSeconds),
+                ALLOW_WATCH_BOOKMARKS_QUERY, Boolean.TRUE.toString());
+
+        Operation op = Operation
+                .createGet(uri)
+                .setCompletion(completionHandler);
+        op.setExpiration(ServiceUtils.getExpirationTimeFromNowInMicros(
+                TimeUnit.SECONDS.toMicros(timeoutSeconds + REQUEST_TIMEOUT_SECONDS)));
+
+        prepareRequest(op, context);
+        serviceClient.send(op);
+    }
+
     private void sendRequest(Service.Action action, URI uri, Object body, KubernetesContext context,
             CompletionHandler completionHandler) {
         Operation op = Operation.createGet(uri)
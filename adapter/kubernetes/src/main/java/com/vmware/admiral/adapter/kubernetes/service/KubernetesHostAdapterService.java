@@ -35,7 +35,11 @@ import com.vmware.admiral.compute.ComputeConstants;
 import com.vmware.admiral.compute.ContainerHostService;
 import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListCallback;
 import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.KubernetesEntityData;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService.EntityEvent;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService.EntityWatchCallback;
 import com.vmware.admiral.compute.kubernetes.KubernetesHostConstants;
+import com.vmware.admiral.compute.kubernetes.entities.common.BaseKubernetesList;
 import com.vmware.admiral.compute.kubernetes.entities.common.BaseKubernetesObject;
 import com.vmware.admiral.compute.kubernetes.entities.deployments.Deployment;
 import com.vmware.admiral.compute.kubernetes.entities.deployments.DeploymentList;
@@ -64,6 +68,15 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
     private static final String REQUIRED_PROPERTY_MISSING_MESSAGE =
             "Required request property '%s' is missing.";
 
+    private static final int WATCH_TIMEOUT_SECONDS = Integer.getInteger(
+            "com.vmware.admiral.adapter.kubernetes.watch.timeout.seconds", 10);
+    private static final String WATCH_EVENT_TYPE_PROP_NAME = "type";
+    private static final String WATCH_EVENT_OBJECT_PROP_NAME = "object";
+    private static final String WATCH_EVENT_TYPE_BOOKMARK = "BOOKMARK";
+    private static final String WATCH_EVENT_TYPE_ERROR = "ERROR";
+    private static final String STATUS_CODE_PROP_NAME = "code";
+    private static final int STATUS_CODE_GONE = 410;
+
     @Override
     public void handlePatch(Operation op) {
         AdapterRequest request = op.getBody(AdapterRequest.class);
@@ -81,6 +94,9 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
                 && request.serviceTaskCallback.isEmpty()) {
             getComputeHost(request, op, request.resourceReference,
                     context -> listEntities(request, context, op, direct));
+        } else if (request.operationTypeId.equals(ContainerHostOperationType.WATCH_ENTITIES.id)) {
+            getComputeHost(request, op, request.resourceReference,
+                    context -> watchEntities(request, context, op));
         } else {
             getComputeHost(request, op, request.resourceReference,
                     context -> processOperation(request, context));
@@ -308,6 +324,7 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
 
         client.getPods(context, null, resultHandler.appendResult((o) -> {
             PodList podList = o.getBody(PodList.class);
+            putResourceVersion(callbackResponse, POD_TYPE, podList);
             if (podList.items != null) {
                 synchronized (callbackResponse) {
                     for (Pod pod : podList.items) {
@@ -321,6 +338,7 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
         }));
         client.getServices(context, null, resultHandler.appendResult(o -> {
             ServiceList serviceList = o.getBody(ServiceList.class);
+            putResourceVersion(callbackResponse, SERVICE_TYPE, serviceList);
             if (serviceList.items != null) {
                 synchronized (callbackResponse) {
                     for (Service service : serviceList.items) {
@@ -334,6 +352,7 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
         }));
         client.getDeployments(context, null, resultHandler.appendResult(o -> {
             DeploymentList deploymentList = o.getBody(DeploymentList.class);
+            putResourceVersion(callbackResponse, DEPLOYMENT_TYPE, deploymentList);
             if (deploymentList.items != null) {
                 synchronized (callbackResponse) {
                     for (Deployment deployment : deploymentList.items) {
@@ -347,6 +366,7 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
         }));
         client.getReplicationControllers(context, null, resultHandler.appendResult(o -> {
             ReplicationControllerList rcList = o.getBody(ReplicationControllerList.class);
+            putResourceVersion(callbackResponse, REPLICATION_CONTROLLER_TYPE, rcList);
             if (rcList.items != null) {
                 synchronized (callbackResponse) {
                     for (ReplicationController rc : rcList.items) {
@@ -360,6 +380,7 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
         }));
         client.getReplicaSets(context, null, resultHandler.appendResult(o -> {
             ReplicaSetList rsList = o.getBody(ReplicaSetList.class);
+            putResourceVersion(callbackResponse, REPLICA_SET_TYPE, rsList);
             if (rsList.items != null) {
                 synchronized (callbackResponse) {
                     for (ReplicaSet rs : rsList.items) {
@@ -374,6 +395,129 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
         allStarted.set(true);
     }
 
+    private void putResourceVersion(EntityListCallback callbackResponse, String entityType,
+            BaseKubernetesList list) {
+        if (list.metadata != null && list.metadata.resourceVersion != null) {
+            synchronized (callbackResponse) {
+                callbackResponse.resourceVersions.put(entityType, list.metadata.resourceVersion);
+            }
+        }
+    }
+
+    // watch the entities within the current operation without using callback
+    private void watchEntities(AdapterRequest request, KubernetesContext context, Operation op) {
+        updateContext(request, context);
+
+        @SuppressWarnings("unchecked")
+        Map<String, String> resourceVersions = Utils.fromJson(request.customProperties.get(
+                KubernetesEntityWatchService.RESOURCE_VERSIONS_PROP_NAME), Map.class);
+
+        if (resourceVersions == null) {
+            resourceVersions = new HashMap<>();
+        }
+
+        EntityWatchCallback callbackResponse = new EntityWatchCallback();
+        callbackResponse.computeHostLink = context.host.documentSelfLink;
+        callbackResponse.resourceVersions.putAll(resourceVersions);
+
+        AtomicBoolean hasError = new AtomicBoolean(false);
+        AtomicInteger resultCount = new AtomicInteger(
+                KubernetesEntityWatchService.ENTITY_TYPES.size());
+        Runnable countDown = () -> {
+            if (resultCount.decrementAndGet() == 0 && !hasError.get()) {
+                logFine("Host [%s] returned %d entity events %s",
+                        callbackResponse.computeHostLink, callbackResponse.events.size(),
+                        request.getRequestTrackingLog());
+                op.setBody(callbackResponse);
+                op.complete();
+            }
+        };
+
+        KubernetesRemoteApiClient client = getApiClient();
+        for (String entityType : KubernetesEntityWatchService.ENTITY_TYPES) {
+            String resourceVersion = resourceVersions.get(entityType);
+            if (resourceVersion == null) {
+                // nothing to watch from, the entities have to be listed again
+                callbackResponse.expired = true;
+                countDown.run();
+                continue;
+            }
+
+            client.watchEntities(context, entityType, resourceVersion, WATCH_TIMEOUT_SECONDS,
+                    (o, ex) -> {
+                        if (ex != null && o != null && o.getStatusCode() == STATUS_CODE_GONE) {
+                            synchronized (callbackResponse) {
+                                callbackResponse.expired = true;
+                            }
+                        } else if (ex != null) {
+                            logWarning("Watching [%s] failed: %s", entityType, ex.toString());
+                            if (hasError.compareAndSet(false, true)) {
+                                op.fail(ex);
+                            }
+                            return;
+                        } else {
+                            synchronized (callbackResponse) {
+                                addWatchEvents(callbackResponse, entityType, o);
+                            }
+                        }
+                        countDown.run();
+                    });
+        }
+    }
+
+    /**
+     * The events are streamed as a sequence of JSON objects, one per line.
+     */
+    @SuppressWarnings("unchecked")
+    private void addWatchEvents(EntityWatchCallback callbackResponse, String entityType,
+            Operation o) {
+        if (!o.hasBody()) {
+            return;
+        }
+
+        String body = o.getBody(String.class);
+        for (String line : body.split("\n")) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            Map<String, Object> eventData = Utils.fromJson(line, Map.class);
+            String eventType = (String) eventData.get(WATCH_EVENT_TYPE_PROP_NAME);
+            Object objectData = eventData.get(WATCH_EVENT_OBJECT_PROP_NAME);
+            if (eventType == null || !(objectData instanceof Map)) {
+                continue;
+            }
+
+            if (WATCH_EVENT_TYPE_ERROR.equals(eventType)) {
+                Object code = ((Map<String, Object>) objectData).get(STATUS_CODE_PROP_NAME);
+                if (code instanceof Number && ((Number) code).intValue() == STATUS_CODE_GONE) {
+                    callbackResponse.expired = true;
+                } else {
+                    logWarning("Watching [%s] returned error: %s", entityType, line);
+                }
+                continue;
+            }
+
+            String entity = Utils.toJson(objectData);
+            BaseKubernetesObject object = Utils.fromJson(entity, BaseKubernetesObject.class);
+            if (object.metadata != null && object.metadata.resourceVersion != null) {
+                callbackResponse.resourceVersions.put(entityType,
+                        object.metadata.resourceVersion);
+            }
+            // bookmarks only move the resource version forward
+            if (WATCH_EVENT_TYPE_BOOKMARK.equals(eventType)
+                    || !validateKubernetesObject(object) || object.metadata.uid == null) {
+                continue;
+            }
+
+            EntityEvent event = new EntityEvent();
+            event.type = eventType;
+            event.id = object.metadata.uid;
+            event.data = createEntityData(object, entityType);
+            event.entity = entity;
+            callbackResponse.events.add(event);
+        }
+    }
+
     private void updateContext(AdapterRequest request, KubernetesContext context) {
         if (request.customProperties != null) {
             context.SSLTrustCertificate = request.customProperties
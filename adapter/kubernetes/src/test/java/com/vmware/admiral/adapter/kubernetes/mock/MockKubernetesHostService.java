@@ -16,6 +16,7 @@ import static com.vmware.admiral.adapter.kubernetes.mock.KubernetesPathConstants
 import java.net.URI;
 import java.util.ArrayList;
 
+import com.vmware.admiral.compute.kubernetes.entities.common.ListMeta;
 import com.vmware.admiral.compute.kubernetes.entities.replicaset.ReplicaSetList;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
@@ -23,6 +24,8 @@ import com.vmware.xenon.common.StatefulService;
 
 public class MockKubernetesHostService extends StatefulService {
     public static final String SELF_LINK = BASE_PATH;
+    public static final String PODS_RESOURCE_VERSION = "1733267";
+    public static final String REPLICA_SETS_RESOURCE_VERSION = "2278800";
 
     public MockKubernetesHostService() {
         super(ServiceDocument.class);
@@ -59,6 +62,8 @@ public class MockKubernetesHostService extends StatefulService {
             ReplicaSetList emptyList = new ReplicaSetList();
             emptyList.items = new ArrayList<>();
             emptyList.kind = "ReplicaSetList";
+            emptyList.metadata = new ListMeta();
+            emptyList.metadata.resourceVersion = REPLICA_SETS_RESOURCE_VERSION;
             get.setBody(emptyList);
             get.complete();
         } else {
@@ -139,7 +144,7 @@ public class MockKubernetesHostService extends StatefulService {
                 + "  \"apiVersion\": \"v1\",\n"
                 + "  \"metadata\": {\n"
                 + "    \"selfLink\": \"/api/v1/namespaces/default/pods\",\n"
-                + "    \"resourceVersion\": \"1733267\"\n"
+                + "    \"resourceVersion\": \"" + PODS_RESOURCE_VERSION + "\"\n"
                 + "  },\n"
                 + "  \"items\": [\n"
                 + "    {\n"
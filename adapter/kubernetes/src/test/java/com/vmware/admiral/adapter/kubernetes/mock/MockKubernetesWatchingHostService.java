@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.kubernetes.mock;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.vmware.admiral.adapter.kubernetes.KubernetesRemoteApiClient;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * Stub kubernetes API server which also serves the watch requests of the entities. The events of
+ * a watch are streamed as a sequence of JSON objects, one per line, as by the API server.
+ */
+public class MockKubernetesWatchingHostService extends MockKubernetesHostService {
+    public static final int STATUS_CODE_GONE = 410;
+
+    // the response of the next watches per entity path, e.g. /pods
+    private static final Map<String, String> WATCH_EVENTS = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> WATCH_STATUS_CODES = new ConcurrentHashMap<>();
+    private static final List<URI> WATCH_REQUESTS = new ArrayList<>();
+
+    @Override
+    public void handleGet(Operation get) {
+        URI uri = get.getUri();
+        Map<String, String> params = UriUtils.parseUriQueryParams(uri);
+        if (!Boolean.TRUE.toString().equals(params.get(KubernetesRemoteApiClient.WATCH_QUERY))) {
+            super.handleGet(get);
+            return;
+        }
+
+        synchronized (WATCH_REQUESTS) {
+            WATCH_REQUESTS.add(uri);
+        }
+        String entityPath = getEntityPath(uri);
+        Integer statusCode = WATCH_STATUS_CODES.get(entityPath);
+        if (statusCode != null) {
+            get.setStatusCode(statusCode);
+            get.fail(new IllegalStateException("too old resource version"));
+            return;
+        }
+
+        get.setContentType(Operation.MEDIA_TYPE_APPLICATION_JSON);
+        get.setBody(WATCH_EVENTS.getOrDefault(entityPath, ""));
+        get.complete();
+    }
+
+    /**
+     * Sets the events returned by the watches of the entities with the given path.
+     */
+    public static void setWatchEvents(String entityPath, String... events) {
+        WATCH_EVENTS.put(entityPath, String.join("\n", events) + "\n");
+    }
+
+    /**
+     * Makes the watches of the entities with the given path fail with the given status code.
+     */
+    public static void failWatch(String entityPath, int statusCode) {
+        WATCH_STATUS_CODES.put(entityPath, statusCode);
+    }
+
+    /**
+     * Returns the resource versions of the watches of the entities with the given path, in the
+     * order they were received.
+     */
+    public static List<String> getWatchedResourceVersions(String entityPath) {
+        List<String> resourceVersions = new ArrayList<>();
+        synchronized (WATCH_REQUESTS) {
+            for (URI uri : WATCH_REQUESTS) {
+                if (entityPath.equals(getEntityPath(uri))) {
+                    resourceVersions.add(UriUtils.parseUriQueryParams(uri)
+                            .get(KubernetesRemoteApiClient.RESOURCE_VERSION_QUERY));
+                }
+            }
+        }
+        return resourceVersions;
+    }
+
+    public static void reset() {
+        WATCH_EVENTS.clear();
+        WATCH_STATUS_CODES.clear();
+        synchronized (WATCH_REQUESTS) {
+            WATCH_REQUESTS.clear();
+        }
+    }
+
+    private static String getEntityPath(URI uri) {
+        String path = uri.getPath();
+        return path.substring(path.lastIndexOf(UriUtils.URI_PATH_CHAR));
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.kubernetes.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.adapter.common.AdapterRequest;
+import com.vmware.admiral.adapter.common.ContainerHostOperationType;
+import com.vmware.admiral.adapter.kubernetes.mock.BaseKubernetesMockTest;
+import com.vmware.admiral.adapter.kubernetes.mock.KubernetesPathConstants;
+import com.vmware.admiral.adapter.kubernetes.mock.MockKubernetesHostService;
+import com.vmware.admiral.adapter.kubernetes.mock.MockKubernetesWatchingHostService;
+import com.vmware.admiral.common.DeploymentProfileConfig;
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.compute.content.kubernetes.KubernetesUtil;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService.EntityEvent;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService.EntityWatchCallback;
+import com.vmware.admiral.service.common.ServiceTaskCallback;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service.ServiceOption;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.ServiceStats;
+import com.vmware.xenon.common.ServiceStats.ServiceStat;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Tests the watch of the entities through {@link KubernetesHostAdapterService} against a stub
+ * kubernetes API server streaming the watch events.
+ */
+public class KubernetesHostAdapterServiceWatchTest extends BaseKubernetesMockTest {
+    private static final String RESOURCE_VERSION = "100";
+
+    private ComputeState kubernetesHostState;
+
+    @Before
+    public void setUp() throws Throwable {
+        DeploymentProfileConfig.getInstance().setTest(true);
+
+        MockKubernetesWatchingHostService service = new MockKubernetesWatchingHostService();
+        service.toggleOption(ServiceOption.URI_NAMESPACE_OWNER, true);
+        mockKubernetesHost.startService(
+                Operation.createPost(UriUtils.buildUri(
+                        mockKubernetesHost, MockKubernetesHostService.SELF_LINK)),
+                service);
+        mockKubernetesHost.waitForServiceAvailable(MockKubernetesHostService.SELF_LINK);
+
+        kubernetesHostState = createKubernetesHostComputeState(
+                createTestKubernetesAuthCredentials());
+        waitForServiceAvailability(ManagementUriParts.ADAPTER_KUBERNETES_HOST);
+    }
+
+    @After
+    public void tearDown() {
+        MockKubernetesWatchingHostService.reset();
+    }
+
+    @Test
+    public void testWatchEventsAreReturned() throws Throwable {
+        MockKubernetesWatchingHostService.setWatchEvents(KubernetesPathConstants.PODS,
+                watchEvent("ADDED", "pod-1", "101"),
+                watchEvent("MODIFIED", "pod-1", "102"),
+                watchEvent("DELETED", "pod-2", "103"),
+                "{\"type\":\"ERROR\",\"object\":{\"kind\":\"Status\",\"code\":500,"
+                        + "\"message\":\"internal error\"}}",
+                "{\"type\":\"BOOKMARK\",\"object\":{\"kind\":\"Pod\","
+                        + "\"metadata\":{\"resourceVersion\":\"110\"}}}");
+
+        EntityWatchCallback callback = watchEntities();
+
+        assertFalse(callback.expired);
+        assertEquals(3, callback.events.size());
+        assertEvent(callback.events.get(0), KubernetesEntityWatchService.EVENT_TYPE_ADDED,
+                "pod-1");
+        assertEvent(callback.events.get(1), KubernetesEntityWatchService.EVENT_TYPE_MODIFIED,
+                "pod-1");
+        assertEvent(callback.events.get(2), KubernetesEntityWatchService.EVENT_TYPE_DELETED,
+                "pod-2");
+
+        // the bookmark moves the resource version forward, the other kinds had no events
+        assertEquals("110", callback.resourceVersions.get(KubernetesUtil.POD_TYPE));
+        assertEquals(RESOURCE_VERSION,
+                callback.resourceVersions.get(KubernetesUtil.SERVICE_TYPE));
+        assertEquals(Arrays.asList(RESOURCE_VERSION),
+                MockKubernetesWatchingHostService.getWatchedResourceVersions(
+                        KubernetesPathConstants.PODS));
+    }
+
+    @Test
+    public void testGoneErrorEventExpiresWatch() throws Throwable {
+        MockKubernetesWatchingHostService.setWatchEvents(KubernetesPathConstants.PODS,
+                watchEvent("ADDED", "pod-1", "101"),
+                "{\"type\":\"ERROR\",\"object\":{\"kind\":\"Status\",\"code\":410,"
+                        + "\"reason\":\"Expired\",\"message\":\"too old resource version\"}}");
+
+        EntityWatchCallback callback = watchEntities();
+
+        assertTrue(callback.expired);
+    }
+
+    @Test
+    public void testGoneResponseExpiresWatch() throws Throwable {
+        MockKubernetesWatchingHostService.failWatch(KubernetesPathConstants.SERVICES,
+                MockKubernetesWatchingHostService.STATUS_CODE_GONE);
+
+        EntityWatchCallback callback = watchEntities();
+
+        assertTrue(callback.expired);
+        assertTrue(callback.events.isEmpty());
+    }
+
+    @Test
+    public void testFailedWatchFailsRequest() throws Throwable {
+        MockKubernetesWatchingHostService.failWatch(KubernetesPathConstants.SERVICES,
+                Operation.STATUS_CODE_INTERNAL_ERROR);
+
+        OperationResult result = sendWatchRequest();
+
+        assertNotNull(result.ex);
+    }
+
+    @Test
+    public void testExpiredWatchListsEntitiesAgain() throws Throwable {
+        host.startServiceAndWait(new KubernetesEntityWatchService(),
+                KubernetesEntityWatchService.SELF_LINK, null);
+
+        // the first watch lists the entities
+        watch();
+        waitFor(() -> getStatValue(KubernetesEntityWatchService.STAT_NAME_RELIST_COUNT) == 1);
+
+        // the next one watches them from the resource versions of the list, until they expire
+        MockKubernetesWatchingHostService.failWatch(KubernetesPathConstants.PODS,
+                MockKubernetesWatchingHostService.STATUS_CODE_GONE);
+        waitFor(() -> {
+            watch();
+            return getStatValue(KubernetesEntityWatchService.STAT_NAME_RELIST_COUNT) == 2;
+        });
+        assertEquals(Arrays.asList(MockKubernetesHostService.PODS_RESOURCE_VERSION),
+                MockKubernetesWatchingHostService.getWatchedResourceVersions(
+                        KubernetesPathConstants.PODS));
+
+        // after the new list the entities are watched again
+        MockKubernetesWatchingHostService.reset();
+        MockKubernetesWatchingHostService.setWatchEvents(KubernetesPathConstants.PODS,
+                watchEvent("ADDED", "pod-1", "1733300"));
+        waitFor(() -> {
+            watch();
+            return getStatValue(KubernetesEntityWatchService.STAT_NAME_EVENTS_COUNT) == 1;
+        });
+        assertEquals(MockKubernetesHostService.PODS_RESOURCE_VERSION,
+                MockKubernetesWatchingHostService.getWatchedResourceVersions(
+                        KubernetesPathConstants.PODS).get(0));
+        assertEquals(2, getStatValue(KubernetesEntityWatchService.STAT_NAME_RELIST_COUNT), 0);
+    }
+
+    private EntityWatchCallback watchEntities() throws Throwable {
+        OperationResult result = sendWatchRequest();
+        assertNull(result.ex);
+        return result.op.getBody(EntityWatchCallback.class);
+    }
+
+    private OperationResult sendWatchRequest() throws Throwable {
+        Map<String, String> resourceVersions = new HashMap<>();
+        KubernetesEntityWatchService.ENTITY_TYPES
+                .forEach(type -> resourceVersions.put(type, RESOURCE_VERSION));
+
+        AdapterRequest request = new AdapterRequest();
+        request.operationTypeId = ContainerHostOperationType.WATCH_ENTITIES.id;
+        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
+        request.resourceReference = UriUtils.buildUri(host, kubernetesHostState.documentSelfLink);
+        request.customProperties = new HashMap<>();
+        request.customProperties.put(KubernetesEntityWatchService.RESOURCE_VERSIONS_PROP_NAME,
+                Utils.toJson(resourceVersions));
+
+        OperationResult result = new OperationResult();
+        host.testStart(1);
+        host.send(Operation
+                .createPatch(UriUtils.buildUri(host, ManagementUriParts.ADAPTER_KUBERNETES_HOST))
+                .setReferer(URI.create("/"))
+                .setBody(request)
+                .setCompletion((o, ex) -> {
+                    result.op = o;
+                    result.ex = ex;
+                    host.completeIteration();
+                }));
+        host.testWait();
+        return result;
+    }
+
+    private void watch() throws Throwable {
+        EntityWatchCallback body = new EntityWatchCallback();
+        body.computeHostLink = kubernetesHostState.documentSelfLink;
+        host.testStart(1);
+        host.send(Operation
+                .createPatch(UriUtils.buildUri(host, KubernetesEntityWatchService.SELF_LINK))
+                .setReferer(URI.create("/"))
+                .setBody(body)
+                .setCompletion(host.getCompletion()));
+        host.testWait();
+    }
+
+    private double getStatValue(String name) throws Throwable {
+        ServiceStats stats = getDocument(ServiceStats.class,
+                KubernetesEntityWatchService.SELF_LINK + ServiceHost.SERVICE_URI_SUFFIX_STATS);
+        ServiceStat stat = stats.entries.get(name);
+        return stat == null ? 0 : stat.latestValue;
+    }
+
+    private static void assertEvent(EntityEvent event, String type, String id) {
+        assertEquals(type, event.type);
+        assertEquals(id, event.id);
+        assertEquals(KubernetesUtil.POD_TYPE, event.data.kind);
+        assertEquals(id, event.data.name);
+    }
+
+    private static String watchEvent(String type, String uid, String resourceVersion) {
+        List<String> metadata = Arrays.asList(
+                "\"name\":\"" + uid + "\"",
+                "\"namespace\":\"default\"",
+                "\"selfLink\":\"/api/v1/namespaces/default/pods/" + uid + "\"",
+                "\"uid\":\"" + uid + "\"",
+                "\"resourceVersion\":\"" + resourceVersion + "\"");
+        return "{\"type\":\"" + type + "\",\"object\":{\"kind\":\"Pod\",\"apiVersion\":\"v1\","
+                + "\"metadata\":{" + String.join(",", metadata) + "}}}";
+    }
+}
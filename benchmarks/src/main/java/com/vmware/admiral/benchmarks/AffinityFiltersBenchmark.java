@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.compute.container.CompositeComponentFactoryService;
+import com.vmware.admiral.compute.container.ContainerDescriptionService;
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerFactoryService;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
+import com.vmware.admiral.request.PlacementIndexService;
+import com.vmware.admiral.request.allocation.filter.AffinityFilters;
+import com.vmware.admiral.request.allocation.filter.HostSelectionFilter;
+import com.vmware.admiral.request.allocation.filter.HostSelectionFilter.HostSelection;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * The whole affinity filter pipeline of a clustered container description with a service
+ * affinity, run over a synthetic host selection map. The containers of the description the
+ * affinity points to are spread across the hosts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AffinityFiltersBenchmark {
+
+    private static final long FILTER_TIMEOUT_SECONDS = 30;
+
+    @Param({ "10", "100" })
+    public int hostCount;
+
+    @Param({ "5" })
+    public int containersPerHost;
+
+    private BenchmarkHost host;
+    private List<String> hostLinks;
+    private ContainerDescription placedDescription;
+    private PlacementHostSelectionTaskState state;
+
+    @Setup
+    public void setUp() throws Throwable {
+        host = BenchmarkHost.start(ContainerDescriptionService.FACTORY_LINK,
+                ContainerFactoryService.SELF_LINK, PlacementIndexService.SELF_LINK);
+
+        state = new PlacementHostSelectionTaskState();
+        state.documentSelfLink = "/benchmark-placement";
+        state.contextId = UUID.randomUUID().toString();
+        state.resourceCount = 1;
+        state.resourcePoolLinks = Collections.singletonList("/resources/pools/benchmark");
+
+        ContainerDescription db = new ContainerDescription();
+        db.name = "db";
+        db.image = "registry.local/db:1.0";
+        db = host.post(db, ContainerDescriptionService.FACTORY_LINK);
+
+        hostLinks = new ArrayList<>(hostCount);
+        for (int i = 0; i < hostCount; i++) {
+            String hostLink = "/resources/compute/benchmark-host-" + i;
+            hostLinks.add(hostLink);
+            for (int j = 0; j < containersPerHost; j++) {
+                ContainerState container = new ContainerState();
+                container.descriptionLink = db.documentSelfLink;
+                container.parentLink = hostLink;
+                container.names = Collections.singletonList("db-" + i + "-" + j);
+                container.powerState = PowerState.RUNNING;
+                container.compositeComponentLink = UriUtils.buildUriPath(
+                        CompositeComponentFactoryService.SELF_LINK, state.contextId);
+                host.post(container, ContainerFactoryService.SELF_LINK);
+            }
+        }
+
+        ContainerDescription web = new ContainerDescription();
+        web.name = "web";
+        web.image = "registry.local/web:1.0";
+        web.affinity = new String[] { "db" };
+        web._cluster = 2;
+        placedDescription = host.post(web, ContainerDescriptionService.FACTORY_LINK);
+    }
+
+    @TearDown
+    public void tearDown() {
+        host.stop();
+    }
+
+    @Benchmark
+    public Map<String, HostSelection> filter() throws Exception {
+        Map<String, HostSelection> hostSelectionMap = new LinkedHashMap<>(hostLinks.size());
+        for (String hostLink : hostLinks) {
+            HostSelection hostSelection = new HostSelection();
+            hostSelection.hostLink = hostLink;
+            hostSelection.clusterStore = "";
+            hostSelection.availableMemory = Long.MAX_VALUE;
+            hostSelectionMap.put(hostLink, hostSelection);
+        }
+
+        CompletableFuture<Map<String, HostSelection>> result = new CompletableFuture<>();
+        filter(hostSelectionMap, AffinityFilters.build(host.getHost(), placedDescription)
+                .getQueue(), result);
+        return result.get(FILTER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void filter(Map<String, HostSelection> hostSelectionMap,
+            Queue<HostSelectionFilter> filters, CompletableFuture<Map<String, HostSelection>> result) {
+        HostSelectionFilter<PlacementHostSelectionTaskState> filter = filters.poll();
+        if (filter == null) {
+            result.complete(hostSelectionMap);
+            return;
+        }
+        filter.filter(state, hostSelectionMap, (filteredHostSelectionMap, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+                return;
+            }
+            filter(filteredHostSelectionMap, filters, result);
+        });
+    }
+}
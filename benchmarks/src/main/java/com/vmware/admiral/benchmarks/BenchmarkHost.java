@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import com.vmware.admiral.common.DeploymentProfileConfig;
+import com.vmware.admiral.common.test.HostInitTestDcpServicesConfig;
+import com.vmware.admiral.host.ComputeInitialBootService;
+import com.vmware.admiral.host.HostInitCommonServiceConfig;
+import com.vmware.admiral.host.HostInitComputeServicesConfig;
+import com.vmware.admiral.host.HostInitPhotonModelServiceConfig;
+import com.vmware.admiral.host.HostInitRequestServicesConfig;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.test.TestRequestSender;
+import com.vmware.xenon.common.test.VerificationHost;
+
+/**
+ * In-process {@link VerificationHost} with the compute and request services started, used as a
+ * fixture by the benchmarks of service level operations.
+ */
+public class BenchmarkHost {
+    private static final int HOST_TIMEOUT_SECONDS = 60;
+
+    private final VerificationHost host;
+    private final TestRequestSender sender;
+
+    private BenchmarkHost(VerificationHost host) {
+        this.host = host;
+        this.sender = host.getTestRequestSender();
+    }
+
+    /**
+     * Starts a host and waits for the given services to become available.
+     */
+    public static BenchmarkHost start(String... serviceLinks) throws Throwable {
+        DeploymentProfileConfig.getInstance().setTest(true);
+
+        VerificationHost host = VerificationHost.create(0);
+        host.setTimeoutSeconds(HOST_TIMEOUT_SECONDS);
+        host.start();
+
+        HostInitTestDcpServicesConfig.startServices(host);
+        HostInitPhotonModelServiceConfig.startServices(host);
+        HostInitCommonServiceConfig.startServices(host);
+        HostInitComputeServicesConfig.startServices(host, false);
+        HostInitRequestServicesConfig.startServices(host);
+
+        host.waitForServiceAvailable(ComputeInitialBootService.SELF_LINK);
+        host.waitForServiceAvailable(serviceLinks);
+        return new BenchmarkHost(host);
+    }
+
+    public VerificationHost getHost() {
+        return host;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends ServiceDocument> T post(T document, String factoryLink) {
+        return (T) sender.sendAndWait(Operation.createPost(host, factoryLink).setBody(document),
+                document.getClass());
+    }
+
+    public <T> T patch(Object body, Class<T> type, String link) {
+        return sender.sendAndWait(Operation.createPatch(host, link).setBody(body), type);
+    }
+
+    public void stop() {
+        host.tearDown();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Compares two JMH result files in JSON format and reports the benchmarks whose score regressed
+ * by more than a threshold percentage. Benchmarks are matched by name and parameters. For the
+ * throughput mode higher scores are better, for all time based modes lower scores are better.
+ *
+ * Usage: <code>BenchmarkRegressionCheck baseline.json current.json [thresholdPercent]</code>
+ */
+public class BenchmarkRegressionCheck {
+    public static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private static final String MODE_THROUGHPUT = "thrpt";
+
+    private BenchmarkRegressionCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println(
+                    "Usage: BenchmarkRegressionCheck baseline.json current.json [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2])
+                : DEFAULT_THRESHOLD_PERCENT;
+
+        List<String> regressions = check(args[0], args[1], threshold);
+        regressions.forEach(System.err::println);
+        System.exit(regressions.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Returns a description of each regression of the current results compared to the baseline
+     * results, or an empty list if there are none. Benchmarks missing from either file are
+     * ignored.
+     */
+    public static List<String> check(String baselineFile, String currentFile,
+            double thresholdPercent) throws IOException {
+        Map<String, Score> baseline = readScores(baselineFile);
+        Map<String, Score> current = readScores(currentFile);
+
+        List<String> regressions = new ArrayList<>();
+        for (Entry<String, Score> entry : current.entrySet()) {
+            Score baselineScore = baseline.get(entry.getKey());
+            if (baselineScore == null || baselineScore.value == 0) {
+                continue;
+            }
+            Score currentScore = entry.getValue();
+
+            double changePercent = (currentScore.value - baselineScore.value)
+                    / baselineScore.value * 100;
+            double regressionPercent = MODE_THROUGHPUT.equals(currentScore.mode)
+                    ? -changePercent : changePercent;
+            if (regressionPercent > thresholdPercent) {
+                regressions.add(String.format(
+                        "%s regressed by %.1f%%: %.3f %s (baseline %.3f %s)", entry.getKey(),
+                        regressionPercent, currentScore.value, currentScore.unit,
+                        baselineScore.value, baselineScore.unit));
+            }
+        }
+        return regressions;
+    }
+
+    static Map<String, Score> readScores(String file) throws IOException {
+        JsonArray results;
+        try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            results = new JsonParser().parse(reader).getAsJsonArray();
+        }
+
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonElement element : results) {
+            JsonObject result = element.getAsJsonObject();
+            JsonObject primaryMetric = result.getAsJsonObject("primaryMetric");
+
+            Score score = new Score();
+            score.mode = result.get("mode").getAsString();
+            score.value = primaryMetric.get("score").getAsDouble();
+            score.unit = primaryMetric.get("scoreUnit").getAsString();
+            scores.put(getKey(result), score);
+        }
+        return scores;
+    }
+
+    private static String getKey(JsonObject result) {
+        StringBuilder key = new StringBuilder(result.get("benchmark").getAsString());
+        key.append(" [").append(result.get("mode").getAsString()).append(']');
+
+        JsonObject params = result.getAsJsonObject("params");
+        if (params != null) {
+            Map<String, String> sortedParams = new TreeMap<>();
+            params.entrySet().forEach(p -> sortedParams.put(p.getKey(),
+                    p.getValue().getAsString()));
+            key.append(' ').append(sortedParams);
+        }
+        return key.toString();
+    }
+
+    static class Score {
+        String mode;
+        double value;
+        String unit;
+    }
+}
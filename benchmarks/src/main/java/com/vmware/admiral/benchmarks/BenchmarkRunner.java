@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.util.List;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected by the JMH command line options and writes the results in JSON
+ * format, so that they can be compared between releases. If a baseline result file is given with
+ * the <code>benchmarks.baseline</code> system property, the results are checked for regressions
+ * with {@link BenchmarkRegressionCheck} and the runner exits with a non-zero status if any.
+ */
+public class BenchmarkRunner {
+    public static final String RESULT_FILE = System.getProperty("benchmarks.result",
+            "target/jmh-result.json");
+    public static final String BASELINE_FILE = System.getProperty("benchmarks.baseline");
+    public static final double THRESHOLD_PERCENT = Double.parseDouble(System.getProperty(
+            "benchmarks.threshold",
+            String.valueOf(BenchmarkRegressionCheck.DEFAULT_THRESHOLD_PERCENT)));
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .resultFormat(ResultFormatType.JSON)
+                .result(RESULT_FILE)
+                .build();
+        new Runner(options).run();
+        System.out.println("Benchmark results written to " + RESULT_FILE);
+
+        if (BASELINE_FILE == null) {
+            return;
+        }
+
+        List<String> regressions = BenchmarkRegressionCheck.check(BASELINE_FILE, RESULT_FILE,
+                THRESHOLD_PERCENT);
+        if (regressions.isEmpty()) {
+            System.out.println("No regressions over " + THRESHOLD_PERCENT + "% compared to "
+                    + BASELINE_FILE);
+            return;
+        }
+        regressions.forEach(System.err::println);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.compute.BindingEvaluator;
+import com.vmware.admiral.compute.content.CompositeTemplate;
+import com.vmware.admiral.compute.content.CompositeTemplateUtil;
+
+/**
+ * Evaluation of the bindings of a composite template where each component is bound to the
+ * previous one. The evaluation updates the template, so a new template is parsed before each
+ * invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindingEvaluatorBenchmark {
+
+    @Param({ "2", "20", "100" })
+    public int componentCount;
+
+    private String yaml;
+    private CompositeTemplate template;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        yaml = TemplateFixtures.createTemplateYaml(componentCount, true);
+    }
+
+    @Setup(Level.Invocation)
+    public void parseTemplate() throws IOException {
+        template = CompositeTemplateUtil.deserializeCompositeTemplate(yaml);
+    }
+
+    @Benchmark
+    public CompositeTemplate evaluateBindings() {
+        BindingEvaluator.evaluateBindings(template);
+        return template;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.compute.ComponentDescription;
+import com.vmware.admiral.compute.ResourceType;
+import com.vmware.admiral.compute.container.CompositeDescriptionService.CompositeDescriptionExpanded;
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.request.composition.CompositionGraph;
+import com.vmware.admiral.request.composition.CompositionGraph.ResourceNode;
+
+/**
+ * Topological sort of a composite description with the given number of components, where each
+ * component depends on up to <code>fanIn</code> of the previous components.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositionGraphBenchmark {
+
+    @Param({ "10", "100", "500" })
+    public int componentCount;
+
+    @Param({ "1", "3" })
+    public int fanIn;
+
+    private List<ContainerDescription> descriptions;
+
+    @Setup
+    public void setUp() {
+        descriptions = new ArrayList<>(componentCount);
+        for (int i = 0; i < componentCount; i++) {
+            ContainerDescription desc = new ContainerDescription();
+            desc.documentSelfLink = "/resources/container-descriptions/" + i;
+            desc.name = TemplateFixtures.componentName(i);
+            desc.image = "registry.local/app-" + i + ":1.0";
+
+            int dependencyCount = Math.min(i, fanIn);
+            if (dependencyCount > 0) {
+                desc.dependsOn = new String[dependencyCount];
+                for (int j = 0; j < dependencyCount; j++) {
+                    desc.dependsOn[j] = TemplateFixtures.componentName(i - j - 1);
+                }
+            }
+            descriptions.add(desc);
+        }
+    }
+
+    @Benchmark
+    public List<ResourceNode> calculateGraph() {
+        // the graph and the component descriptions are updated during the calculation
+        CompositeDescriptionExpanded compositeDescription = new CompositeDescriptionExpanded();
+        compositeDescription.componentDescriptions = new ArrayList<>(descriptions.size());
+        for (ContainerDescription desc : descriptions) {
+            compositeDescription.componentDescriptions.add(new ComponentDescription(desc,
+                    ResourceType.CONTAINER_TYPE.getName(), desc.name, Collections.emptyList()));
+        }
+        compositeDescription.bindings = Collections.emptyList();
+
+        return new CompositionGraph().calculateGraph(compositeDescription);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import static com.vmware.admiral.compute.network.ComputeNetworkCIDRAllocationService.ComputeNetworkCIDRAllocationRequest.allocationRequest;
+import static com.vmware.admiral.compute.network.ComputeNetworkCIDRAllocationService.ComputeNetworkCIDRAllocationRequest.deallocationRequest;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.compute.network.ComputeNetworkCIDRAllocationService;
+import com.vmware.admiral.compute.network.ComputeNetworkCIDRAllocationService.ComputeNetworkCIDRAllocationState;
+import com.vmware.photon.controller.model.resources.NetworkService;
+import com.vmware.photon.controller.model.resources.NetworkService.NetworkState;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * Allocation and deallocation of a subnet CIDR through
+ * {@link ComputeNetworkCIDRAllocationService}, in a network where the given number of subnet
+ * CIDRs are already allocated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComputeNetworkCIDRAllocationBenchmark {
+
+    private static final String NETWORK_CIDR = "10.0.0.0/16";
+    private static final int SUBNET_PREFIX_LENGTH = 28;
+    private static final String SUBNET_ID = "benchmark-subnet";
+
+    @Param({ "0", "1000" })
+    public int allocatedSubnetCount;
+
+    private BenchmarkHost host;
+    private String allocationLink;
+
+    @Setup
+    public void setUp() throws Throwable {
+        host = BenchmarkHost.start(NetworkService.FACTORY_LINK,
+                ComputeNetworkCIDRAllocationService.FACTORY_LINK);
+
+        NetworkState network = new NetworkState();
+        network.subnetCIDR = NETWORK_CIDR;
+        network.name = "benchmark-network";
+        network.instanceAdapterReference = UriUtils.buildUri("/instance-adapter-reference");
+        network.resourcePoolLink = "/resources/pools/benchmark";
+        network.regionId = "benchmark-region";
+        network = host.post(network, NetworkService.FACTORY_LINK);
+
+        ComputeNetworkCIDRAllocationState allocation = new ComputeNetworkCIDRAllocationState();
+        allocation.networkLink = network.documentSelfLink;
+        allocationLink = host.post(allocation,
+                ComputeNetworkCIDRAllocationService.FACTORY_LINK).documentSelfLink;
+
+        for (int i = 0; i < allocatedSubnetCount; i++) {
+            host.patch(allocationRequest("subnet-" + i, SUBNET_PREFIX_LENGTH),
+                    ComputeNetworkCIDRAllocationState.class, allocationLink);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        host.stop();
+    }
+
+    @Benchmark
+    public ComputeNetworkCIDRAllocationState allocateAndDeallocate() {
+        host.patch(allocationRequest(SUBNET_ID, SUBNET_PREFIX_LENGTH),
+                ComputeNetworkCIDRAllocationState.class, allocationLink);
+        return host.patch(deallocationRequest(SUBNET_ID),
+                ComputeNetworkCIDRAllocationState.class, allocationLink);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.compute.container.maintenance.ContainerStats;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsEvaluator;
+
+/**
+ * Parsing of the docker stats of a container with the given number of CPUs and networks, compared
+ * with the parsing into a tree of Gson elements. Run with <code>-prof gc</code> to compare the
+ * allocation rates too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerStatsEvaluatorBenchmark {
+
+    @Param({ "4", "64" })
+    public int cpuCount;
+
+    @Param({ "1", "8" })
+    public int networkCount;
+
+    private String statsJson;
+
+    @Setup
+    public void setUp() {
+        statsJson = createStatsJson(cpuCount, networkCount);
+    }
+
+    @Benchmark
+    public ContainerStats calculateStatsValues() {
+        return ContainerStatsEvaluator.calculateStatsValues(statsJson);
+    }
+
+    @Benchmark
+    public ContainerStats calculateStatsValuesGson() {
+        return GsonContainerStatsEvaluator.calculateStatsValues(statsJson);
+    }
+
+    static String createStatsJson(int cpuCount, int networkCount) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"read\":\"2017-03-01T10:15:30.123456789Z\",");
+
+        json.append("\"networks\":{");
+        for (int i = 0; i < networkCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\"eth").append(i).append("\":{\"rx_bytes\":").append(1024L * (i + 1))
+                    .append(",\"rx_packets\":").append(10 * (i + 1))
+                    .append(",\"tx_bytes\":").append(2048L * (i + 1))
+                    .append(",\"tx_packets\":").append(20 * (i + 1)).append('}');
+        }
+        json.append("},");
+
+        json.append("\"memory_stats\":{\"usage\":104857600,\"max_usage\":209715200,"
+                + "\"limit\":2147483648},");
+
+        appendCpuStats(json, "cpu_stats", cpuCount, 2_000_000_000L, 900_000_000L);
+        json.append(',');
+        appendCpuStats(json, "precpu_stats", cpuCount, 1_000_000_000L, 400_000_000L);
+        json.append('}');
+        return json.toString();
+    }
+
+    private static void appendCpuStats(StringBuilder json, String name, int cpuCount,
+            long systemUsage, long totalUsage) {
+        json.append('"').append(name).append("\":{\"cpu_usage\":{\"total_usage\":")
+                .append(totalUsage).append(",\"percpu_usage\":[");
+        for (int i = 0; i < cpuCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(totalUsage / cpuCount);
+        }
+        json.append("]},\"system_cpu_usage\":").append(systemUsage).append('}');
+    }
+}
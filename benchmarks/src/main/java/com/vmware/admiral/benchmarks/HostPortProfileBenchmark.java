@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.compute.container.HostPortProfileService;
+import com.vmware.admiral.compute.container.HostPortProfileService.HostPortProfileReservationRequest;
+import com.vmware.admiral.compute.container.HostPortProfileService.HostPortProfileReservationRequestMode;
+import com.vmware.admiral.compute.container.HostPortProfileService.HostPortProfileState;
+
+/**
+ * Allocation and release of host ports through {@link HostPortProfileService}, in a profile
+ * where the given number of ports are already reserved by other containers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HostPortProfileBenchmark {
+
+    private static final String CONTAINER_LINK = "/resources/containers/benchmark";
+
+    @Param({ "0", "5000" })
+    public int reservedPortCount;
+
+    @Param({ "1", "10" })
+    public int allocatedPortCount;
+
+    private BenchmarkHost host;
+    private String profileLink;
+
+    @Setup
+    public void setUp() throws Throwable {
+        host = BenchmarkHost.start(HostPortProfileService.FACTORY_LINK);
+
+        HostPortProfileState profile = new HostPortProfileState();
+        profile.hostLink = "/resources/compute/benchmark-host";
+        profile.startPort = HostPortProfileState.PROFILE_RANGE_START_PORT;
+        profile.endPort = HostPortProfileState.PROFILE_RANGE_END_PORT;
+        profile.reservedPorts = new HashMap<>();
+        profileLink = host.post(profile, HostPortProfileService.FACTORY_LINK).documentSelfLink;
+
+        // reserve the ports of the other containers in chunks
+        for (int i = 0; i < reservedPortCount; i += 100) {
+            patch(HostPortProfileReservationRequestMode.ALLOCATE, "/resources/containers/other-" + i,
+                    Math.min(100, reservedPortCount - i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        host.stop();
+    }
+
+    @Benchmark
+    public HostPortProfileState allocateAndRelease() {
+        patch(HostPortProfileReservationRequestMode.ALLOCATE, CONTAINER_LINK, allocatedPortCount);
+        return patch(HostPortProfileReservationRequestMode.RELEASE, CONTAINER_LINK, 0);
+    }
+
+    private HostPortProfileState patch(HostPortProfileReservationRequestMode mode,
+            String containerLink, long portCount) {
+        HostPortProfileReservationRequest request = new HostPortProfileReservationRequest();
+        request.mode = mode;
+        request.containerLink = containerLink;
+        request.additionalHostPortCount = portCount;
+        return host.patch(request, HostPortProfileState.class, profileLink);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+/**
+ * Synthetic composite templates of a given size.
+ */
+class TemplateFixtures {
+
+    private TemplateFixtures() {
+    }
+
+    /**
+     * Creates the YAML of a template with the given number of container components. With bindings,
+     * every component except the first one binds its restart policy and one of its environment
+     * variables to the previous component.
+     */
+    static String createTemplateYaml(int componentCount, boolean withBindings) {
+        StringBuilder yaml = new StringBuilder();
+        yaml.append("---\n")
+                .append("name: benchmark-").append(componentCount).append('\n')
+                .append("properties:\n")
+                .append("  _leaseDays: 3\n")
+                .append("components:\n");
+
+        for (int i = 0; i < componentCount; i++) {
+            String previous = componentName(i - 1);
+            boolean bound = withBindings && i > 0;
+
+            yaml.append("  ").append(componentName(i)).append(":\n")
+                    .append("    type: App.Container\n")
+                    .append("    data:\n")
+                    .append("      name: ").append(componentName(i)).append('\n')
+                    .append("      image: registry.local/app-").append(i).append(":1.0\n")
+                    .append("      restart_policy: ")
+                    .append(bound ? "${" + previous + "~restart_policy}" : "\"no\"")
+                    .append('\n')
+                    .append("      _cluster: 2\n")
+                    .append("      env:\n")
+                    .append("      - var: COMPONENT_INDEX\n")
+                    .append("        value: \"").append(i).append("\"\n")
+                    .append("      - var: UPSTREAM_HOST\n")
+                    .append("        value: ")
+                    .append(bound ? "${_resource~" + previous + "~address}:8080" : "localhost")
+                    .append('\n')
+                    .append("      ports:\n")
+                    .append("      - container_port: \"8080\"\n");
+            if (i > 0) {
+                yaml.append("      links:\n")
+                        .append("      - ").append(previous).append(":upstream\n");
+            }
+        }
+        return yaml.toString();
+    }
+
+    static String componentName(int index) {
+        return "component-" + index;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BenchmarkRegressionCheckTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testNoRegressionWithinThreshold() throws IOException {
+        String baseline = write(result("a.B.avgt", "avgt", 100, "5"));
+        String current = write(result("a.B.avgt", "avgt", 105, "5"));
+
+        assertTrue(BenchmarkRegressionCheck.check(baseline, current, 10).isEmpty());
+    }
+
+    @Test
+    public void testAverageTimeRegression() throws IOException {
+        String baseline = write(result("a.B.avgt", "avgt", 100, "5"));
+        String current = write(result("a.B.avgt", "avgt", 120, "5"));
+
+        List<String> regressions = BenchmarkRegressionCheck.check(baseline, current, 10);
+        assertEquals(1, regressions.size());
+        assertTrue(regressions.get(0), regressions.get(0).startsWith("a.B.avgt [avgt]"));
+    }
+
+    @Test
+    public void testThroughputRegression() throws IOException {
+        String baseline = write(result("a.B.thrpt", "thrpt", 100, "5"));
+
+        assertTrue(BenchmarkRegressionCheck.check(baseline,
+                write(result("a.B.thrpt", "thrpt", 150, "5")), 10).isEmpty());
+        assertEquals(1, BenchmarkRegressionCheck.check(baseline,
+                write(result("a.B.thrpt", "thrpt", 80, "5")), 10).size());
+    }
+
+    @Test
+    public void testResultsAreMatchedByParams() throws IOException {
+        String baseline = write(result("a.B.avgt", "avgt", 100, "5"),
+                result("a.B.avgt", "avgt", 1000, "50"));
+        String current = write(result("a.B.avgt", "avgt", 1000, "50"),
+                result("a.B.avgt", "avgt", 100, "500"));
+
+        assertTrue(BenchmarkRegressionCheck.check(baseline, current, 10).isEmpty());
+    }
+
+    private String write(String... results) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), ("[" + String.join(",", results) + "]")
+                .getBytes(StandardCharsets.UTF_8));
+        return file.getPath();
+    }
+
+    private static String result(String benchmark, String mode, double score, String count) {
+        return "{\"benchmark\":\"" + benchmark + "\",\"mode\":\"" + mode + "\","
+                + "\"params\":{\"count\":\"" + count + "\"},"
+                + "\"primaryMetric\":{\"score\":" + score + ",\"scoreUnit\":\"us/op\"}}";
+    }
+}
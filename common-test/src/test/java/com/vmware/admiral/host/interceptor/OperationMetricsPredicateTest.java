@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host.interceptor;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.services.common.ExampleService;
+import com.vmware.xenon.services.common.ExampleService.ExampleServiceState;
+
+public class OperationMetricsPredicateTest extends BaseTestCase {
+    private static final String COUNT_METRIC = OperationMetrics.OPERATION_METRIC
+            + "_duration_seconds_count";
+
+    private final OperationMetrics metrics = new OperationMetrics();
+
+    public static class TestStatelessService extends StatelessService {
+        @Override
+        public void handleGet(Operation get) {
+            get.complete();
+        }
+    }
+
+    @Override
+    protected void registerInterceptors(OperationInterceptorRegistry registry) {
+        registry.setOperationMetrics(metrics);
+    }
+
+    @Test
+    public void testFactoryItemsAreRecordedByFactoryPath() throws Throwable {
+        host.waitForServiceAvailable(ExampleService.FACTORY_LINK);
+
+        ExampleServiceState state = new ExampleServiceState();
+        state.name = "metrics-test";
+        state = doPost(state, ExampleService.FACTORY_LINK);
+        getDocument(ExampleServiceState.class, state.documentSelfLink);
+
+        String text = metrics.toPrometheusText();
+        assertTrue(text, text.contains(COUNT_METRIC + "{path=\"" + ExampleService.FACTORY_LINK
+                + "\",action=\"POST\"} 1\n"));
+        assertTrue(text, text.contains(COUNT_METRIC + "{path=\"" + ExampleService.FACTORY_LINK
+                + "\",action=\"GET\"} 1\n"));
+        assertFalse(text, text.contains(state.documentSelfLink));
+    }
+
+    @Test
+    public void testServicesWithGeneratedPathsAreRecordedByClass() throws Throwable {
+        List<String> links = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            String link = UriUtils.buildUriPath("test-services", UUID.randomUUID().toString());
+            host.startServiceAndWait(new TestStatelessService(), link, null);
+            links.add(link);
+        }
+
+        for (String link : links) {
+            host.testStart(1);
+            host.send(Operation.createGet(UriUtils.buildUri(host, link))
+                    .setCompletion(host.getCompletion()));
+            host.testWait();
+        }
+
+        String text = metrics.toPrometheusText();
+        assertTrue(text, text.contains(COUNT_METRIC + "{service=\""
+                + TestStatelessService.class.getSimpleName() + "\",action=\"GET\"} 2\n"));
+        for (String link : links) {
+            assertFalse(text, text.contains(link));
+        }
+    }
+}
@@ -32,6 +32,8 @@ public interface ManagementUriParts {
     String IMAGE_PROFILES = CONFIG + "/image-profiles";
     String INSTANCE_TYPE_PROFILES = CONFIG + "/instance-types";
     String MIGRATION = CONFIG + "/migration";
+    String OPERATION_METRICS = CONFIG + "/metrics";
+    String TASK_STAGE_TIMINGS = CONFIG + "/task-stage-timings";
 
     String CERT_DISTRIBUTION_ADD_REGISTRY = CONFIG + "/cert-dist-add-reg";
     String CERT_DISTRIBUTION_ADD_HOST = CONFIG + "/certs-dist-add-host";
@@ -51,6 +53,7 @@ public interface ManagementUriParts {
 
     String RESOURCES = "/resources";
     String RESOURCE_GROUP_PLACEMENTS = RESOURCES + "/group-placements";
+    String RESOURCE_GROUP_PLACEMENT_LEASES = RESOURCES + "/group-placement-leases";
     String RESOURCE_NAME_PREFIXES = RESOURCES + "/name-prefixes";
     String DEPLOYMENT_POLICIES = RESOURCES + "/deployment-policies";
     String HOST_PORT_PROFILES = RESOURCES + "/host-port-profiles";
@@ -77,6 +80,7 @@ public interface ManagementUriParts {
     String CONTAINERS = RESOURCES + "/containers";
     String CONTAINER_LOGS = RESOURCES + "/container-logs";
     String CONTAINER_SHELL = RESOURCES + "/container-shell";
+    String CONTAINER_STATS_HISTORY = RESOURCES + "/container-stats-history";
     String CONTAINER_DESC = RESOURCES + "/container" + DESCRIPTION_SUFFIX;
     String COMPOSITE_DESC = RESOURCES + "/composite" + DESCRIPTION_SUFFIX;
     String COMPOSITE_DESC_CLONE = RESOURCES + "/composite" + DESCRIPTION_SUFFIX + CLONE_SUFFIX;
@@ -92,11 +96,14 @@ public interface ManagementUriParts {
     String CONTAINER_HOSTS = RESOURCES + "/hosts";
     String CONTAINER_HOST_DATA_COLLECTION = RESOURCES + "/hosts-data-collections";
     String CONTAINER_CONTROL_LOOP = RESOURCES + "/container-control-loop";
+    String CONTAINER_MAINTENANCE_SCHEDULER = RESOURCES + "/container-maintenance-scheduler";
+    String CONTAINER_HOST_EVENTS_COLLECTION = RESOURCES + "/container-host-events-collection";
     String HOST_CONTAINER_LIST_DATA_COLLECTION = RESOURCES + "/host-container-list-data-collection";
     String HOST_NETWORK_LIST_DATA_COLLECTION = RESOURCES + "/host-network-list-data-collection";
     String HOST_VOLUME_LIST_DATA_COLLECTION = RESOURCES + "/host-volume-list-data-collection";
     String KUBERNETES_ENTITY_DATA_COLLECTION = RESOURCES
             + "/host-kubernetes-entity-data-collection";
+    String KUBERNETES_ENTITY_WATCH = RESOURCES + "/kubernetes-entity-watch";
 
     String EVENT_LOG = RESOURCES + "/event-logs";
     String NOTIFICATIONS = RESOURCES + "/notifications";
@@ -124,6 +131,7 @@ public interface ManagementUriParts {
     String REQUEST = "/request";
     String REQUESTS = "/requests";
     String REQUEST_STATUS = "/request-status";
+    String REQUEST_TRACKER_UPDATES = "/request-tracker-updates";
     String REQUEST_GRAPH = "/request-graph";
     String REQUEST_RESOURCE_OPERATIONS = REQUEST + "/resource-operations";
     String REQUEST_REMOVAL_OPERATIONS = REQUEST + "/resource-removal-operations";
@@ -170,6 +178,7 @@ public interface ManagementUriParts {
             + "/provision-composite-kubernetes-tasks";
     String REQUEST_PROVISION_PLACEMENT_TASKS = REQUEST + "/placement-tasks";
     String REQUEST_PROVISION_COMPUTE_PLACEMENT_TASKS = REQUEST + "/compute-placement-tasks";
+    String REQUEST_PLACEMENT_INDEX = REQUEST + "/placement-index";
     String REQUEST_PROVISION_NAME_PREFIXES_TASKS = REQUEST + "/resource-prefix-tasks";
     String REQUEST_PROVISION_SERVICE_LINKS_TASKS = REQUEST + "/service-link-processing-tasks";
     String REQUEST_PROVISION_EXPOSE_SERVICE_TASKS = REQUEST + "/expose-service-processing-tasks";
@@ -23,6 +23,7 @@ import java.util.logging.Logger;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.X509ExtendedKeyManager;
 import javax.net.ssl.X509KeyManager;
 
@@ -60,7 +61,12 @@ public class DelegatingX509KeyManager extends X509ExtendedKeyManager {
 
     @Override
     public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
-        throw new UnsupportedOperationException();
+        String alias = getAliasByRemoteCert(socket);
+        if (alias != null) {
+            return alias;
+        }
+
+        return getAliasByRemoteCA(keyType, issuers, socket);
     }
 
     @Override
@@ -115,13 +121,36 @@ public class DelegatingX509KeyManager extends X509ExtendedKeyManager {
         return delegates.remove(alias);
     }
 
+    /**
+     * Remove a previously added delegate, if the given key is still associated with it.
+     *
+     * @param alias    key whose mapping is to be removed from the map
+     * @param delegate value expected to be associated with the specified key
+     * @return true if the delegate was removed
+     */
+    public boolean removeDelegate(String alias, X509KeyManager delegate) {
+        return delegates.remove(alias, delegate);
+    }
+
     private String getAliasByRemoteCert(SSLEngine engine) {
         if (engine == null) {
             logger.info("Cannot choose client alias: SSLEngine is null");
             return null;
         }
 
-        SSLSession handshakeSession = engine.getHandshakeSession();
+        return getAliasByRemoteCert(engine.getHandshakeSession());
+    }
+
+    private String getAliasByRemoteCert(Socket socket) {
+        if (!(socket instanceof SSLSocket)) {
+            logger.info("Cannot choose client alias: not a SSLSocket");
+            return null;
+        }
+
+        return getAliasByRemoteCert(((SSLSocket) socket).getHandshakeSession());
+    }
+
+    private String getAliasByRemoteCert(SSLSession handshakeSession) {
         if (handshakeSession == null) {
             logger.info("Cannot choose client alias: HandshakeSession is null");
             return null;
@@ -174,4 +203,18 @@ public class DelegatingX509KeyManager extends X509ExtendedKeyManager {
         return null;
     }
 
+    private String getAliasByRemoteCA(String[] keyType, Principal[] issuers, Socket socket) {
+        // try each delegate and see if has a match for the issuers
+        for (X509KeyManager delegate : delegates.values()) {
+            String alias = delegate.chooseClientAlias(keyType, issuers, socket);
+
+            if (alias != null) {
+                return alias;
+            }
+        }
+
+        logger.warning("Cannot choose client alias by CA: no delegate found");
+        return null;
+    }
+
 }
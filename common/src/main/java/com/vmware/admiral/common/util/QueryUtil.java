@@ -11,10 +11,13 @@
 
 package com.vmware.admiral.common.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -28,6 +31,7 @@ import com.vmware.xenon.services.common.QueryTask;
 import com.vmware.xenon.services.common.QueryTask.Query;
 import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
 import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm;
 import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
 
 public class QueryUtil {
@@ -201,6 +205,31 @@ public class QueryUtil {
         return addOption(queryTask, QueryOption.BROADCAST);
     }
 
+    /**
+     * Limits the expanded documents in the results of the query to the given fields, so that the
+     * rest of the document content is neither transferred nor deserialized. The
+     * {@link ServiceDocument#documentSelfLink} is always selected.
+     */
+    public static QueryTask addSelectFieldsOption(QueryTask queryTask, String... fieldNames) {
+        if (queryTask.querySpec.options != null) {
+            // not compatible with selected fields
+            queryTask.querySpec.options.remove(QueryOption.EXPAND_CONTENT);
+        }
+        addOption(queryTask, QueryOption.EXPAND_SELECTED_FIELDS);
+
+        List<String> selectedFields = new ArrayList<>();
+        selectedFields.add(ServiceDocument.FIELD_NAME_SELF_LINK);
+        selectedFields.addAll(Arrays.asList(fieldNames));
+
+        queryTask.querySpec.selectTerms = new ArrayList<>();
+        for (String fieldName : new LinkedHashSet<>(selectedFields)) {
+            QueryTerm term = new QueryTerm();
+            term.propertyName = fieldName;
+            queryTask.querySpec.selectTerms.add(term);
+        }
+        return queryTask;
+    }
+
     private static QueryTask addOption(QueryTask queryTask, QueryOption option) {
         if (queryTask.querySpec.options == null || queryTask.querySpec.options.isEmpty()) {
             queryTask.querySpec.options = EnumSet.of(option);
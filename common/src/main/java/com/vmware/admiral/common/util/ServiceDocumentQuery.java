@@ -11,10 +11,13 @@
 
 package com.vmware.admiral.common.util;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 
@@ -44,6 +47,8 @@ public class ServiceDocumentQuery<T extends ServiceDocument> {
             TimeUnit.SECONDS.toMicros(120));
     public static final Integer DEFAULT_QUERY_RESULT_LIMIT = Integer.getInteger(
             "dcp.management.query.documents.default.resultLimit", 10000);
+    public static final Integer DEFAULT_QUERY_PAGE_SIZE = Integer.getInteger(
+            "dcp.management.query.documents.default.pageSize", 1000);
 
     private final Class<T> type;
     private final ServiceHost host;
@@ -199,13 +204,77 @@ public class ServiceDocumentQuery<T extends ServiceDocument> {
         }
         q.querySpec.options.add(QueryOption.SINGLE_USE);
 
+        postQueryTask(q, (qrt, e) -> {
+            if (e != null) {
+                completionHandler.accept(error(e));
+                return;
+            }
+            processQuery(qrt, (h) -> {
+                completionHandler.accept(h);
+                if (h != null && !h.hasResult()) {
+                    deleteQueryTask(qrt);
+                }
+            });
+        });
+    }
+
+    /**
+     * Streaming variant of {@link #query(QueryTask, Consumer)} for queries with potentially large
+     * results. The results are retrieved in pages of the given size and only the current page is
+     * held in memory: the next page is retrieved only when the page handler requests it with
+     * {@link ServiceDocumentQueryPage#requestNextPage()}, which could be called asynchronously,
+     * once the page is processed. A handler which doesn't need the rest of the results simply
+     * doesn't request them.
+     *
+     * Use {@link QueryUtil#addSelectFieldsOption(QueryTask, String...)} to retrieve and deserialize
+     * only the needed fields of the documents.
+     *
+     * @param q
+     *            Fully defined {@link QueryTask}, count queries are not supported.
+     * @param pageSize
+     *            The max number of results in a page.
+     * @param pageHandler
+     *            The handler to be called for each page of the results, or once with the
+     *            exception in case of errors.
+     */
+    public void stream(QueryTask q, int pageSize,
+            Consumer<ServiceDocumentQueryPage<T>> pageHandler) {
+        AssertUtil.assertNotNull(pageHandler, "pageHandler");
+        AssertUtil.assertTrue(pageSize > 0, "'pageSize' must be positive");
+        AssertUtil.assertTrue(!isCountQuery(q), "Count queries can't be streamed");
+        AssertUtil.assertTrue(!isExpandQuery(q) || type != null,
+                "'type' is required to stream expanded documents");
+
+        if (q.documentExpirationTimeMicros == 0) {
+            q.documentExpirationTimeMicros = getDefaultQueryExpiration();
+        }
+        q.querySpec.resultLimit = pageSize;
+        q.querySpec.options.add(QueryOption.SINGLE_USE);
+
+        postQueryTask(q, (qrt, e) -> {
+            if (e != null) {
+                pageHandler.accept(errorPage(e));
+                return;
+            }
+            waitForQueryTask(qrt, (rsp, ex) -> {
+                if (ex != null) {
+                    deleteQueryTask(qrt);
+                    pageHandler.accept(errorPage(ex));
+                    return;
+                }
+                streamPage(qrt, rsp.results.nextPageLink, pageHandler);
+            });
+        });
+    }
+
+    private void postQueryTask(QueryTask q, BiConsumer<QueryTask, Throwable> handler) {
         host.sendRequest(Operation
                 .createPost(UriUtils.buildUri(host, ServiceUriPaths.CORE_QUERY_TASKS))
                 .setBody(q)
                 .setReferer(host.getUri())
                 .setCompletion((o, e) -> {
                     if (e != null) {
-                        completionHandler.accept(error(e));
+                        handler.accept(null, e);
                         return;
                     }
                     QueryTask qrt = o.getBody(QueryTask.class);
@@ -217,29 +286,33 @@ public class ServiceDocumentQuery<T extends ServiceDocument> {
                             || !QueryTask.KIND.equals(qrt.documentKind)) {
                         host.log(Level.SEVERE, "***** Error: QueryTask is not a QueryTask : %s",
                                 Utils.toJson(qrt));
-                        completionHandler.accept(error(
-                                new IllegalStateException("Invalid QueryTask response")));
+                        handler.accept(null,
+                                new IllegalStateException("Invalid QueryTask response"));
                         return;
                     }
-                    processQuery(qrt, (h) -> {
-                        completionHandler.accept(h);
-                        if (h != null && !h.hasResult()) {
-                            deleteQueryTask(qrt);
-                        }
-                    });
+                    handler.accept(qrt, null);
                 }));
     }
 
     private void processQuery(QueryTask q,
             Consumer<ServiceDocumentQueryElementResult<T>> handler) {
+        waitForQueryTask(q, (rsp, e) -> {
+            if (e != null) {
+                handler.accept(error(e));
+                return;
+            }
+            processQueryResult(rsp, handler);
+        });
+    }
+
+    private void waitForQueryTask(QueryTask q, BiConsumer<QueryTask, Throwable> handler) {
         if (TaskState.isFailed(q.taskInfo)) {
-            handler.accept(error(new IllegalStateException(
-                    q.taskInfo.failure.message)));
+            handler.accept(null, new IllegalStateException(q.taskInfo.failure.message));
             return;
         }
 
         if (q.taskInfo.isDirect || TaskState.isFinished(q.taskInfo)) {
-            processQueryResult(q, handler);
+            handler.accept(q, null);
             return;
         }
 
@@ -248,7 +321,7 @@ public class ServiceDocumentQuery<T extends ServiceDocument> {
                 .setReferer(host.getUri())
                 .setCompletion((o, e) -> {
                     if (e != null) {
-                        handler.accept(error(e));
+                        handler.accept(null, e);
                         return;
                     }
 
@@ -258,12 +331,12 @@ public class ServiceDocumentQuery<T extends ServiceDocument> {
                         host.log(Level.FINE,
                                 "Resource query not complete yet, retrying...");
                         host.schedule(() -> {
-                            processQuery(rsp, handler);
+                            waitForQueryTask(rsp, handler);
                         }, QueryUtil.QUERY_RETRY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
                         return;
                     }
 
-                    processQueryResult(rsp, handler);
+                    handler.accept(rsp, null);
                 }));
     }
 
@@ -352,9 +425,72 @@ public class ServiceDocumentQuery<T extends ServiceDocument> {
         }
     }
 
+    private void streamPage(QueryTask qrt, String pageLink,
+            Consumer<ServiceDocumentQueryPage<T>> pageHandler) {
+        if (pageLink == null) {
+            // no results at all
+            deleteQueryTask(qrt);
+            pageHandler.accept(new ServiceDocumentQueryPage<>());
+            return;
+        }
+
+        host.sendRequest(Operation
+                .createGet(UriUtils.buildUri(this.host, pageLink))
+                .setReferer(host.getUri())
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        deleteQueryTask(qrt);
+                        pageHandler.accept(errorPage(e));
+                        return;
+                    }
+                    ServiceDocumentQueryPage<T> page;
+                    try {
+                        page = createPage(o.getBody(QueryTask.class));
+                    } catch (Throwable ex) {
+                        deleteQueryTask(qrt);
+                        pageHandler.accept(errorPage(ex));
+                        return;
+                    }
+
+                    String nextPageLink = page.nextPageLink;
+                    if (nextPageLink == null) {
+                        deleteQueryTask(qrt);
+                    } else {
+                        page.nextPageRequest = () -> streamPage(qrt, nextPageLink, pageHandler);
+                    }
+                    pageHandler.accept(page);
+                }));
+    }
+
+    private ServiceDocumentQueryPage<T> createPage(QueryTask rsp) {
+        ServiceDocumentQueryPage<T> page = new ServiceDocumentQueryPage<>();
+        page.nextPageLink = rsp.results.nextPageLink;
+        if (rsp.results.documentLinks != null) {
+            page.documentLinks = rsp.results.documentLinks;
+        }
+        if (isExpandQuery(rsp) && rsp.results.documents != null) {
+            page.documents = new ArrayList<>(page.documentLinks.size());
+            for (String documentLink : page.documentLinks) {
+                Object json = rsp.results.documents.get(documentLink);
+                if (json != null) {
+                    page.documents.add(Utils.fromJson(json, type));
+                }
+            }
+        }
+        return page;
+    }
+
+    private static <S extends ServiceDocument> ServiceDocumentQueryPage<S> errorPage(
+            Throwable exception) {
+        ServiceDocumentQueryPage<S> page = new ServiceDocumentQueryPage<>();
+        page.exception = exception;
+        return page;
+    }
+
     private boolean isExpandQuery(QueryTask q) {
         return q.querySpec.options != null
-                && q.querySpec.options.contains(QueryOption.EXPAND_CONTENT);
+                && (q.querySpec.options.contains(QueryOption.EXPAND_CONTENT)
+                        || q.querySpec.options.contains(QueryOption.EXPAND_SELECTED_FIELDS));
     }
 
     private boolean isCountQuery(QueryTask q) {
@@ -484,4 +620,49 @@ public class ServiceDocumentQuery<T extends ServiceDocument> {
         }
     }
 
+    /**
+     * A page of the results of a {@link ServiceDocumentQuery#stream(QueryTask, int, Consumer)}.
+     */
+    public static class ServiceDocumentQueryPage<T extends ServiceDocument> {
+        private Throwable exception;
+        private List<T> documents = Collections.emptyList();
+        private List<String> documentLinks = Collections.emptyList();
+        private String nextPageLink;
+        private Runnable nextPageRequest;
+
+        public boolean hasException() {
+            return exception != null;
+        }
+
+        public Throwable getException() {
+            return exception;
+        }
+
+        /**
+         * The documents in the page in case of expanded query, empty otherwise.
+         */
+        public List<T> getDocuments() {
+            return documents;
+        }
+
+        public List<String> getDocumentLinks() {
+            return documentLinks;
+        }
+
+        public boolean hasNextPage() {
+            return nextPageRequest != null;
+        }
+
+        /**
+         * Retrieves the next page of the results and passes it to the page handler. Should be
+         * called at most once and only if there is a next page.
+         */
+        public void requestNextPage() {
+            AssertUtil.assertState(nextPageRequest != null, "No next page to request");
+            Runnable request = nextPageRequest;
+            nextPageRequest = null;
+            request.run();
+        }
+    }
+
 }
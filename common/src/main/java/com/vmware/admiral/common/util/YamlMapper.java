@@ -46,7 +46,7 @@ public class YamlMapper {
     private static final FilterProvider filters = new SimpleFilterProvider().addFilter(
             SERVICE_DOCUMENT_FILTER, createBuiltinFieldFilter());
     private static final ObjectWriter objectWriter = objectMapper.writer(filters);
-    private static final String YAML_REGEX_VERIFIER = "(?<!.)---(?!.)";
+    private static final Pattern YAML_DOCUMENT_SEPARATOR = Pattern.compile("(?<!.)---(?!.)");
 
     public static ObjectMapper objectMapper() {
         return objectMapper;
@@ -93,7 +93,7 @@ public class YamlMapper {
             result.add(yaml);
             return result;
         }
-        String[] yamls = yaml.split(YAML_REGEX_VERIFIER);
+        String[] yamls = YAML_DOCUMENT_SEPARATOR.split(yaml);
         result = Arrays.stream(yamls)
                 .filter(y -> !y.trim().equals(""))
                 .collect(Collectors.toList());
@@ -110,14 +110,9 @@ public class YamlMapper {
      * Check if the string contains multiple yaml definitions concatenated.
      */
     public static boolean isMultiYaml(String yaml) {
-        Pattern pattern = Pattern.compile(YAML_REGEX_VERIFIER);
-        Matcher matcher = pattern.matcher(yaml);
-        int counter = 0;
-        while (matcher.find()) {
-            counter++;
-        }
-
-        return counter > 1;
+        Matcher matcher = YAML_DOCUMENT_SEPARATOR.matcher(yaml);
+        // stop at the second separator, the rest of the content doesn't matter
+        return matcher.find() && matcher.find();
     }
 
     public static boolean isValidYaml(String yaml) {
@@ -27,11 +27,14 @@ import com.vmware.admiral.service.common.ExtensibilitySubscriptionFactoryService
 import com.vmware.admiral.service.common.LogService;
 import com.vmware.admiral.service.common.NodeHealthCheckService;
 import com.vmware.admiral.service.common.NodeMigrationService;
+import com.vmware.admiral.service.common.OperationMetricsService;
 import com.vmware.admiral.service.common.RegistryService;
+import com.vmware.admiral.service.common.RequestTrackerUpdateService;
 import com.vmware.admiral.service.common.ResourceNamePrefixService;
 import com.vmware.admiral.service.common.ReverseProxyService;
 import com.vmware.admiral.service.common.SslTrustCertificateFactoryService;
 import com.vmware.admiral.service.common.SslTrustImportService;
+import com.vmware.admiral.service.common.TaskStageTimingService;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceHost;
@@ -49,7 +52,10 @@ public class HostInitCommonServiceConfig extends HostInitServiceHelper {
                 SslTrustCertificateFactoryService.class,
                 CommonInitialBootService.class,
                 ReverseProxyService.class,
-                ExtensibilitySubscriptionFactoryService.class);
+                ExtensibilitySubscriptionFactoryService.class,
+                RequestTrackerUpdateService.class,
+                OperationMetricsService.class,
+                TaskStageTimingService.class);
 
         startServiceFactories(host, ResourceNamePrefixService.class, RegistryService.class,
                 LogService.class, EventLogService.class,
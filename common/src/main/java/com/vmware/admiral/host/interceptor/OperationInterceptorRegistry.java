@@ -19,6 +19,7 @@ import java.util.function.BiFunction;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 
+import com.vmware.admiral.host.interceptor.OperationMetrics.Metric;
 import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.FactoryService;
 import com.vmware.xenon.common.Operation;
@@ -32,6 +33,7 @@ import com.vmware.xenon.common.Utils;
  */
 public class OperationInterceptorRegistry {
     private static class InterceptorData {
+        public String name;
         public Action action;
         public BiFunction<Service, Operation, DeferredResult<Void>> interceptor;
     }
@@ -41,18 +43,31 @@ public class OperationInterceptorRegistry {
     private final Map<Class<? extends Service>, Collection<InterceptorData>> factoryServiceInterceptors =
             new HashMap<>();
 
+    private OperationMetrics metrics;
+
     public OperationInterceptorRegistry() {
     }
 
+    /**
+     * Sets the metrics to record the operations of the subscribed services and the interceptors
+     * in. The metrics are recorded for the services subscribed afterwards.
+     */
+    public void setOperationMetrics(OperationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Register a service interceptor for the given service type and http action.
      */
     public void addServiceInterceptor(Class<? extends Service> serviceType, Action action,
             BiFunction<Service, Operation, DeferredResult<Void>> interceptor) {
+        Collection<InterceptorData> interceptors = this.serviceInterceptors
+                .computeIfAbsent(serviceType, s -> new ArrayList<>());
         InterceptorData data = new InterceptorData();
+        data.name = getInterceptorName(serviceType, action, interceptors.size());
         data.action = action;
         data.interceptor = interceptor;
-        this.serviceInterceptors.computeIfAbsent(serviceType, s -> new ArrayList<>()).add(data);
+        interceptors.add(data);
     }
 
     /**
@@ -60,29 +75,63 @@ public class OperationInterceptorRegistry {
      */
     public void addFactoryServiceInterceptor(Class<? extends Service> serviceInstanceType,
             Action action, BiFunction<Service, Operation, DeferredResult<Void>> interceptor) {
+        Collection<InterceptorData> interceptors = this.factoryServiceInterceptors
+                .computeIfAbsent(serviceInstanceType, s -> new ArrayList<>());
         InterceptorData data = new InterceptorData();
+        data.name = getInterceptorName(serviceInstanceType, action, interceptors.size())
+                + "/factory";
         data.action = action;
         data.interceptor = interceptor;
-        this.factoryServiceInterceptors.computeIfAbsent(
-                serviceInstanceType, s -> new ArrayList<>()).add(data);
+        interceptors.add(data);
     }
 
     /**
      * Checks whether there are registered interceptors for the given service, and if there are,
-     * adds them to the operation processing chain of the service.
+     * adds them to the operation processing chain of the service. When the operations are
+     * measured, the chain starts with the measuring of the operation.
      */
     public void subscribeToService(Service service) {
+        if (metrics != null) {
+            getServiceOperationProcessingChain(service)
+                    .add(new OperationMetricsPredicate(service, metrics));
+        }
         Collection<InterceptorData> interceptors = checkForInterceptor(service);
         if (interceptors != null) {
             OperationProcessingChain chain = getServiceOperationProcessingChain(service);
             for (InterceptorData data : interceptors) {
                 Predicate<Operation> filter = new DeferredOperationPredicate(service, data.action,
-                        data.interceptor);
+                        metrics != null ? measure(data) : data.interceptor);
                 chain.add(filter);
             }
         }
     }
 
+    private BiFunction<Service, Operation, DeferredResult<Void>> measure(InterceptorData data) {
+        Metric metric = metrics.getInterceptorMetric(data.name);
+        return (service, op) -> {
+            long startNanos = metric.started();
+            DeferredResult<Void> dr;
+            try {
+                dr = data.interceptor.apply(service, op);
+            } catch (RuntimeException e) {
+                metric.completed(startNanos, true);
+                throw e;
+            }
+            if (dr == null) {
+                metric.completed(startNanos, false);
+                return null;
+            }
+            dr.whenComplete((ignore, e) -> metric.completed(startNanos, e != null));
+            return dr;
+        };
+    }
+
+    private static String getInterceptorName(Class<? extends Service> serviceType, Action action,
+            int index) {
+        return String.format("%s/%s/%d", serviceType.getSimpleName(),
+                action != null ? action : "ALL", index);
+    }
+
     private Collection<InterceptorData> checkForInterceptor(Service service) {
         Collection<InterceptorData> data = this.serviceInterceptors.get(service.getClass());
         if (data != null) {
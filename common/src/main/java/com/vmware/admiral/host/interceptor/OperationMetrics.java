@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host.interceptor;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.vmware.xenon.common.Service.Action;
+import com.vmware.xenon.common.ServiceHost;
+
+/**
+ * The latency, throughput, error and in flight metrics of the operations handled by the services
+ * of a host, by factory path or service class and action, and of the operation interceptors. The
+ * metrics are kept in striped counters, so recording an operation does not contend with the other
+ * operations, and are exported in the Prometheus text format.
+ */
+public class OperationMetrics {
+
+    /** Whether the operations are measured, which adds a processing chain to each service. */
+    public static final boolean ENABLED = Boolean.parseBoolean(
+            System.getProperty("com.vmware.admiral.host.metrics.enabled", "true"));
+
+    /** The upper bounds of the latency histogram buckets, in microseconds. */
+    static final long[] BUCKET_BOUNDS_MICROS = { 500, 1_000, 2_500, 5_000, 10_000, 25_000,
+            50_000, 100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000,
+            30_000_000 };
+
+    static final String OPERATION_METRIC = "admiral_operation";
+    static final String INTERCEPTOR_METRIC = "admiral_interceptor";
+
+    private static final Map<String, OperationMetrics> METRICS = new ConcurrentHashMap<>();
+
+    /** The metrics of each service path or class, indexed by the action ordinal. */
+    private final Map<String, Metric[]> operations = new ConcurrentHashMap<>();
+    private final Map<String, Metric> interceptors = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the operation metrics of the given host.
+     */
+    public static OperationMetrics forHost(ServiceHost host) {
+        return METRICS.computeIfAbsent(host.getId(), id -> new OperationMetrics());
+    }
+
+    /**
+     * Returns the metrics of the operations with all actions on the services with the given
+     * path, i.e. the factory path for the services created by a factory.
+     */
+    public Metric[] getOperationMetrics(String path) {
+        return getActionMetrics(String.format("path=\"%s\"", escape(path)));
+    }
+
+    /**
+     * Returns the metrics of the operations with all actions on the services of the given class,
+     * for the services whose paths are not known in advance, e.g. the services started for each
+     * subscription, so that the number of the metrics is bounded.
+     */
+    public Metric[] getServiceOperationMetrics(Class<?> serviceClass) {
+        String name = serviceClass.getSimpleName().isEmpty() ? serviceClass.getName()
+                : serviceClass.getSimpleName();
+        return getActionMetrics(String.format("service=\"%s\"", escape(name)));
+    }
+
+    private Metric[] getActionMetrics(String labels) {
+        return operations.computeIfAbsent(labels, l -> {
+            Action[] actions = Action.values();
+            Metric[] metrics = new Metric[actions.length];
+            for (Action action : actions) {
+                metrics[action.ordinal()] = new Metric(String.format("%s,action=\"%s\"", l,
+                        action));
+            }
+            return metrics;
+        });
+    }
+
+    /**
+     * Returns the metrics of the operation interceptor with the given name.
+     */
+    public Metric getInterceptorMetric(String name) {
+        return interceptors.computeIfAbsent(name,
+                n -> new Metric(String.format("interceptor=\"%s\"", escape(n))));
+    }
+
+    /**
+     * Returns the metrics in the Prometheus text format. The metrics of the service actions and
+     * the interceptors without any operations are omitted.
+     */
+    public String toPrometheusText() {
+        Map<String, Metric> sorted = new TreeMap<>();
+        operations.values().forEach(metrics -> {
+            for (Metric metric : metrics) {
+                if (metric.isUsed()) {
+                    sorted.put(metric.labels, metric);
+                }
+            }
+        });
+
+        StringBuilder sb = new StringBuilder();
+        appendMetrics(sb, OPERATION_METRIC, "operations handled by the services", sorted);
+        appendMetrics(sb, INTERCEPTOR_METRIC, "operation interceptors",
+                new TreeMap<>(interceptors));
+        return sb.toString();
+    }
+
+    private static void appendMetrics(StringBuilder sb, String name, String description,
+            Map<String, Metric> metrics) {
+        sb.append("# HELP ").append(name).append("_duration_seconds Duration of the ")
+                .append(description).append(".\n");
+        sb.append("# TYPE ").append(name).append("_duration_seconds histogram\n");
+        for (Metric metric : metrics.values()) {
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+                cumulative += metric.buckets[i].sum();
+                appendSample(sb, name + "_duration_seconds_bucket", metric.labels + ",le=\""
+                        + toSeconds(BUCKET_BOUNDS_MICROS[i]) + '"', cumulative);
+            }
+            cumulative += metric.buckets[BUCKET_BOUNDS_MICROS.length].sum();
+            appendSample(sb, name + "_duration_seconds_bucket", metric.labels + ",le=\"+Inf\"",
+                    cumulative);
+            sb.append(name).append("_duration_seconds_sum{").append(metric.labels).append("} ")
+                    .append(toSeconds(metric.sumMicros.sum())).append('\n');
+            appendSample(sb, name + "_duration_seconds_count", metric.labels, cumulative);
+        }
+
+        sb.append("# HELP ").append(name).append("_errors_total Failed ").append(description)
+                .append(".\n");
+        sb.append("# TYPE ").append(name).append("_errors_total counter\n");
+        for (Metric metric : metrics.values()) {
+            appendSample(sb, name + "_errors_total", metric.labels, metric.errors.sum());
+        }
+
+        sb.append("# HELP ").append(name).append("_in_flight Pending ").append(description)
+                .append(".\n");
+        sb.append("# TYPE ").append(name).append("_in_flight gauge\n");
+        for (Metric metric : metrics.values()) {
+            appendSample(sb, name + "_in_flight", metric.labels, metric.inFlight.sum());
+        }
+    }
+
+    private static void appendSample(StringBuilder sb, String name, String labels, long value) {
+        sb.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static String toSeconds(long micros) {
+        return BigDecimal.valueOf(micros, 6).stripTrailingZeros().toPlainString();
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * The metrics of the operations with a set of labels.
+     */
+    public static class Metric {
+        final String labels;
+        final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MICROS.length + 1];
+        final LongAdder sumMicros = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder inFlight = new LongAdder();
+
+        Metric(String labels) {
+            this.labels = labels;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Records the start of an operation and returns its start time, to be passed to
+         * {@link #completed(long, boolean)}.
+         */
+        public long started() {
+            inFlight.increment();
+            return System.nanoTime();
+        }
+
+        /**
+         * Records the completion of an operation started at the given time.
+         */
+        public void completed(long startNanos, boolean failed) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            sumMicros.add(micros);
+            if (failed) {
+                errors.increment();
+            }
+            inFlight.decrement();
+        }
+
+        boolean isUsed() {
+            for (LongAdder bucket : buckets) {
+                if (bucket.sum() != 0) {
+                    return true;
+                }
+            }
+            return inFlight.sum() != 0;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host.interceptor;
+
+import java.util.function.Predicate;
+
+import com.vmware.admiral.host.interceptor.OperationMetrics.Metric;
+import com.vmware.xenon.common.FactoryService;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.OperationProcessingChain;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.Service.ServiceOption;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * A predicate of an {@link OperationProcessingChain} which records the operations of the service
+ * in the {@link OperationMetrics} of its factory path. The operations of the factories are
+ * recorded by their path as well, and the ones of the other services by their class, since their
+ * paths may be generated, e.g. for the notification targets of the subscriptions. It never stops
+ * the processing of the operation.
+ */
+public class OperationMetricsPredicate implements Predicate<Operation> {
+    private final Service service;
+    private final OperationMetrics metrics;
+    private volatile Metric[] actionMetrics;
+
+    public OperationMetricsPredicate(Service service, OperationMetrics metrics) {
+        this.service = service;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean test(Operation operation) {
+        Metric metric = getActionMetrics()[operation.getAction().ordinal()];
+        long startNanos = metric.started();
+        operation.nestCompletion((o, e) -> {
+            metric.completed(startNanos, e != null);
+            if (e != null) {
+                operation.fail(e);
+                return;
+            }
+            o.complete();
+        });
+        return true;
+    }
+
+    private Metric[] getActionMetrics() {
+        Metric[] result = actionMetrics;
+        if (result == null) {
+            // the self link and the options are set once the service is attached
+            if (service.hasOption(ServiceOption.FACTORY_ITEM)) {
+                result = metrics.getOperationMetrics(
+                        UriUtils.getParentPath(service.getSelfLink()));
+            } else if (service instanceof FactoryService) {
+                result = metrics.getOperationMetrics(service.getSelfLink());
+            } else {
+                result = metrics.getServiceOperationMetrics(service.getClass());
+            }
+            actionMetrics = result;
+        }
+        return result;
+    }
+}
@@ -29,6 +29,7 @@ import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceUtils;
 import com.vmware.admiral.host.IExtensibilityRegistryHost;
 import com.vmware.admiral.service.common.CounterSubTaskService.CounterSubTaskState;
+import com.vmware.admiral.service.common.RequestTrackerUpdateService.RequestTrackerUpdate;
 import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
@@ -75,6 +76,15 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
 
     private volatile String locale;
 
+    /**
+     * The sub-stage the task is timed in, whether it waits for the extensibility subscribers of
+     * the sub-stage, and when it entered it.
+     */
+    private final Object stageTimingLock = new Object();
+    private E timedSubStage;
+    private boolean timedExtensibilityWait;
+    private long timedSubStageEnteredMicros;
+
     public static class TaskStatusState extends MultiTenantDocument {
         public static final String FIELD_NAME_EVENT_LOG_LINK = "eventLogLink";
         public static final String FIELD_NAME_TASK_INFO = "taskInfo";
@@ -320,6 +330,8 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
                             callback);
                 };
 
+                // the sub-stage is handled once the subscribers reply
+                recordStageTiming(state, true);
                 manager.handleStagePatch(notificationPayload, this.replyPayload(), state,
                         this::handleStagePatch, notificationCallback);
 
@@ -356,9 +368,7 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
 
     protected void updateRequestTracker(T state, int retryCount) {
         if (state != null && state.requestTrackerLink != null) {
-            sendRequest(Operation
-                    .createPatch(this, state.requestTrackerLink)
-                    .setBody(fromTask(state))
+            sendRequest(createRequestTrackerUpdate(state)
                     .setCompletion((o, ex) -> {
                         if (ex != null) {
                             // log but don't fail the task
@@ -387,7 +397,31 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
         }
     }
 
+    /**
+     * Creates the request tracker update of the given state. Unless the coalescing of the updates
+     * is disabled, the update is sent through the {@link RequestTrackerUpdateService} of the node,
+     * which sends the FINISHED and FAILED transitions right away and coalesces the rest.
+     */
+    private Operation createRequestTrackerUpdate(T state) {
+        TaskStatusState taskStatus = fromTask(state);
+        if (!RequestTrackerUpdateService.isEnabled(getHost())) {
+            return Operation.createPatch(this, state.requestTrackerLink)
+                    .setBody(taskStatus);
+        }
+
+        RequestTrackerUpdate update = new RequestTrackerUpdate();
+        update.requestTrackerLink = state.requestTrackerLink;
+        update.taskStatus = taskStatus;
+        update.immediate = TaskState.isFinished(state.taskInfo)
+                || TaskState.isFailed(state.taskInfo)
+                || TaskState.isCancelled(state.taskInfo);
+        return Operation.createPatch(this, RequestTrackerUpdateService.SELF_LINK)
+                .setBody(update);
+    }
+
     protected void handleStagePatch(T state) {
+        recordStageTiming(state, false);
+
         if (getInstance().shouldFail(state.taskSubStage)) {
             failTask("Fail task in stage [" + state.taskSubStage
                     + "], based on DeploymentProfileConfig", null);
@@ -423,6 +457,59 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
         }
     }
 
+    /**
+     * Records the time spent in the previous sub-stage, when the task enters a new one, in the
+     * {@link TaskStageTimings} of the node, and the new sub-stage as the one the task is in. The
+     * wait for the extensibility subscribers of a sub-stage, before the task handles it, is timed
+     * as a sub-stage of its own.
+     */
+    private void recordStageTiming(T state, boolean extensibilityWait) {
+        long now = Utils.getSystemNowMicrosUtc();
+        TaskStageTimings.StageSpan span = new TaskStageTimings.StageSpan();
+        synchronized (stageTimingLock) {
+            if (state.taskSubStage == timedSubStage
+                    && (extensibilityWait || !timedExtensibilityWait)) {
+                return;
+            }
+            if (timedSubStage != null) {
+                span.subStage = getTimedSubStageName(timedSubStage, timedExtensibilityWait);
+                span.startTimeMicros = timedSubStageEnteredMicros;
+            }
+            timedSubStage = state.taskSubStage;
+            timedExtensibilityWait = extensibilityWait;
+            timedSubStageEnteredMicros = now;
+        }
+
+        TaskStageTimings timings = TaskStageTimings.forHost(getHost());
+        if (span.subStage != null) {
+            initStageSpan(span, state);
+            span.endTimeMicros = now;
+            timings.record(state.requestTrackerLink, span);
+        }
+
+        if (state.taskSubStage != null && !TaskState.isFinished(state.taskInfo)
+                && !TaskState.isFailed(state.taskInfo)
+                && !TaskState.isCancelled(state.taskInfo)) {
+            TaskStageTimings.StageSpan current = new TaskStageTimings.StageSpan();
+            initStageSpan(current, state);
+            current.subStage = getTimedSubStageName(state.taskSubStage, extensibilityWait);
+            current.startTimeMicros = now;
+            timings.start(state.requestTrackerLink, current);
+        }
+    }
+
+    private void initStageSpan(TaskStageTimings.StageSpan span, T state) {
+        span.taskType = getClass().getSimpleName();
+        span.taskLink = getSelfLink();
+        span.parentTaskLink = state.serviceTaskCallback != null
+                ? state.serviceTaskCallback.serviceSelfLink : null;
+    }
+
+    private static String getTimedSubStageName(Enum<?> subStage, boolean extensibilityWait) {
+        return extensibilityWait ? subStage.name() + TaskStageTimings.EXTENSIBILITY_WAIT_SUFFIX
+                : subStage.name();
+    }
+
     protected abstract void handleStartedStagePatch(T state);
 
     protected void handleFailedStagePatch(T state) {
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.CompletionHandler;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Dispatches the extensibility notifications of a {@link Service} to the subscribers. Each
+ * subscriber, identified by the scheme and authority of its callback reference, gets a bounded
+ * queue of notifications, a limit of concurrent notifications which is also the size of its
+ * connection pool, and a circuit breaker. After a number of consecutive failures the circuit opens
+ * and the notifications to the subscriber are held in its queue, without a call. Once the circuit
+ * has been open for a while a single notification probes the subscriber, the others are sent when
+ * it succeeds and the circuit opens again when it fails.
+ *
+ * Queued notifications are failed through their completion handlers, as if the call failed, when
+ * the queue is full, when they expire or when the dispatcher stops, so the senders retry them as
+ * usual. Waiting for the circuit to close does not cost the senders a retry.
+ */
+class ExtensibilityNotificationDispatcher {
+
+    static final int MAX_CONCURRENT_NOTIFICATIONS = Integer.getInteger(
+            "com.vmware.admiral.service.extensibility.notification.concurrency", 8);
+    static final int MAX_QUEUED_NOTIFICATIONS = Integer.getInteger(
+            "com.vmware.admiral.service.extensibility.notification.queue.size", 1000);
+    static final int CIRCUIT_BREAKER_FAILURE_THRESHOLD = Integer.getInteger(
+            "com.vmware.admiral.service.extensibility.notification.circuit.failures", 5);
+    static final long CIRCUIT_BREAKER_OPEN_MICROS = TimeUnit.SECONDS.toMicros(Long.getLong(
+            "com.vmware.admiral.service.extensibility.notification.circuit.open.seconds", 30));
+
+    private static final String CONNECTION_TAG_PREFIX = "extensibility-";
+
+    private final Service service;
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    ExtensibilityNotificationDispatcher(Service service) {
+        this.service = service;
+    }
+
+    /**
+     * Queues the given notification operation to the subscriber with the given callback reference.
+     */
+    void send(URI callbackReference, Operation notification) {
+        String key = callbackReference.getScheme() + "://" + callbackReference.getAuthority();
+        subscribers.computeIfAbsent(key, Subscriber::new).enqueue(notification);
+    }
+
+    /**
+     * Drops the state of the subscribers, failing their queued notifications.
+     */
+    void close() {
+        List<Subscriber> closed = new ArrayList<>(subscribers.values());
+        subscribers.clear();
+        closed.forEach(s -> s.failQueued("Extensibility notification dispatcher stopped"));
+    }
+
+    private class Subscriber {
+        private final String key;
+        private final String connectionTag;
+        private final Queue<Operation> queue = new ArrayDeque<>();
+        private int inFlight;
+        private int consecutiveFailures;
+        private long circuitOpenUntilMicros;
+        // the circuit opened and no notification succeeded since, only a probe may be sent
+        private boolean halfOpen;
+        private boolean probing;
+
+        Subscriber(String key) {
+            this.key = key;
+            this.connectionTag = CONNECTION_TAG_PREFIX + key;
+            service.getHost().getClient().setConnectionLimitPerTag(connectionTag,
+                    MAX_CONCURRENT_NOTIFICATIONS);
+        }
+
+        void enqueue(Operation notification) {
+            if (notification.getExpirationMicrosUtc() == 0) {
+                // the time in the queue counts against the timeout of the notification
+                notification.setExpiration(Utils.fromNowMicrosUtc(
+                        service.getHost().getOperationTimeoutMicros()));
+            }
+
+            boolean queued;
+            synchronized (this) {
+                queued = queue.size() < MAX_QUEUED_NOTIFICATIONS;
+                if (queued) {
+                    queue.add(notification);
+                }
+            }
+
+            if (!queued) {
+                notification.fail(new IllegalStateException(
+                        String.format("Notification queue of [%s] is full", key)));
+                return;
+            }
+            dispatch();
+        }
+
+        private void dispatch() {
+            List<Operation> notifications = new ArrayList<>();
+            List<Operation> expired = new ArrayList<>();
+            boolean probe = false;
+            synchronized (this) {
+                long now = Utils.getSystemNowMicrosUtc();
+                for (Iterator<Operation> it = queue.iterator(); it.hasNext();) {
+                    Operation notification = it.next();
+                    if (notification.getExpirationMicrosUtc() < now) {
+                        it.remove();
+                        expired.add(notification);
+                    }
+                }
+
+                if (!halfOpen) {
+                    while (inFlight < MAX_CONCURRENT_NOTIFICATIONS && !queue.isEmpty()) {
+                        notifications.add(queue.poll());
+                        inFlight++;
+                    }
+                } else if (circuitOpenUntilMicros <= now && !probing && !queue.isEmpty()) {
+                    notifications.add(queue.poll());
+                    inFlight++;
+                    probing = true;
+                    probe = true;
+                }
+            }
+
+            expired.forEach(n -> n.fail(new TimeoutException(String.format(
+                    "Notification to [%s] expired in the queue", key))));
+            for (Operation notification : notifications) {
+                sendNotification(notification, probe);
+            }
+        }
+
+        private void sendNotification(Operation notification, boolean probe) {
+            CompletionHandler completion = notification.getCompletion();
+            notification.setConnectionTag(connectionTag)
+                    .setCompletion((o, e) -> {
+                        boolean circuitOpened = false;
+                        synchronized (this) {
+                            inFlight--;
+                            if (probe) {
+                                probing = false;
+                            }
+                            if (e == null) {
+                                consecutiveFailures = 0;
+                                halfOpen = false;
+                            } else if (!halfOpen) {
+                                consecutiveFailures++;
+                            }
+                            if (e != null && (probe
+                                    || consecutiveFailures >= CIRCUIT_BREAKER_FAILURE_THRESHOLD)) {
+                                consecutiveFailures = 0;
+                                circuitOpenUntilMicros = Utils.fromNowMicrosUtc(
+                                        CIRCUIT_BREAKER_OPEN_MICROS);
+                                halfOpen = true;
+                                circuitOpened = true;
+                            }
+                        }
+                        if (completion != null) {
+                            completion.handle(o, e);
+                        }
+                        if (circuitOpened) {
+                            service.getHost().log(Level.WARNING,
+                                    "Notifications to [%s] suspended after %d failures", key,
+                                    CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+                            // probe the subscriber once the circuit has been open for a while
+                            service.getHost().schedule(this::dispatch,
+                                    CIRCUIT_BREAKER_OPEN_MICROS, TimeUnit.MICROSECONDS);
+                        }
+                        dispatch();
+                    });
+            service.sendRequest(notification);
+        }
+
+        private void failQueued(String reason) {
+            List<Operation> notifications;
+            synchronized (this) {
+                notifications = new ArrayList<>(queue);
+                queue.clear();
+            }
+            notifications.forEach(n -> n.fail(new IllegalStateException(reason)));
+        }
+    }
+}
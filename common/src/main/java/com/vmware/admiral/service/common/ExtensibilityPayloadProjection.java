@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Projection of a task state to the fields of a notification payload class: a new task state with
+ * only the fields which the payload class declares too. This is what converting the task state to
+ * the payload class and back through JSON results in, without the serialization. The fields to
+ * copy are computed once per task state and payload class. The values which are not immutable are
+ * cloned, since the task may still change them while the notification is queued.
+ *
+ * Payload classes declaring a field with a type which the task state field can not be assigned
+ * to are still converted through JSON.
+ */
+final class ExtensibilityPayloadProjection {
+
+    private static final Map<Class<?>, Map<Class<?>, ExtensibilityPayloadProjection>> CACHE =
+            new ConcurrentHashMap<>();
+
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class,
+            Integer.class, Long.class, Float.class, Double.class, BigInteger.class,
+            BigDecimal.class, URI.class));
+
+    private final Class<?> stateClass;
+    private final Class<? extends ServiceTaskCallbackResponse> payloadClass;
+    /** The task state fields to copy, or <code>null</code> to convert through JSON. */
+    private final List<Field> fields;
+
+    private ExtensibilityPayloadProjection(Class<?> stateClass,
+            Class<? extends ServiceTaskCallbackResponse> payloadClass) {
+        this.stateClass = stateClass;
+        this.payloadClass = payloadClass;
+        this.fields = getProjectedFields(stateClass, payloadClass);
+    }
+
+    /**
+     * Returns a copy of the given task state with only the fields of the given payload class set.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T project(ServiceTaskCallbackResponse notificationPayload, T state) {
+        ExtensibilityPayloadProjection projection = CACHE
+                .computeIfAbsent(state.getClass(), c -> new ConcurrentHashMap<>())
+                .computeIfAbsent(notificationPayload.getClass(),
+                        c -> new ExtensibilityPayloadProjection(state.getClass(),
+                                notificationPayload.getClass()));
+        return (T) projection.project(state);
+    }
+
+    private Object project(Object state) {
+        if (fields == null) {
+            ServiceTaskCallbackResponse payload = Utils.fromJson(Utils.toJson(state),
+                    payloadClass);
+            return Utils.fromJson(Utils.toJson(payload), stateClass);
+        }
+
+        try {
+            Object projected = stateClass.newInstance();
+            for (Field field : fields) {
+                // null values are not serialized, so the defaults of the new state remain
+                Object value = field.get(state);
+                if (value != null) {
+                    field.set(projected, isImmutable(value) ? value : Utils.clone(value));
+                }
+            }
+            return projected;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format(
+                    "Failed to project task state %s to %s", stateClass.getSimpleName(),
+                    payloadClass.getSimpleName()), e);
+        }
+    }
+
+    private static List<Field> getProjectedFields(Class<?> stateClass,
+            Class<? extends ServiceTaskCallbackResponse> payloadClass) {
+        if (!Modifier.isPublic(stateClass.getModifiers())) {
+            return null;
+        }
+        try {
+            stateClass.getConstructor();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+
+        Map<String, Field> stateFields = new HashMap<>();
+        for (Field field : stateClass.getFields()) {
+            if (isSerialized(field)) {
+                stateFields.putIfAbsent(field.getName(), field);
+            }
+        }
+
+        List<Field> fields = new ArrayList<>();
+        for (Field payloadField : payloadClass.getFields()) {
+            if (!isSerialized(payloadField)) {
+                continue;
+            }
+            Field stateField = stateFields.get(payloadField.getName());
+            if (stateField == null) {
+                continue;
+            }
+            if (Modifier.isFinal(stateField.getModifiers())
+                    || (payloadField.getType() != Object.class
+                            && !payloadField.getType().isAssignableFrom(stateField.getType()))) {
+                return null;
+            }
+            fields.add(stateField);
+        }
+        return fields;
+    }
+
+    private static boolean isImmutable(Object value) {
+        return IMMUTABLE_TYPES.contains(value.getClass()) || value instanceof Enum;
+    }
+
+    private static boolean isSerialized(Field field) {
+        int modifiers = field.getModifiers();
+        return !Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers);
+    }
+}
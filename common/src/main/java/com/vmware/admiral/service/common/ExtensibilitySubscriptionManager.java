@@ -63,6 +63,9 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
 
     private AtomicBoolean initialized = new AtomicBoolean();
 
+    private final ExtensibilityNotificationDispatcher dispatcher =
+            new ExtensibilityNotificationDispatcher(this);
+
     public ExtensibilitySubscriptionManager() {
     }
 
@@ -77,6 +80,7 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
             subscriptionManager.close();
         }
         initialized.set(false);
+        dispatcher.close();
 
         super.handleStop(delete);
     }
@@ -267,21 +271,17 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
                 NOTIFICATION_RETRY_COUNT);
     }
 
-    @SuppressWarnings("unchecked")
     private <T> T prepareTaskNotificationPayload(ServiceTaskCallbackResponse notificationPayload,
             T state) {
-        String stateAsJson = Utils.toJson(state);
-        ServiceTaskCallbackResponse notificationPayloadData = Utils.fromJson(
-                stateAsJson, notificationPayload.getClass());
-        String payLoadAsJson = Utils.toJson(notificationPayloadData);
         // Filter task fields in order to leave only notification payload fields.
-        T filteredTask = (T) Utils.fromJson(payLoadAsJson, state.getClass());
-        return filteredTask;
+        return ExtensibilityPayloadProjection.project(notificationPayload, state);
     }
 
     /**
      * Sends a service document to external url. Supports retry in case of an error and if task
-     * service is provided this method will call failTask when no more retries left.
+     * service is provided this method will call failTask when no more retries left. The
+     * notifications are sent through the {@link ExtensibilityNotificationDispatcher}, which limits
+     * the concurrent notifications per subscriber and holds them while the subscriber fails.
      *
      *
      * @param extensibility
@@ -300,7 +300,9 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
             ServiceDocument body, T state,
             int retriesLeft) {
 
-        sendRequest(Operation.createPost(extensibility.callbackReference)
+        dispatcher.send(extensibility.callbackReference, Operation
+                .createPost(extensibility.callbackReference)
+                .setReferer(getUri())
                 .setBody(body)
                 .setCompletion((o, e) -> {
                     if (e != null) {
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Node local, file backed store of the container logs of the {@link LogService} documents. A log
+ * is kept as an append-only ring of fixed size chunk files under the storage sandbox of the host,
+ * capped to a number of chunks: when the cap is reached the oldest chunk is dropped. The bytes of
+ * a log are addressed by their offset in the whole log stream, so reads can start from an offset
+ * or return the tail of the log.
+ *
+ * The logs which are not written to for the expiration period are removed by a single periodic
+ * sweep per host.
+ */
+class LogChunkStore {
+    static final int CHUNK_SIZE = Integer.getInteger(
+            "com.vmware.admiral.service.common.log.chunk.size", 256 * 1024);
+    static final int MAX_CHUNK_COUNT = Integer.getInteger(
+            "com.vmware.admiral.service.common.log.chunk.count", 16);
+
+    private static final String LOGS_DIRECTORY = "logs";
+    private static final String CHUNK_FILE_SUFFIX = ".chunk";
+    private static final String ENCODING = "UTF-8";
+
+    private static final Map<String, LogChunkStore> STORES = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final Map<String, LogChunks> logs = new ConcurrentHashMap<>();
+
+    /** The chunks of a single log, chunk <code>i</code> starts at offset i * CHUNK_SIZE. */
+    private static class LogChunks {
+        final Path directory;
+        long firstChunk;
+        long endOffset;
+        volatile long updateTimeMicros;
+
+        LogChunks(Path directory) {
+            this.directory = directory;
+        }
+
+        long startOffset() {
+            return firstChunk * CHUNK_SIZE;
+        }
+
+        Path chunkFile(long chunk) {
+            return directory.resolve(chunk + CHUNK_FILE_SUFFIX);
+        }
+    }
+
+    LogChunkStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the log store of the given host, starting the store and its expiration sweep on
+     * first use.
+     */
+    static LogChunkStore forHost(ServiceHost host, long expirationMicros,
+            Consumer<String> expiredLogHandler) {
+        return STORES.computeIfAbsent(host.getId(), id -> {
+            LogChunkStore store = new LogChunkStore(Paths.get(host.getStorageSandbox())
+                    .resolve(LOGS_DIRECTORY));
+            store.load(host);
+            scheduleSweep(host, store, expirationMicros, expiredLogHandler);
+            return store;
+        });
+    }
+
+    private static void scheduleSweep(ServiceHost host, LogChunkStore store,
+            long expirationMicros, Consumer<String> expiredLogHandler) {
+        host.schedule(() -> {
+            if (!host.isStarted()) {
+                STORES.remove(host.getId(), store);
+                return;
+            }
+            try {
+                store.sweep(Utils.getNowMicrosUtc() - expirationMicros)
+                        .forEach(expiredLogHandler);
+            } catch (Exception e) {
+                host.log(Level.WARNING, "Failed to remove expired logs: %s", Utils.toString(e));
+            }
+            scheduleSweep(host, store, expirationMicros, expiredLogHandler);
+        }, expirationMicros, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Replaces the whole log with the given bytes. Only the tail which fits in the chunk cap is
+     * kept.
+     */
+    void replace(String logLink, byte[] data) throws IOException {
+        LogChunks chunks = logs.computeIfAbsent(logLink, this::newLogChunks);
+        synchronized (chunks) {
+            deleteChunks(chunks, chunks.firstChunk, chunks.endOffset);
+            chunks.firstChunk = 0;
+            chunks.endOffset = 0;
+
+            int maxSize = CHUNK_SIZE * MAX_CHUNK_COUNT;
+            if (data.length > maxSize) {
+                // start from the first chunk boundary of the kept tail
+                long skip = data.length - maxSize;
+                skip = (skip + CHUNK_SIZE - 1) / CHUNK_SIZE * CHUNK_SIZE;
+                chunks.firstChunk = skip / CHUNK_SIZE;
+                chunks.endOffset = skip;
+                append(chunks, data, (int) skip);
+            } else {
+                append(chunks, data, 0);
+            }
+        }
+    }
+
+    /**
+     * Appends the given bytes to the log, dropping the oldest chunks over the cap.
+     */
+    void append(String logLink, byte[] data) throws IOException {
+        LogChunks chunks = logs.computeIfAbsent(logLink, this::newLogChunks);
+        synchronized (chunks) {
+            append(chunks, data, 0);
+        }
+    }
+
+    /**
+     * Reads the log from the given offset, or its last <code>tail</code> bytes if the tail is
+     * set. Returns <code>null</code> if there is no such log.
+     */
+    byte[] read(String logLink, long offset, Integer tail) throws IOException {
+        LogChunks chunks = logs.get(logLink);
+        if (chunks == null) {
+            return null;
+        }
+        synchronized (chunks) {
+            long from = tail != null ? chunks.endOffset - tail : offset;
+            from = Math.max(from, chunks.startOffset());
+            if (from >= chunks.endOffset) {
+                return new byte[0];
+            }
+
+            byte[] result = new byte[(int) (chunks.endOffset - from)];
+            int position = 0;
+            while (position < result.length) {
+                long chunk = (from + position) / CHUNK_SIZE;
+                int chunkOffset = (int) ((from + position) % CHUNK_SIZE);
+                int length = (int) Math.min(CHUNK_SIZE - chunkOffset, result.length - position);
+                try (RandomAccessFile file = new RandomAccessFile(
+                        chunks.chunkFile(chunk).toFile(), "r")) {
+                    file.seek(chunkOffset);
+                    file.readFully(result, position, length);
+                }
+                position += length;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Registers the given log, if not known yet, so that it expires if not written to.
+     */
+    void touch(String logLink) {
+        logs.computeIfAbsent(logLink, this::newLogChunks);
+    }
+
+    void remove(String logLink) throws IOException {
+        LogChunks chunks = logs.remove(logLink);
+        if (chunks == null) {
+            return;
+        }
+        synchronized (chunks) {
+            deleteChunks(chunks, chunks.firstChunk, chunks.endOffset);
+            Files.deleteIfExists(chunks.directory);
+        }
+    }
+
+    /**
+     * Removes the logs which are not written to since the given time and returns their links.
+     */
+    List<String> sweep(long expirationTimeMicros) throws IOException {
+        List<String> expired = new ArrayList<>();
+        for (Map.Entry<String, LogChunks> e : logs.entrySet()) {
+            if (e.getValue().updateTimeMicros < expirationTimeMicros) {
+                remove(e.getKey());
+                expired.add(e.getKey());
+            }
+        }
+        return expired;
+    }
+
+    private void append(LogChunks chunks, byte[] data, int dataOffset) throws IOException {
+        int position = dataOffset;
+        while (position < data.length) {
+            long chunk = chunks.endOffset / CHUNK_SIZE;
+            int length = (int) Math.min(CHUNK_SIZE - chunks.endOffset % CHUNK_SIZE,
+                    data.length - position);
+            Files.createDirectories(chunks.directory);
+            Files.write(chunks.chunkFile(chunk), copy(data, position, length),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            position += length;
+            chunks.endOffset += length;
+        }
+
+        long chunkCount = (chunks.endOffset + CHUNK_SIZE - 1) / CHUNK_SIZE - chunks.firstChunk;
+        while (chunkCount-- > MAX_CHUNK_COUNT) {
+            Files.deleteIfExists(chunks.chunkFile(chunks.firstChunk++));
+        }
+        chunks.updateTimeMicros = Utils.getNowMicrosUtc();
+    }
+
+    private static byte[] copy(byte[] data, int offset, int length) {
+        if (offset == 0 && length == data.length) {
+            return data;
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(data, offset, result, 0, length);
+        return result;
+    }
+
+    private static void deleteChunks(LogChunks chunks, long firstChunk, long endOffset)
+            throws IOException {
+        long endChunk = (endOffset + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        for (long chunk = firstChunk; chunk < endChunk; chunk++) {
+            Files.deleteIfExists(chunks.chunkFile(chunk));
+        }
+    }
+
+    private LogChunks newLogChunks(String logLink) {
+        LogChunks chunks = new LogChunks(directory.resolve(encode(logLink)));
+        chunks.updateTimeMicros = Utils.getNowMicrosUtc();
+        return chunks;
+    }
+
+    /**
+     * Loads the logs stored before a restart of the host. Their expiration starts over.
+     */
+    private void load(ServiceHost host) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> logDirectories = Files.newDirectoryStream(directory)) {
+            for (Path logDirectory : logDirectories) {
+                LogChunks chunks = newLogChunks(decode(logDirectory.getFileName().toString()));
+                long lastChunk = -1;
+                chunks.firstChunk = Long.MAX_VALUE;
+                try (DirectoryStream<Path> chunkFiles = Files.newDirectoryStream(logDirectory,
+                        "*" + CHUNK_FILE_SUFFIX)) {
+                    for (Path chunkFile : chunkFiles) {
+                        String name = chunkFile.getFileName().toString();
+                        long chunk = Long.parseLong(name.substring(0,
+                                name.length() - CHUNK_FILE_SUFFIX.length()));
+                        chunks.firstChunk = Math.min(chunks.firstChunk, chunk);
+                        lastChunk = Math.max(lastChunk, chunk);
+                    }
+                }
+                if (lastChunk < 0) {
+                    Files.deleteIfExists(logDirectory);
+                    continue;
+                }
+                chunks.endOffset = lastChunk * CHUNK_SIZE
+                        + Files.size(chunks.chunkFile(lastChunk));
+                logs.put(decode(logDirectory.getFileName().toString()), chunks);
+            }
+        } catch (IOException | RuntimeException e) {
+            host.log(Level.WARNING, "Failed to load the stored logs from %s: %s", directory,
+                    Utils.toString(e));
+        }
+    }
+
+    private static String encode(String logLink) {
+        try {
+            return URLEncoder.encode(logLink, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String decode(String fileName) {
+        try {
+            return URLDecoder.decode(fileName, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -11,8 +11,11 @@
 
 package com.vmware.admiral.service.common;
 
+import java.io.IOException;
 import java.util.EnumSet;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.photon.controller.model.ServiceUtils;
@@ -21,15 +24,24 @@ import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceDocumentDescription;
 import com.vmware.xenon.common.ServiceDocumentDescription.PropertyIndexingOption;
+import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.StatefulService;
+import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 
 /**
- * LogService is log management service which maintains the logs of a container.
+ * LogService is log management service which maintains the logs of a container. The document
+ * keeps only the metadata of the log, the log data is kept in the {@link LogChunkStore} of the
+ * node and filled in on GET. The data can be read from an offset in the log stream or as a tail
+ * with the {@value #QUERY_PARAM_OFFSET} and {@value #QUERY_PARAM_TAIL} URI query parameters.
+ * PUT and POST replace the log data, PATCH appends to it.
  */
 public class LogService extends StatefulService {
     public static final String FACTORY_LINK = ManagementUriParts.LOGS;
 
+    public static final String QUERY_PARAM_OFFSET = "offset";
+    public static final String QUERY_PARAM_TAIL = "tail";
+
     protected static final long DEFAULT_EXPIRATION_MICROS = Long.getLong(
             "com.vmware.admiral.service.common.expiration.micros", TimeUnit.MINUTES.toMicros(5));
 
@@ -48,17 +60,13 @@ public class LogService extends StatefulService {
         public byte[] logs;
     }
 
+    private LogChunkStore store;
+
     public LogService() {
         super(LogServiceState.class);
         super.toggleOption(Service.ServiceOption.PERSISTENCE, true);
         super.toggleOption(Service.ServiceOption.DOCUMENT_OWNER, true);
         super.toggleOption(ServiceOption.IDEMPOTENT_POST, true);
-
-        /* Workaround for https://www.pivotaltracker.com/n/projects/1471320/stories/143794415
-         * to not overload the storage with container logs.
-         * Remove when bug is fixed.*/
-        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
-        super.setMaintenanceIntervalMicros(DEFAULT_EXPIRATION_MICROS);
     }
 
     @Override
@@ -67,16 +75,43 @@ public class LogService extends StatefulService {
             return;
         }
 
-        /* Disabled until https://www.pivotaltracker.com/n/projects/1471320/stories/143794415
-         * is fixed */
-        // Set the expiration time to be 15 minutes by default.
-        // LogServiceState state = startPost.getBody(LogServiceState.class);
-        // state.documentExpirationTimeMicros = ServiceUtils
-        //         .getExpirationTimeFromNowInMicros(
-        //         DEFAULT_EXPIRATION_MICROS);
+        LogServiceState state = startPost.getBody(LogServiceState.class);
+        if (state.logs != null) {
+            try {
+                getStore().replace(getSelfLink(), state.logs);
+            } catch (IOException e) {
+                startPost.fail(e);
+                return;
+            }
+            state.logs = null;
+        }
         startPost.complete();
     }
 
+    @Override
+    public void handleStart(Operation startPost) {
+        // the logs of documents loaded from the index expire if not refreshed
+        getStore().touch(getSelfLink());
+        startPost.complete();
+    }
+
+    @Override
+    public void handleGet(Operation get) {
+        LogServiceState state = Utils.clone(getState(get));
+        Map<String, String> params = UriUtils.parseUriQueryParams(get.getUri());
+        try {
+            long offset = params.containsKey(QUERY_PARAM_OFFSET)
+                    ? Long.parseLong(params.get(QUERY_PARAM_OFFSET)) : 0;
+            Integer tail = params.containsKey(QUERY_PARAM_TAIL)
+                    ? Integer.valueOf(params.get(QUERY_PARAM_TAIL)) : null;
+            state.logs = getStore().read(getSelfLink(), offset, tail);
+        } catch (NumberFormatException | IOException e) {
+            get.fail(e);
+            return;
+        }
+        get.setBody(state).complete();
+    }
+
     @Override
     public void handlePut(Operation put) {
         if (!checkForBody(put)) {
@@ -87,49 +122,83 @@ public class LogService extends StatefulService {
         LogServiceState newState = put.getBody(LogServiceState.class);
 
         if (newState.logs != null) {
-            currentState.logs = newState.logs;
+            try {
+                getStore().replace(getSelfLink(), newState.logs);
+            } catch (IOException e) {
+                put.fail(e);
+                return;
+            }
+        }
+        updateMetadata(put, currentState, newState);
+    }
+
+    @Override
+    public void handlePatch(Operation patch) {
+        if (!checkForBody(patch)) {
+            return;
         }
+
+        LogServiceState currentState = getState(patch);
+        LogServiceState patchBody = patch.getBody(LogServiceState.class);
+
+        if (patchBody.logs != null) {
+            try {
+                getStore().append(getSelfLink(), patchBody.logs);
+            } catch (IOException e) {
+                patch.fail(e);
+                return;
+            }
+        }
+        updateMetadata(patch, currentState, patchBody);
+    }
+
+    @Override
+    public void handleDelete(Operation delete) {
+        try {
+            getStore().remove(getSelfLink());
+        } catch (IOException e) {
+            logWarning("Failed to remove the logs of %s: %s", getSelfLink(), Utils.toString(e));
+        }
+        super.handleDelete(delete);
+    }
+
+    /**
+     * Only the metadata is kept in the document, so it is updated only if it changes and not on
+     * every refresh of the log data.
+     */
+    private void updateMetadata(Operation op, LogServiceState currentState,
+            LogServiceState newState) {
+        currentState.logs = null;
+        if (newState.tenantLinks == null || newState.tenantLinks.equals(currentState.tenantLinks)) {
+            op.setStatusCode(Operation.STATUS_CODE_NOT_MODIFIED);
+            op.setBody(currentState).complete();
+            return;
+        }
+
+        currentState.tenantLinks = newState.tenantLinks;
         // workaround for NullPointerException in xenon when the service has no REPLICATION option
         if (currentState.documentEpoch == null) {
             currentState.documentEpoch = 0L;
         }
-        setState(put, currentState);
-        put.setBody(currentState).complete();
+        setState(op, currentState);
+        op.setBody(currentState).complete();
     }
 
-    /* Workaround for https://www.pivotaltracker.com/n/projects/1471320/stories/143794415
-     * to not overload the storage with container logs.
-     * Remove when bug is fixed.*/
-    @Override
-    public void handlePeriodicMaintenance(Operation post) {
-        if (getProcessingStage() != ProcessingStage.AVAILABLE) {
-            logFine("Skipping maintenance since service is not available: %s ", getUri());
-            return;
+    private LogChunkStore getStore() {
+        if (store == null) {
+            ServiceHost host = getHost();
+            store = LogChunkStore.forHost(host, DEFAULT_EXPIRATION_MICROS,
+                    logLink -> host.sendRequest(Operation.createDelete(host, logLink)
+                            .setReferer(host.getUri())
+                            .setCompletion((o, e) -> {
+                                if (e != null && o.getStatusCode()
+                                        != Operation.STATUS_CODE_NOT_FOUND) {
+                                    host.log(Level.WARNING, "Failed to delete expired log %s: %s",
+                                            logLink, Utils.toString(e));
+                                }
+                            })));
         }
-        sendRequest(Operation
-                .createGet(this, getSelfLink())
-                .setCompletion((o, ex) -> {
-                    if (ex != null) {
-                        post.fail(ex);
-                    } else {
-                        LogServiceState state = o.getBody(LogServiceState.class);
-                        long timeSinceLastUpdateMicros =
-                                Utils.getNowMicrosUtc() - state.documentUpdateTimeMicros;
-                        if (timeSinceLastUpdateMicros >= DEFAULT_EXPIRATION_MICROS) {
-                            sendRequest(Operation.createDelete(this, state.documentSelfLink)
-                                    .setCompletion((op, err) -> {
-                                        if (err != null) {
-                                            post.fail(err);
-                                        } else {
-                                            post.complete();
-                                        }
-                                    }));
-                        } else {
-                            post.complete();
-                        }
-                    }
-
-                }));
+        return store;
     }
 
     /**
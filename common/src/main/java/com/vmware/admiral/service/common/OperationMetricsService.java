@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.host.interceptor.OperationMetrics;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+
+/**
+ * Exposes the operation metrics of the node, i.e. the latency histograms, the errors and the in
+ * flight operations of each factory path and action and of each operation interceptor, in the
+ * Prometheus text format.
+ */
+public class OperationMetricsService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.OPERATION_METRICS;
+
+    public static final String PROMETHEUS_TEXT_CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    @Override
+    public void handleGet(Operation get) {
+        get.setContentType(PROMETHEUS_TEXT_CONTENT_TYPE);
+        get.setBody(OperationMetrics.forHost(getHost()).toPrometheusText());
+        get.complete();
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.service.common.AbstractTaskStatefulService.TaskStatusState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.TaskState;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Node local aggregator of the request tracker updates of the tasks. The progress updates of a
+ * request tracker are collected over a short window and sent as a single {@link TaskStatusUpdates}
+ * PATCH, keeping only the latest update of each task. Updates marked as immediate (the FINISHED
+ * and FAILED transitions) are sent right away, together with the pending updates of the same
+ * request tracker, and the PATCH to this service completes when the request tracker is updated.
+ *
+ * When a PATCH fails, its progress updates are queued again, under the updates received in the
+ * meantime, and sent with the next window, up to {@link #MAX_SEND_RETRIES} times.
+ */
+public class RequestTrackerUpdateService extends StatelessService {
+    public static final String SELF_LINK = ManagementUriParts.REQUEST_TRACKER_UPDATES;
+
+    public static final String STAT_NAME_RECEIVED_UPDATE_COUNT = "receivedUpdateCount";
+    public static final String STAT_NAME_SENT_PATCH_COUNT = "sentPatchCount";
+    public static final String STAT_NAME_REQUEUED_PATCH_COUNT = "requeuedPatchCount";
+
+    /**
+     * The window over which the progress updates of a request tracker are coalesced. Zero
+     * disables the coalescing and the tasks patch the request trackers directly.
+     */
+    public static final long UPDATE_WINDOW_MILLIS = Long.getLong(
+            "com.vmware.admiral.service.tasks.request.tracker.update.window.millis", 200);
+
+    /** The number of times the updates of a failed PATCH are queued again. */
+    public static final int MAX_SEND_RETRIES = Integer.getInteger(
+            "com.vmware.admiral.service.tasks.request.tracker.update.retries", 3);
+
+    public static class RequestTrackerUpdate {
+        public String requestTrackerLink;
+
+        public TaskStatusState taskStatus;
+
+        /** Whether to send the update, and the pending ones of the tracker, right away. */
+        public boolean immediate;
+    }
+
+    /**
+     * PATCH body of a request tracker with the coalesced updates of several tasks, to be applied
+     * in order.
+     */
+    public static class TaskStatusUpdates {
+        public static final String KIND = Utils.buildKind(TaskStatusUpdates.class);
+
+        public String documentKind = KIND;
+
+        public List<TaskStatusState> updates;
+    }
+
+    /** Pending updates by request tracker link, keyed by task in order of arrival. */
+    private final Map<String, Map<String, TaskStatusState>> pendingUpdates = new HashMap<>();
+    /** The retries of the pending updates by request tracker link, guarded by pendingUpdates. */
+    private final Map<String, Integer> sendRetries = new HashMap<>();
+    /** The PATCHes in flight by request tracker link, guarded by pendingUpdates. */
+    private final Map<String, Integer> inFlightPatches = new HashMap<>();
+    /**
+     * The tasks whose immediate update was sent while PATCHes to the request tracker were in
+     * flight, by request tracker link, guarded by pendingUpdates.
+     */
+    private final Map<String, Set<String>> sentImmediateTasks = new HashMap<>();
+
+    public RequestTrackerUpdateService() {
+        super.toggleOption(ServiceOption.INSTRUMENTATION, true);
+    }
+
+    /**
+     * Whether the request tracker updates should be sent through this service on the given host.
+     */
+    public static boolean isEnabled(ServiceHost host) {
+        return UPDATE_WINDOW_MILLIS > 0
+                && host.getServiceStage(SELF_LINK) == ProcessingStage.AVAILABLE;
+    }
+
+    @Override
+    public void handlePatch(Operation patch) {
+        RequestTrackerUpdate update = patch.getBody(RequestTrackerUpdate.class);
+        if (update.requestTrackerLink == null || update.taskStatus == null) {
+            patch.fail(new IllegalArgumentException(
+                    "'requestTrackerLink' and 'taskStatus' are required"));
+            return;
+        }
+        adjustStat(STAT_NAME_RECEIVED_UPDATE_COUNT, 1);
+
+        String requestTrackerLink = update.requestTrackerLink;
+        if (!update.immediate) {
+            boolean firstPendingUpdate;
+            synchronized (pendingUpdates) {
+                Map<String, TaskStatusState> updates = pendingUpdates.get(requestTrackerLink);
+                firstPendingUpdate = updates == null;
+                if (firstPendingUpdate) {
+                    updates = new LinkedHashMap<>();
+                    pendingUpdates.put(requestTrackerLink, updates);
+                }
+                merge(updates, update.taskStatus);
+            }
+            if (firstPendingUpdate) {
+                getHost().schedule(() -> flush(requestTrackerLink), UPDATE_WINDOW_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            }
+            patch.complete();
+            return;
+        }
+
+        List<TaskStatusState> updates;
+        int retryCount;
+        synchronized (pendingUpdates) {
+            Map<String, TaskStatusState> pending = pendingUpdates.remove(requestTrackerLink);
+            if (pending == null) {
+                pending = new LinkedHashMap<>();
+            }
+            merge(pending, update.taskStatus);
+            updates = new ArrayList<>(pending.values());
+            retryCount = sendRetries.getOrDefault(requestTrackerLink, 0);
+        }
+        sendUpdates(requestTrackerLink, updates, retryCount, patch);
+    }
+
+    @Override
+    public void handleStop(Operation delete) {
+        List<String> requestTrackerLinks;
+        synchronized (pendingUpdates) {
+            requestTrackerLinks = new ArrayList<>(pendingUpdates.keySet());
+        }
+        requestTrackerLinks.forEach(this::flush);
+
+        super.handleStop(delete);
+    }
+
+    private void flush(String requestTrackerLink) {
+        Map<String, TaskStatusState> pending;
+        int retryCount;
+        synchronized (pendingUpdates) {
+            pending = pendingUpdates.remove(requestTrackerLink);
+            retryCount = sendRetries.getOrDefault(requestTrackerLink, 0);
+        }
+        if (pending != null) {
+            sendUpdates(requestTrackerLink, new ArrayList<>(pending.values()), retryCount, null);
+        }
+    }
+
+    private void sendUpdates(String requestTrackerLink, List<TaskStatusState> updates,
+            int retryCount, Operation immediateUpdate) {
+        Object body;
+        if (updates.size() == 1) {
+            body = updates.get(0);
+        } else {
+            TaskStatusUpdates taskStatusUpdates = new TaskStatusUpdates();
+            taskStatusUpdates.updates = updates;
+            body = taskStatusUpdates;
+        }
+        adjustStat(STAT_NAME_SENT_PATCH_COUNT, 1);
+
+        synchronized (pendingUpdates) {
+            inFlightPatches.merge(requestTrackerLink, 1, Integer::sum);
+            for (TaskStatusState update : updates) {
+                if (isImmediate(update)) {
+                    sentImmediateTasks.computeIfAbsent(requestTrackerLink, k -> new HashSet<>())
+                            .add(update.documentSelfLink);
+                }
+            }
+        }
+
+        sendRequest(Operation.createPatch(this, requestTrackerLink)
+                .setBody(body)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        requeue(requestTrackerLink, updates, retryCount, o, e);
+                    }
+                    synchronized (pendingUpdates) {
+                        if (e == null && retryCount > 0) {
+                            sendRetries.remove(requestTrackerLink);
+                        }
+                        // a failed PATCH may be queued again only while others are in flight
+                        if (inFlightPatches.merge(requestTrackerLink, -1, Integer::sum) == 0) {
+                            inFlightPatches.remove(requestTrackerLink);
+                            sentImmediateTasks.remove(requestTrackerLink);
+                        }
+                    }
+                    if (immediateUpdate != null) {
+                        if (e != null) {
+                            immediateUpdate.fail(e);
+                        } else {
+                            immediateUpdate.complete();
+                        }
+                    }
+                }));
+    }
+
+    /**
+     * Queues again the progress updates of a failed PATCH, under the updates of the same tasks
+     * received in the meantime. The immediate updates are not queued again, their tasks are
+     * notified of the failure, and neither are the progress updates of the tasks whose immediate
+     * update was sent since, which would take the request tracker back.
+     */
+    private void requeue(String requestTrackerLink, List<TaskStatusState> updates,
+            int retryCount, Operation o, Throwable e) {
+        if (retryCount >= MAX_SEND_RETRIES || getHost().isStopping()
+                || o.getStatusCode() == Operation.STATUS_CODE_NOT_FOUND) {
+            logWarning("Failed to update request tracker: %s. Error: %s",
+                    requestTrackerLink, Utils.toString(e));
+            synchronized (pendingUpdates) {
+                sendRetries.remove(requestTrackerLink);
+            }
+            return;
+        }
+
+        boolean firstPendingUpdate;
+        synchronized (pendingUpdates) {
+            Set<String> immediateTasks = sentImmediateTasks.getOrDefault(requestTrackerLink,
+                    Collections.emptySet());
+            Map<String, TaskStatusState> requeued = new LinkedHashMap<>();
+            for (TaskStatusState update : updates) {
+                if (!isImmediate(update) && !immediateTasks.contains(update.documentSelfLink)) {
+                    merge(requeued, update);
+                }
+            }
+            if (requeued.isEmpty()) {
+                sendRetries.remove(requestTrackerLink);
+                return;
+            }
+            Map<String, TaskStatusState> pending = pendingUpdates.get(requestTrackerLink);
+            firstPendingUpdate = pending == null;
+            if (pending != null) {
+                pending.values().forEach(update -> merge(requeued, update));
+            }
+            pendingUpdates.put(requestTrackerLink, requeued);
+            sendRetries.put(requestTrackerLink, retryCount + 1);
+        }
+        adjustStat(STAT_NAME_REQUEUED_PATCH_COUNT, 1);
+        if (firstPendingUpdate) {
+            getHost().schedule(() -> flush(requestTrackerLink), UPDATE_WINDOW_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static boolean isImmediate(TaskStatusState taskStatus) {
+        return taskStatus.taskInfo != null && (TaskState.isFinished(taskStatus.taskInfo)
+                || TaskState.isFailed(taskStatus.taskInfo)
+                || TaskState.isCancelled(taskStatus.taskInfo));
+    }
+
+    /**
+     * Replaces the pending update of the same task, if any, and moves it last. The fields which are
+     * set only once on the request tracker are kept from the replaced update.
+     */
+    private static void merge(Map<String, TaskStatusState> updates, TaskStatusState taskStatus) {
+        String key = taskStatus.phase + taskStatus.documentSelfLink;
+        TaskStatusState replaced = updates.remove(key);
+        if (replaced != null) {
+            if (taskStatus.name == null) {
+                taskStatus.name = replaced.name;
+            }
+            if (taskStatus.resourceLinks == null) {
+                taskStatus.resourceLinks = replaced.resourceLinks;
+            }
+            if (taskStatus.eventLogLink == null) {
+                taskStatus.eventLogLink = replaced.eventLogLink;
+            }
+        }
+        updates.put(key, taskStatus);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.util.List;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.service.common.TaskStageTimings.CriticalPathSegment;
+import com.vmware.admiral.service.common.TaskStageTimings.StageSpan;
+import com.vmware.admiral.service.common.TaskStageTimings.StageTiming;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * Exposes the {@link TaskStageTimings} of the node: the time spent in each sub-stage of each task
+ * class and, for the request given by its request tracker link, the sub-stages of its tasks and
+ * its critical path.
+ */
+public class TaskStageTimingService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.TASK_STAGE_TIMINGS;
+    public static final String REQUEST_TRACKER_LINK_QUERY_PARAM = "requestTrackerLink";
+
+    public static class TaskStageTimingsResponse {
+        /** The time spent in each sub-stage of each task class, the longest total first. */
+        public List<StageTiming> stageTimings;
+
+        /** The sub-stages of the tasks of the request, if a request is given. */
+        public List<StageSpan> stages;
+
+        /** The critical path of the request, if a request is given. */
+        public List<CriticalPathSegment> criticalPath;
+    }
+
+    @Override
+    public void handleGet(Operation get) {
+        TaskStageTimings timings = TaskStageTimings.forHost(getHost());
+        String requestTrackerLink = UriUtils.parseUriQueryParams(get.getUri())
+                .get(REQUEST_TRACKER_LINK_QUERY_PARAM);
+
+        TaskStageTimingsResponse response = new TaskStageTimingsResponse();
+        if (requestTrackerLink == null || requestTrackerLink.isEmpty()) {
+            response.stageTimings = timings.getStageTimings();
+        } else {
+            response.stages = timings.getStageSpans(requestTrackerLink);
+            response.criticalPath = TaskStageTimings.getCriticalPath(response.stages);
+        }
+        get.setBody(response);
+        get.complete();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Node local aggregator of the time the tasks spend in each sub-stage, by task class and
+ * sub-stage, and of the sub-stages of the tasks of the recent requests, from which the critical
+ * path of a request is reconstructed. The sub-stages the tasks are in are kept as well, so the
+ * critical path of a request in progress shows where it waits now.
+ *
+ * Only the tasks owned by this node are recorded, so the view of a request whose tasks are owned
+ * by several nodes is partial.
+ */
+public class TaskStageTimings {
+
+    /** The number of the most recent requests whose sub-stages are kept. */
+    public static final int MAX_REQUESTS = Integer.getInteger(
+            "com.vmware.admiral.task.timings.requests", 1000);
+
+    /** The number of the sub-stages kept for a request. */
+    public static final int MAX_STAGES_PER_REQUEST = Integer.getInteger(
+            "com.vmware.admiral.task.timings.stages.per.request", 1000);
+
+    /**
+     * The suffix of the sub-stages in which a task waits for the extensibility subscribers of the
+     * sub-stage, before it handles it.
+     */
+    public static final String EXTENSIBILITY_WAIT_SUFFIX = "/extensibility";
+
+    private static final Map<String, TaskStageTimings> TIMINGS = new ConcurrentHashMap<>();
+
+    /** The time spent in a sub-stage of a task class. */
+    public static class StageTiming {
+        public String taskType;
+        public String subStage;
+        public long count;
+        public long totalMicros;
+        public long maxMicros;
+    }
+
+    /** A sub-stage of a task of a request. */
+    public static class StageSpan {
+        public String taskType;
+        public String taskLink;
+        public String parentTaskLink;
+        public String subStage;
+        public long startTimeMicros;
+        public long endTimeMicros;
+
+        /**
+         * Whether the task is still in the sub-stage, in which case the end time is the time the
+         * sub-stages were retrieved.
+         */
+        public boolean inProgress;
+    }
+
+    /**
+     * A segment of the critical path of a request, i.e. the sub-stage of the task which held up
+     * the request during that time. The segments when no task of the request was in a sub-stage,
+     * e.g. waiting for a callback to be delivered, have no task.
+     */
+    public static class CriticalPathSegment {
+        public String taskType;
+        public String taskLink;
+        public String subStage;
+        public long startTimeMicros;
+        public long durationMicros;
+    }
+
+    private static class Aggregate {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalMicros = new LongAdder();
+        final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+    }
+
+    private final Map<String, Map<String, Aggregate>> aggregates = new ConcurrentHashMap<>();
+
+    /** The completed sub-stages of the tasks of a request and the ones they are in, by task. */
+    private static class RequestStages {
+        final List<StageSpan> spans = new ArrayList<>();
+        final Map<String, StageSpan> openSpans = new HashMap<>();
+    }
+
+    private final Map<String, RequestStages> requests = new LinkedHashMap<String,
+            RequestStages>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RequestStages> eldest) {
+            return size() > MAX_REQUESTS;
+        }
+    };
+
+    /**
+     * Returns the task stage timings of the given host.
+     */
+    public static TaskStageTimings forHost(ServiceHost host) {
+        return TIMINGS.computeIfAbsent(host.getId(), id -> new TaskStageTimings());
+    }
+
+    /**
+     * Records the time a task spent in a sub-stage. The sub-stage is kept for the critical path of
+     * the request if the request tracker link is given, and replaces the sub-stage the task was
+     * in, see {@link #start(String, StageSpan)}.
+     */
+    public void record(String requestTrackerLink, StageSpan span) {
+        long durationMicros = Math.max(0, span.endTimeMicros - span.startTimeMicros);
+        Aggregate aggregate = aggregates
+                .computeIfAbsent(span.taskType, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(span.subStage, s -> new Aggregate());
+        aggregate.count.increment();
+        aggregate.totalMicros.add(durationMicros);
+        aggregate.maxMicros.accumulate(durationMicros);
+
+        if (requestTrackerLink == null) {
+            return;
+        }
+        synchronized (requests) {
+            RequestStages stages = requests.computeIfAbsent(requestTrackerLink,
+                    l -> new RequestStages());
+            stages.openSpans.remove(span.taskLink);
+            if (stages.spans.size() < MAX_STAGES_PER_REQUEST) {
+                stages.spans.add(span);
+            }
+        }
+    }
+
+    /**
+     * Records the sub-stage a task of the request has entered, without an end time yet. It is
+     * replaced once the task records the time spent in it.
+     */
+    public void start(String requestTrackerLink, StageSpan span) {
+        if (requestTrackerLink == null) {
+            return;
+        }
+        synchronized (requests) {
+            requests.computeIfAbsent(requestTrackerLink, l -> new RequestStages())
+                    .openSpans.put(span.taskLink, span);
+        }
+    }
+
+    /**
+     * Returns the time spent in each sub-stage of each task class.
+     */
+    public List<StageTiming> getStageTimings() {
+        List<StageTiming> timings = new ArrayList<>();
+        aggregates.forEach((taskType, stages) -> stages.forEach((subStage, aggregate) -> {
+            StageTiming timing = new StageTiming();
+            timing.taskType = taskType;
+            timing.subStage = subStage;
+            timing.count = aggregate.count.sum();
+            timing.totalMicros = aggregate.totalMicros.sum();
+            timing.maxMicros = aggregate.maxMicros.get();
+            timings.add(timing);
+        }));
+        timings.sort((t1, t2) -> Long.compare(t2.totalMicros, t1.totalMicros));
+        return timings;
+    }
+
+    /**
+     * Returns the recorded sub-stages of the tasks of the given request, including the ones the
+     * tasks are in, which end now.
+     */
+    public List<StageSpan> getStageSpans(String requestTrackerLink) {
+        return getStageSpans(requestTrackerLink, Utils.getSystemNowMicrosUtc());
+    }
+
+    List<StageSpan> getStageSpans(String requestTrackerLink, long nowMicros) {
+        List<StageSpan> spans = new ArrayList<>();
+        synchronized (requests) {
+            RequestStages stages = requests.get(requestTrackerLink);
+            if (stages == null) {
+                return spans;
+            }
+            spans.addAll(stages.spans);
+            for (StageSpan open : stages.openSpans.values()) {
+                StageSpan span = new StageSpan();
+                span.taskType = open.taskType;
+                span.taskLink = open.taskLink;
+                span.parentTaskLink = open.parentTaskLink;
+                span.subStage = open.subStage;
+                span.startTimeMicros = open.startTimeMicros;
+                span.endTimeMicros = Math.max(nowMicros, open.startTimeMicros);
+                span.inProgress = true;
+                spans.add(span);
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * Returns the critical path of the given request, or an empty list if the request is not
+     * known.
+     */
+    public List<CriticalPathSegment> getCriticalPath(String requestTrackerLink) {
+        return getCriticalPath(getStageSpans(requestTrackerLink));
+    }
+
+    /**
+     * Reconstructs the critical path from the sub-stages of the tasks of a request. At any time
+     * the request waits for the deepest task in the task hierarchy, e.g. for the placement task
+     * rather than the allocation task which started it, and of the tasks of the same depth which
+     * run in parallel for the one which finishes last.
+     */
+    static List<CriticalPathSegment> getCriticalPath(List<StageSpan> spans) {
+        List<CriticalPathSegment> path = new ArrayList<>();
+        if (spans.isEmpty()) {
+            return path;
+        }
+
+        Map<String, String> parents = new HashMap<>();
+        spans.forEach(s -> parents.put(s.taskLink, s.parentTaskLink));
+        Map<StageSpan, Integer> depths = new HashMap<>();
+        for (StageSpan span : spans) {
+            int depth = 0;
+            String link = parents.get(span.taskLink);
+            while (link != null && parents.containsKey(link) && depth < parents.size()) {
+                link = parents.get(link);
+                depth++;
+            }
+            depths.put(span, depth);
+        }
+
+        TreeSet<Long> times = new TreeSet<>();
+        spans.forEach(s -> {
+            times.add(s.startTimeMicros);
+            times.add(s.endTimeMicros);
+        });
+
+        Long start = times.first();
+        Long end;
+        while ((end = times.higher(start)) != null) {
+            StageSpan critical = null;
+            for (StageSpan span : spans) {
+                if (span.startTimeMicros <= start && span.endTimeMicros >= end
+                        && (critical == null || depths.get(span) > depths.get(critical)
+                                || depths.get(span).equals(depths.get(critical))
+                                        && span.endTimeMicros > critical.endTimeMicros)) {
+                    critical = span;
+                }
+            }
+
+            CriticalPathSegment last = path.isEmpty() ? null : path.get(path.size() - 1);
+            if (last != null && isSameStage(last, critical)) {
+                last.durationMicros += end - start;
+            } else {
+                CriticalPathSegment segment = new CriticalPathSegment();
+                if (critical != null) {
+                    segment.taskType = critical.taskType;
+                    segment.taskLink = critical.taskLink;
+                    segment.subStage = critical.subStage;
+                }
+                segment.startTimeMicros = start;
+                segment.durationMicros = end - start;
+                path.add(segment);
+            }
+            start = end;
+        }
+        return path;
+    }
+
+    private static boolean isSameStage(CriticalPathSegment segment, StageSpan span) {
+        if (span == null) {
+            return segment.taskLink == null;
+        }
+        return span.taskLink.equals(segment.taskLink) && span.subStage.equals(segment.subStage);
+    }
+}
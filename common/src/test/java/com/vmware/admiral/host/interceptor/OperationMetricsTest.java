@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.vmware.admiral.host.interceptor.OperationMetrics.Metric;
+import com.vmware.xenon.common.Service.Action;
+
+public class OperationMetricsTest {
+
+    @Test
+    public void testRecordOperations() {
+        OperationMetrics metrics = new OperationMetrics();
+        Metric patch = metrics.getOperationMetrics("/resources/compute")[Action.PATCH.ordinal()];
+        assertEquals(patch, metrics.getOperationMetrics("/resources/compute")[Action.PATCH
+                .ordinal()]);
+
+        patch.completed(patch.started(), false);
+        patch.completed(patch.started() - TimeUnit.MILLISECONDS.toNanos(3), true);
+        patch.started();
+
+        String text = metrics.toPrometheusText();
+        String labels = "path=\"/resources/compute\",action=\"PATCH\"";
+        assertTrue(text, text.contains(
+                "admiral_operation_duration_seconds_bucket{" + labels + ",le=\"0.0005\"} 1\n"));
+        assertTrue(text, text.contains(
+                "admiral_operation_duration_seconds_bucket{" + labels + ",le=\"0.005\"} 2\n"));
+        assertTrue(text, text.contains(
+                "admiral_operation_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 2\n"));
+        assertTrue(text, text.contains(
+                "admiral_operation_duration_seconds_count{" + labels + "} 2\n"));
+        assertTrue(text, text.contains("admiral_operation_errors_total{" + labels + "} 1\n"));
+        assertTrue(text, text.contains("admiral_operation_in_flight{" + labels + "} 1\n"));
+
+        // the actions without operations are omitted
+        assertFalse(text, text.contains("action=\"GET\""));
+    }
+
+    @Test
+    public void testRecordInterceptors() {
+        OperationMetrics metrics = new OperationMetrics();
+        Metric interceptor = metrics.getInterceptorMetric("ProfileService/DELETE/0");
+        interceptor.completed(interceptor.started(), false);
+
+        String text = metrics.toPrometheusText();
+        assertTrue(text, text.contains("# TYPE admiral_interceptor_duration_seconds histogram\n"));
+        assertTrue(text, text.contains("admiral_interceptor_duration_seconds_count"
+                + "{interceptor=\"ProfileService/DELETE/0\"} 1\n"));
+        assertTrue(text, text.contains("admiral_interceptor_errors_total"
+                + "{interceptor=\"ProfileService/DELETE/0\"} 0\n"));
+    }
+}
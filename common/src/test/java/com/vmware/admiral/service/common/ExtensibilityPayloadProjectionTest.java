@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
+import com.vmware.xenon.common.TaskState;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.Utils;
+
+public class ExtensibilityPayloadProjectionTest {
+
+    @Test
+    public void testProjectionMatchesJsonConversion() {
+        TestTaskState state = createTaskState();
+
+        TestTaskState projected = ExtensibilityPayloadProjection.project(new TestPayload(),
+                state);
+        TestTaskState converted = Utils.fromJson(Utils.toJson(
+                Utils.fromJson(Utils.toJson(state), TestPayload.class)), TestTaskState.class);
+
+        assertEquals(Utils.toJson(converted), Utils.toJson(projected));
+        assertEquals(state.resourceLinks, projected.resourceLinks);
+        assertNotSame(state.resourceLinks, projected.resourceLinks);
+        assertEquals(state.customProperties, projected.customProperties);
+        assertNull(projected.hostLink);
+        assertNull(projected.documentSelfLink);
+    }
+
+    @Test
+    public void testMutableValuesAreCloned() {
+        TestTaskState state = createTaskState();
+
+        TestTaskState projected = ExtensibilityPayloadProjection.project(new TestPayload(),
+                state);
+
+        assertNotSame(state.taskInfo, projected.taskInfo);
+        assertNotSame(state.customProperties, projected.customProperties);
+        assertNotSame(state.serviceTaskCallback, projected.serviceTaskCallback);
+        assertSame(state.taskSubStage, projected.taskSubStage);
+
+        // the task goes on while the notification is queued
+        state.taskInfo.stage = TaskStage.FAILED;
+        state.serviceTaskCallback.serviceSelfLink = "/other-tasks/1";
+        assertEquals(TaskStage.STARTED, projected.taskInfo.stage);
+        assertEquals("/parent-tasks/1", projected.serviceTaskCallback.serviceSelfLink);
+    }
+
+    @Test
+    public void testIncompatibleFieldTypeIsConvertedThroughJson() {
+        TestTaskState state = createTaskState();
+
+        TestTaskState projected = ExtensibilityPayloadProjection
+                .project(new IncompatiblePayload(), state);
+
+        assertEquals(state.resourceCount, projected.resourceCount);
+        assertNull(projected.resourceLinks);
+        assertEquals(DefaultSubStage.PROCESSING, projected.taskSubStage);
+    }
+
+    private TestTaskState createTaskState() {
+        TestTaskState state = new TestTaskState();
+        state.documentSelfLink = "/test-tasks/1";
+        state.taskInfo = TaskState.createAsStarted();
+        state.serviceTaskCallback = ServiceTaskCallback.create("/parent-tasks/1");
+        state.taskSubStage = DefaultSubStage.PROCESSING;
+        state.customProperties = new HashMap<>();
+        state.customProperties.put("key", "value");
+        state.resourceLinks = new ArrayList<>(Arrays.asList("/resources/1", "/resources/2"));
+        state.resourceCount = 2;
+        state.hostLink = "/resources/compute/host";
+        return state;
+    }
+
+    public static class TestTaskState extends TaskServiceDocument<DefaultSubStage> {
+        public List<String> resourceLinks;
+        public long resourceCount;
+        public String hostLink;
+    }
+
+    public static class TestPayload extends ServiceTaskCallbackResponse {
+        public ServiceTaskCallback serviceTaskCallback;
+        public List<String> resourceLinks;
+        public long resourceCount;
+    }
+
+    public static class IncompatiblePayload extends ServiceTaskCallbackResponse {
+        public String resourceCount;
+    }
+}
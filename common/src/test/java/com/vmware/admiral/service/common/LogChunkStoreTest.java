@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.vmware.xenon.common.Utils;
+
+public class LogChunkStoreTest {
+    private static final String LOG_LINK = "/logs/test-container";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LogChunkStore store;
+
+    @Before
+    public void setUp() {
+        store = new LogChunkStore(folder.getRoot().toPath());
+    }
+
+    @Test
+    public void testReplaceAndAppend() throws IOException {
+        store.replace(LOG_LINK, "line1\n".getBytes());
+        store.append(LOG_LINK, "line2\n".getBytes());
+        assertEquals("line1\nline2\n", new String(store.read(LOG_LINK, 0, null)));
+
+        store.replace(LOG_LINK, "line3\n".getBytes());
+        assertEquals("line3\n", new String(store.read(LOG_LINK, 0, null)));
+    }
+
+    @Test
+    public void testReadOffsetAndTail() throws IOException {
+        store.replace(LOG_LINK, "0123456789".getBytes());
+
+        assertEquals("56789", new String(store.read(LOG_LINK, 5, null)));
+        assertEquals("789", new String(store.read(LOG_LINK, 0, 3)));
+        assertEquals("0123456789", new String(store.read(LOG_LINK, 0, 100)));
+        assertEquals(0, store.read(LOG_LINK, 10, null).length);
+        assertNull(store.read("/logs/missing", 0, null));
+    }
+
+    @Test
+    public void testChunksAreCapped() throws IOException {
+        int chunkSize = LogChunkStore.CHUNK_SIZE;
+        int maxSize = chunkSize * LogChunkStore.MAX_CHUNK_COUNT;
+
+        byte[] chunk = new byte[chunkSize];
+        for (int i = 0; i < LogChunkStore.MAX_CHUNK_COUNT + 2; i++) {
+            Arrays.fill(chunk, (byte) i);
+            store.append(LOG_LINK, chunk);
+        }
+
+        byte[] logs = store.read(LOG_LINK, 0, null);
+        assertEquals(maxSize, logs.length);
+        // the two oldest chunks are dropped
+        assertEquals(2, logs[0]);
+        assertEquals(LogChunkStore.MAX_CHUNK_COUNT + 1, logs[logs.length - 1]);
+
+        // offsets are kept in the whole log stream
+        byte[] tail = store.read(LOG_LINK, (long) chunkSize * (LogChunkStore.MAX_CHUNK_COUNT + 1),
+                null);
+        assertEquals(chunkSize, tail.length);
+        assertEquals(LogChunkStore.MAX_CHUNK_COUNT + 1, tail[0]);
+    }
+
+    @Test
+    public void testReplaceKeepsTheTail() throws IOException {
+        int maxSize = LogChunkStore.CHUNK_SIZE * LogChunkStore.MAX_CHUNK_COUNT;
+        byte[] data = new byte[maxSize + LogChunkStore.CHUNK_SIZE];
+        data[data.length - 1] = 1;
+
+        store.replace(LOG_LINK, data);
+
+        byte[] logs = store.read(LOG_LINK, 0, null);
+        assertEquals(maxSize, logs.length);
+        assertEquals(1, logs[logs.length - 1]);
+    }
+
+    @Test
+    public void testSweep() throws IOException {
+        store.replace(LOG_LINK, "logs".getBytes());
+
+        assertEquals(Collections.emptyList(), store.sweep(Utils.getNowMicrosUtc() - 1000000));
+        assertEquals(Collections.singletonList(LOG_LINK),
+                store.sweep(Utils.getNowMicrosUtc() + 1));
+        assertNull(store.read(LOG_LINK, 0, null));
+        assertArrayEquals(new String[0], folder.getRoot().list());
+    }
+}
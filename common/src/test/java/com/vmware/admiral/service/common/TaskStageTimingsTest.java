@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.vmware.admiral.service.common.TaskStageTimings.CriticalPathSegment;
+import com.vmware.admiral.service.common.TaskStageTimings.StageSpan;
+import com.vmware.admiral.service.common.TaskStageTimings.StageTiming;
+
+public class TaskStageTimingsTest {
+    private static final String REQUEST = "/request-status/1";
+    private static final String BROKER = "/requests/1";
+
+    private final TaskStageTimings timings = new TaskStageTimings();
+
+    @Test
+    public void testStageTimings() {
+        timings.record(null, span("ReservationTaskService", "/reservation", BROKER, "QUERYING",
+                0, 10));
+        timings.record(null, span("ReservationTaskService", "/reservation", BROKER, "QUERYING",
+                0, 30));
+        timings.record(null, span("ReservationTaskService", "/reservation", BROKER, "SELECTED",
+                30, 35));
+
+        List<StageTiming> stageTimings = timings.getStageTimings();
+        assertEquals(2, stageTimings.size());
+        StageTiming querying = stageTimings.get(0);
+        assertEquals("QUERYING", querying.subStage);
+        assertEquals(2, querying.count);
+        assertEquals(40, querying.totalMicros);
+        assertEquals(30, querying.maxMicros);
+
+        // without a request tracker link the stages are not kept for the request
+        assertTrue(timings.getStageSpans(REQUEST).isEmpty());
+    }
+
+    @Test
+    public void testCriticalPath() {
+        timings.record(REQUEST, span("RequestBrokerService", BROKER, null, "RESERVING", 0, 100));
+        timings.record(REQUEST, span("ReservationTaskService", "/reservation", BROKER,
+                "QUERYING", 10, 40));
+        timings.record(REQUEST, span("ReservationTaskService", "/reservation", BROKER,
+                "PLACEMENT", 40, 60));
+        // parallel allocation tasks, the second one finishes last
+        timings.record(REQUEST, span("RequestBrokerService", BROKER, null, "ALLOCATING", 120,
+                300));
+        timings.record(REQUEST, span("AllocationTaskService", "/allocation/1", BROKER,
+                "PROVISIONING", 130, 200));
+        timings.record(REQUEST, span("AllocationTaskService", "/allocation/2", BROKER,
+                "PROVISIONING", 130, 280));
+
+        List<CriticalPathSegment> path = timings.getCriticalPath(REQUEST);
+        assertSegment(path.get(0), BROKER, "RESERVING", 0, 10);
+        assertSegment(path.get(1), "/reservation", "QUERYING", 10, 30);
+        assertSegment(path.get(2), "/reservation", "PLACEMENT", 40, 20);
+        assertSegment(path.get(3), BROKER, "RESERVING", 60, 40);
+        // no task of the request is in a sub-stage
+        assertNull(path.get(4).taskLink);
+        assertEquals(20, path.get(4).durationMicros);
+        assertSegment(path.get(5), BROKER, "ALLOCATING", 120, 10);
+        assertSegment(path.get(6), "/allocation/2", "PROVISIONING", 130, 150);
+        assertSegment(path.get(7), BROKER, "ALLOCATING", 280, 20);
+        assertEquals(8, path.size());
+    }
+
+    @Test
+    public void testCriticalPathOfRequestInProgress() {
+        StageSpan reserving = span("RequestBrokerService", BROKER, null, "RESERVING", 0, 0);
+        timings.start(REQUEST, reserving);
+        timings.record(REQUEST, span("RequestBrokerService", BROKER, null, "RESERVING", 0, 20));
+        // the wait for the extensibility subscribers is a sub-stage of its own
+        timings.record(REQUEST, span("RequestBrokerService", BROKER, null,
+                "ALLOCATING" + TaskStageTimings.EXTENSIBILITY_WAIT_SUFFIX, 20, 50));
+        timings.start(REQUEST, span("RequestBrokerService", BROKER, null, "ALLOCATING", 50, 0));
+        timings.start(REQUEST, span("AllocationTaskService", "/allocation/1", BROKER,
+                "PROVISIONING", 60, 0));
+
+        List<StageSpan> spans = timings.getStageSpans(REQUEST, 100);
+        assertEquals(4, spans.size());
+        StageSpan provisioning = spans.stream()
+                .filter(s -> "PROVISIONING".equals(s.subStage)).findFirst().get();
+        assertTrue(provisioning.inProgress);
+        assertEquals(100, provisioning.endTimeMicros);
+        assertFalse(spans.get(0).inProgress);
+
+        List<CriticalPathSegment> path = TaskStageTimings.getCriticalPath(spans);
+        assertSegment(path.get(0), BROKER, "RESERVING", 0, 20);
+        assertSegment(path.get(1), BROKER,
+                "ALLOCATING" + TaskStageTimings.EXTENSIBILITY_WAIT_SUFFIX, 20, 30);
+        assertSegment(path.get(2), BROKER, "ALLOCATING", 50, 10);
+        assertSegment(path.get(3), "/allocation/1", "PROVISIONING", 60, 40);
+        assertEquals(4, path.size());
+
+        // the sub-stage in progress is replaced once its time is recorded
+        timings.record(REQUEST, span("AllocationTaskService", "/allocation/1", BROKER,
+                "PROVISIONING", 60, 90));
+        spans = timings.getStageSpans(REQUEST, 100);
+        assertEquals(4, spans.size());
+        assertEquals(1, spans.stream().filter(s -> s.inProgress).count());
+    }
+
+    private static void assertSegment(CriticalPathSegment segment, String taskLink,
+            String subStage, long startTimeMicros, long durationMicros) {
+        assertEquals(taskLink, segment.taskLink);
+        assertEquals(subStage, segment.subStage);
+        assertEquals(startTimeMicros, segment.startTimeMicros);
+        assertEquals(durationMicros, segment.durationMicros);
+    }
+
+    private static StageSpan span(String taskType, String taskLink, String parentTaskLink,
+            String subStage, long startTimeMicros, long endTimeMicros) {
+        StageSpan span = new StageSpan();
+        span.taskType = taskType;
+        span.taskLink = taskLink;
+        span.parentTaskLink = parentTaskLink;
+        span.subStage = subStage;
+        span.startTimeMicros = startTimeMicros;
+        span.endTimeMicros = endTimeMicros;
+        return span;
+    }
+}
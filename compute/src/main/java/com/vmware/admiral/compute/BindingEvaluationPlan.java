@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.vmware.admiral.compute.content.Binding;
+import com.vmware.admiral.compute.content.Binding.ComponentBinding;
+
+/**
+ * The bindings of a template compiled for evaluation by the {@link BindingEvaluator}. The
+ * binding expressions are parsed once, the bindings of the source fields are linked, and the
+ * components are ordered so that a component is evaluated after the components it is bound to.
+ *
+ * Plans are cached by the content of the bindings, so evaluating the bindings of the same
+ * template again only runs the plan.
+ */
+final class BindingEvaluationPlan {
+    private static final int MAX_CACHED_PLANS = Integer.getInteger(
+            "com.vmware.admiral.compute.binding.plan.cache.size", 256);
+
+    private static final Map<String, BindingEvaluationPlan> PLANS = Collections.synchronizedMap(
+            new LinkedHashMap<String, BindingEvaluationPlan>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, BindingEvaluationPlan> eldest) {
+                    return size() > MAX_CACHED_PLANS;
+                }
+            });
+
+    /** A binding with its source expression parsed. */
+    static final class CompiledBinding {
+        final Binding binding;
+        final String sourceComponentName;
+        final List<String> sourceFieldPath;
+        /** The binding of the source field, used when the source field has no value. */
+        CompiledBinding sourceBinding;
+        /** The binding whose target is set to the value of a provisioning time binding. */
+        Binding provisioningTarget;
+
+        private CompiledBinding(Binding binding) {
+            this.binding = binding;
+            String expression = binding.placeholder.bindingExpression;
+            this.sourceComponentName = BindingUtils
+                    .extractComponentNameFromBindingExpression(expression);
+            this.sourceFieldPath = Collections.unmodifiableList(
+                    BindingUtils.convertToFieldPath(expression));
+        }
+    }
+
+    /** The bindings of a component, evaluated and applied together. */
+    static final class ComponentPlan {
+        final String componentName;
+        final List<CompiledBinding> bindings = new ArrayList<>();
+
+        private ComponentPlan(String componentName) {
+            this.componentName = componentName;
+        }
+    }
+
+    /** The components with evaluation time bindings, in evaluation order. */
+    final List<ComponentPlan> components;
+
+    /** The provisioning time bindings, in their original order. */
+    final List<CompiledBinding> provisioningTimeBindings;
+
+    private BindingEvaluationPlan(List<ComponentPlan> components,
+            List<CompiledBinding> provisioningTimeBindings) {
+        this.components = components;
+        this.provisioningTimeBindings = provisioningTimeBindings;
+    }
+
+    /**
+     * Returns the plan of the given component bindings of a template.
+     */
+    static BindingEvaluationPlan forTemplate(List<ComponentBinding> componentBindings) {
+        StringBuilder key = new StringBuilder();
+        for (ComponentBinding componentBinding : componentBindings) {
+            key.append(componentBinding.componentName).append('\n');
+            appendKey(key, componentBinding.bindings);
+        }
+        return PLANS.computeIfAbsent(key.toString(),
+                k -> compileTemplate(componentBindings));
+    }
+
+    /**
+     * Returns the plan of the provisioning time bindings of a component.
+     */
+    static BindingEvaluationPlan forComponent(List<Binding> bindings) {
+        StringBuilder key = new StringBuilder("\n");
+        appendKey(key, bindings);
+        return PLANS.computeIfAbsent(key.toString(), k -> compileComponent(bindings));
+    }
+
+    private static BindingEvaluationPlan compileTemplate(
+            List<ComponentBinding> componentBindings) {
+        Map<String, ComponentPlan> plans = new LinkedHashMap<>();
+        // component name -> target field path -> binding
+        Map<String, Map<List<String>, CompiledBinding>> byTarget = new HashMap<>();
+
+        for (ComponentBinding componentBinding : componentBindings) {
+            ComponentPlan plan = new ComponentPlan(componentBinding.componentName);
+            Map<List<String>, CompiledBinding> targets = new HashMap<>();
+            for (Binding binding : componentBinding.bindings) {
+                CompiledBinding compiled = new CompiledBinding(binding);
+                // the first binding of a target field is the one the source values resolve to
+                targets.putIfAbsent(binding.targetFieldPath, compiled);
+                if (!binding.isProvisioningTimeBinding()) {
+                    plan.bindings.add(compiled);
+                }
+            }
+            byTarget.put(componentBinding.componentName, targets);
+            if (!plan.bindings.isEmpty()) {
+                plans.put(plan.componentName, plan);
+            }
+        }
+
+        for (ComponentPlan plan : plans.values()) {
+            for (CompiledBinding compiled : plan.bindings) {
+                linkSourceBinding(compiled, byTarget);
+            }
+        }
+        return new BindingEvaluationPlan(order(plans), Collections.emptyList());
+    }
+
+    private static void linkSourceBinding(CompiledBinding compiled,
+            Map<String, Map<List<String>, CompiledBinding>> byTarget) {
+        Map<List<String>, CompiledBinding> targets = byTarget.get(compiled.sourceComponentName);
+        if (targets == null) {
+            return;
+        }
+        CompiledBinding source = targets.get(compiled.sourceFieldPath);
+        if (source != null && compiled.sourceBinding == null) {
+            compiled.sourceBinding = source;
+            linkSourceBinding(source, byTarget);
+        }
+    }
+
+    /**
+     * Orders the components so that the components which are sources of bindings come first.
+     * Components bound to each other keep their original order.
+     */
+    private static List<ComponentPlan> order(Map<String, ComponentPlan> plans) {
+        List<ComponentPlan> ordered = new ArrayList<>(plans.size());
+        Set<String> added = new HashSet<>();
+        Set<String> visiting = new HashSet<>();
+        for (ComponentPlan plan : plans.values()) {
+            visit(plan, plans, added, visiting, ordered);
+        }
+        return Collections.unmodifiableList(ordered);
+    }
+
+    private static void visit(ComponentPlan plan, Map<String, ComponentPlan> plans,
+            Set<String> added, Set<String> visiting, List<ComponentPlan> ordered) {
+        if (added.contains(plan.componentName) || !visiting.add(plan.componentName)) {
+            return;
+        }
+        for (CompiledBinding compiled : plan.bindings) {
+            ComponentPlan source = plans.get(compiled.sourceComponentName);
+            if (source != null) {
+                visit(source, plans, added, visiting, ordered);
+            }
+        }
+        visiting.remove(plan.componentName);
+        added.add(plan.componentName);
+        ordered.add(plan);
+    }
+
+    private static BindingEvaluationPlan compileComponent(List<Binding> bindings) {
+        List<CompiledBinding> provisioningTimeBindings = new ArrayList<>();
+        for (Binding binding : bindings) {
+            if (binding.isProvisioningTimeBinding()) {
+                CompiledBinding compiled = new CompiledBinding(binding);
+                compiled.provisioningTarget = findBindingByExpression(
+                        binding.placeholder.bindingExpression, bindings);
+                provisioningTimeBindings.add(compiled);
+            }
+        }
+        return new BindingEvaluationPlan(Collections.emptyList(),
+                Collections.unmodifiableList(provisioningTimeBindings));
+    }
+
+    private static Binding findBindingByExpression(String expression, List<Binding> bindings) {
+        for (Binding b : bindings) {
+            if (expression.equalsIgnoreCase(b.placeholder.bindingExpression)) {
+                return b;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Appends all the properties of the bindings which the evaluation depends on.
+     */
+    private static void appendKey(StringBuilder key, List<Binding> bindings) {
+        for (Binding binding : bindings) {
+            key.append(binding.targetFieldPath).append('\t')
+                    .append(binding.originalFieldExpression).append('\t')
+                    .append(binding.placeholder.bindingExpression).append('\t')
+                    .append(binding.placeholder.defaultValue).append('\n');
+        }
+    }
+}
@@ -21,11 +21,10 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -39,8 +38,9 @@ import com.google.gson.JsonPrimitive;
 import com.vmware.admiral.closures.services.closure.Closure;
 import com.vmware.admiral.common.util.PropertyUtils;
 import com.vmware.admiral.common.util.YamlMapper;
+import com.vmware.admiral.compute.BindingEvaluationPlan.CompiledBinding;
+import com.vmware.admiral.compute.BindingEvaluationPlan.ComponentPlan;
 import com.vmware.admiral.compute.content.Binding;
-import com.vmware.admiral.compute.content.Binding.ComponentBinding;
 import com.vmware.admiral.compute.content.ComponentTemplate;
 import com.vmware.admiral.compute.content.CompositeTemplate;
 import com.vmware.admiral.compute.content.NestedState;
@@ -116,6 +116,10 @@ public class BindingEvaluator {
      * Take a composite description evaluate the bindings and set the results in the Descriptions.
      * Basically go through each binding and try to get the source value and set the target value.
      * If the source value happens to be bound to another value recurse.
+     *
+     * <p>
+     * The bindings are evaluated by the cached {@link BindingEvaluationPlan} of the template, one
+     * component at a time, so the values of a component are set in a single update.
      */
     public static void evaluateBindings(CompositeTemplate compositeTemplate) {
 
@@ -126,29 +130,20 @@ public class BindingEvaluator {
         Map<String, ComponentTemplate<?>> componentNameToTemplate = getComponentNameToDescription(
                 compositeTemplate);
 
-        Map<String, ComponentBinding> bindingByComponentName = getBindingByComponentName(
+        BindingEvaluationPlan plan = BindingEvaluationPlan.forTemplate(
                 compositeTemplate.bindings);
 
-        for (Binding.ComponentBinding componentBinding : bindingByComponentName.values()) {
+        for (ComponentPlan componentPlan : plan.components) {
             @SuppressWarnings("rawtypes")
             ComponentTemplate componentTemplate = componentNameToTemplate
-                    .get(componentBinding.componentName);
+                    .get(componentPlan.componentName);
 
-            for (Binding binding : componentBinding.bindings) {
-                if (binding.isProvisioningTimeBinding()) {
-                    continue;
-                }
-
-                try {
-                    evaluateBinding(binding, componentBinding.componentName, componentTemplate,
-                            componentNameToTemplate,
-                            bindingByComponentName,
-                            new HashSet<>());
-                } catch (ReflectiveOperationException | IOException e) {
-                    throw new RuntimeException(e);
-                }
+            try {
+                evaluateComponentBindings(componentPlan, componentTemplate,
+                        componentNameToTemplate);
+            } catch (ReflectiveOperationException | IOException e) {
+                throw new RuntimeException(e);
             }
-
         }
     }
 
@@ -160,19 +155,21 @@ public class BindingEvaluator {
             NestedState state,
             List<Binding> bindings,
             Map<String, NestedState> provisionedResources) {
-        NestedState result = state;
+        BindingEvaluationPlan plan = BindingEvaluationPlan.forComponent(bindings);
         Map<String, Object> evaluatedBindingMap = new HashMap<>();
-        for (Binding binding : bindings) {
-            if (!binding.isProvisioningTimeBinding()) {
-                continue;
-            }
+        for (CompiledBinding binding : plan.provisioningTimeBindings) {
             try {
                 evaluateProvisioningTimeBinding(binding, provisionedResources, evaluatedBindingMap);
-            } catch (ReflectiveOperationException | IOException e) {
+            } catch (ReflectiveOperationException e) {
                 throw new RuntimeException(e);
             }
         }
 
+        if (evaluatedBindingMap.isEmpty()) {
+            // nothing to apply, skip the serialization of the state
+            return state;
+        }
+
         try {
             final Map<String, Object> resultBindingMap = new HashMap<>();
             sanitizeState(state, (normalizedState) -> {
@@ -186,16 +183,12 @@ public class BindingEvaluator {
 
             });
 
-            applyEvaluatedState(resultBindingMap, evaluatedBindingMap, bindings);
-            if (!evaluatedBindingMap.isEmpty()) {
-                result = TemplateSerializationUtils.deserializeServiceDocument(resultBindingMap,
-                        state.object.getClass());
-            }
+            applyEvaluatedState(resultBindingMap, evaluatedBindingMap, plan);
+            return TemplateSerializationUtils.deserializeServiceDocument(resultBindingMap,
+                    state.object.getClass());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
-        return result;
     }
 
     private static void sanitizeState(NestedState state, Consumer<NestedState> serializationCall)
@@ -226,78 +219,87 @@ public class BindingEvaluator {
     }
 
     private static void applyEvaluatedState(Map<String, Object> resultBindingMap,
-            Map<String, Object> evaluatedBindingMap, List<Binding> bindings) {
-        evaluatedBindingMap.forEach((k, v) -> {
-            Binding targetBinding = findBindingByExpression(k, bindings);
-            if (targetBinding != null) {
-                setValue(resultBindingMap, targetBinding.targetFieldPath, v);
-            }
-        });
-
-    }
-
-    private static Binding findBindingByExpression(String k, List<Binding> bindings) {
-        for (Binding b : bindings) {
-            if (k.equalsIgnoreCase(b.placeholder.bindingExpression)) {
-                return b;
+            Map<String, Object> evaluatedBindingMap, BindingEvaluationPlan plan) {
+        for (CompiledBinding binding : plan.provisioningTimeBindings) {
+            String expression = binding.binding.placeholder.bindingExpression;
+            if (binding.provisioningTarget != null && evaluatedBindingMap.containsKey(expression)) {
+                // each evaluated expression is applied once
+                setValue(resultBindingMap, binding.provisioningTarget.targetFieldPath,
+                        evaluatedBindingMap.remove(expression));
             }
         }
-
-        return null;
     }
 
-    private static void evaluateProvisioningTimeBinding(Binding binding,
+    private static void evaluateProvisioningTimeBinding(CompiledBinding binding,
             Map<String, NestedState> provisionedResources, Map<String, Object> evaluatedBindings)
-            throws ReflectiveOperationException, IOException {
-
-        String componentName = BindingUtils
-                .extractComponentNameFromBindingExpression(binding.placeholder.bindingExpression);
+            throws ReflectiveOperationException {
 
-        NestedState provisionedResource = provisionedResources.get(componentName);
+        NestedState provisionedResource = provisionedResources.get(binding.sourceComponentName);
         if (provisionedResource == null) {
             return;
         }
 
-        Object value = getFieldValueByPath(
-                BindingUtils.convertToFieldPath(binding.placeholder.bindingExpression),
-                provisionedResource);
+        Object value = getFieldValueByPath(binding.sourceFieldPath, provisionedResource);
 
-        value = BindingUtils.valueForBinding(binding, value);
-        evaluatedBindings.put(binding.placeholder.bindingExpression, value);
+        value = BindingUtils.valueForBinding(binding.binding, value);
+        evaluatedBindings.put(binding.binding.placeholder.bindingExpression, value);
     }
 
+    /**
+     * Resolves the values of the bindings of a component and sets them in the serialized
+     * component, which is deserialized once all of them are set. The component is deserialized
+     * earlier only when a binding reads a field of the component itself, which may have been set
+     * by a previous binding.
+     */
     @SuppressWarnings("unchecked")
-    private static void evaluateBinding(
-            Binding binding,
-            String componentName,
+    private static void evaluateComponentBindings(
+            ComponentPlan componentPlan,
             @SuppressWarnings("rawtypes") ComponentTemplate componentTemplate,
-            Map<String, ComponentTemplate<?>> componentNameToTemplate,
-            Map<String, Binding.ComponentBinding> allBindings,
-            Set<String> visited) throws ReflectiveOperationException, IOException {
+            Map<String, ComponentTemplate<?>> componentNameToTemplate)
+            throws ReflectiveOperationException, IOException {
 
-        Object rootSourceValue = resolveValue(binding, componentName, componentTemplate,
-                componentNameToTemplate, allBindings, visited);
+        Map<String, Object> serializedComponentTemplate = null;
+        for (CompiledBinding binding : componentPlan.bindings) {
+            if (serializedComponentTemplate != null
+                    && componentPlan.componentName.equals(binding.sourceComponentName)) {
+                updateComponentTemplate(componentTemplate, serializedComponentTemplate);
+                serializedComponentTemplate = null;
+            }
 
-        if (rootSourceValue != null) {
-            Map<String, Object> serializedComponentTemplate = TemplateSerializationUtils
-                    .serializeComponentTemplate(componentTemplate, objectMapper,
-                            objectAsStringWriter);
+            Object rootSourceValue = resolveValue(binding, componentPlan.componentName,
+                    componentNameToTemplate, new HashSet<>());
+            if (rootSourceValue == null) {
+                continue;
+            }
+
+            if (serializedComponentTemplate == null) {
+                serializedComponentTemplate = TemplateSerializationUtils
+                        .serializeComponentTemplate(componentTemplate, objectMapper,
+                                objectAsStringWriter);
+            }
             setValue((Map<String, Object>) serializedComponentTemplate.get("data"),
-                    binding.targetFieldPath, rootSourceValue);
-            ComponentTemplate<?> updatedComponentTemplate = TemplateSerializationUtils
-                    .deserializeComponent(serializedComponentTemplate, objectMapper);
-            componentTemplate.data = updatedComponentTemplate.data;
-            componentTemplate.children = updatedComponentTemplate.children;
-            componentTemplate.type = updatedComponentTemplate.type;
-            componentTemplate.dependsOn = updatedComponentTemplate.dependsOn;
+                    binding.binding.targetFieldPath, rootSourceValue);
         }
 
+        if (serializedComponentTemplate != null) {
+            updateComponentTemplate(componentTemplate, serializedComponentTemplate);
+        }
     }
 
-    private static Object resolveValue(Binding binding, String templateName,
-            @SuppressWarnings("rawtypes") ComponentTemplate targetTemplate,
-            Map<String, ComponentTemplate<?>> componentNameToDescription,
-            Map<String, Binding.ComponentBinding> allBindings, Set<String> visited)
+    @SuppressWarnings("unchecked")
+    private static void updateComponentTemplate(
+            @SuppressWarnings("rawtypes") ComponentTemplate componentTemplate,
+            Map<String, Object> serializedComponentTemplate) throws IOException {
+        ComponentTemplate<?> updatedComponentTemplate = TemplateSerializationUtils
+                .deserializeComponent(serializedComponentTemplate, objectMapper);
+        componentTemplate.data = updatedComponentTemplate.data;
+        componentTemplate.children = updatedComponentTemplate.children;
+        componentTemplate.type = updatedComponentTemplate.type;
+        componentTemplate.dependsOn = updatedComponentTemplate.dependsOn;
+    }
+
+    private static Object resolveValue(CompiledBinding binding, String templateName,
+            Map<String, ComponentTemplate<?>> componentNameToDescription, Set<String> visited)
             throws ReflectiveOperationException {
 
         // Assume the <<description>>.name is the same as the component name because of
@@ -310,46 +312,20 @@ public class BindingEvaluator {
         }
         visited.add(componentName);
 
-        String bindingExpression = binding.placeholder.bindingExpression;
-        List<String> sourceFieldPath = BindingUtils.convertToFieldPath(bindingExpression);
-        String sourceComponentName = BindingUtils
-                .extractComponentNameFromBindingExpression(bindingExpression);
-
         @SuppressWarnings("rawtypes")
-        ComponentTemplate sourceTemplate = componentNameToDescription.get(sourceComponentName);
+        ComponentTemplate sourceTemplate = componentNameToDescription
+                .get(binding.sourceComponentName);
 
-        Object rootSourceValue = getFieldValueByPath(sourceFieldPath, sourceTemplate.data);
+        Object rootSourceValue = getFieldValueByPath(binding.sourceFieldPath,
+                sourceTemplate.data);
 
         // if the source value is null it may be bound to something else
-        if (rootSourceValue == null) {
-            Optional<Binding> isSourceValueABinding = findBinding(sourceFieldPath,
-                    sourceComponentName,
-                    allBindings);
-            if (isSourceValueABinding.isPresent()) {
-                Binding nestedBinding = isSourceValueABinding.get();
-                rootSourceValue = resolveValue(nestedBinding, sourceComponentName, sourceTemplate,
-                        componentNameToDescription,
-                        allBindings, visited);
-            }
+        if (rootSourceValue == null && binding.sourceBinding != null) {
+            rootSourceValue = resolveValue(binding.sourceBinding, binding.sourceComponentName,
+                    componentNameToDescription, visited);
         }
 
-        return BindingUtils.valueForBinding(binding, rootSourceValue);
-    }
-
-    private static Map<String, Binding.ComponentBinding> getBindingByComponentName(
-            List<Binding.ComponentBinding> bindings) {
-        return bindings.stream().collect(Collectors.toMap(cb -> cb.componentName, cb -> cb));
-    }
-
-    private static Optional<Binding> findBinding(List<String> fieldPath, String componentName,
-            Map<String, Binding.ComponentBinding> allBindings) {
-
-        if (!allBindings.containsKey(componentName)) {
-            return Optional.empty();
-        }
-
-        return allBindings.get(componentName).bindings.stream()
-                .filter(b -> b.targetFieldPath.equals(fieldPath)).findFirst();
+        return BindingUtils.valueForBinding(binding.binding, rootSourceValue);
     }
 
     @SuppressWarnings("unchecked")
@@ -461,15 +437,14 @@ public class BindingEvaluator {
                 return null;
             }
 
-            // this field contains links
-            isCurrentFieldLink =
-                    NestedState.getNestedObjectType(value.getClass(), fieldName) != null;
-
             // special case for a map
             if (value instanceof Map) {
+                // the keys of a map are not cached as fields
+                boolean isLink = NestedState.getNestedObjectType(value.getClass(),
+                        fieldName) != null;
                 value = ((Map) value).get(fieldName);
 
-                if (isCurrentFieldLink) {
+                if (isLink) {
                     String link = (String) value;
                     value = currentNestedState.children.get(link).object;
                     currentNestedState = currentNestedState.children.get(link);
@@ -517,13 +492,12 @@ public class BindingEvaluator {
                 continue;
             }
 
-            Class<?> type = value.getClass();
-            Field field = PropertyUtils.findField(type, fieldName);
-            if (field == null) {
-                String snakeCaseFieldName = convertSnakeCaseToCamelCase(fieldName);
-                field = PropertyUtils.findField(type, snakeCaseFieldName);
-            }
+            FieldAccessor accessor = FieldAccessor.of(value.getClass(), fieldName);
 
+            // this field contains links
+            isCurrentFieldLink = accessor.isLink;
+
+            Field field = accessor.field;
             if (field != null) {
                 if (value instanceof Closure) {
                     value = fromClosureMap(value, field);
@@ -539,7 +513,7 @@ public class BindingEvaluator {
             } else {
                 // handle special case, as we implicitly put any not know property into
                 // customProperties.
-                value = tryGetValueFromCustomProperties(type, value, fieldName);
+                value = tryGetValueFromCustomProperties(accessor, value, fieldName);
             }
             isParentFieldLink = isCurrentFieldLink;
         }
@@ -565,10 +539,10 @@ public class BindingEvaluator {
     }
 
     @SuppressWarnings("unchecked")
-    private static Object tryGetValueFromCustomProperties(Class<?> type, Object value,
+    private static Object tryGetValueFromCustomProperties(FieldAccessor accessor, Object value,
             String fieldName) {
         Object result = null;
-        Field field = PropertyUtils.findField(type, ResourceState.FIELD_NAME_CUSTOM_PROPERTIES);
+        Field field = accessor.customPropertiesField;
         if (field != null) {
             try {
                 Map<String, Object> customProperties = (Map<String, Object>) field.get(value);
@@ -580,6 +554,47 @@ public class BindingEvaluator {
         return result;
     }
 
+    /**
+     * The reflective lookups of a field of a class used by the bindings. Only the lookups of the
+     * fields declared by the class are cached, the names of the other fields come from the
+     * templates and are looked up in the custom properties each time.
+     */
+    private static final class FieldAccessor {
+        private static final Map<Class<?>, Map<String, FieldAccessor>> ACCESSORS =
+                new ConcurrentHashMap<>();
+
+        /** The field, looked up by name and then by the camel case of the name. */
+        final Field field;
+        /** Whether the field contains links to nested states. */
+        final boolean isLink;
+        final Field customPropertiesField;
+
+        private FieldAccessor(Class<?> type, String fieldName) {
+            Field field = PropertyUtils.findField(type, fieldName);
+            if (field == null) {
+                String snakeCaseFieldName = convertSnakeCaseToCamelCase(fieldName);
+                field = PropertyUtils.findField(type, snakeCaseFieldName);
+            }
+            this.field = field;
+            this.isLink = NestedState.getNestedObjectType(type, fieldName) != null;
+            this.customPropertiesField = field != null ? null
+                    : PropertyUtils.findField(type, ResourceState.FIELD_NAME_CUSTOM_PROPERTIES);
+        }
+
+        static FieldAccessor of(Class<?> type, String fieldName) {
+            Map<String, FieldAccessor> accessors = ACCESSORS.computeIfAbsent(type,
+                    t -> new ConcurrentHashMap<>());
+            FieldAccessor accessor = accessors.get(fieldName);
+            if (accessor == null) {
+                accessor = new FieldAccessor(type, fieldName);
+                if (accessor.field != null) {
+                    accessors.put(fieldName, accessor);
+                }
+            }
+            return accessor;
+        }
+    }
+
     private static Map<String, ComponentTemplate<?>> getComponentNameToDescription(
             CompositeTemplate compositeTemplate) {
         if (compositeTemplate.components == null) {
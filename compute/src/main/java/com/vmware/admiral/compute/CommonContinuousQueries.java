@@ -16,8 +16,11 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
 import com.vmware.photon.controller.model.resources.ComputeService.LifecycleState;
+import com.vmware.photon.controller.model.resources.SubnetService.SubnetState;
 import com.vmware.xenon.common.LocalizableValidationException;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
@@ -25,6 +28,7 @@ import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.ServiceSubscriptionState.ServiceSubscriber;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsServiceState;
 import com.vmware.xenon.services.common.QueryTask;
 import com.vmware.xenon.services.common.QueryTask.Query;
 import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
@@ -50,6 +54,8 @@ public class CommonContinuousQueries {
      */
     private static final long QUERY_TASK_EXPIRATION_DAYS = 5 * 365; // 5 years
 
+    private static final String SUBNET_FIELD_NAME_CIDR = "subnetCIDR";
+
     /**
      * Supported common queries.
      */
@@ -62,7 +68,28 @@ public class CommonContinuousQueries {
         /**
          * Query for all {@link ComputeState}s in {@link LifecycleState.RETIRED} state.
          */
-        RETIRED_COMPUTES
+        RETIRED_COMPUTES,
+
+        /**
+         * Query for all {@link ContainerState}s, including the ones owned by other nodes. The
+         * notifications carry the placement related fields of the documents only, i.e. the host,
+         * description, composite component and names of the containers.
+         */
+        CONTAINERS,
+
+        /**
+         * Query for all {@link SubnetState}s, including the ones owned by other nodes. The
+         * notifications carry the network, CIDR, lifecycle state, tenants and endpoint of the
+         * subnets only.
+         */
+        SUBNETS,
+
+        /**
+         * Query for all {@link AuthCredentialsServiceState}s, including the ones owned by other
+         * nodes. The notifications carry no keys or passwords, only the update time and action of
+         * the documents.
+         */
+        AUTH_CREDENTIALS
     }
 
     /**
@@ -117,6 +144,40 @@ public class CommonContinuousQueries {
             task = QueryTask.Builder.create().addOption(QueryOption.CONTINUOUS)
                     .setQuery(retiredComputesQuery).build();
             break;
+        case CONTAINERS:
+            Query containersQuery = Query.Builder.create()
+                    .addKindFieldClause(ContainerState.class)
+                    .build();
+            task = QueryTask.Builder.create().addOption(QueryOption.CONTINUOUS)
+                    .setQuery(containersQuery).build();
+            QueryUtil.addSelectFieldsOption(task, ServiceDocument.FIELD_NAME_VERSION,
+                    ServiceDocument.FIELD_NAME_UPDATE_TIME_MICROS,
+                    ServiceDocument.FIELD_NAME_UPDATE_ACTION,
+                    ContainerState.FIELD_NAME_PARENT_LINK,
+                    ContainerState.FIELD_NAME_DESCRIPTION_LINK,
+                    ContainerState.FIELD_NAME_COMPOSITE_COMPONENT_LINK,
+                    ContainerState.FIELD_NAME_NAMES);
+            break;
+        case SUBNETS:
+            Query subnetsQuery = Query.Builder.create()
+                    .addKindFieldClause(SubnetState.class)
+                    .build();
+            task = QueryTask.Builder.create().addOption(QueryOption.CONTINUOUS)
+                    .setQuery(subnetsQuery).build();
+            QueryUtil.addSelectFieldsOption(task, ServiceDocument.FIELD_NAME_UPDATE_ACTION,
+                    SubnetState.FIELD_NAME_NETWORK_LINK, SUBNET_FIELD_NAME_CIDR,
+                    SubnetState.FIELD_NAME_LIFECYCLE_STATE, SubnetState.FIELD_NAME_TENANT_LINKS,
+                    SubnetState.FIELD_NAME_ENDPOINT_LINK);
+            break;
+        case AUTH_CREDENTIALS:
+            Query credentialsQuery = Query.Builder.create()
+                    .addKindFieldClause(AuthCredentialsServiceState.class)
+                    .build();
+            task = QueryTask.Builder.create().addOption(QueryOption.CONTINUOUS)
+                    .setQuery(credentialsQuery).build();
+            QueryUtil.addSelectFieldsOption(task, ServiceDocument.FIELD_NAME_UPDATE_TIME_MICROS,
+                    ServiceDocument.FIELD_NAME_UPDATE_ACTION);
+            break;
         default:
             throw new LocalizableValidationException("Unrecognized common query: " + queryId, "compute.quieries.unrecognized", queryId);
         }
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -57,6 +58,7 @@ import com.vmware.admiral.compute.container.HostNetworkListDataCollection.Networ
 import com.vmware.admiral.compute.container.HostVolumeListDataCollection.VolumeListCallback;
 import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection;
 import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListCallback;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService;
 import com.vmware.admiral.log.EventLogService;
 import com.vmware.admiral.log.EventLogService.EventLogState;
 import com.vmware.admiral.log.EventLogService.EventLogState.EventLogType;
@@ -108,11 +110,19 @@ public class ContainerHostDataCollectionService extends StatefulService {
             "com.vmware.admiral.compute.container.host.frequency.interval.micros",
             TimeUnit.SECONDS.toMicros(20));
 
+    // docker hosts are kept up to date from their events, see
+    // ContainerHostEventsCollectionService, and kubernetes hosts by watching their entities, see
+    // KubernetesEntityWatchService, so their entities are only listed for reconciliation
+    private static final long LIST_RECONCILIATION_INTERVAL_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.container.host.list.reconciliation.interval.micros",
+            TimeUnit.MINUTES.toMicros(30));
+
     public static final String RESOURCE_POOL_CPU_USAGE_CUSTOM_PROP = "__cpuUsage";
     public static final String RESOURCE_POOL_AVAILABLE_MEMORY_CUSTOM_PROP = "__availableMemory";
 
     protected volatile AtomicBoolean scheduled = new AtomicBoolean(false);
     protected long maintenanceIntervalInitial = TimeUnit.SECONDS.toMicros(90);
+    private final Map<String, Long> lastListCollectionMicros = new ConcurrentHashMap<>();
 
     public static ServiceDocument buildDefaultStateInstance() {
         ContainerHostDataCollectionState state = new ContainerHostDataCollectionState();
@@ -214,6 +224,10 @@ public class ContainerHostDataCollectionService extends StatefulService {
             state.lastRunTimeMicros = now;
             updateHostInfoDataCollection(patch);
         } else {
+            if (body.remove) {
+                // the containers of the removed hosts are not collected anymore
+                body.computeContainerHostLinks.forEach(this::resetContainerHostContainers);
+            }
             if (shouldSkipDC(body)
                     && !DeploymentProfileConfig.getInstance().isTest()) {
                 patch.setStatusCode(Operation.STATUS_CODE_NOT_MODIFIED);
@@ -362,6 +376,7 @@ public class ContainerHostDataCollectionService extends StatefulService {
             // host is already OFF, skip updating
             return;
         }
+        resetContainerHostContainers(computeState.documentSelfLink);
 
         final EventLogState eventLog = new EventLogState();
         eventLog.tenantLinks = computeState.tenantLinks;
@@ -784,8 +799,12 @@ public class ContainerHostDataCollectionService extends StatefulService {
 
             if (PowerState.ON.equals(compute.powerState)) {
                 if (ContainerHostUtil.isKubernetesHost(compute)) {
-                    updateKubernetesEntities(compute.documentSelfLink);
-                } else {
+                    if (isListReconciliationDue(compute.documentSelfLink,
+                            KubernetesEntityWatchService.isEnabled())) {
+                        updateKubernetesEntities(compute.documentSelfLink);
+                    }
+                } else if (isListReconciliationDue(compute.documentSelfLink,
+                        ContainerHostEventsCollectionService.isEnabled())) {
                     updateContainerHostContainers(compute);
                     updateContainerHostNetworks(compute);
                     updateContainerHostVolumes(compute.documentSelfLink);
@@ -794,6 +813,20 @@ public class ContainerHostDataCollectionService extends StatefulService {
         }
     }
 
+    private boolean isListReconciliationDue(String hostLink, boolean incrementalUpdates) {
+        if (!incrementalUpdates) {
+            return true;
+        }
+        long nowMicrosUtc = Utils.getSystemNowMicrosUtc();
+        Long lastListMicros = lastListCollectionMicros.get(hostLink);
+        if (lastListMicros != null
+                && lastListMicros + LIST_RECONCILIATION_INTERVAL_MICROS > nowMicrosUtc) {
+            return false;
+        }
+        lastListCollectionMicros.put(hostLink, nowMicrosUtc);
+        return true;
+    }
+
     private QueryTask createDockerComputeDescriptionQuery() {
         QueryTask q = QueryUtil.buildQuery(ComputeDescription.class, true);
         QueryTask.Query hostTypeClause = new QueryTask.Query()
@@ -942,6 +975,21 @@ public class ContainerHostDataCollectionService extends StatefulService {
                 }));
     }
 
+    private void resetContainerHostContainers(String containerHostLink) {
+        ContainerListCallback body = new ContainerListCallback();
+        body.containerHostLink = containerHostLink;
+        body.resetFingerprintForHost = true;
+        sendRequest(Operation
+                .createPatch(this, HostContainerListDataCollection
+                        .DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK)
+                .setBody(body)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logWarning(Utils.toString(ex));
+                    }
+                }));
+    }
+
     private void updateContainerHostNetworks(ComputeState cs) {
         NetworkListCallback body = new NetworkListCallback();
         body.containerHostLink = cs.documentSelfLink;
@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.vmware.admiral.adapter.common.AdapterRequest;
+import com.vmware.admiral.adapter.common.ContainerHostOperationType;
+import com.vmware.admiral.adapter.common.ContainerOperationType;
+import com.vmware.admiral.common.DeploymentProfileConfig;
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.compute.ComputeConstants;
+import com.vmware.admiral.compute.ContainerHostUtil;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerListCallback;
+import com.vmware.admiral.compute.container.HostNetworkListDataCollection.NetworkListCallback;
+import com.vmware.admiral.compute.container.HostVolumeListDataCollection.VolumeListCallback;
+import com.vmware.admiral.compute.container.maintenance.ContainerMaintenance;
+import com.vmware.admiral.service.common.ServiceTaskCallback;
+import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ComputeService.LifecycleState;
+import com.vmware.photon.controller.model.resources.ComputeService.PowerState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+
+/**
+ * Keeps the containers, networks and volumes of the docker hosts owned by the current node up to
+ * date by following the events reported by the docker daemon instead of listing all entities on
+ * every data collection.
+ *
+ * On each interval the events since the previous poll are retrieved for every host and applied:
+ * containers that were started or stopped are inspected, while created or destroyed containers,
+ * networks and volumes trigger the list data collection of the host. The full list data
+ * collection triggered by {@link ContainerHostDataCollectionService} is then only needed as a
+ * slow reconciliation, see {@link #isEnabled()}.
+ */
+public class ContainerHostEventsCollectionService extends StatelessService {
+    public static final String SELF_LINK = ManagementUriParts.CONTAINER_HOST_EVENTS_COLLECTION;
+
+    public static final String EVENTS_SINCE_PROP_NAME = "__eventsSince";
+    public static final String EVENTS_UNTIL_PROP_NAME = "__eventsUntil";
+
+    public static final String EVENT_TYPE_CONTAINER = "container";
+    public static final String EVENT_TYPE_NETWORK = "network";
+    public static final String EVENT_TYPE_VOLUME = "volume";
+
+    public static final String STAT_NAME_EVENTS_COUNT = "eventsCount";
+    public static final String STAT_NAME_FAILED_EVENTS_POLL_COUNT = "failedEventsPollCount";
+
+    private static final boolean EVENTS_COLLECTION_ENABLED = Boolean.parseBoolean(
+            System.getProperty("com.vmware.admiral.compute.container.host.events.enabled",
+                    "true"));
+    private static final long EVENTS_POLL_INTERVAL_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.container.host.events.interval.micros",
+            TimeUnit.SECONDS.toMicros(10));
+    // list data collection of hosts for which the events could not be retrieved
+    private static final long EVENTS_FALLBACK_LIST_INTERVAL_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.container.host.events.fallback.interval.micros",
+            TimeUnit.MINUTES.toMicros(5));
+
+    // actions after which the list of containers on the host is different
+    private static final Set<String> CONTAINER_LIST_ACTIONS = new HashSet<>(
+            Arrays.asList("create", "destroy", "rename"));
+    // actions after which the state of an existing container is different
+    private static final Set<String> CONTAINER_INSPECT_ACTIONS = new HashSet<>(
+            Arrays.asList("start", "restart", "die", "stop", "kill", "oom", "pause", "unpause",
+                    "update"));
+    private static final Set<String> NETWORK_AND_VOLUME_LIST_ACTIONS = new HashSet<>(
+            Arrays.asList("create", "destroy"));
+
+    public static class HostEvent {
+        public String type;
+        public String action;
+        public String id;
+        public long time;
+    }
+
+    public static class HostEventsCallback extends ServiceTaskCallbackResponse {
+        public String containerHostLink;
+        public URI hostAdapterReference;
+        public List<HostEvent> events = new ArrayList<>();
+    }
+
+    /**
+     * Events retrieval state of a single host.
+     */
+    static class HostEventsRecord {
+        volatile long sinceSeconds;
+        volatile long lastListMicros;
+        final AtomicBoolean polling = new AtomicBoolean();
+    }
+
+    private final Map<String, HostEventsRecord> records = new ConcurrentHashMap<>();
+
+    public ContainerHostEventsCollectionService() {
+        super.toggleOption(ServiceOption.INSTRUMENTATION, true);
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+        super.setMaintenanceIntervalMicros(EVENTS_POLL_INTERVAL_MICROS);
+    }
+
+    /**
+     * @return whether the entities of the docker hosts are kept up to date from the docker
+     *         events, in which case the full list data collection is only needed for
+     *         reconciliation
+     */
+    public static boolean isEnabled() {
+        return EVENTS_COLLECTION_ENABLED && !DeploymentProfileConfig.getInstance().isTest();
+    }
+
+    @Override
+    public void handlePatch(Operation op) {
+        HostEventsCallback body = op.getBody(HostEventsCallback.class);
+        if (body.containerHostLink == null) {
+            op.fail(new IllegalArgumentException("containerHostLink is required"));
+            return;
+        }
+        if (body.hostAdapterReference == null) {
+            body.hostAdapterReference = ContainerHostDataCollectionService
+                    .getDefaultHostAdapter(getHost());
+        }
+
+        collectEvents(body.containerHostLink, body.hostAdapterReference);
+        op.complete();
+    }
+
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        if (getProcessingStage() != ProcessingStage.AVAILABLE) {
+            logFine("Skipping maintenance since service is not available: %s ", getUri());
+            post.complete();
+            return;
+        }
+
+        if (!isEnabled()) {
+            post.complete();
+            return;
+        }
+
+        post.complete();
+
+        Set<String> ownedHostLinks = new HashSet<>();
+        new ServiceDocumentQuery<>(getHost(), ComputeState.class).query(
+                buildOwnedContainerHostsQuery(), (r) -> {
+                    if (r.hasException()) {
+                        logWarning("Failed to retrieve container hosts for events collection: %s",
+                                Utils.toString(r.getException()));
+                    } else if (r.hasResult()) {
+                        ComputeState compute = r.getResult();
+                        if (isEventsSource(compute)) {
+                            ownedHostLinks.add(compute.documentSelfLink);
+                            collectEvents(compute.documentSelfLink, getAdapterReference(compute));
+                        }
+                    } else {
+                        // forget the hosts that were removed or are now owned by another node
+                        records.keySet().retainAll(ownedHostLinks);
+                    }
+                });
+    }
+
+    private QueryTask buildOwnedContainerHostsQuery() {
+        Query ownerClause = new Query()
+                .setTermPropertyName(ServiceDocument.FIELD_NAME_OWNER)
+                .setTermMatchValue(getHost().getId());
+        Query containerHostClause = new Query()
+                .setTermPropertyName(QueryTask.QuerySpecification.buildCompositeFieldName(
+                        ComputeState.FIELD_NAME_CUSTOM_PROPERTIES,
+                        ComputeConstants.COMPUTE_CONTAINER_HOST_PROP_NAME))
+                .setTermMatchValue(Boolean.TRUE.toString())
+                .setTermMatchType(MatchType.TERM);
+
+        QueryTask q = QueryUtil.buildQuery(ComputeState.class, true, ownerClause,
+                containerHostClause);
+        QueryUtil.addExpandOption(q);
+        return q;
+    }
+
+    private static boolean isEventsSource(ComputeState compute) {
+        return PowerState.ON == compute.powerState
+                && !LifecycleState.SUSPEND.equals(compute.lifecycleState)
+                && !ContainerHostUtil.isKubernetesHost(compute);
+    }
+
+    private URI getAdapterReference(ComputeState compute) {
+        return compute.endpointLink == null && compute.adapterManagementReference != null
+                ? compute.adapterManagementReference
+                : ContainerHostDataCollectionService.getDefaultHostAdapter(getHost());
+    }
+
+    private void collectEvents(String hostLink, URI hostAdapterReference) {
+        HostEventsRecord record = records.computeIfAbsent(hostLink, (k) -> new HostEventsRecord());
+        if (!record.polling.compareAndSet(false, true)) {
+            logFine("Skipping events collection for host %s, previous one still running",
+                    hostLink);
+            return;
+        }
+
+        long nowMicrosUtc = Utils.getSystemNowMicrosUtc();
+        long untilSeconds = TimeUnit.MICROSECONDS.toSeconds(nowMicrosUtc);
+        if (record.sinceSeconds == 0) {
+            // first poll for this host: bring the entities up to date once, the events from now
+            // on are retrieved on the following polls
+            record.sinceSeconds = untilSeconds;
+            record.lastListMicros = nowMicrosUtc;
+            record.polling.set(false);
+            updateContainers(hostLink, hostAdapterReference);
+            updateNetworks(hostLink, hostAdapterReference);
+            updateVolumes(hostLink);
+            return;
+        }
+
+        AdapterRequest request = new AdapterRequest();
+        request.operationTypeId = ContainerHostOperationType.EVENTS.id;
+        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
+        request.resourceReference = UriUtils.buildUri(getHost(), hostLink);
+        request.customProperties = new HashMap<>();
+        request.customProperties.put(EVENTS_SINCE_PROP_NAME,
+                Long.toString(record.sinceSeconds));
+        request.customProperties.put(EVENTS_UNTIL_PROP_NAME, Long.toString(untilSeconds));
+
+        sendRequest(Operation
+                .createPatch(hostAdapterReference)
+                .setBody(request)
+                .setCompletion((o, ex) -> {
+                    record.polling.set(false);
+                    if (ex != null) {
+                        adjustStat(STAT_NAME_FAILED_EVENTS_POLL_COUNT, 1);
+                        logFine("Failed to retrieve the events of host %s: %s", hostLink,
+                                Utils.toString(ex));
+                        // keep the entities of hosts without usable events reasonably fresh
+                        long now = Utils.getSystemNowMicrosUtc();
+                        if (record.lastListMicros + EVENTS_FALLBACK_LIST_INTERVAL_MICROS < now) {
+                            record.lastListMicros = now;
+                            updateContainers(hostLink, hostAdapterReference);
+                            updateNetworks(hostLink, hostAdapterReference);
+                            updateVolumes(hostLink);
+                        }
+                        return;
+                    }
+
+                    record.sinceSeconds = untilSeconds;
+                    HostEventsCallback callback = o.getBody(HostEventsCallback.class);
+                    if (callback.events != null && !callback.events.isEmpty()) {
+                        adjustStat(STAT_NAME_EVENTS_COUNT, callback.events.size());
+                        applyEvents(hostLink, hostAdapterReference, callback.events);
+                    }
+                }));
+    }
+
+    private void applyEvents(String hostLink, URI hostAdapterReference, List<HostEvent> events) {
+        boolean listContainers = false;
+        boolean listNetworks = false;
+        boolean listVolumes = false;
+        Set<String> containerIdsToInspect = new HashSet<>();
+
+        for (HostEvent event : events) {
+            if (event.type == null || event.action == null) {
+                continue;
+            }
+            switch (event.type) {
+            case EVENT_TYPE_CONTAINER:
+                if (CONTAINER_LIST_ACTIONS.contains(event.action)) {
+                    listContainers = true;
+                } else if (event.id != null && CONTAINER_INSPECT_ACTIONS.contains(event.action)) {
+                    containerIdsToInspect.add(event.id);
+                }
+                break;
+            case EVENT_TYPE_NETWORK:
+                listNetworks |= NETWORK_AND_VOLUME_LIST_ACTIONS.contains(event.action);
+                break;
+            case EVENT_TYPE_VOLUME:
+                listVolumes |= NETWORK_AND_VOLUME_LIST_ACTIONS.contains(event.action);
+                break;
+            default:
+                break;
+            }
+        }
+
+        if (listContainers) {
+            updateContainers(hostLink, hostAdapterReference);
+        }
+        if (listNetworks) {
+            updateNetworks(hostLink, hostAdapterReference);
+        }
+        if (listVolumes) {
+            updateVolumes(hostLink);
+        }
+        if (!containerIdsToInspect.isEmpty()) {
+            inspectContainers(hostLink, containerIdsToInspect);
+        }
+    }
+
+    private void inspectContainers(String hostLink, Set<String> containerIds) {
+        QueryTask q = QueryUtil.buildPropertyQuery(ContainerState.class,
+                ContainerState.FIELD_NAME_PARENT_LINK, hostLink);
+        q.querySpec.query.addBooleanClause(QueryUtil.addListValueClause(
+                ContainerState.FIELD_NAME_ID, containerIds, MatchType.TERM));
+        QueryUtil.addExpandOption(q);
+
+        new ServiceDocumentQuery<>(getHost(), ContainerState.class).query(q, (r) -> {
+            if (r.hasException()) {
+                logWarning("Failed to retrieve containers of host %s for inspection: %s",
+                        hostLink, Utils.toString(r.getException()));
+            } else if (r.hasResult()) {
+                ContainerMaintenance.sendAdapterRequest(getHost(), r.getResult(),
+                        ContainerOperationType.INSPECT, (o, ex) -> {
+                            if (ex != null) {
+                                logFine("Failed to inspect container %s: %s",
+                                        r.getDocumentSelfLink(), Utils.toString(ex));
+                            }
+                        });
+            }
+        });
+    }
+
+    private void updateContainers(String hostLink, URI hostAdapterReference) {
+        ContainerListCallback body = new ContainerListCallback();
+        body.containerHostLink = hostLink;
+        body.hostAdapterReference = hostAdapterReference;
+        sendListDataCollectionRequest(
+                HostContainerListDataCollection.DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK,
+                body);
+    }
+
+    private void updateNetworks(String hostLink, URI hostAdapterReference) {
+        NetworkListCallback body = new NetworkListCallback();
+        body.containerHostLink = hostLink;
+        body.hostAdapterReference = hostAdapterReference;
+        sendListDataCollectionRequest(
+                HostNetworkListDataCollection.DEFAULT_HOST_NETWORK_LIST_DATA_COLLECTION_LINK,
+                body);
+    }
+
+    private void updateVolumes(String hostLink) {
+        VolumeListCallback body = new VolumeListCallback();
+        body.containerHostLink = hostLink;
+        sendListDataCollectionRequest(
+                HostVolumeListDataCollection.DEFAULT_HOST_VOLUME_LIST_DATA_COLLECTION_LINK,
+                body);
+    }
+
+    private void sendListDataCollectionRequest(String dataCollectionLink, Object body) {
+        sendRequest(Operation
+                .createPatch(this, dataCollectionLink)
+                .setBody(body)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logWarning(Utils.toString(ex));
+                    }
+                }));
+    }
+}
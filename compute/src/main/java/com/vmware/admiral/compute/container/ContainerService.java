@@ -30,6 +30,8 @@ import com.vmware.admiral.compute.container.ContainerService.ContainerState.Powe
 import com.vmware.admiral.compute.container.maintenance.ContainerHealthEvaluator;
 import com.vmware.admiral.compute.container.maintenance.ContainerMaintenance;
 import com.vmware.admiral.compute.container.maintenance.ContainerStats;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory.Resolution;
 import com.vmware.admiral.compute.container.util.ContainerUtil;
 import com.vmware.admiral.compute.content.EnvDeserializer;
 import com.vmware.admiral.compute.content.EnvSerializer;
@@ -48,6 +50,12 @@ import com.vmware.xenon.common.Utils;
  */
 public class ContainerService extends StatefulService {
 
+    /**
+     * The query parameter of a GET of the stats history of the container with the given
+     * resolution, instead of its state. The history is kept on the owner node of the container.
+     */
+    public static final String STATS_HISTORY_QUERY_PARAM = "statsHistory";
+
     private volatile ContainerMaintenance containerMaintenance;
 
     public static class ContainerState
@@ -278,8 +286,7 @@ public class ContainerService extends StatefulService {
         super.toggleOption(ServiceOption.REPLICATION, true);
         super.toggleOption(ServiceOption.OWNER_SELECTION, true);
         super.toggleOption(ServiceOption.INSTRUMENTATION, true);
-        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
-        super.setMaintenanceIntervalMicros(ContainerMaintenance.MAINTENANCE_INTERVAL_MICROS);
+        // periodic inspect and stats collection is driven by the ContainerMaintenanceScheduler
     }
 
     @Override
@@ -298,6 +305,24 @@ public class ContainerService extends StatefulService {
         startPost.complete();
     }
 
+    @Override
+    public void handleGet(Operation get) {
+        String query = get.getUri().getQuery();
+        if (query == null || !query.contains(STATS_HISTORY_QUERY_PARAM)) {
+            super.handleGet(get);
+            return;
+        }
+
+        String resolution = UriUtils.parseUriQueryParams(get.getUri())
+                .get(STATS_HISTORY_QUERY_PARAM);
+        try {
+            get.setBody(ContainerStatsHistory.forHost(getHost()).getSamples(getSelfLink(),
+                    Resolution.fromValue(resolution))).complete();
+        } catch (IllegalArgumentException e) {
+            get.fail(e);
+        }
+    }
+
     @Override
     public void handlePut(Operation put) {
         if (!checkForBody(put)) {
@@ -348,9 +373,14 @@ public class ContainerService extends StatefulService {
         ContainerStats patchStatsBody = patch.getBody(ContainerStats.class);
 
         ContainerStats containerStats = ContainerStats.transform(this);
-        ContainerHealthEvaluator.create(getHost(), currentState)
+        boolean healthCheck = ContainerHealthEvaluator.create(getHost(), currentState)
                 .calculateHealthStatus(containerStats, patchStatsBody);
         patchStatsBody.setStats(this);
+        if (!healthCheck) {
+            // the health check results carry no resource usage
+            ContainerStatsHistory.forHost(getHost()).record(getSelfLink(), patchStatsBody,
+                    Utils.getSystemNowMicrosUtc());
+        }
 
         patch.setStatusCode(Operation.STATUS_CODE_NOT_MODIFIED);
         patch.complete();
@@ -358,11 +388,11 @@ public class ContainerService extends StatefulService {
 
     @Override
     public void handleDelete(Operation delete) {
+        ContainerStatsHistory.forHost(getHost()).remove(getSelfLink());
         super.handleDelete(delete);
     }
 
-    @Override
-    public void handlePeriodicMaintenance(Operation post) {
+    private void performMaintenance(Operation post) {
         if (getProcessingStage() != ProcessingStage.AVAILABLE) {
             logFine("Skipping maintenance since service is not available: %s ", getUri());
             return;
@@ -384,7 +414,7 @@ public class ContainerService extends StatefulService {
                             + ex.getMessage());
 
                 } else {
-                    handlePeriodicMaintenance(o);
+                    performMaintenance(o);
                 }
             }, getSelfLink());
         }
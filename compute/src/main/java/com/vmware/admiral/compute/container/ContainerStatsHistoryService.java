@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import static com.vmware.admiral.common.util.ServiceUtils.addServiceRequestRoute;
+
+import java.net.URI;
+import java.util.Map;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory.Resolution;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory.StatsSamples;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * Returns the stats history of a container, which is kept in memory on the owner node of the
+ * container, so that the usage of the containers can be queried without polling the Docker hosts.
+ * The history of the node is closed when this service is stopped with the host.
+ */
+public class ContainerStatsHistoryService extends StatelessService {
+    public static final String SELF_LINK = ManagementUriParts.CONTAINER_STATS_HISTORY;
+    public static final String CONTAINER_ID_QUERY_PARAM = "id";
+    public static final String RESOLUTION_QUERY_PARAM = "resolution";
+
+    @Override
+    public void handleGet(Operation get) {
+        Map<String, String> params = UriUtils.parseUriQueryParams(get.getUri());
+        String containerId = params.get(CONTAINER_ID_QUERY_PARAM);
+        if (containerId == null || containerId.isEmpty()) {
+            get.fail(new IllegalArgumentException(
+                    "URL parameter 'id' expected with container id as value."));
+            return;
+        }
+
+        String resolution = params.getOrDefault(RESOLUTION_QUERY_PARAM, Resolution.RAW.value);
+        try {
+            Resolution.fromValue(resolution);
+        } catch (IllegalArgumentException e) {
+            get.fail(e);
+            return;
+        }
+
+        // the GET is routed to the owner of the container, which keeps its history
+        String containerLink = UriUtils.buildUriPath(ContainerFactoryService.SELF_LINK,
+                containerId);
+        URI historyUri = UriUtils.extendUriWithQuery(UriUtils.buildUri(getHost(), containerLink),
+                ContainerService.STATS_HISTORY_QUERY_PARAM, resolution);
+        sendRequest(Operation.createGet(historyUri)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        get.fail(e);
+                        return;
+                    }
+                    get.setBody(o.getBody(StatsSamples.class)).complete();
+                }));
+    }
+
+    @Override
+    public void handleStop(Operation delete) {
+        ContainerStatsHistory.stop(getHost());
+        super.handleStop(delete);
+    }
+
+    @Override
+    public ServiceDocument getDocumentTemplate() {
+        ServiceDocument d = super.getDocumentTemplate();
+        addServiceRequestRoute(d, Action.GET,
+                String.format("Get the stats history of a container. Provide the ContainerState"
+                        + " id in URI query parameter with key \"%s\" and optionally the"
+                        + " resolution (raw, 1m, 10m or 1h) with key \"%s\".",
+                        CONTAINER_ID_QUERY_PARAM, RESOLUTION_QUERY_PARAM),
+                StatsSamples.class);
+        return d;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.GroupResourcePlacementState;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.PlacementLease;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.PlacementLeaseRequest;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.ResourcePlacementReservationRequest;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Node local reservations of group resource placements. Instead of patching the placement on
+ * each reservation, which serializes all the reservations of a placement on its owner node, the
+ * node leases a number of instances, and the memory they need, from the placement and reserves
+ * them locally. The usage of the lease is settled with the placement when the lease is renewed,
+ * or returned half way through its duration.
+ *
+ * The leasing is enabled by setting the number of instances leased at once. The leases are
+ * returned when the service stops. The leases which are not returned, e.g. because the node
+ * failed, are reclaimed by the placement when they expire. The settlements are numbered, so that
+ * a settlement which is retried is counted once, and a settlement which failed is retried until
+ * the placement gets it.
+ */
+public class GroupResourcePlacementLeaseService extends StatelessService {
+    public static final String SELF_LINK = ManagementUriParts.RESOURCE_GROUP_PLACEMENT_LEASES;
+    public static final String PLACEMENT_LINK_QUERY_PARAM = "placement";
+
+    /** The number of instances leased at once, leasing is disabled when it is 0. */
+    public static final long LEASE_INSTANCES = Long.getLong(
+            "com.vmware.admiral.placement.lease.instances", 0);
+
+    public static final long LEASE_DURATION_MICROS = TimeUnit.SECONDS.toMicros(Long.getLong(
+            "com.vmware.admiral.placement.lease.duration.seconds", 60));
+
+    private final long leaseInstances;
+    private final long leaseDurationMicros;
+    private final Map<String, NodeLease> leases = new ConcurrentHashMap<>();
+    private volatile boolean stopped;
+
+    public GroupResourcePlacementLeaseService() {
+        this(LEASE_INSTANCES, LEASE_DURATION_MICROS);
+    }
+
+    GroupResourcePlacementLeaseService(long leaseInstances, long leaseDurationMicros) {
+        this.leaseInstances = leaseInstances;
+        this.leaseDurationMicros = leaseDurationMicros;
+    }
+
+    /**
+     * Creates the PATCH reserving resources from the given placement. The PATCH is sent to the
+     * lease service of the local node when leasing is enabled and the memory of the resources is
+     * known, and to the placement otherwise.
+     */
+    public static Operation createReservationPatch(Service sender, String placementLink,
+            ResourcePlacementReservationRequest request) {
+        if (LEASE_INSTANCES <= 0 || request.resourceCount <= 0
+                || request.resourceMemoryBytes == null) {
+            return Operation.createPatch(sender, placementLink).setBody(request);
+        }
+        return Operation.createPatch(UriUtils.extendUriWithQuery(
+                UriUtils.buildUri(sender.getHost(), SELF_LINK),
+                PLACEMENT_LINK_QUERY_PARAM, placementLink))
+                .setReferer(sender.getUri())
+                .setBody(request);
+    }
+
+    @Override
+    public void handlePatch(Operation patch) {
+        if (!checkForBody(patch)) {
+            return;
+        }
+
+        ResourcePlacementReservationRequest request = patch
+                .getBody(ResourcePlacementReservationRequest.class);
+        if (!isReservationServiceTaskAuthorizedRequest(request)) {
+            logWarning("Request not authorized.");
+            patch.fail(Operation.STATUS_CODE_FORBIDDEN);
+            return;
+        }
+
+        String placementLink = UriUtils.parseUriQueryParams(patch.getUri())
+                .get(PLACEMENT_LINK_QUERY_PARAM);
+        if (placementLink == null || placementLink.isEmpty()) {
+            patch.fail(new IllegalArgumentException(
+                    "URL parameter 'placement' expected with placement link as value."));
+            return;
+        }
+        if (request.resourceCount <= 0 || request.resourceMemoryBytes == null) {
+            patch.fail(new IllegalArgumentException(
+                    "'resourceCount' and 'resourceMemoryBytes' are required."));
+            return;
+        }
+
+        reserve(patch, placementLink, request);
+    }
+
+    private void reserve(Operation patch, String placementLink,
+            ResourcePlacementReservationRequest request) {
+        NodeLease lease = leases.computeIfAbsent(placementLink, l -> new NodeLease());
+        PlacementLeaseRequest leaseRequest;
+        synchronized (lease) {
+            if (lease.renewing) {
+                lease.pending.add(() -> reserve(patch, placementLink, request));
+                return;
+            }
+            if (lease.tryReserve(request, Utils.getSystemNowMicrosUtc())) {
+                patch.setBody(lease.placement).complete();
+                return;
+            }
+            leaseRequest = lease.settle(Math.max(leaseInstances, request.resourceCount));
+        }
+
+        renew(placementLink, lease, leaseRequest, request, e -> {
+            if (e != null) {
+                patch.fail(e);
+                return;
+            }
+            synchronized (lease) {
+                if (lease.tryReserve(request, Utils.getSystemNowMicrosUtc())) {
+                    patch.setBody(lease.placement).complete();
+                    return;
+                }
+            }
+            // the quota may be leased to the other nodes, reserve from the placement directly
+            reserveFromPlacement(patch, placementLink, request);
+        });
+    }
+
+    private void reserveFromPlacement(Operation patch, String placementLink,
+            ResourcePlacementReservationRequest request) {
+        Operation op = Operation.createPatch(this, placementLink)
+                .setBody(request)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        patch.fail(e);
+                        return;
+                    }
+                    patch.setBody(o.getBodyRaw()).complete();
+                });
+        setAuthorizationContext(op, getSystemAuthorizationContext());
+        sendRequest(op);
+    }
+
+    /**
+     * Returns the leases of the node to the placements, settling their usage.
+     */
+    @Override
+    public void handleStop(Operation delete) {
+        stopped = true;
+        AtomicInteger remaining = new AtomicInteger(1);
+        Runnable completion = () -> {
+            if (remaining.decrementAndGet() == 0) {
+                delete.complete();
+            }
+        };
+        leases.forEach((placementLink, lease) -> {
+            PlacementLeaseRequest leaseRequest;
+            synchronized (lease) {
+                // the usage of a lease being renewed is settled by the renewal
+                if (lease.renewing || !lease.hasQuota()) {
+                    return;
+                }
+                leaseRequest = lease.settle(0);
+            }
+            remaining.incrementAndGet();
+            renew(placementLink, lease, leaseRequest, null, e -> completion.run());
+        });
+        completion.run();
+    }
+
+    /**
+     * Sends the usage of the lease to the placement and acquires a new lease. The reservations
+     * wait for the renewal to complete.
+     */
+    private void renew(String placementLink, NodeLease lease, PlacementLeaseRequest leaseRequest,
+            ResourcePlacementReservationRequest request, Consumer<Throwable> callback) {
+        ResourcePlacementReservationRequest renewal = new ResourcePlacementReservationRequest();
+        renewal.resourceCount = request != null ? request.resourceCount : 0;
+        renewal.resourceMemoryBytes = request != null ? request.resourceMemoryBytes : null;
+        renewal.referer = getSelfLink();
+        renewal.lease = leaseRequest;
+        leaseRequest.nodeId = getHost().getId();
+        leaseRequest.durationMicros = leaseDurationMicros;
+        PlacementLeaseRequest settlement = leaseRequest;
+
+        Operation op = Operation.createPatch(this, placementLink)
+                .setBody(renewal)
+                .setCompletion((o, e) -> {
+                    List<Runnable> pending;
+                    synchronized (lease) {
+                        lease.renewing = false;
+                        pending = lease.pending;
+                        lease.pending = new ArrayList<>();
+                        if (e != null && o.getStatusCode() == Operation.STATUS_CODE_NOT_FOUND) {
+                            logWarning("Placement %s not found, dropping its lease",
+                                    placementLink);
+                            leases.remove(placementLink, lease);
+                        } else if (e != null) {
+                            // the same settlement is retried on the next renewal
+                            logWarning("Failed to renew the lease of placement %s: %s",
+                                    placementLink, Utils.toString(e));
+                            lease.validUntilMicros = 0;
+                            scheduleReturn(placementLink, lease, lease.validUntilMicros);
+                        } else {
+                            lease.renewed(o.getBody(GroupResourcePlacementState.class),
+                                    getHost().getId(), settlement.sequence,
+                                    Utils.getSystemNowMicrosUtc(), leaseDurationMicros / 2);
+                            scheduleReturn(placementLink, lease, lease.validUntilMicros);
+                        }
+                    }
+                    callback.accept(e);
+                    pending.forEach(Runnable::run);
+                });
+        // the lease is returned in the background as well
+        setAuthorizationContext(op, getSystemAuthorizationContext());
+        sendRequest(op);
+    }
+
+    private void scheduleReturn(String placementLink, NodeLease lease, long validUntilMicros) {
+        if (!lease.hasQuota() || stopped) {
+            return;
+        }
+        getHost().schedule(() -> {
+            PlacementLeaseRequest leaseRequest;
+            synchronized (lease) {
+                if (stopped || lease.renewing || lease.validUntilMicros != validUntilMicros) {
+                    return;
+                }
+                leaseRequest = lease.settle(0);
+            }
+            renew(placementLink, lease, leaseRequest, null, e -> {
+            });
+        }, leaseDurationMicros / 2, TimeUnit.MICROSECONDS);
+    }
+
+    private boolean isReservationServiceTaskAuthorizedRequest(
+            ResourcePlacementReservationRequest request) {
+        return request.referer != null
+                && (request.referer.startsWith(ManagementUriParts.REQUEST_RESERVATION_TASKS)
+                        || request.referer.startsWith(
+                                ManagementUriParts.REQUEST_COMPUTE_RESERVATION_TASKS));
+    }
+
+    /** The lease of a placement held by this node. */
+    private static class NodeLease {
+        /**
+         * The sequence number of the last settlement. It starts from the current time, so that
+         * the settlements after a restart of the node are newer than the ones before.
+         */
+        long sequence = Utils.getSystemNowMicrosUtc();
+        /** The placement as of the last renewal. */
+        GroupResourcePlacementState placement;
+        long instances;
+        long memoryBytes;
+        long usedInstances;
+        long usedMemoryBytes;
+        long validUntilMicros;
+        boolean renewing;
+        List<Runnable> pending = new ArrayList<>();
+
+        boolean tryReserve(ResourcePlacementReservationRequest request, long now) {
+            if (placement == null || now >= validUntilMicros
+                    || instances - usedInstances < request.resourceCount) {
+                return false;
+            }
+            long memory = placement.memoryLimit != 0 && request.resourceMemoryBytes > 0
+                    ? request.resourceMemoryBytes * request.resourceCount : 0;
+            if (memory > memoryBytes - usedMemoryBytes) {
+                return false;
+            }
+            usedInstances += request.resourceCount;
+            usedMemoryBytes += memory;
+            return true;
+        }
+
+        PlacementLeaseRequest settle(long leaseInstances) {
+            renewing = true;
+            PlacementLeaseRequest request = new PlacementLeaseRequest();
+            request.usedInstances = usedInstances;
+            request.usedMemoryBytes = usedMemoryBytes;
+            request.instances = leaseInstances;
+            // a settlement which failed is sent again with the same usage and sequence number
+            request.sequence = sequence + 1;
+            return request;
+        }
+
+        boolean hasQuota() {
+            return instances != 0 || usedInstances != 0 || usedMemoryBytes != 0;
+        }
+
+        void renewed(GroupResourcePlacementState state, String nodeId, long settledSequence,
+                long now, long validityMicros) {
+            PlacementLease lease = state.leases != null ? state.leases.get(nodeId) : null;
+            placement = state;
+            sequence = settledSequence;
+            usedInstances = 0;
+            usedMemoryBytes = 0;
+            instances = lease != null ? lease.instances : 0;
+            memoryBytes = lease != null ? lease.memoryBytes : 0;
+            validUntilMicros = instances != 0 ? now + validityMicros : 0;
+        }
+    }
+}
@@ -20,10 +20,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
 
+import com.esotericsoftware.kryo.serializers.VersionFieldSerializer.Since;
+
 import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.serialization.ReleaseConstants;
 import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.common.util.ServiceDocumentQuery.ServiceDocumentQueryElementResult;
@@ -42,6 +46,7 @@ import com.vmware.xenon.common.ServiceDocumentDescription.PropertyIndexingOption
 import com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOption;
 import com.vmware.xenon.common.StatefulService;
 import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.QueryTask;
 import com.vmware.xenon.services.common.QueryTask.QuerySpecification;
 
@@ -205,15 +210,65 @@ public class GroupResourcePlacementService extends StatefulService {
         @Deprecated
         public Map<String, Long> memoryQuotaPerResourceDesc;
 
+        /** Set by Task. The quota leased to the nodes, by node id. */
+        @Documentation(description = "The quota leased to the nodes for local reservations.")
+        @UsageOption(option = PropertyUsageOption.SERVICE_USE)
+        @PropertyOptions(indexing = { PropertyIndexingOption.STORE_ONLY })
+        @Since(ReleaseConstants.RELEASE_VERSION_0_9_5)
+        public Map<String, PlacementLease> leases;
+
+    }
+
+    /**
+     * The instances and memory reserved by a node, to be reserved locally by the node until the
+     * lease expires.
+     */
+    public static class PlacementLease {
+        public long instances;
+        public long memoryBytes;
+        public long expirationTimeMicros;
+        /**
+         * The sequence number of the last settlement of the node. The lease is kept without quota
+         * when it expires or is returned, so that a settlement is counted once.
+         */
+        public long sequence;
     }
 
     /**
      * An DTO used during PATCH operation in order to reserve resources.
      */
     public static class ResourcePlacementReservationRequest {
+        /** The value of <code>resourceMemoryBytes</code> for resources without memory limit. */
+        public static final long NO_MEMORY_LIMIT = -1;
+
         public long resourceCount;
         public String resourceDescriptionLink;
         public String referer;
+        /**
+         * The memory of each resource. When not set, it is read from the resource description.
+         */
+        public Long resourceMemoryBytes;
+        /** Set to acquire, renew or return the lease of a node instead of reserving resources. */
+        public PlacementLeaseRequest lease;
+    }
+
+    /**
+     * A request to settle the current lease of a node and to lease the given number of instances
+     * for the given duration. The lease is returned by requesting no instances.
+     */
+    public static class PlacementLeaseRequest {
+        public String nodeId;
+        /** The instances reserved from the current lease of the node. */
+        public long usedInstances;
+        /** The memory reserved from the current lease of the node. */
+        public long usedMemoryBytes;
+        public long instances;
+        public long durationMicros;
+        /**
+         * The sequence number of the settlement, increased by the node after each settlement
+         * which succeeded. A settlement which is retried has the same sequence number.
+         */
+        public long sequence;
     }
 
     /**
@@ -388,6 +443,12 @@ public class GroupResourcePlacementService extends StatefulService {
 
         GroupResourcePlacementState state = getState(patch);
         adjustStat(ResourcePlacementReservationRequest.class.getSimpleName(), 1);
+        reclaimExpiredLeases(state);
+
+        if (request.lease != null) {
+            handleLeaseRequest(patch, request, state);
+            return;
+        }
 
         final long currentCount = state.maxNumberInstances != UNLIMITED_NUMBER_INSTANCES
                 ? state.availableInstancesCount - request.resourceCount
@@ -420,6 +481,16 @@ public class GroupResourcePlacementService extends StatefulService {
         state.availableInstancesCount = currentCount;
         state.allocatedInstancesCount += request.resourceCount;
 
+        if (request.resourceMemoryBytes != null) {
+            Long memoryBytes = request.resourceMemoryBytes
+                    != ResourcePlacementReservationRequest.NO_MEMORY_LIMIT
+                            ? request.resourceMemoryBytes : null;
+            if (reserveMemory(patch, request, state, memoryBytes)) {
+                patch.setBody(state).complete();
+            }
+            return;
+        }
+
         sendRequest(Operation
                 .createGet(this, request.resourceDescriptionLink)
                 .setCompletion(
@@ -490,6 +561,111 @@ public class GroupResourcePlacementService extends StatefulService {
         return true;
     }
 
+    /**
+     * Settles the usage of the current lease of the node, returning its unused quota, and leases
+     * to the node as many of the requested instances as are available, but at least
+     * <code>resourceCount</code> of them. When they are not available the node gets no lease and
+     * the usage is settled anyway.
+     *
+     * The usage of a settlement which is retried, i.e. with the sequence number of the last
+     * settlement of the node, is not counted again, and an older settlement is ignored. The usage
+     * of an expired lease is counted when the node settles it late.
+     */
+    private void handleLeaseRequest(Operation patch, ResourcePlacementReservationRequest request,
+            GroupResourcePlacementState state) {
+        PlacementLeaseRequest leaseRequest = request.lease;
+        if (leaseRequest.nodeId == null || leaseRequest.nodeId.isEmpty()) {
+            patch.fail(new LocalizableValidationException("'nodeId' is required.",
+                    "compute.placements.lease.node.required"));
+            return;
+        }
+        logFine("%s: leasing [%d] instances to node %s, used [%d] instances",
+                state.name, leaseRequest.instances, leaseRequest.nodeId,
+                leaseRequest.usedInstances);
+
+        boolean limitedInstances = state.maxNumberInstances != UNLIMITED_NUMBER_INSTANCES;
+        boolean limitedMemory = state.memoryLimit != 0;
+        long memoryBytes = request.resourceMemoryBytes != null
+                && request.resourceMemoryBytes > 0 ? request.resourceMemoryBytes : 0;
+
+        PlacementLease current = state.leases != null
+                ? state.leases.get(leaseRequest.nodeId) : null;
+        if (current != null && leaseRequest.sequence < current.sequence) {
+            logWarning("%s: ignoring settlement [%d] of node %s, last settlement is [%d]",
+                    state.name, leaseRequest.sequence, leaseRequest.nodeId, current.sequence);
+            patch.setBody(state).complete();
+            return;
+        }
+        if (current != null) {
+            releaseLease(state, current);
+        }
+        if (current == null || leaseRequest.sequence > current.sequence) {
+            if (limitedInstances) {
+                state.availableInstancesCount -= leaseRequest.usedInstances;
+            }
+            if (limitedMemory) {
+                state.availableMemory -= leaseRequest.usedMemoryBytes;
+            }
+            state.allocatedInstancesCount += leaseRequest.usedInstances;
+        }
+
+        PlacementLease lease = new PlacementLease();
+        lease.sequence = leaseRequest.sequence;
+        if (state.leases == null) {
+            state.leases = new HashMap<>();
+        }
+        state.leases.put(leaseRequest.nodeId, lease);
+
+        long instances = leaseRequest.instances;
+        if (limitedInstances) {
+            instances = Math.min(instances, state.availableInstancesCount);
+        }
+        if (limitedMemory && memoryBytes > 0) {
+            instances = Math.min(instances, state.availableMemory / memoryBytes);
+        }
+        if (instances > 0 && instances >= request.resourceCount) {
+            lease.instances = instances;
+            lease.memoryBytes = limitedMemory ? instances * memoryBytes : 0;
+            lease.expirationTimeMicros = Utils.getSystemNowMicrosUtc()
+                    + leaseRequest.durationMicros;
+            if (limitedInstances) {
+                state.availableInstancesCount -= lease.instances;
+            }
+            state.availableMemory -= lease.memoryBytes;
+        }
+
+        patch.setBody(state).complete();
+    }
+
+    /**
+     * Returns the quota of the leases which expired without being returned by their nodes. The
+     * leases are kept without quota, until their nodes settle them.
+     */
+    private void reclaimExpiredLeases(GroupResourcePlacementState state) {
+        if (state.leases == null || state.leases.isEmpty()) {
+            return;
+        }
+        long now = Utils.getSystemNowMicrosUtc();
+        for (Entry<String, PlacementLease> entry : state.leases.entrySet()) {
+            PlacementLease lease = entry.getValue();
+            if ((lease.instances != 0 || lease.memoryBytes != 0)
+                    && lease.expirationTimeMicros <= now) {
+                logWarning("%s: lease of node %s expired, reclaiming [%d] instances",
+                        state.name, entry.getKey(), lease.instances);
+                releaseLease(state, lease);
+            }
+        }
+    }
+
+    private void releaseLease(GroupResourcePlacementState state, PlacementLease lease) {
+        if (state.maxNumberInstances != UNLIMITED_NUMBER_INSTANCES) {
+            state.availableInstancesCount += lease.instances;
+        }
+        state.availableMemory += lease.memoryBytes;
+        lease.instances = 0;
+        lease.memoryBytes = 0;
+    }
+
     @Override
     public void handleDelete(Operation delete) {
         GroupResourcePlacementState state = getState(delete);
@@ -685,7 +861,9 @@ public class GroupResourcePlacementService extends StatefulService {
                         || request.referer
                                 .startsWith(ManagementUriParts.REQUEST_RESERVATION_REMOVAL_TASKS)
                         || request.referer
-                                .startsWith(ManagementUriParts.REQUEST_COMPUTE_RESERVATION_TASKS));
+                                .startsWith(ManagementUriParts.REQUEST_COMPUTE_RESERVATION_TASKS)
+                        || request.referer
+                                .startsWith(ManagementUriParts.RESOURCE_GROUP_PLACEMENT_LEASES));
 
     }
 
@@ -25,6 +25,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -56,6 +57,7 @@ import com.vmware.admiral.compute.container.util.ContainerUtil;
 import com.vmware.admiral.service.common.AbstractCallbackServiceHandler;
 import com.vmware.admiral.service.common.AbstractCallbackServiceHandler.CallbackServiceHandlerState;
 import com.vmware.admiral.service.common.DefaultSubStage;
+import com.vmware.admiral.service.common.MultiTenantDocument;
 import com.vmware.admiral.service.common.ServiceTaskCallback;
 import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
 import com.vmware.admiral.service.common.SslTrustImportService;
@@ -75,6 +77,11 @@ import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.NumericRange;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
 
 /**
  * Synchronize the ContainerStates with a list of container IDs
@@ -95,6 +102,31 @@ public class HostContainerListDataCollection extends StatefulService {
     private static final long SYSTEM_CONTAINER_SSL_RETRIES_WAIT = Long.getLong(
             "com.vmware.admiral.system.container.ssl.retries.wait.millis", 1000);
 
+    // interval after which all ContainerStates of a host are synchronized again, regardless of
+    // the fingerprint of the host
+    protected static final long FULL_DATA_COLLECTION_INTERVAL_MICROS = Long.getLong(
+            "com.vmware.admiral.data.collection.full.interval.micros",
+            TimeUnit.MINUTES.toMicros(30));
+
+    // the fields of the ContainerStates needed to synchronize them with the containers on the
+    // host, the rest of the state (e.g. the inspect attributes) is not retrieved
+    private static final String[] SYNCHRONIZED_CONTAINER_FIELDS = {
+            ContainerState.FIELD_NAME_ID,
+            ContainerState.FIELD_NAME_NAMES,
+            ContainerState.FIELD_NAME_POWER_STATE,
+            ContainerState.FIELD_NAME_SYSTEM,
+            ContainerState.FIELD_NAME_PARENT_LINK,
+            ContainerState.FIELD_NAME_DESCRIPTION_LINK,
+            ContainerState.FIELD_NAME_IMAGE,
+            ContainerState.FIELD_NAME_PORTS,
+            MultiTenantDocument.FIELD_NAME_TENANT_LINKS,
+            "adapterManagementReference",
+            "isDeleted" };
+
+    // fingerprints of the containers listed on each host by the last successful data collection
+    private final Map<String, HostContainerListFingerprint> fingerprints =
+            new ConcurrentHashMap<>();
+
     public static class HostContainerListDataCollectionState extends
             TaskServiceDocument<DefaultSubStage> {
         @Documentation(description = "The map of container host links.")
@@ -110,7 +142,9 @@ public class HostContainerListDataCollection extends StatefulService {
         public URI hostAdapterReference;
         public Map<String, String> containerIdsAndNames = new HashMap<>();
         public Map<String, String> containerIdsAndImage = new HashMap<>();
+        public Map<String, String> containerIdsAndState = new HashMap<>();
         public boolean unlockDataCollectionForHost;
+        public boolean resetFingerprintForHost;
 
         public void addIdAndNames(String id, String[] names) {
             AssertUtil.assertNotNull(id, "containerId");
@@ -319,6 +353,14 @@ public class HostContainerListDataCollection extends StatefulService {
             return;
         }
 
+        if (body.resetFingerprintForHost) {
+            // patch to drop the fingerprint of a host which is removed or not available, so that
+            // its next data collection is a full one.
+            fingerprints.remove(containerHostLink);
+            op.complete();
+            return;
+        }
+
         AssertUtil.assertNotNull(body.containerIdsAndNames, "containerIdsAndNames");
 
         if (Logger.getLogger(this.getClass().getName()).isLoggable(Level.FINE)) {
@@ -348,61 +390,207 @@ public class HostContainerListDataCollection extends StatefulService {
             // continue with the data collection.
         }
 
+        HostContainerListFingerprint previous = fingerprints.get(containerHostLink);
+        if (previous == null || previous.getCreatedTimeMicros()
+                + FULL_DATA_COLLECTION_INTERVAL_MICROS < Utils.getSystemNowMicrosUtc()) {
+            fullDataCollection(body, containerHostLink);
+        } else {
+            incrementalDataCollection(body, containerHostLink, previous);
+        }
+    }
+
+    /**
+     * Synchronizes all ContainerStates of the given host with the containers listed on it.
+     */
+    private void fullDataCollection(ContainerListCallback body, String containerHostLink) {
         List<ContainerState> containerStates = new ArrayList<ContainerState>();
         QueryTask queryTask = QueryUtil.buildPropertyQuery(ContainerState.class,
                 ContainerState.FIELD_NAME_PARENT_LINK, containerHostLink);
-        QueryUtil.addExpandOption(queryTask);
+        QueryUtil.addSelectFieldsOption(queryTask, SYNCHRONIZED_CONTAINER_FIELDS);
 
         QueryUtil.addBroadcastOption(queryTask);
         new ServiceDocumentQuery<ContainerState>(getHost(), ContainerState.class)
-                .query(queryTask,
-                        (r) -> {
-                            if (r.hasException()) {
+                .stream(queryTask, ServiceDocumentQuery.DEFAULT_QUERY_PAGE_SIZE,
+                        (page) -> {
+                            if (page.hasException()) {
                                 logSevere(
                                         "Failed to query for existing ContainerState instances: %s",
-                                        r.getException() instanceof CancellationException
-                                                ? r.getException().getMessage()
-                                                : Utils.toString(r.getException()));
-                                unlockCurrentDataCollectionForHost(containerHostLink);
-                            } else if (r.hasResult()) {
-                                containerStates.add(r.getResult());
-                            } else {
-                                AdapterRequest request = new AdapterRequest();
-                                request.operationTypeId = ContainerHostOperationType.LIST_CONTAINERS.id;
-                                request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
-                                request.resourceReference = UriUtils.buildUri(getHost(),
-                                        containerHostLink);
-                                sendRequest(Operation
-                                        .createPatch(body.hostAdapterReference)
-                                        .setBody(request)
-                                        .addPragmaDirective(
-                                                Operation.PRAGMA_DIRECTIVE_QUEUE_FOR_SERVICE_AVAILABILITY)
-                                        .setCompletion(
-                                                (o, ex) -> {
-                                                    if (ex == null) {
-                                                        ContainerListCallback callback = o
-                                                                .getBody(
-                                                                        ContainerListCallback.class);
-                                                        if (callback.hostAdapterReference == null) {
-                                                            callback.hostAdapterReference = ContainerHostDataCollectionService
-                                                                    .getDefaultHostAdapter(
-                                                                            getHost());
-                                                        }
-                                                        updateContainerStates(callback,
-                                                                containerStates, containerHostLink);
-                                                    } else {
-                                                        unlockCurrentDataCollectionForHost(
-                                                                containerHostLink);
-                                                    }
-                                                }));
+                                        page.getException() instanceof CancellationException
+                                                ? page.getException().getMessage()
+                                                : Utils.toString(page.getException()));
+                                failCurrentDataCollectionForHost(containerHostLink);
+                                return;
+                            }
+
+                            containerStates.addAll(page.getDocuments());
+                            if (page.hasNextPage()) {
+                                page.requestNextPage();
+                                return;
                             }
+
+                            listContainers(body, containerHostLink, (callback) -> {
+                                HostContainerListFingerprint current =
+                                        HostContainerListFingerprint.create(callback,
+                                                Utils.getSystemNowMicrosUtc());
+                                updateContainerStates(callback, containerStates,
+                                        containerHostLink,
+                                        SystemContainerDescriptions.getSystemContainerNames(),
+                                        null, () -> fingerprints.put(containerHostLink, current));
+                            });
                         });
     }
 
+    /**
+     * Compares the containers listed on the given host with the fingerprint of the last
+     * successful data collection and synchronizes only the ContainerStates of the added, removed
+     * and changed containers, as well as the ContainerStates updated since then. Nothing is
+     * queried or patched if the host hasn't changed.
+     */
+    private void incrementalDataCollection(ContainerListCallback body, String containerHostLink,
+            HostContainerListFingerprint previous) {
+        listContainers(body, containerHostLink, (callback) -> {
+            HostContainerListFingerprint current = HostContainerListFingerprint.create(callback,
+                    Utils.getSystemNowMicrosUtc());
+
+            Set<String> touchedIds = current.getAddedOrChanged(previous);
+            touchedIds.addAll(current.getRemoved(previous));
+
+            Set<String> touchedNames = new HashSet<>();
+            for (String id : touchedIds) {
+                String names = callback.containerIdsAndNames.get(id);
+                if (names != null) {
+                    touchedNames.addAll(
+                            Arrays.asList(names.split(ContainerListCallback.NAME_SEPARATOR)));
+                }
+            }
+
+            // system containers that are listed and haven't changed are already synchronized
+            List<String> systemContainersToInstall = SystemContainerDescriptions
+                    .getSystemContainerNames();
+            for (Entry<String, String> entry : callback.containerIdsAndNames.entrySet()) {
+                if (!touchedIds.contains(entry.getKey()) && entry.getValue() != null) {
+                    String systemContainerName = matchSystemContainerName(
+                            systemContainersToInstall, Arrays.asList(entry.getValue()
+                                    .split(ContainerListCallback.NAME_SEPARATOR)));
+                    systemContainersToInstall.remove(systemContainerName);
+                }
+            }
+
+            List<ContainerState> containerStates = new ArrayList<ContainerState>();
+            QueryTask queryTask = QueryUtil.buildPropertyQuery(ContainerState.class,
+                    ContainerState.FIELD_NAME_PARENT_LINK, containerHostLink);
+            queryTask.querySpec.query.addBooleanClause(
+                    buildTouchedContainersClause(touchedIds, touchedNames,
+                            previous.getCreatedTimeMicros()));
+            QueryUtil.addSelectFieldsOption(queryTask, SYNCHRONIZED_CONTAINER_FIELDS);
+            QueryUtil.addBroadcastOption(queryTask);
+
+            new ServiceDocumentQuery<ContainerState>(getHost(), ContainerState.class)
+                    .stream(queryTask, ServiceDocumentQuery.DEFAULT_QUERY_PAGE_SIZE, (page) -> {
+                        if (page.hasException()) {
+                            logSevere("Failed to query for changed ContainerState instances: %s",
+                                    page.getException() instanceof CancellationException
+                                            ? page.getException().getMessage()
+                                            : Utils.toString(page.getException()));
+                            failCurrentDataCollectionForHost(containerHostLink);
+                            return;
+                        }
+
+                        for (ContainerState containerState : page.getDocuments()) {
+                            // states updated after the list was retrieved are left for the next
+                            // run, unless their container was removed from the host
+                            if (containerState.id == null || current.contains(containerState.id)
+                                    || previous.contains(containerState.id)) {
+                                containerStates.add(containerState);
+                            }
+                        }
+                        if (page.hasNextPage()) {
+                            page.requestNextPage();
+                            return;
+                        }
+
+                        if (touchedIds.isEmpty() && containerStates.isEmpty()
+                                && systemContainersToInstall.isEmpty()) {
+                            logFine("No changes of the containers on host [%s]",
+                                    containerHostLink);
+                            fingerprints.put(containerHostLink, current);
+                            unlockCurrentDataCollectionForHost(containerHostLink);
+                        } else {
+                            // all the listed containers are matched against the states, so
+                            // that the unchanged ones are not considered missing, but only the
+                            // touched ones are discovered
+                            updateContainerStates(callback, containerStates, containerHostLink,
+                                    systemContainersToInstall, touchedIds,
+                                    () -> fingerprints.put(containerHostLink, current));
+                        }
+                    });
+        });
+    }
+
+    private Query buildTouchedContainersClause(Set<String> touchedIds, Set<String> touchedNames,
+            long sinceMicros) {
+        NumericRange<Long> range = NumericRange.createLongRange(sinceMicros, Long.MAX_VALUE,
+                true, false);
+        range.precisionStep = 64;
+        Query updatedSince = new Query()
+                .setTermPropertyName(ServiceDocument.FIELD_NAME_UPDATE_TIME_MICROS)
+                .setNumericRange(range)
+                .setTermMatchType(MatchType.TERM);
+        updatedSince.occurance = Occurance.SHOULD_OCCUR;
+
+        Query clause = new Query();
+        clause.addBooleanClause(updatedSince);
+        if (!touchedIds.isEmpty()) {
+            Query idsClause = QueryUtil.addListValueClause(ContainerState.FIELD_NAME_ID,
+                    touchedIds, MatchType.TERM);
+            idsClause.occurance = Occurance.SHOULD_OCCUR;
+            clause.addBooleanClause(idsClause);
+        }
+        if (!touchedNames.isEmpty()) {
+            // containers being provisioned may not have their id set yet
+            Query namesClause = QueryUtil.addListValueClause(
+                    QuerySpecification.buildCollectionItemName(ContainerState.FIELD_NAME_NAMES),
+                    touchedNames, MatchType.TERM);
+            namesClause.occurance = Occurance.SHOULD_OCCUR;
+            clause.addBooleanClause(namesClause);
+        }
+        clause.occurance = Occurance.MUST_OCCUR;
+        return clause;
+    }
+
+    private void listContainers(ContainerListCallback body, String containerHostLink,
+            Consumer<ContainerListCallback> consumer) {
+        AdapterRequest request = new AdapterRequest();
+        request.operationTypeId = ContainerHostOperationType.LIST_CONTAINERS.id;
+        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
+        request.resourceReference = UriUtils.buildUri(getHost(), containerHostLink);
+        sendRequest(Operation
+                .createPatch(body.hostAdapterReference)
+                .setBody(request)
+                .addPragmaDirective(Operation.PRAGMA_DIRECTIVE_QUEUE_FOR_SERVICE_AVAILABILITY)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        failCurrentDataCollectionForHost(containerHostLink);
+                        return;
+                    }
+                    ContainerListCallback callback = o.getBody(ContainerListCallback.class);
+                    if (callback.hostAdapterReference == null) {
+                        callback.hostAdapterReference = ContainerHostDataCollectionService
+                                .getDefaultHostAdapter(getHost());
+                    }
+                    consumer.accept(callback);
+                }));
+    }
+
+    /**
+     * Matches the given states with the containers listed on the host. The active states whose
+     * container is not listed are handled as missing, and the listed containers without a state
+     * are discovered, unless the discoverable container ids are given and do not contain them.
+     */
     private void updateContainerStates(ContainerListCallback callback,
-            List<ContainerState> containerStates, String containerHostLink) {
-        final List<String> systemContainersToInstall = SystemContainerDescriptions
-                .getSystemContainerNames();
+            List<ContainerState> containerStates, String containerHostLink,
+            List<String> systemContainersToInstall, Set<String> discoverableIds,
+            Runnable synchronizedCallback) {
         for (ContainerState containerState : containerStates) {
             boolean exists = false;
             if (containerState.id != null) {
@@ -478,6 +666,11 @@ public class HostContainerListDataCollection extends StatefulService {
             }
         }
 
+        // the containers which were not queried are not new
+        if (discoverableIds != null) {
+            callback.containerIdsAndNames.keySet().retainAll(discoverableIds);
+        }
+
         // finished removing existing ContainerState, now deal with remaining IDs
         List<ContainerState> containersLeft = new ArrayList<ContainerState>();
         Set<ContainerState> systemContainersToStart = new HashSet<>();
@@ -489,7 +682,8 @@ public class HostContainerListDataCollection extends StatefulService {
                             if (ex != null) {
                                 logSevere("Failure to retrieve host [%s].",
                                         callback.containerHostLink, Utils.toString(ex));
-                                unlockCurrentDataCollectionForHost(callback.containerHostLink);
+                                failCurrentDataCollectionForHost(
+                                        callback.containerHostLink);
                                 return;
                             }
                             ComputeState host = o.getBody(ComputeState.class);
@@ -547,6 +741,9 @@ public class HostContainerListDataCollection extends StatefulService {
                                     (e) -> {
                                         if (e == null) {
                                             updateNumberOfContainers(callback.containerHostLink);
+                                            synchronizedCallback.run();
+                                        } else {
+                                            fingerprints.remove(callback.containerHostLink);
                                         }
 
                                         for (ContainerState containerState : systemContainersToStart) {
@@ -956,6 +1153,15 @@ public class HostContainerListDataCollection extends StatefulService {
         getHost().startService(startPost, service);
     }
 
+    /**
+     * Drops the fingerprint of the host after a failed data collection, so that the next one
+     * synchronizes all its ContainerStates, and unlocks the data collection for the host.
+     */
+    private void failCurrentDataCollectionForHost(String containerHostLink) {
+        fingerprints.remove(containerHostLink);
+        unlockCurrentDataCollectionForHost(containerHostLink);
+    }
+
     private void unlockCurrentDataCollectionForHost(String containerHostLink) {
         ContainerListCallback body = new ContainerListCallback();
         body.containerHostLink = containerHostLink;
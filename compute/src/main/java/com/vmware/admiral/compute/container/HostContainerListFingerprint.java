@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerListCallback;
+
+/**
+ * Compact representation of the containers listed on a host by the last successful
+ * {@link HostContainerListDataCollection} run. Only a hash of the container names, image and
+ * state is kept per container id, which is enough to find out which containers were added,
+ * removed or changed since then.
+ */
+public class HostContainerListFingerprint {
+
+    private final Map<String, Integer> containerHashes;
+    private final long createdTimeMicros;
+
+    private HostContainerListFingerprint(Map<String, Integer> containerHashes,
+            long createdTimeMicros) {
+        this.containerHashes = containerHashes;
+        this.createdTimeMicros = createdTimeMicros;
+    }
+
+    public static HostContainerListFingerprint create(ContainerListCallback callback,
+            long createdTimeMicros) {
+        Map<String, Integer> hashes = new HashMap<>(callback.containerIdsAndNames.size());
+        for (Map.Entry<String, String> entry : callback.containerIdsAndNames.entrySet()) {
+            String id = entry.getKey();
+            hashes.put(id, Objects.hash(entry.getValue(),
+                    get(callback.containerIdsAndImage, id),
+                    get(callback.containerIdsAndState, id)));
+        }
+        return new HostContainerListFingerprint(hashes, createdTimeMicros);
+    }
+
+    /**
+     * @return the time the container list of this fingerprint was retrieved
+     */
+    public long getCreatedTimeMicros() {
+        return createdTimeMicros;
+    }
+
+    public boolean contains(String containerId) {
+        return containerHashes.containsKey(containerId);
+    }
+
+    /**
+     * @return whether the container lists of both fingerprints are identical
+     */
+    public boolean matches(HostContainerListFingerprint other) {
+        return other != null && containerHashes.equals(other.containerHashes);
+    }
+
+    /**
+     * @return the ids of the containers that are new or changed compared to the given previous
+     *         fingerprint
+     */
+    public Set<String> getAddedOrChanged(HostContainerListFingerprint previous) {
+        Set<String> result = new HashSet<>();
+        for (Map.Entry<String, Integer> entry : containerHashes.entrySet()) {
+            if (!entry.getValue().equals(previous.containerHashes.get(entry.getKey()))) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the ids of the containers that are not present anymore compared to the given
+     *         previous fingerprint
+     */
+    public Set<String> getRemoved(HostContainerListFingerprint previous) {
+        Set<String> result = new HashSet<>(previous.containerHashes.keySet());
+        result.removeAll(containerHashes.keySet());
+        return result;
+    }
+
+    public Set<String> getContainerIds() {
+        return Collections.unmodifiableSet(containerHashes.keySet());
+    }
+
+    private static String get(Map<String, String> map, String key) {
+        return map == null ? null : map.get(key);
+    }
+}
@@ -14,8 +14,11 @@ package com.vmware.admiral.compute.container;
 import static com.vmware.admiral.common.util.AssertUtil.assertNotEmpty;
 import static com.vmware.admiral.common.util.AssertUtil.assertNotNull;
 
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -37,6 +40,9 @@ import com.vmware.xenon.common.Utils;
  *
  * It tracks reserved port in the port to container map.
  * When port is released, it is removed from the map.
+ *
+ * The owner of the profile indexes the reserved ports in a bitset and a container to ports map,
+ * so that finding free ports and releasing the ports of a container do not scan the whole map.
  */
 public class HostPortProfileService extends StatefulService {
     public static final String FACTORY_LINK = ManagementUriParts.HOST_PORT_PROFILES;
@@ -73,7 +79,9 @@ public class HostPortProfileService extends StatefulService {
     public enum HostPortProfileReservationRequestMode {
         ALLOCATE,
         RELEASE,
-        UPDATE_ALLOCATION
+        UPDATE_ALLOCATION,
+        /** Performs all the {@link HostPortProfileReservationRequest#reservations} at once. */
+        BATCH
     }
 
     /** An DTO used during PATCH operation in order to reserve host port. */
@@ -92,8 +100,16 @@ public class HostPortProfileService extends StatefulService {
         /** Specific host ports to allocate. */
         public Set<Long> specificHostPorts;
 
+        /**
+         * The requests performed by a {@link HostPortProfileReservationRequestMode#BATCH} request,
+         * e.g. for all the containers of a composite on the host. Either all of them succeed or
+         * none is applied.
+         */
+        public List<HostPortProfileReservationRequest> reservations;
     }
 
+    private ReservedPortIndex reservedPortIndex;
+
     public HostPortProfileService() {
         super(HostPortProfileState.class);
         super.toggleOption(ServiceOption.PERSISTENCE, true);
@@ -119,24 +135,61 @@ public class HostPortProfileService extends StatefulService {
 
         HostPortProfileReservationRequest request = patch.getBody(HostPortProfileReservationRequest.class);
 
-        assertNotEmpty(request.containerLink, "containerLink");
         assertNotNull(request.mode, "mode");
         HostPortProfileState hostPortProfileState = getState(patch);
+        ReservedPortIndex index = getReservedPortIndex(hostPortProfileState);
+        index.beginChanges();
+        try {
+            if (request.mode == HostPortProfileReservationRequestMode.BATCH) {
+                assertNotEmpty(request.reservations, "reservations");
+                for (HostPortProfileReservationRequest reservation : request.reservations) {
+                    handleReservation(hostPortProfileState, index, reservation);
+                }
+            } else {
+                handleReservation(hostPortProfileState, index, request);
+            }
+        } catch (RuntimeException e) {
+            // leave the profile as it was before the request
+            index.revertChanges();
+            reservedPortIndex = null;
+            throw e;
+        }
+        index.commitChanges();
+        patch.setBody(hostPortProfileState);
+        patch.complete();
+    }
+
+    private void handleReservation(HostPortProfileState state, ReservedPortIndex index,
+            HostPortProfileReservationRequest request) {
+        assertNotEmpty(request.containerLink, "containerLink");
+        assertNotNull(request.mode, "mode");
         switch (request.mode) {
         case ALLOCATE:
-            allocatePorts(hostPortProfileState, request);
+            allocatePorts(state, index, request);
             break;
         case RELEASE:
-            releasePorts(hostPortProfileState, request);
+            releasePorts(state, index, request);
             break;
         case UPDATE_ALLOCATION:
-            updatePortAllocationForContainer(hostPortProfileState, request);
+            updatePortAllocationForContainer(state, index, request);
             break;
         default:
             throw new UnsupportedOperationException("This operation is not supported: " + request.mode);
         }
-        patch.setBody(hostPortProfileState);
-        patch.complete();
+    }
+
+    /**
+     * Returns the index of the reserved ports of the given state, which is rebuilt when the
+     * reserved ports are replaced, e.g. by a PUT or when the service becomes the owner.
+     */
+    private ReservedPortIndex getReservedPortIndex(HostPortProfileState state) {
+        if (state.reservedPorts == null) {
+            state.reservedPorts = new LinkedHashMap<>();
+        }
+        if (reservedPortIndex == null || !reservedPortIndex.isIndexOf(state)) {
+            reservedPortIndex = new ReservedPortIndex(state);
+        }
+        return reservedPortIndex;
     }
 
     public static String getHostPortProfileLink(String hostLink) {
@@ -156,76 +209,67 @@ public class HostPortProfileService extends StatefulService {
      * Update container port allocation.
      * Mark container ports as allocated and release ports that are not used anymore
      */
-    private void updatePortAllocationForContainer(HostPortProfileState state, HostPortProfileReservationRequest request) {
-        Set<Long> previousPorts = getAllocatedPorts(state, request.containerLink);
+    private void updatePortAllocationForContainer(HostPortProfileState state,
+            ReservedPortIndex index, HostPortProfileReservationRequest request) {
+        Set<Long> previousPorts = index.getPorts(request.containerLink);
         // First remove all ports, this will remove ports that are not allocated anymore
-        releasePorts(state, request);
+        releasePorts(state, index, request);
         // Second mark ports allocated
-        allocateSpecificPorts(state, request);
+        allocateSpecificPorts(index, request);
         logInfo("Updating port allocation from [%s] to [%s] for container [%s] and profile [%s]",
                 previousPorts,
-                getAllocatedPorts(state, request.containerLink),
+                index.getPorts(request.containerLink),
                 request.containerLink,
                 state.documentSelfLink);
     }
 
     /** Release all ports for HostPortProfileReservationRequest. */
-    private void releasePorts(HostPortProfileState state, HostPortProfileReservationRequest request) {
+    private void releasePorts(HostPortProfileState state, ReservedPortIndex index,
+            HostPortProfileReservationRequest request) {
         logInfo("Releasing ports [%s] for container [%s] and profile [%s].",
-                getAllocatedPorts(state, request.containerLink),
+                index.getPorts(request.containerLink),
                 request.containerLink,
                 state.documentSelfLink);
         // remove container host ports from reserved ports
-        state.reservedPorts.entrySet()
-                .removeIf(p -> request.containerLink.equals(p.getValue()));
+        index.release(request.containerLink);
     }
 
     /** Allocate all ports for HostPortProfileReservationRequest. */
-    private void allocatePorts(HostPortProfileState state,
+    private void allocatePorts(HostPortProfileState state, ReservedPortIndex index,
                                HostPortProfileReservationRequest request) {
-        allocateSpecificPorts(state, request);
-        allocateAdditionalPorts(state, request);
+        allocateSpecificPorts(index, request);
+        allocateAdditionalPorts(state, index, request);
 
         logInfo("Allocating ports [%s] for container [%s] and profile [%s].",
-                getAllocatedPorts(state, request.containerLink),
+                index.getPorts(request.containerLink),
                 request.containerLink,
                 state.documentSelfLink);
     }
 
     /** Allocate a number of any available ports. */
-    private void allocateAdditionalPorts(HostPortProfileState state,
+    private void allocateAdditionalPorts(HostPortProfileState state, ReservedPortIndex index,
                                          HostPortProfileReservationRequest request) {
-        long statIndex = state.startPort;
+        if (request.additionalHostPortCount > index.getFreePortCount()) {
+            LocalizableValidationException exception =
+                    new LocalizableValidationException(
+                            "Unable to allocate hostPort. There are no available ports left.",
+                            "compute.host.port.unavailable");
+            throw exception;
+        }
 
         for (long i = 0; i < request.additionalHostPortCount; i++) {
-            Long allocatedPort = null;
-            for (long k = statIndex; k < state.endPort; k++) {
-                if (!state.reservedPorts.containsKey(k)) {
-                    allocatedPort = k;
-                    state.reservedPorts.put(allocatedPort, request.containerLink);
-                    // start from the next index for the next allocation
-                    statIndex = k + 1;
-                    break;
-                }
-            }
-            if (allocatedPort == null) {
-                LocalizableValidationException exception =
-                        new LocalizableValidationException(
-                                "Unable to allocate hostPort. There are no available ports left.",
-                                "compute.host.port.unavailable");
-                throw exception;
-            }
+            index.reserve(index.nextFreePort(), request.containerLink);
         }
     }
 
     /** Allocate specific ports. */
-    private void allocateSpecificPorts(HostPortProfileState state,
+    private void allocateSpecificPorts(ReservedPortIndex index,
                                        HostPortProfileReservationRequest request) {
         if (request.specificHostPorts == null) {
             return;
         }
 
-        request.specificHostPorts.forEach(p -> state.reservedPorts.put(p, request.containerLink));
+        request.specificHostPorts.forEach(p -> index.reserve(p, request.containerLink));
     }
 
     @Override
@@ -295,4 +339,137 @@ public class HostPortProfileService extends StatefulService {
 
         Utils.validateState(getStateDescription(), state);
     }
+
+    /**
+     * Index of the reserved ports of a profile state, updated together with its reserved ports.
+     * The ports in the range of the profile are tracked in a bitset, with all ports before the
+     * next free port hint reserved, so the lowest free port is found without scanning the ports
+     * reserved before it.
+     */
+    private static class ReservedPortIndex {
+        private final Map<Long, String> reservedPorts;
+        private final int startPort;
+        private final int endPort;
+        private final BitSet reserved = new BitSet();
+        private final Map<String, Set<Long>> portsByContainer = new HashMap<>();
+        private int nextFreePortHint;
+        private int reservedInRange;
+        private int indexedPortCount;
+        /** The previous containers of the ports changed by the current request. */
+        private Map<Long, String> changes;
+
+        ReservedPortIndex(HostPortProfileState state) {
+            this.reservedPorts = state.reservedPorts;
+            this.startPort = toBitIndex(state.startPort);
+            this.endPort = toBitIndex(state.endPort);
+            this.nextFreePortHint = startPort;
+            for (Map.Entry<Long, String> e : reservedPorts.entrySet()) {
+                index(e.getKey(), e.getValue());
+            }
+        }
+
+        boolean isIndexOf(HostPortProfileState state) {
+            return state.reservedPorts == reservedPorts
+                    && toBitIndex(state.startPort) == startPort
+                    && toBitIndex(state.endPort) == endPort
+                    && reservedPorts.size() == indexedPortCount;
+        }
+
+        void beginChanges() {
+            changes = new HashMap<>();
+        }
+
+        void commitChanges() {
+            changes = null;
+        }
+
+        /**
+         * Restores the reserved ports changed since {@link #beginChanges()}. The index itself is
+         * not restored and has to be rebuilt.
+         */
+        void revertChanges() {
+            for (Map.Entry<Long, String> e : changes.entrySet()) {
+                if (e.getValue() == null) {
+                    reservedPorts.remove(e.getKey());
+                } else {
+                    reservedPorts.put(e.getKey(), e.getValue());
+                }
+            }
+            changes = null;
+        }
+
+        Set<Long> getPorts(String containerLink) {
+            Set<Long> ports = portsByContainer.get(containerLink);
+            return ports == null ? new HashSet<>() : new HashSet<>(ports);
+        }
+
+        long getFreePortCount() {
+            return (endPort - startPort) - reservedInRange;
+        }
+
+        /** Returns the lowest free port in the range, there has to be one. */
+        long nextFreePort() {
+            nextFreePortHint = reserved.nextClearBit(nextFreePortHint);
+            return nextFreePortHint;
+        }
+
+        void reserve(long port, String containerLink) {
+            String previous = reservedPorts.put(port, containerLink);
+            recordChange(port, previous);
+            if (previous != null) {
+                unindex(port, previous);
+            }
+            index(port, containerLink);
+        }
+
+        void release(String containerLink) {
+            Set<Long> ports = portsByContainer.get(containerLink);
+            if (ports == null) {
+                return;
+            }
+            for (Long port : new HashSet<>(ports)) {
+                recordChange(port, reservedPorts.remove(port));
+                unindex(port, containerLink);
+            }
+        }
+
+        private void recordChange(long port, String previous) {
+            if (changes != null && !changes.containsKey(port)) {
+                changes.put(port, previous);
+            }
+        }
+
+        private void index(long port, String containerLink) {
+            if (portsByContainer.computeIfAbsent(containerLink, k -> new HashSet<>()).add(port)) {
+                indexedPortCount++;
+            }
+            if (isInRange(port) && !reserved.get((int) port)) {
+                reserved.set((int) port);
+                reservedInRange++;
+            }
+        }
+
+        private void unindex(long port, String containerLink) {
+            Set<Long> ports = portsByContainer.get(containerLink);
+            if (ports != null && ports.remove(port)) {
+                indexedPortCount--;
+                if (ports.isEmpty()) {
+                    portsByContainer.remove(containerLink);
+                }
+            }
+            if (isInRange(port) && !reservedPorts.containsKey(port) && reserved.get((int) port)) {
+                reserved.clear((int) port);
+                reservedInRange--;
+                nextFreePortHint = Math.min(nextFreePortHint, (int) port);
+            }
+        }
+
+        private boolean isInRange(long port) {
+            return port >= startPort && port < endPort;
+        }
+
+        private static int toBitIndex(long port) {
+            return (int) Math.max(0, Math.min(port, Integer.MAX_VALUE));
+        }
+    }
 }
@@ -21,6 +21,7 @@ import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
 import com.vmware.admiral.service.common.ServiceTaskCallback;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.CompletionHandler;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
@@ -96,8 +97,7 @@ public class ContainerMaintenance {
      */
     private boolean inspectContainerIfNeeded(ContainerState containerState, Operation post) {
         long nowMicrosUtc = Utils.getSystemNowMicrosUtc();
-        long updatePeriod = isUpdatedRecently(containerState, nowMicrosUtc)
-                ? MAINTENANCE_PERIOD_MICROS : MAINTENANCE_SLOW_DOWN_PERIOD_MICROS;
+        long updatePeriod = getInspectPeriodMicros(containerState, nowMicrosUtc);
 
         // check whether the update period has passed
         if (lastInspectMaintenanceInMicros + updatePeriod < nowMicrosUtc) {
@@ -119,8 +119,7 @@ public class ContainerMaintenance {
     private boolean collectStatsIfNeeded(ContainerState containerState, Operation post) {
         long nowMicrosUtc = Utils.getSystemNowMicrosUtc();
         // if the container state is recently updated, we want to collect stats on each maintenance
-        long updatePeriod = isUpdatedRecently(containerState, nowMicrosUtc)
-                ? 0 : MAINTENANCE_PERIOD_MICROS;
+        long updatePeriod = getStatsPeriodMicros(containerState, nowMicrosUtc);
 
         // check whether the update period has passed
         if (lastStatsMaintenanceInMicros + updatePeriod < nowMicrosUtc) {
@@ -133,15 +132,6 @@ public class ContainerMaintenance {
         }
     }
 
-    /**
-     * @return whether the specified {@link ContainerState} has been updated in the previous
-     *         MAINTENANCE_SLOW_DOWN_AGE_MICROS microseconds.
-     */
-    private boolean isUpdatedRecently(ContainerState containerState, long nowMicrosUtc) {
-        return containerState.documentUpdateTimeMicros
-                + MAINTENANCE_SLOW_DOWN_AGE_MICROS > nowMicrosUtc;
-    }
-
     private void processContainerInspect(Operation post, ContainerState containerState) {
         if (containerState.adapterManagementReference == null) {
             // probably the container hasn't finished provisioning
@@ -165,24 +155,8 @@ public class ContainerMaintenance {
     }
 
     private void requestContainerInspection(Operation post, ContainerState containerState) {
-        AdapterRequest request = new AdapterRequest();
-        request.resourceReference = UriUtils.buildPublicUri(host,
-                containerState.documentSelfLink);
-
-        request.operationTypeId = ContainerOperationType.INSPECT.id;
-        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
-        host.sendRequest(Operation
-                .createPatch(host, containerState.adapterManagementReference.toString())
-                .setBody(request)
-                .setReferer(UriUtils.buildUri(host, SERVICE_REFERRER_PATH))
-                .setCompletion((o, ex) -> {
-                    if (ex != null) {
-                        Utils.logWarning(
-                                "Exception while inspect request for container: %s. Error: %s",
-                                containerState.documentSelfLink, Utils.toString(ex));
-                    }
-                    post.complete();
-                }));
+        sendAdapterRequest(host, containerState, ContainerOperationType.INSPECT,
+                (o, ex) -> post.complete());
     }
 
     public void performStatsInspection(Operation post, ContainerState containerState) {
@@ -209,11 +183,47 @@ public class ContainerMaintenance {
     }
 
     public void requestStatsInspection(Operation post, ContainerState containerState) {
+        sendAdapterRequest(host, containerState, ContainerOperationType.STATS,
+                (o, ex) -> post.complete());
+    }
+
+    /**
+     * @return whether the specified {@link ContainerState} has been updated in the previous
+     *         MAINTENANCE_SLOW_DOWN_AGE_MICROS microseconds. Recently updated containers are
+     *         inspected and have their stats collected more often.
+     */
+    public static boolean isUpdatedRecently(ContainerState containerState, long nowMicrosUtc) {
+        return containerState.documentUpdateTimeMicros
+                + MAINTENANCE_SLOW_DOWN_AGE_MICROS > nowMicrosUtc;
+    }
+
+    /**
+     * @return the period between two inspections of the given container
+     */
+    public static long getInspectPeriodMicros(ContainerState containerState, long nowMicrosUtc) {
+        return isUpdatedRecently(containerState, nowMicrosUtc)
+                ? MAINTENANCE_PERIOD_MICROS : MAINTENANCE_SLOW_DOWN_PERIOD_MICROS;
+    }
+
+    /**
+     * @return the period between two stats collections for the given container
+     */
+    public static long getStatsPeriodMicros(ContainerState containerState, long nowMicrosUtc) {
+        return isUpdatedRecently(containerState, nowMicrosUtc)
+                ? 0 : MAINTENANCE_PERIOD_MICROS;
+    }
+
+    /**
+     * Sends an inspect or stats request for the given container to its adapter. Failures are
+     * logged and passed to the completion handler.
+     */
+    public static void sendAdapterRequest(ServiceHost host, ContainerState containerState,
+            ContainerOperationType operationType, CompletionHandler completionHandler) {
         AdapterRequest request = new AdapterRequest();
         request.resourceReference = UriUtils.buildPublicUri(host,
                 containerState.documentSelfLink);
 
-        request.operationTypeId = ContainerOperationType.STATS.id;
+        request.operationTypeId = operationType.id;
         request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
         host.sendRequest(Operation
                 .createPatch(host, containerState.adapterManagementReference.toString())
@@ -222,10 +232,12 @@ public class ContainerMaintenance {
                 .setCompletion((o, ex) -> {
                     if (ex != null) {
                         Utils.logWarning(
-                                "Exception while stats request for container: %s. Error: %s",
+                                "Exception while %s request for container: %s. Error: %s",
+                                operationType == ContainerOperationType.STATS ? "stats"
+                                        : "inspect",
                                 containerState.documentSelfLink, Utils.toString(ex));
                     }
-                    post.complete();
+                    completionHandler.handle(o, ex);
                 }));
     }
 }
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container.maintenance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vmware.admiral.adapter.common.ContainerOperationType;
+import com.vmware.admiral.common.DeploymentProfileConfig;
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.NumericRange;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+
+/**
+ * Central scheduler for the periodic inspect and stats collection of the containers owned by the
+ * current node. It replaces the per {@link ContainerState} periodic maintenance.
+ *
+ * Containers are grouped by their <code>parentLink</code> host and the hosts are spread across
+ * {@link #MAINTENANCE_WINDOWS} maintenance windows, so that on each maintenance interval only a
+ * fraction of the hosts is visited. Containers updated in the previous
+ * {@link ContainerMaintenance#MAINTENANCE_SLOW_DOWN_AGE_MICROS} are treated with priority and are
+ * visited on every maintenance interval regardless of the window of their host.
+ *
+ * For each host a single round of adapter requests is issued, one request at a time, and a new
+ * round for the same host is not started before the previous one has completed.
+ *
+ * The round still consists of one INSPECT and one STATS adapter request per container, since the
+ * docker remote API has no endpoint which inspects or collects the stats of several containers at
+ * once. The container list of a host, the only per host call, carries the ids, names, image and
+ * state of the containers only, and is already polled once per host by the
+ * {@link com.vmware.admiral.compute.container.HostContainerListDataCollection}. So the number of
+ * the docker calls is not reduced, but a host never has more than one of them in flight.
+ */
+public class ContainerMaintenanceScheduler extends StatelessService {
+    public static final String SELF_LINK = ManagementUriParts.CONTAINER_MAINTENANCE_SCHEDULER;
+
+    public static final String STAT_NAME_SCHEDULED_INSPECT_COUNT = "scheduledInspectCount";
+    public static final String STAT_NAME_SCHEDULED_STATS_COUNT = "scheduledStatsCount";
+    public static final String STAT_NAME_SKIPPED_CHECK_COUNT = "skippedCheckCount";
+    public static final String STAT_NAME_LATE_CHECK_COUNT = "lateCheckCount";
+    public static final String STAT_NAME_SKIPPED_HOST_ROUND_COUNT = "skippedHostRoundCount";
+
+    protected static final int MAINTENANCE_WINDOWS = Integer.getInteger(
+            "dcp.management.container.periodic.maintenance.windows",
+            (int) Math.max(1, ContainerMaintenance.MAINTENANCE_PERIOD_MICROS
+                    / ContainerMaintenance.MAINTENANCE_INTERVAL_MICROS));
+
+    // keep the host clauses of a single query well below the max boolean clause count
+    private static final int HOST_LINKS_QUERY_BATCH_SIZE = Integer.getInteger(
+            "dcp.management.container.periodic.maintenance.host.batch.size", 256);
+
+    /**
+     * Last maintenance times of a container.
+     */
+    static class MaintenanceRecord {
+        long lastInspectMicros;
+        long lastStatsMicros;
+        long lastSeenMicros;
+    }
+
+    /**
+     * Counters of the checks selected by {@link #selectCheck}.
+     */
+    static class MaintenanceCounters {
+        final AtomicLong scheduledInspects = new AtomicLong();
+        final AtomicLong scheduledStats = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong late = new AtomicLong();
+    }
+
+    private final Map<String, MaintenanceRecord> records = new ConcurrentHashMap<>();
+    private final Set<String> hostsInRound = ConcurrentHashMap.newKeySet();
+    private final AtomicLong windowCounter = new AtomicLong();
+
+    public ContainerMaintenanceScheduler() {
+        super.toggleOption(ServiceOption.INSTRUMENTATION, true);
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+        super.setMaintenanceIntervalMicros(ContainerMaintenance.MAINTENANCE_INTERVAL_MICROS);
+    }
+
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        if (getProcessingStage() != ProcessingStage.AVAILABLE) {
+            logFine("Skipping maintenance since service is not available: %s ", getUri());
+            post.complete();
+            return;
+        }
+
+        if (DeploymentProfileConfig.getInstance().isTest()) {
+            logFine("Skipping scheduled container maintenance in test mode");
+            post.complete();
+            return;
+        }
+
+        post.complete();
+
+        long nowMicrosUtc = Utils.getSystemNowMicrosUtc();
+        int window = (int) (windowCounter.getAndIncrement() % MAINTENANCE_WINDOWS);
+        purgeRecords(nowMicrosUtc);
+
+        Map<String, ContainerState> containers = new ConcurrentHashMap<>();
+        queryPriorityContainers(nowMicrosUtc, containers, () -> {
+            queryWindowContainers(window, containers, () -> {
+                scheduleHostRounds(containers.values(), Utils.getSystemNowMicrosUtc());
+            });
+        });
+    }
+
+    private void queryPriorityContainers(long nowMicrosUtc, Map<String, ContainerState> result,
+            Runnable callback) {
+        NumericRange<Long> range = NumericRange.createLongRange(
+                nowMicrosUtc - ContainerMaintenance.MAINTENANCE_SLOW_DOWN_AGE_MICROS,
+                Long.MAX_VALUE, true, false);
+        range.precisionStep = 64;
+        Query updatedRecently = new Query()
+                .setTermPropertyName(ServiceDocument.FIELD_NAME_UPDATE_TIME_MICROS)
+                .setNumericRange(range)
+                .setTermMatchType(MatchType.TERM);
+        updatedRecently.occurance = Occurance.MUST_OCCUR;
+
+        QueryTask q = buildLocalContainersQuery(updatedRecently);
+        queryContainers(q, result, callback);
+    }
+
+    private void queryWindowContainers(int window, Map<String, ContainerState> result,
+            Runnable callback) {
+        List<String> windowHostLinks = new ArrayList<>();
+        QueryTask hostsQuery = QueryUtil.buildQuery(ComputeState.class, true);
+        new ServiceDocumentQuery<>(getHost(), ComputeState.class).query(hostsQuery, (r) -> {
+            if (r.hasException()) {
+                logWarning("Failed to retrieve hosts for container maintenance: %s",
+                        Utils.toString(r.getException()));
+                callback.run();
+            } else if (r.hasResult()) {
+                if (getWindow(r.getDocumentSelfLink()) == window) {
+                    windowHostLinks.add(r.getDocumentSelfLink());
+                }
+            } else {
+                queryWindowContainers(windowHostLinks, 0, result, callback);
+            }
+        });
+    }
+
+    private void queryWindowContainers(List<String> windowHostLinks, int fromIndex,
+            Map<String, ContainerState> result, Runnable callback) {
+        if (fromIndex >= windowHostLinks.size()) {
+            callback.run();
+            return;
+        }
+
+        int toIndex = Math.min(fromIndex + HOST_LINKS_QUERY_BATCH_SIZE, windowHostLinks.size());
+        Query parentClause = QueryUtil.addListValueClause(
+                ContainerState.FIELD_NAME_PARENT_LINK,
+                windowHostLinks.subList(fromIndex, toIndex), MatchType.TERM);
+
+        QueryTask q = buildLocalContainersQuery(parentClause);
+        queryContainers(q, result,
+                () -> queryWindowContainers(windowHostLinks, toIndex, result, callback));
+    }
+
+    private QueryTask buildLocalContainersQuery(Query clause) {
+        Query ownerClause = new Query()
+                .setTermPropertyName(ServiceDocument.FIELD_NAME_OWNER)
+                .setTermMatchValue(getHost().getId());
+
+        QueryTask q = QueryUtil.buildQuery(ContainerState.class, true, ownerClause, clause);
+        QueryUtil.addExpandOption(q);
+        return q;
+    }
+
+    private void queryContainers(QueryTask q, Map<String, ContainerState> result,
+            Runnable callback) {
+        new ServiceDocumentQuery<>(getHost(), ContainerState.class).query(q, (r) -> {
+            if (r.hasException()) {
+                logWarning("Failed to retrieve containers for maintenance: %s",
+                        Utils.toString(r.getException()));
+                callback.run();
+            } else if (r.hasResult()) {
+                result.put(r.getDocumentSelfLink(), r.getResult());
+            } else {
+                callback.run();
+            }
+        });
+    }
+
+    private void scheduleHostRounds(Collection<ContainerState> containers, long nowMicrosUtc) {
+        Map<String, List<ContainerState>> containersByHost = groupByHost(containers);
+
+        MaintenanceCounters counters = new MaintenanceCounters();
+        for (Map.Entry<String, List<ContainerState>> entry : containersByHost.entrySet()) {
+            String hostLink = entry.getKey();
+            if (!hostsInRound.add(hostLink)) {
+                // the previous round is still running, the checks will be late
+                logFine("Skipping container maintenance round for busy host: %s", hostLink);
+                adjustStat(STAT_NAME_SKIPPED_HOST_ROUND_COUNT, 1);
+                counters.skipped.addAndGet(entry.getValue().size());
+                continue;
+            }
+
+            Map<ContainerState, ContainerOperationType> checks = new LinkedHashMap<>();
+            for (ContainerState containerState : entry.getValue()) {
+                MaintenanceRecord record = records.computeIfAbsent(
+                        containerState.documentSelfLink, (k) -> new MaintenanceRecord());
+                ContainerOperationType check = selectCheck(containerState, record, nowMicrosUtc,
+                        counters);
+                if (check != null) {
+                    checks.put(containerState, check);
+                }
+            }
+
+            if (checks.isEmpty()) {
+                hostsInRound.remove(hostLink);
+                continue;
+            }
+
+            logFine("Performing maintenance of %s containers on host: %s", checks.size(),
+                    hostLink);
+            runHostRound(hostLink, checks.entrySet().iterator());
+        }
+
+        adjustStat(STAT_NAME_SCHEDULED_INSPECT_COUNT, counters.scheduledInspects.get());
+        adjustStat(STAT_NAME_SCHEDULED_STATS_COUNT, counters.scheduledStats.get());
+        adjustStat(STAT_NAME_SKIPPED_CHECK_COUNT, counters.skipped.get());
+        adjustStat(STAT_NAME_LATE_CHECK_COUNT, counters.late.get());
+    }
+
+    private void runHostRound(String hostLink,
+            Iterator<Map.Entry<ContainerState, ContainerOperationType>> checks) {
+        if (!checks.hasNext() || getHost().isStopping()) {
+            hostsInRound.remove(hostLink);
+            return;
+        }
+
+        // the next request of the host is sent once the previous one has completed, either way
+        Map.Entry<ContainerState, ContainerOperationType> check = checks.next();
+        ContainerMaintenance.sendAdapterRequest(getHost(), check.getKey(), check.getValue(),
+                (o, ex) -> runHostRound(hostLink, checks));
+    }
+
+    private void purgeRecords(long nowMicrosUtc) {
+        long expirationMicros = nowMicrosUtc
+                - 2 * ContainerMaintenance.MAINTENANCE_SLOW_DOWN_PERIOD_MICROS;
+        records.values().removeIf((r) -> r.lastSeenMicros < expirationMicros);
+    }
+
+    static Map<String, List<ContainerState>> groupByHost(Collection<ContainerState> containers) {
+        Map<String, List<ContainerState>> containersByHost = new HashMap<>();
+        for (ContainerState containerState : containers) {
+            if (containerState.parentLink == null) {
+                // probably the container hasn't finished provisioning
+                continue;
+            }
+            containersByHost.computeIfAbsent(containerState.parentLink, (k) -> new ArrayList<>())
+                    .add(containerState);
+        }
+        return containersByHost;
+    }
+
+    static int getWindow(String hostLink) {
+        return Math.floorMod(hostLink.hashCode(), MAINTENANCE_WINDOWS);
+    }
+
+    /**
+     * Selects the check to be performed on the given container, if any, and updates its
+     * maintenance record. Inspect has precedence over stats collection, the same way it is done
+     * by {@link ContainerMaintenance}.
+     *
+     * @return the operation to be requested from the adapter or <code>null</code> if the
+     *         container should be skipped
+     */
+    static ContainerOperationType selectCheck(ContainerState containerState,
+            MaintenanceRecord record, long nowMicrosUtc, MaintenanceCounters counters) {
+        record.lastSeenMicros = nowMicrosUtc;
+
+        if (containerState.adapterManagementReference == null
+                || containerState.powerState == null
+                || containerState.powerState.isUnmanaged()) {
+            counters.skipped.incrementAndGet();
+            return null;
+        }
+
+        // hosts are visited once per window cycle, so allow half an interval of timer jitter
+        long dueMicrosUtc = nowMicrosUtc + ContainerMaintenance.MAINTENANCE_INTERVAL_MICROS / 2;
+        long lateToleranceMicros = ContainerMaintenance.MAINTENANCE_INTERVAL_MICROS
+                * MAINTENANCE_WINDOWS;
+
+        long inspectPeriod = ContainerMaintenance.getInspectPeriodMicros(containerState,
+                nowMicrosUtc);
+        if (record.lastInspectMicros + inspectPeriod < dueMicrosUtc) {
+            if (isLate(record.lastInspectMicros, inspectPeriod, lateToleranceMicros,
+                    nowMicrosUtc)) {
+                counters.late.incrementAndGet();
+            }
+            record.lastInspectMicros = nowMicrosUtc;
+            counters.scheduledInspects.incrementAndGet();
+            return ContainerOperationType.INSPECT;
+        }
+
+        long statsPeriod = ContainerMaintenance.getStatsPeriodMicros(containerState,
+                nowMicrosUtc);
+        if (containerState.powerState == PowerState.RUNNING
+                && record.lastStatsMicros + statsPeriod < dueMicrosUtc) {
+            if (isLate(record.lastStatsMicros, statsPeriod, lateToleranceMicros,
+                    nowMicrosUtc)) {
+                counters.late.incrementAndGet();
+            }
+            record.lastStatsMicros = nowMicrosUtc;
+            counters.scheduledStats.incrementAndGet();
+            return ContainerOperationType.STATS;
+        }
+
+        counters.skipped.incrementAndGet();
+        return null;
+    }
+
+    private static boolean isLate(long lastCheckMicros, long periodMicros,
+            long toleranceMicros, long nowMicrosUtc) {
+        return lastCheckMicros != 0
+                && lastCheckMicros + periodMicros + toleranceMicros < nowMicrosUtc;
+    }
+}
@@ -11,24 +11,29 @@
 
 package com.vmware.admiral.compute.container.maintenance;
 
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.io.IOException;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.reflect.TypeToken;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 import com.vmware.xenon.common.Utils;
 
 /**
  * Calculate the container stats based on the json data coming from the Docker hosts.
+ *
+ * The json is read with a streaming parser, only the fields used for the stats are read, into
+ * primitive values of a per thread accumulator, and all other fields are skipped.
  */
 public class ContainerStatsEvaluator {
 
     private static final String CONTAINER_STOPPED_TIME = "0001-01-01T00:00:00Z";
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final ThreadLocal<StatsAccumulator> ACCUMULATORS = ThreadLocal
+            .withInitial(StatsAccumulator::new);
+
     /**
      * Parse the json stats value and return ContainerStats state with the calculated values from
      * the json field.
@@ -41,215 +46,293 @@ public class ContainerStatsEvaluator {
             return state;
         }
 
-        Map<String, JsonElement> stats = parseStats(statsJson);
+        StatsAccumulator stats = ACCUMULATORS.get();
+        stats.reset();
+        try (JsonParser parser = JSON_FACTORY.createParser(statsJson)) {
+            parseStats(parser, stats);
+        } catch (Exception e) {
+            Utils.logWarning("Error parsing container stats: [%s]. Error: %s", statsJson,
+                    Utils.toString(e));
+            return state;
+        }
 
         calculateCpuUsage(state, stats);
 
-        setMemoryUsage(state, stats);
+        if (stats.memLimitSet) {
+            state.memLimit = stats.memLimit;
+        }
+        if (stats.memUsageSet) {
+            state.memUsage = stats.memUsage;
+        }
 
-        setNetworkUsage(state, stats);
+        if (stats.networksSet) {
+            state.networkIn = stats.networkIn;
+            state.networkOut = stats.networkOut;
+        }
 
-        setContainerStopped(state, stats);
+        if (stats.readSet) {
+            state.containerStopped = stats.containerStopped;
+        } else {
+            Utils.logWarning("read is null.");
+        }
 
         return state;
     }
 
-    private static Map<String, JsonElement> parseStats(String statsJson) {
-        Map<String, JsonElement> stats = null;
-        try {
-            stats = Utils.fromJson(statsJson, new TypeToken<Map<String, JsonElement>>() {
-            }.getType());
-        } catch (Exception e) {
-            Utils.logWarning("Error parsing container stats: [%s]. Error: %s", statsJson,
-                    Utils.toString(e));
+    private static void parseStats(JsonParser parser, StatsAccumulator stats)
+            throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Container stats are not a json object");
         }
-        return stats;
-    }
-
-    private static void setNetworkUsage(ContainerStats state, Map<String, JsonElement> stats) {
-        try {
-            JsonElement jsonElement = stats.get("networks");
-            if (jsonElement == null) {
-                return;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                continue;
             }
-            JsonObject networks = jsonElement.getAsJsonObject();
-            if (networks == null) {
-                return;
+            switch (field) {
+            case "read":
+                stats.readSet = true;
+                stats.containerStopped = textEquals(parser, CONTAINER_STOPPED_TIME);
+                parser.skipChildren();
+                break;
+            case "networks":
+                parseNetworks(parser, stats);
+                break;
+            case "memory_stats":
+                parseMemoryStats(parser, stats);
+                break;
+            case "cpu_stats":
+                parseCpuStats(parser, stats.cpu);
+                break;
+            case "precpu_stats":
+                parseCpuStats(parser, stats.precpu);
+                break;
+            default:
+                parser.skipChildren();
             }
-            Set<Entry<String, JsonElement>> entrySet = networks.entrySet();
-            if (entrySet == null) {
-                return;
-            }
-
-            NetworkTraffic summedTraffic = entrySet.stream()
-                    .map(entry -> {
-
-                        JsonObject network = entry.getValue().getAsJsonObject();
-                        NetworkTraffic result = new NetworkTraffic();
-
-                        if (network != null) {
-                            JsonElement netInValue = network.get("rx_bytes");
-                            if (netInValue != null) {
-                                result.networkIn = netInValue.getAsLong();
-                            }
-
-                            JsonElement netOutValue = network.get("tx_bytes");
-                            if (netOutValue != null) {
-                                result.networkOut += netOutValue.getAsLong();
-                            }
-                        }
-
-                        return result;
-
-                    }).reduce(new NetworkTraffic(), (t1, t2) -> {
-
-                        return new NetworkTraffic(t1.networkIn + t2.networkIn,
-                                t1.networkOut + t2.networkOut);
-                    });
-
-            state.networkIn = summedTraffic.networkIn;
-            state.networkOut = summedTraffic.networkOut;
-
-        } catch (Exception e) {
-            Utils.logWarning("Error during container stats network usage parsing: %s",
-                    Utils.toString(e));
         }
     }
 
-    private static void setMemoryUsage(ContainerStats state, Map<String, JsonElement> stats) {
-        try {
-            JsonElement jsonElement = stats.get("memory_stats");
-            if (jsonElement == null) {
-                return;
-            }
-            JsonObject memory_stats = jsonElement.getAsJsonObject();
-            JsonElement limitValue = memory_stats.get("limit");
-            if (limitValue != null) {
-                state.memLimit = limitValue.getAsLong();
+    private static void parseNetworks(JsonParser parser, StatsAccumulator stats)
+            throws IOException {
+        if (!isObject(parser)) {
+            return;
+        }
+        stats.networksSet = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            if (!isObject(parser)) {
+                continue;
             }
-            JsonElement usage = memory_stats.get("usage");
-            if (usage != null) {
-                state.memUsage = usage.getAsLong();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("rx_bytes".equals(field) && isNumber(parser)) {
+                    stats.networkIn += parser.getValueAsLong();
+                } else if ("tx_bytes".equals(field) && isNumber(parser)) {
+                    stats.networkOut += parser.getValueAsLong();
+                } else {
+                    parser.skipChildren();
+                }
             }
-        } catch (Exception e) {
-            Utils.logWarning("Error during container stats memory usage parsing: %s",
-                    Utils.toString(e));
         }
     }
 
-    // Calculate Docker container CPU percentage usage as implemented by the command line tool -
-    // https://github.com/docker/docker/blob/master/api/client/stats.go#L195
-    private static void calculateCpuUsage(ContainerStats state, Map<String, JsonElement> stats) {
-        try {
-            JsonElement cpu_stats_json = stats.get("cpu_stats");
-            if (cpu_stats_json == null || cpu_stats_json.isJsonNull()) {
-                Utils.logWarning("cpu_stats is null.");
-                return;
-            }
-            JsonObject cpu_stats = cpu_stats_json.getAsJsonObject();
-
-            JsonElement systemCpuUsageValue = cpu_stats.get("system_cpu_usage");
-            if (systemCpuUsageValue == null || systemCpuUsageValue.isJsonNull()) {
-                Utils.logWarning("system_cpu_usage is null.");
-                return;
-            }
-            long system_cpu_usage = systemCpuUsageValue.getAsLong();
-
-            JsonElement cpu_usage_json = cpu_stats.get("cpu_usage");
-            if (cpu_usage_json == null || cpu_usage_json.isJsonNull()) {
-                Utils.logWarning("cpu_usage is null.");
-                return;
-            }
-            JsonObject cpu_usage = cpu_usage_json.getAsJsonObject();
-
-            JsonElement totalUsageValue = cpu_usage.get("total_usage");
-            if (totalUsageValue == null || totalUsageValue.isJsonNull()) {
-                Utils.logWarning("totalUsageValue is null.");
-                return;
+    private static void parseMemoryStats(JsonParser parser, StatsAccumulator stats)
+            throws IOException {
+        if (!isObject(parser)) {
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("limit".equals(field) && isNumber(parser)) {
+                stats.memLimit = parser.getValueAsLong();
+                stats.memLimitSet = true;
+            } else if ("usage".equals(field) && isNumber(parser)) {
+                stats.memUsage = parser.getValueAsLong();
+                stats.memUsageSet = true;
+            } else {
+                parser.skipChildren();
             }
-            long total_usage = totalUsageValue.getAsLong();
+        }
+    }
 
-            JsonElement percpu_usage_json = cpu_usage.get("percpu_usage");
-            if (percpu_usage_json == null || percpu_usage_json.isJsonNull()) {
-                Utils.logWarning("percpu_usage is null.");
-                return;
+    private static void parseCpuStats(JsonParser parser, CpuStats cpu) throws IOException {
+        if (!isObject(parser)) {
+            return;
+        }
+        cpu.present = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("system_cpu_usage".equals(field) && isNumber(parser)) {
+                cpu.systemUsage = parser.getValueAsLong();
+                cpu.systemUsageSet = true;
+            } else if ("cpu_usage".equals(field) && isObject(parser)) {
+                parseCpuUsage(parser, cpu);
+            } else {
+                parser.skipChildren();
             }
-            JsonArray percpu_usage = percpu_usage_json.getAsJsonArray();
+        }
+    }
 
-            JsonElement precpu_stats_json = stats.get("precpu_stats");
-            if (precpu_stats_json == null || precpu_stats_json.isJsonNull()) {
-                Utils.logWarning("precpu_stats is null.");
-                return;
+    private static void parseCpuUsage(JsonParser parser, CpuStats cpu) throws IOException {
+        cpu.cpuUsagePresent = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("total_usage".equals(field) && isNumber(parser)) {
+                cpu.totalUsage = parser.getValueAsLong();
+                cpu.totalUsageSet = true;
+            } else if ("percpu_usage".equals(field) && value == JsonToken.START_ARRAY) {
+                int count = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    parser.skipChildren();
+                    count++;
+                }
+                cpu.perCpuCount = count;
+            } else {
+                parser.skipChildren();
             }
-            JsonObject precpu_stats = precpu_stats_json.getAsJsonObject();
+        }
+    }
 
-            JsonElement system_cpu_usage_json = precpu_stats.get("system_cpu_usage");
-            if (system_cpu_usage_json == null || system_cpu_usage_json.isJsonNull()) {
-                Utils.logWarning("system_cpu_usage is null.");
-                return;
-            }
-            long presystem_cpu_usage = system_cpu_usage_json.getAsLong();
+    /**
+     * Returns whether the current value is an object. Other values are skipped.
+     */
+    private static boolean isObject(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+            return true;
+        }
+        parser.skipChildren();
+        return false;
+    }
 
-            JsonElement precpu_usage_json = precpu_stats.get("cpu_usage");
-            if (precpu_usage_json == null || precpu_usage_json.isJsonNull()) {
-                Utils.logWarning("precpu_usage is null.");
-                return;
-            }
-            JsonObject precpu_usage = precpu_usage_json.getAsJsonObject();
+    private static boolean isNumber(JsonParser parser) {
+        JsonToken token = parser.getCurrentToken();
+        return token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT
+                || token == JsonToken.VALUE_STRING;
+    }
 
-            JsonElement pretotal_usage_json = precpu_usage.get("total_usage");
-            if (pretotal_usage_json == null || pretotal_usage_json.isJsonNull()) {
-                Utils.logWarning("total_usage is null.");
-                return;
+    /**
+     * Compares the current string value without creating a String of it.
+     */
+    private static boolean textEquals(JsonParser parser, String expected) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.VALUE_STRING
+                || parser.getTextLength() != expected.length()) {
+            return false;
+        }
+        char[] text = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        for (int i = 0; i < expected.length(); i++) {
+            if (text[offset + i] != expected.charAt(i)) {
+                return false;
             }
+        }
+        return true;
+    }
 
-            long pretotal_usage = pretotal_usage_json.getAsLong();
-
-            long cpuDelta = total_usage - pretotal_usage;
-            long systemDelta = system_cpu_usage - presystem_cpu_usage;
+    // Calculate Docker container CPU percentage usage as implemented by the command line tool -
+    // https://github.com/docker/docker/blob/master/api/client/stats.go#L195
+    private static void calculateCpuUsage(ContainerStats state, StatsAccumulator stats) {
+        String missingField = getMissingCpuField(stats);
+        if (missingField != null) {
+            Utils.logWarning("%s is null.", missingField);
+            return;
+        }
 
-            if (systemDelta > 0 && cpuDelta > 0) {
-                double cpuUsage = (((double) cpuDelta / systemDelta) * percpu_usage.size()) * 100.0;
-                state.cpuUsage = Math.round(cpuUsage * 100d) / 100d;
-            }
+        long cpuDelta = stats.cpu.totalUsage - stats.precpu.totalUsage;
+        long systemDelta = stats.cpu.systemUsage - stats.precpu.systemUsage;
 
-        } catch (Exception e) {
-            Utils.logWarning("Error during container stats CPU usage calculations: %s",
-                    Utils.toString(e));
+        if (systemDelta > 0 && cpuDelta > 0) {
+            double cpuUsage = (((double) cpuDelta / systemDelta) * stats.cpu.perCpuCount) * 100.0;
+            state.cpuUsage = Math.round(cpuUsage * 100d) / 100d;
         }
     }
 
-    private static void setContainerStopped(ContainerStats state, Map<String, JsonElement> stats) {
-        try {
-            JsonElement read_json = stats.get("read");
-            if (read_json == null || read_json.isJsonNull()) {
-                Utils.logWarning("read is null.");
-                return;
-            }
-            String read = read_json.getAsString();
-            state.containerStopped = Boolean.FALSE;
-            if (CONTAINER_STOPPED_TIME.equals(read)) {
-                state.containerStopped = Boolean.TRUE;
-            }
-        } catch (Exception e) {
-            Utils.logWarning("Error during container stats status calculations: %s",
-                    Utils.toString(e));
+    private static String getMissingCpuField(StatsAccumulator stats) {
+        if (!stats.cpu.present) {
+            return "cpu_stats";
+        }
+        if (!stats.cpu.systemUsageSet) {
+            return "system_cpu_usage";
+        }
+        if (!stats.cpu.cpuUsagePresent) {
+            return "cpu_usage";
+        }
+        if (!stats.cpu.totalUsageSet) {
+            return "total_usage";
+        }
+        if (stats.cpu.perCpuCount < 0) {
+            return "percpu_usage";
+        }
+        if (!stats.precpu.present) {
+            return "precpu_stats";
         }
+        if (!stats.precpu.systemUsageSet) {
+            return "system_cpu_usage";
+        }
+        if (!stats.precpu.cpuUsagePresent) {
+            return "precpu_usage";
+        }
+        if (!stats.precpu.totalUsageSet) {
+            return "total_usage";
+        }
+        return null;
     }
 
-    private static class NetworkTraffic {
-
-        public long networkIn;
-        public long networkOut;
-
-        public NetworkTraffic() {
-            this(0, 0);
+    /**
+     * The CPU values of the current or the previous stats.
+     */
+    private static class CpuStats {
+        boolean present;
+        boolean systemUsageSet;
+        long systemUsage;
+        boolean cpuUsagePresent;
+        boolean totalUsageSet;
+        long totalUsage;
+        int perCpuCount;
+
+        void reset() {
+            present = false;
+            systemUsageSet = false;
+            systemUsage = 0;
+            cpuUsagePresent = false;
+            totalUsageSet = false;
+            totalUsage = 0;
+            perCpuCount = -1;
         }
+    }
 
-        public NetworkTraffic(long networkIn, long networkOut) {
-            this.networkIn = networkIn;
-            this.networkOut = networkOut;
+    /**
+     * The values read from the stats json, reused by the parsings of a thread.
+     */
+    private static class StatsAccumulator {
+        final CpuStats cpu = new CpuStats();
+        final CpuStats precpu = new CpuStats();
+        boolean memLimitSet;
+        long memLimit;
+        boolean memUsageSet;
+        long memUsage;
+        boolean networksSet;
+        long networkIn;
+        long networkOut;
+        boolean readSet;
+        boolean containerStopped;
+
+        void reset() {
+            cpu.reset();
+            precpu.reset();
+            memLimitSet = false;
+            memLimit = 0;
+            memUsageSet = false;
+            memUsage = 0;
+            networksSet = false;
+            networkIn = 0;
+            networkOut = 0;
+            readSet = false;
+            containerStopped = false;
         }
-
     }
 }
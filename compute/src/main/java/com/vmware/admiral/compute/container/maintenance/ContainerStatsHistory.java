@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container.maintenance;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Node local history of the stats of the containers owned by the node. The CPU, memory and
+ * network values of each container are kept in ring buffers of primitive arrays: the raw samples
+ * and their 1 minute, 10 minute and 1 hour rollups. The CPU and memory usage are averaged in the
+ * rollups, while the network traffic, which is a counter, keeps its latest value.
+ *
+ * The memory is bounded by the number of samples of each resolution and by the number of
+ * containers, the least recently updated containers are evicted. Optionally, the closed 1 minute
+ * rollups are appended to a file in the storage sandbox of the host, which is rotated when it
+ * reaches its maximum size.
+ *
+ * The history lives as long as the host, it is closed when the host stops.
+ */
+public class ContainerStatsHistory {
+    public static final int MAX_CONTAINERS = Integer.getInteger(
+            "com.vmware.admiral.container.stats.history.max.containers", 2000);
+
+    /** The maximum size of the spill file, the file is not written when it is 0. */
+    public static final long SPILL_MAX_SIZE_BYTES = Long.getLong(
+            "com.vmware.admiral.container.stats.history.spill.max.size.bytes", 0);
+
+    /** The number of the latest 1 minute rollups averaged in the smoothed load. */
+    public static final int SMOOTHING_MINUTES = Integer.getInteger(
+            "com.vmware.admiral.container.stats.history.smoothing.minutes", 5);
+
+    static final String SPILL_FILE_NAME = "container-stats-history.csv";
+
+    private static final Map<String, ContainerStatsHistory> HISTORIES = new ConcurrentHashMap<>();
+
+    /** The resolutions of the history, with the number of samples kept for each of them. */
+    public enum Resolution {
+        RAW("raw", 0, 60),
+        MINUTE("1m", TimeUnit.MINUTES.toMicros(1), 60),
+        TEN_MINUTES("10m", TimeUnit.MINUTES.toMicros(10), 72),
+        HOUR("1h", TimeUnit.HOURS.toMicros(1), 48);
+
+        public final String value;
+        final long bucketMicros;
+        final int capacity;
+
+        Resolution(String value, long bucketMicros, int capacity) {
+            this.value = value;
+            this.bucketMicros = bucketMicros;
+            this.capacity = capacity;
+        }
+
+        public static Resolution fromValue(String value) {
+            for (Resolution resolution : values()) {
+                if (resolution.value.equals(value)) {
+                    return resolution;
+                }
+            }
+            throw new IllegalArgumentException("Unknown stats history resolution: " + value);
+        }
+    }
+
+    /** The samples of a container with a given resolution, in chronological order. */
+    public static class StatsSamples {
+        public String containerLink;
+        public String resolution;
+        /** The start of the sample or of the rollup period */
+        public long[] timeMicros;
+        public double[] cpuUsage;
+        public long[] memUsage;
+        public long[] networkIn;
+        public long[] networkOut;
+    }
+
+    /** The CPU and memory usage of a container averaged over the latest minutes. */
+    public static class SmoothedLoad {
+        public double cpuUsage;
+        public long memUsage;
+    }
+
+    private final Map<String, ContainerSeries> containers;
+    private final int maxContainers;
+    private final Path spillFile;
+    private final long spillMaxSizeBytes;
+    private Writer spillWriter;
+    private boolean closed;
+
+    ContainerStatsHistory(int maxContainers, Path spillFile, long spillMaxSizeBytes) {
+        this.maxContainers = maxContainers;
+        this.spillFile = spillFile;
+        this.spillMaxSizeBytes = spillMaxSizeBytes;
+        this.containers = new LinkedHashMap<String, ContainerSeries>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ContainerSeries> eldest) {
+                return size() > ContainerStatsHistory.this.maxContainers;
+            }
+        };
+    }
+
+    /**
+     * Returns the stats history of the given host.
+     */
+    public static ContainerStatsHistory forHost(ServiceHost host) {
+        return HISTORIES.computeIfAbsent(host.getId(), id -> {
+            Path spillFile = SPILL_MAX_SIZE_BYTES > 0
+                    ? Paths.get(host.getStorageSandbox()).resolve(SPILL_FILE_NAME) : null;
+            return new ContainerStatsHistory(MAX_CONTAINERS, spillFile, SPILL_MAX_SIZE_BYTES);
+        });
+    }
+
+    /**
+     * Closes the stats history of the given host, which is stopping.
+     */
+    public static void stop(ServiceHost host) {
+        ContainerStatsHistory history = HISTORIES.remove(host.getId());
+        if (history != null) {
+            history.close();
+        }
+    }
+
+    /**
+     * Records the CPU, memory and network values of the given stats of a container.
+     */
+    public void record(String containerLink, ContainerStats stats, long timeMicros) {
+        ContainerSeries series;
+        synchronized (containers) {
+            series = containers.computeIfAbsent(containerLink, l -> new ContainerSeries());
+        }
+        synchronized (series) {
+            series.raw.add(timeMicros, stats.cpuUsage, stats.memUsage, stats.networkIn,
+                    stats.networkOut);
+            for (int i = 0; i < series.rollups.length; i++) {
+                SampleRing rollup = series.rollups[i];
+                boolean closed = rollup.add(timeMicros, stats.cpuUsage, stats.memUsage,
+                        stats.networkIn, stats.networkOut);
+                if (closed && i == 0 && spillFile != null) {
+                    spill(containerLink, rollup, rollup.size - 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the samples of a container with the given resolution. There are no samples if there
+     * is no history of the container on this node.
+     */
+    public StatsSamples getSamples(String containerLink, Resolution resolution) {
+        ContainerSeries series;
+        synchronized (containers) {
+            series = containers.get(containerLink);
+        }
+        StatsSamples samples;
+        if (series == null) {
+            samples = new SampleRing(resolution).toSamples();
+        } else {
+            synchronized (series) {
+                samples = series.get(resolution).toSamples();
+            }
+        }
+        samples.containerLink = containerLink;
+        samples.resolution = resolution.value;
+        return samples;
+    }
+
+    /**
+     * Returns the CPU and memory usage of a container averaged over the latest
+     * {@link #SMOOTHING_MINUTES} 1 minute rollups, including the current one, or {@code null} if
+     * there is no history of the container on this node.
+     */
+    public SmoothedLoad getSmoothedLoad(String containerLink) {
+        ContainerSeries series;
+        synchronized (containers) {
+            series = containers.get(containerLink);
+        }
+        if (series == null) {
+            return null;
+        }
+        synchronized (series) {
+            SampleRing rollup = series.get(Resolution.MINUTE);
+            int count = Math.min(rollup.size, SMOOTHING_MINUTES);
+            if (count == 0) {
+                return null;
+            }
+            double cpuUsage = 0;
+            long memUsage = 0;
+            for (int i = rollup.size - count; i < rollup.size; i++) {
+                int slot = rollup.slot(i);
+                cpuUsage += rollup.cpuUsage[slot];
+                memUsage += rollup.memUsage[slot];
+            }
+            SmoothedLoad load = new SmoothedLoad();
+            load.cpuUsage = cpuUsage / count;
+            load.memUsage = memUsage / count;
+            return load;
+        }
+    }
+
+    /**
+     * Removes the history of a container.
+     */
+    public void remove(String containerLink) {
+        synchronized (containers) {
+            containers.remove(containerLink);
+        }
+    }
+
+    int size() {
+        synchronized (containers) {
+            return containers.size();
+        }
+    }
+
+    synchronized void close() {
+        closed = true;
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.close();
+        } catch (IOException e) {
+            Utils.logWarning("Failed to close the container stats history file %s: %s",
+                    spillFile, Utils.toString(e));
+        }
+        spillWriter = null;
+    }
+
+    private synchronized void spill(String containerLink, SampleRing ring, int index) {
+        if (index < 0 || closed) {
+            return;
+        }
+        int slot = ring.slot(index);
+        String line = String.format("%s,%d,%s,%d,%d,%d%n", containerLink, ring.timeMicros[slot],
+                ring.cpuUsage[slot], ring.memUsage[slot], ring.networkIn[slot],
+                ring.networkOut[slot]);
+        try {
+            if (spillWriter == null) {
+                Files.createDirectories(spillFile.getParent());
+                spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            spillWriter.write(line);
+            spillWriter.flush();
+            if (Files.size(spillFile) >= spillMaxSizeBytes) {
+                // keep the previous file only
+                spillWriter.close();
+                spillWriter = null;
+                Files.move(spillFile, spillFile.resolveSibling(SPILL_FILE_NAME + ".1"),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Utils.logWarning("Failed to write the container stats history to %s: %s", spillFile,
+                    Utils.toString(e));
+        }
+    }
+
+    /** The history of a container in all resolutions. */
+    private static class ContainerSeries {
+        final SampleRing raw = new SampleRing(Resolution.RAW);
+        final SampleRing[] rollups = {
+                new SampleRing(Resolution.MINUTE),
+                new SampleRing(Resolution.TEN_MINUTES),
+                new SampleRing(Resolution.HOUR) };
+
+        SampleRing get(Resolution resolution) {
+            return resolution == Resolution.RAW ? raw : rollups[resolution.ordinal() - 1];
+        }
+    }
+
+    /**
+     * A ring buffer of samples. When the samples are rolled up, the latest sample is the
+     * aggregate of the current period, which is updated until a sample of the next period comes.
+     */
+    static class SampleRing {
+        final long bucketMicros;
+        final long[] timeMicros;
+        final double[] cpuUsage;
+        final long[] memUsage;
+        final long[] networkIn;
+        final long[] networkOut;
+        final int[] counts;
+        /** The slot of the oldest sample. */
+        int start;
+        int size;
+
+        SampleRing(Resolution resolution) {
+            this.bucketMicros = resolution.bucketMicros;
+            int capacity = resolution.capacity;
+            this.timeMicros = new long[capacity];
+            this.cpuUsage = new double[capacity];
+            this.memUsage = new long[capacity];
+            this.networkIn = new long[capacity];
+            this.networkOut = new long[capacity];
+            this.counts = new int[capacity];
+        }
+
+        /**
+         * Adds a sample and returns whether it closed the period of the previous sample.
+         */
+        boolean add(long time, double cpu, long mem, long netIn, long netOut) {
+            long bucketTime = bucketMicros > 0 ? time - time % bucketMicros : time;
+            if (size > 0 && bucketMicros > 0) {
+                int last = slot(size - 1);
+                if (timeMicros[last] == bucketTime) {
+                    int count = ++counts[last];
+                    cpuUsage[last] += (cpu - cpuUsage[last]) / count;
+                    memUsage[last] += (mem - memUsage[last]) / count;
+                    networkIn[last] = netIn;
+                    networkOut[last] = netOut;
+                    return false;
+                }
+            }
+
+            int slot;
+            if (size < timeMicros.length) {
+                slot = slot(size++);
+            } else {
+                slot = start;
+                start = (start + 1) % timeMicros.length;
+            }
+            timeMicros[slot] = bucketTime;
+            cpuUsage[slot] = cpu;
+            memUsage[slot] = mem;
+            networkIn[slot] = netIn;
+            networkOut[slot] = netOut;
+            counts[slot] = 1;
+            return size > 1;
+        }
+
+        int slot(int index) {
+            return (start + index) % timeMicros.length;
+        }
+
+        StatsSamples toSamples() {
+            StatsSamples samples = new StatsSamples();
+            samples.timeMicros = new long[size];
+            samples.cpuUsage = new double[size];
+            samples.memUsage = new long[size];
+            samples.networkIn = new long[size];
+            samples.networkOut = new long[size];
+            for (int i = 0; i < size; i++) {
+                int slot = slot(i);
+                samples.timeMicros[i] = timeMicros[slot];
+                samples.cpuUsage[i] = cpuUsage[slot];
+                samples.memUsage[i] = memUsage[slot];
+                samples.networkIn[i] = networkIn[slot];
+                samples.networkOut[i] = networkOut[slot];
+            }
+            return samples;
+        }
+    }
+}
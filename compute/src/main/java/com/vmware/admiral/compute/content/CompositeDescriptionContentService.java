@@ -26,7 +26,7 @@ import static com.vmware.admiral.compute.content.CompositeTemplateUtil.deseriali
 import static com.vmware.admiral.compute.content.CompositeTemplateUtil.fromCompositeTemplateToCompositeDescription;
 import static com.vmware.admiral.compute.content.CompositeTemplateUtil.fromCompositeTemplateToDockerCompose;
 import static com.vmware.admiral.compute.content.CompositeTemplateUtil.fromDockerComposeToCompositeTemplate;
-import static com.vmware.admiral.compute.content.CompositeTemplateUtil.getYamlType;
+import static com.vmware.admiral.compute.content.CompositeTemplateUtil.parseYaml;
 import static com.vmware.admiral.compute.content.CompositeTemplateUtil.serializeCompositeTemplate;
 import static com.vmware.admiral.compute.content.CompositeTemplateUtil.serializeDockerCompose;
 
@@ -43,6 +43,7 @@ import com.vmware.admiral.compute.ResourceType;
 import com.vmware.admiral.compute.container.CompositeComponentRegistry;
 import com.vmware.admiral.compute.container.CompositeDescriptionFactoryService;
 import com.vmware.admiral.compute.container.CompositeDescriptionService.CompositeDescription;
+import com.vmware.admiral.compute.content.CompositeTemplateUtil.ParsedYaml;
 import com.vmware.admiral.compute.content.CompositeTemplateUtil.YamlType;
 import com.vmware.admiral.compute.content.compose.DockerCompose;
 import com.vmware.admiral.compute.kubernetes.service.KubernetesDescriptionContentService;
@@ -205,13 +206,15 @@ public class CompositeDescriptionContentService extends StatelessService {
         try {
             if (isApplicationYamlContent(op.getContentType())) {
                 content = op.getBody(String.class);
-                yamlType = getYamlType(content);
+                // the content is parsed once, the templates are deserialized from the parsed tree
+                ParsedYaml parsedYaml = parseYaml(content);
+                yamlType = parsedYaml.type;
                 switch (yamlType) {
                 case COMPOSITE_TEMPLATE:
-                    template = deserializeCompositeTemplate(content);
+                    template = deserializeCompositeTemplate(parsedYaml.document);
                     break;
                 case DOCKER_COMPOSE:
-                    DockerCompose compose = deserializeDockerCompose(content);
+                    DockerCompose compose = deserializeDockerCompose(parsedYaml.document);
                     template = fromDockerComposeToCompositeTemplate(compose);
                     break;
                 case KUBERNETES_TEMPLATE:
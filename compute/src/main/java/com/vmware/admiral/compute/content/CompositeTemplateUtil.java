@@ -35,6 +35,7 @@ import java.util.stream.Stream;
 import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -91,6 +92,20 @@ public class CompositeTemplateUtil {
         UNKNOWN
     }
 
+    /**
+     * A YAML content parsed once, along with its {@link YamlType}. In case of multiple YAML
+     * definitions only the first one is parsed.
+     */
+    public static class ParsedYaml {
+        public final YamlType type;
+        public final JsonNode document;
+
+        private ParsedYaml(YamlType type, JsonNode document) {
+            this.type = type;
+            this.document = document;
+        }
+    }
+
     /**
      * Returns the {@link YamlType} of the provided YAML.
      * <p>
@@ -99,6 +114,15 @@ public class CompositeTemplateUtil {
      * @return {@link YamlType} of the provided YAML
      */
     public static YamlType getYamlType(String yaml) throws IOException {
+        return parseYaml(yaml).type;
+    }
+
+    /**
+     * Parses the provided YAML and determines its {@link YamlType}. The parsed document can be
+     * deserialized with {@link #deserializeDockerCompose(JsonNode)} or
+     * {@link #deserializeCompositeTemplate(JsonNode)} without parsing the YAML again.
+     */
+    public static ParsedYaml parseYaml(String yaml) throws IOException {
         assertNotEmpty(yaml, "yaml");
         boolean isMultiYaml = YamlMapper.isMultiYaml(yaml);
         if (isMultiYaml) {
@@ -107,9 +131,15 @@ public class CompositeTemplateUtil {
             yaml = yamls.get(0);
         }
 
+        JsonNode document;
         CommonDescriptionEntity template;
         try {
-            template = YamlMapper.objectMapper().readValue(yaml, CommonDescriptionEntity.class);
+            document = YamlMapper.objectMapper().readTree(yaml.trim());
+            if (document == null || document.isMissingNode()) {
+                return new ParsedYaml(YamlType.UNKNOWN, document);
+            }
+            template = YamlMapper.objectMapper().treeToValue(document,
+                    CommonDescriptionEntity.class);
         } catch (JsonProcessingException e) {
             throw new LocalizableValidationException(
                     "Error processing YAML content: " + e.getOriginalMessage(),
@@ -117,7 +147,7 @@ public class CompositeTemplateUtil {
         }
 
         if (!isNullOrEmpty(template.apiVersion) && !isNullOrEmpty(template.kind)) {
-            return YamlType.KUBERNETES_TEMPLATE;
+            return new ParsedYaml(YamlType.KUBERNETES_TEMPLATE, document);
         } else {
             if (isMultiYaml) {
                 throw new LocalizableValidationException(
@@ -126,11 +156,11 @@ public class CompositeTemplateUtil {
             } else {
                 if (DOCKER_COMPOSE_VERSION_2.equals(template.version)
                         && (!isNullOrEmpty(template.services))) {
-                    return YamlType.DOCKER_COMPOSE;
+                    return new ParsedYaml(YamlType.DOCKER_COMPOSE, document);
                 } else if (!isNullOrEmpty(template.components)) {
-                    return YamlType.COMPOSITE_TEMPLATE;
+                    return new ParsedYaml(YamlType.COMPOSITE_TEMPLATE, document);
                 } else {
-                    return YamlType.UNKNOWN;
+                    return new ParsedYaml(YamlType.UNKNOWN, document);
                 }
             }
         }
@@ -138,19 +168,33 @@ public class CompositeTemplateUtil {
 
     public static DockerCompose deserializeDockerCompose(String yaml) throws IOException {
         assertNotEmpty(yaml, "yaml");
+        JsonNode document;
+        try {
+            document = YamlMapper.objectMapper().readTree(yaml.trim());
+        } catch (JsonProcessingException e) {
+            throw dockerComposeError(e);
+        }
+        return deserializeDockerCompose(document);
+    }
+
+    public static DockerCompose deserializeDockerCompose(JsonNode document) throws IOException {
+        assertNotNull(document, "document");
         DockerCompose entity;
         try {
-            entity = YamlMapper.objectMapper().readValue(yaml.trim(),
-                    DockerCompose.class);
+            entity = YamlMapper.objectMapper().treeToValue(document, DockerCompose.class);
         } catch (JsonProcessingException e) {
-            throw new LocalizableValidationException(
-                    "Error processing Docker Compose v2 YAML content: " + e.getOriginalMessage(),
-                    "compute.template.yaml.compose2.error", e.getOriginalMessage());
+            throw dockerComposeError(e);
         }
         sanitizeDockerCompose(entity);
         return entity;
     }
 
+    private static LocalizableValidationException dockerComposeError(JsonProcessingException e) {
+        return new LocalizableValidationException(
+                "Error processing Docker Compose v2 YAML content: " + e.getOriginalMessage(),
+                "compute.template.yaml.compose2.error", e.getOriginalMessage());
+    }
+
     public static String serializeDockerCompose(DockerCompose entity) throws IOException {
         sanitizeDockerCompose(entity);
         return YamlMapper.objectWriter().writeValueAsString(entity).trim();
@@ -170,12 +214,24 @@ public class CompositeTemplateUtil {
         }
     }
 
-    @SuppressWarnings("unchecked")
     public static CompositeTemplate deserializeCompositeTemplate(String yaml) throws IOException {
         assertNotEmpty(yaml, "yaml");
+        JsonNode document;
+        try {
+            document = YamlMapper.objectMapper().readTree(yaml.trim());
+        } catch (JsonProcessingException e) {
+            throw compositeTemplateError(e);
+        }
+        return deserializeCompositeTemplate(document);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static CompositeTemplate deserializeCompositeTemplate(JsonNode document)
+            throws IOException {
+        assertNotNull(document, "document");
         CompositeTemplate entity;
         try {
-            Map<String, Object> deserialized = YamlMapper.objectMapper().readValue(yaml.trim(),
+            Map<String, Object> deserialized = YamlMapper.objectMapper().treeToValue(document,
                     Map.class);
             List<Binding.ComponentBinding> componentBindings = BindingUtils
                     .extractBindings(deserialized);
@@ -184,15 +240,20 @@ public class CompositeTemplateUtil {
 
             entity.bindings = new ArrayList<>(componentBindings);
         } catch (JsonProcessingException e) {
-            String format = "Error processing Blueprint YAML content: %s";
-            Utils.logWarning(format, e.getMessage());
-            throw new LocalizableValidationException(String.format(format, e.getOriginalMessage()),
-                    "compute.template.yaml.error", e.getOriginalMessage());
+            throw compositeTemplateError(e);
         }
         sanitizeCompositeTemplate(entity, false);
         return entity;
     }
 
+    private static LocalizableValidationException compositeTemplateError(
+            JsonProcessingException e) {
+        String format = "Error processing Blueprint YAML content: %s";
+        Utils.logWarning(format, e.getMessage());
+        return new LocalizableValidationException(String.format(format, e.getOriginalMessage()),
+                "compute.template.yaml.error", e.getOriginalMessage());
+    }
+
     public static String serializeCompositeTemplate(CompositeTemplate entity) throws IOException {
         sanitizeCompositeTemplate(entity, true);
 
@@ -121,6 +121,25 @@ public class KubernetesEntityDataCollection extends StatefulService {
         public String computeHostLink;
         public Map<String, KubernetesEntityData> idToEntityData = new HashMap<>();
         public boolean unlockDataCollectionForHost;
+
+        /**
+         * The resource version of the listed entities per kind, from which their changes can be
+         * watched.
+         */
+        public Map<String, String> resourceVersions = new HashMap<>();
+
+        /**
+         * Whether {@link #idToEntityData} already holds all entities of the host, listed by the
+         * caller, in which case the adapter is not called.
+         */
+        public boolean entitiesListed;
+
+        /**
+         * Whether {@link #idToEntityData} holds only entities added to the host. The states of
+         * those not known yet are created, without locking the data collection for the host and
+         * without removing the states of the other entities.
+         */
+        public boolean entitiesAdded;
     }
 
     public KubernetesEntityDataCollection() {
@@ -208,6 +227,15 @@ public class KubernetesEntityDataCollection extends StatefulService {
             return;
         }
 
+        if (body.entitiesAdded) {
+            // no data collection state change
+            op.setStatusCode(Operation.STATUS_CODE_NOT_MODIFIED);
+            op.complete();
+            createEntityStates(body, () -> logFine("Created states of entities added to host [%s]",
+                    body.computeHostLink));
+            return;
+        }
+
         KubernetesEntityDataCollectionState state = getState(op);
         if (body.unlockDataCollectionForHost) {
             // patch to mark that there is no active entity data collection for a given host.
@@ -250,6 +278,8 @@ public class KubernetesEntityDataCollection extends StatefulService {
                         unlockCurrentDataCollectionForHost(body.computeHostLink);
                     } else if (r.hasResult()) {
                         entityStates.add(r.getResult());
+                    } else if (body.entitiesListed) {
+                        updateEntityStates(body, entityStates);
                     } else {
                         AdapterRequest request = new AdapterRequest();
                         request.operationTypeId = ContainerHostOperationType.LIST_ENTITIES.id;
@@ -291,6 +321,11 @@ public class KubernetesEntityDataCollection extends StatefulService {
         }
 
         // finished removing existing entity states, now deal with remaining IDs
+        createEntityStates(callback,
+                () -> unlockCurrentDataCollectionForHost(callback.computeHostLink));
+    }
+
+    private void createEntityStates(EntityListCallback callback, Runnable completion) {
         List<BaseKubernetesState> entitiesLeft = new ArrayList<>();
         Set<String> compositeIdsToCreate = new HashSet<>();
         Operation operation = Operation
@@ -300,7 +335,7 @@ public class KubernetesEntityDataCollection extends StatefulService {
                             if (ex != null) {
                                 logSevere("Failure to retrieve host [%s].",
                                         callback.computeHostLink, Utils.toString(ex));
-                                unlockCurrentDataCollectionForHost(callback.computeHostLink);
+                                completion.run();
                                 return;
                             }
                             ComputeState host = o.getBody(ComputeState.class);
@@ -331,9 +366,7 @@ public class KubernetesEntityDataCollection extends StatefulService {
                                 }
                             }
                             createCompositeComponents(compositeIdsToCreate, () ->
-                                    createDiscoveredEntities(entitiesLeft, () ->
-                                            unlockCurrentDataCollectionForHost(
-                                                    callback.computeHostLink)));
+                                    createDiscoveredEntities(entitiesLeft, completion));
                         });
         sendRequest(operation);
     }
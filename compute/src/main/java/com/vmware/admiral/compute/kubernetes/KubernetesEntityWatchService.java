@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.kubernetes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.vmware.admiral.adapter.common.AdapterRequest;
+import com.vmware.admiral.adapter.common.ContainerHostOperationType;
+import com.vmware.admiral.common.DeploymentProfileConfig;
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.compute.ComputeConstants;
+import com.vmware.admiral.compute.ContainerHostUtil;
+import com.vmware.admiral.compute.content.kubernetes.KubernetesUtil;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListCallback;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.KubernetesEntityData;
+import com.vmware.admiral.compute.kubernetes.service.BaseKubernetesState;
+import com.vmware.admiral.service.common.ServiceTaskCallback;
+import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ComputeService.LifecycleState;
+import com.vmware.photon.controller.model.resources.ComputeService.PowerState;
+import com.vmware.photon.controller.model.resources.ResourceState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+
+/**
+ * Keeps the entity states of the kubernetes hosts owned by the current node up to date by
+ * watching the changes of the entities instead of listing all of them on every data collection.
+ *
+ * For every host the entities are listed once and their states are synchronized by
+ * {@link KubernetesEntityDataCollection}. From the resource versions of that list the entities
+ * are then watched: the added, modified and deleted entities are applied to their states one by
+ * one and the resource versions move forward with the events, including the bookmarks. When the
+ * resource versions expire the entities are listed again. A list which is not synchronized, e.g.
+ * while another data collection of the host is in progress, does not replace the resource
+ * versions, so no changes are skipped, and is retried on maintenance. The full list data collection
+ * triggered by the host data collection is then only needed as a slow reconciliation, see
+ * {@link #isEnabled()}.
+ */
+public class KubernetesEntityWatchService extends StatelessService {
+    public static final String SELF_LINK = ManagementUriParts.KUBERNETES_ENTITY_WATCH;
+
+    public static final String RESOURCE_VERSIONS_PROP_NAME = "__resourceVersions";
+
+    public static final String EVENT_TYPE_ADDED = "ADDED";
+    public static final String EVENT_TYPE_MODIFIED = "MODIFIED";
+    public static final String EVENT_TYPE_DELETED = "DELETED";
+
+    public static final String STAT_NAME_EVENTS_COUNT = "eventsCount";
+    public static final String STAT_NAME_RELIST_COUNT = "relistCount";
+    public static final String STAT_NAME_FAILED_WATCH_COUNT = "failedWatchCount";
+    public static final String STAT_NAME_DROPPED_LIST_COUNT = "droppedListCount";
+
+    /**
+     * The kinds of the watched entities.
+     */
+    public static final List<String> ENTITY_TYPES = Arrays.asList(
+            KubernetesUtil.POD_TYPE,
+            KubernetesUtil.SERVICE_TYPE,
+            KubernetesUtil.DEPLOYMENT_TYPE,
+            KubernetesUtil.REPLICATION_CONTROLLER_TYPE,
+            KubernetesUtil.REPLICA_SET_TYPE);
+
+    private static final String DATA_COLLECTION_LINK =
+            KubernetesEntityDataCollection.DEFAULT_KUBERNETES_ENTITY_DATA_COLLECTION_LINK;
+
+    private static final boolean WATCH_ENABLED = Boolean.parseBoolean(
+            System.getProperty("com.vmware.admiral.compute.kubernetes.watch.enabled", "true"));
+    // the watches of the hosts are restarted on maintenance after a failure
+    private static final long WATCH_MAINTENANCE_INTERVAL_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.kubernetes.watch.maintenance.interval.micros",
+            TimeUnit.SECONDS.toMicros(30));
+
+    public static class EntityEvent {
+        public String type;
+        public String id;
+        public KubernetesEntityData data;
+
+        /**
+         * The kubernetes entity as JSON.
+         */
+        public String entity;
+    }
+
+    public static class EntityWatchCallback extends ServiceTaskCallbackResponse {
+        public String computeHostLink;
+        public List<EntityEvent> events = new ArrayList<>();
+
+        /**
+         * The resource version per kind to continue watching the entities from.
+         */
+        public Map<String, String> resourceVersions = new HashMap<>();
+
+        /**
+         * Whether the watched resource versions are too old, in which case the entities have
+         * to be listed again.
+         */
+        public boolean expired;
+    }
+
+    /**
+     * Watch state of a single host.
+     */
+    static class HostWatchRecord {
+        volatile Map<String, String> resourceVersions;
+        final AtomicBoolean watching = new AtomicBoolean();
+    }
+
+    private final Map<String, HostWatchRecord> records = new ConcurrentHashMap<>();
+
+    public KubernetesEntityWatchService() {
+        super.toggleOption(ServiceOption.INSTRUMENTATION, true);
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+        super.setMaintenanceIntervalMicros(WATCH_MAINTENANCE_INTERVAL_MICROS);
+    }
+
+    /**
+     * @return whether the entities of the kubernetes hosts are kept up to date by watching
+     *         them, in which case the full list data collection is only needed for
+     *         reconciliation
+     */
+    public static boolean isEnabled() {
+        return WATCH_ENABLED && !DeploymentProfileConfig.getInstance().isTest();
+    }
+
+    @Override
+    public void handlePatch(Operation op) {
+        EntityWatchCallback body = op.getBody(EntityWatchCallback.class);
+        if (body.computeHostLink == null) {
+            op.fail(new IllegalArgumentException("computeHostLink is required"));
+            return;
+        }
+
+        watch(body.computeHostLink);
+        op.complete();
+    }
+
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        if (getProcessingStage() != ProcessingStage.AVAILABLE) {
+            logFine("Skipping maintenance since service is not available: %s ", getUri());
+            post.complete();
+            return;
+        }
+
+        if (!isEnabled()) {
+            post.complete();
+            return;
+        }
+
+        post.complete();
+
+        Set<String> ownedHostLinks = new HashSet<>();
+        new ServiceDocumentQuery<>(getHost(), ComputeState.class).query(
+                buildOwnedKubernetesHostsQuery(), (r) -> {
+                    if (r.hasException()) {
+                        logWarning("Failed to retrieve kubernetes hosts for entity watch: %s",
+                                Utils.toString(r.getException()));
+                    } else if (r.hasResult()) {
+                        ComputeState compute = r.getResult();
+                        if (isWatched(compute)) {
+                            ownedHostLinks.add(compute.documentSelfLink);
+                            watch(compute.documentSelfLink);
+                        }
+                    } else {
+                        // stop watching the hosts that were removed or are now owned by another
+                        // node, their pending watches are not continued
+                        records.keySet().retainAll(ownedHostLinks);
+                    }
+                });
+    }
+
+    private QueryTask buildOwnedKubernetesHostsQuery() {
+        Query ownerClause = new Query()
+                .setTermPropertyName(ServiceDocument.FIELD_NAME_OWNER)
+                .setTermMatchValue(getHost().getId());
+        Query containerHostClause = new Query()
+                .setTermPropertyName(QueryTask.QuerySpecification.buildCompositeFieldName(
+                        ComputeState.FIELD_NAME_CUSTOM_PROPERTIES,
+                        ComputeConstants.COMPUTE_CONTAINER_HOST_PROP_NAME))
+                .setTermMatchValue(Boolean.TRUE.toString())
+                .setTermMatchType(MatchType.TERM);
+
+        QueryTask q = QueryUtil.buildQuery(ComputeState.class, true, ownerClause,
+                containerHostClause);
+        QueryUtil.addExpandOption(q);
+        return q;
+    }
+
+    private static boolean isWatched(ComputeState compute) {
+        return PowerState.ON == compute.powerState
+                && !LifecycleState.SUSPEND.equals(compute.lifecycleState)
+                && ContainerHostUtil.isKubernetesHost(compute);
+    }
+
+    private void watch(String hostLink) {
+        HostWatchRecord record = records.computeIfAbsent(hostLink, (k) -> new HostWatchRecord());
+        if (!record.watching.compareAndSet(false, true)) {
+            logFine("Skipping entity watch for host %s, previous one still running", hostLink);
+            return;
+        }
+
+        if (record.resourceVersions == null) {
+            list(hostLink, record);
+            return;
+        }
+
+        AdapterRequest request = new AdapterRequest();
+        request.operationTypeId = ContainerHostOperationType.WATCH_ENTITIES.id;
+        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
+        request.resourceReference = UriUtils.buildUri(getHost(), hostLink);
+        request.customProperties = new HashMap<>();
+        request.customProperties.put(RESOURCE_VERSIONS_PROP_NAME,
+                Utils.toJson(record.resourceVersions));
+
+        sendRequest(Operation
+                .createPatch(this, ManagementUriParts.ADAPTER_KUBERNETES_HOST)
+                .setBody(request)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        adjustStat(STAT_NAME_FAILED_WATCH_COUNT, 1);
+                        logFine("Failed to watch the entities of host %s: %s", hostLink,
+                                Utils.toString(ex));
+                        // restarted on maintenance
+                        record.watching.set(false);
+                        return;
+                    }
+
+                    EntityWatchCallback callback = o.getBody(EntityWatchCallback.class);
+                    if (callback.expired) {
+                        // the changes since the resource versions are not available anymore
+                        list(hostLink, record);
+                        return;
+                    }
+
+                    record.resourceVersions = callback.resourceVersions;
+                    if (callback.events != null && !callback.events.isEmpty()) {
+                        adjustStat(STAT_NAME_EVENTS_COUNT, callback.events.size());
+                        applyEvents(hostLink, callback.events);
+                    }
+                    continueWatch(hostLink, record);
+                }));
+    }
+
+    /**
+     * Lists the entities of the host, synchronizes all their states and starts watching them
+     * from the resource versions of the list.
+     */
+    private void list(String hostLink, HostWatchRecord record) {
+        adjustStat(STAT_NAME_RELIST_COUNT, 1);
+
+        AdapterRequest request = new AdapterRequest();
+        request.operationTypeId = ContainerHostOperationType.LIST_ENTITIES.id;
+        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
+        request.resourceReference = UriUtils.buildUri(getHost(), hostLink);
+
+        sendRequest(Operation
+                .createPatch(this, ManagementUriParts.ADAPTER_KUBERNETES_HOST)
+                .setBody(request)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        adjustStat(STAT_NAME_FAILED_WATCH_COUNT, 1);
+                        logFine("Failed to list the entities of host %s: %s", hostLink,
+                                Utils.toString(ex));
+                        record.watching.set(false);
+                        return;
+                    }
+
+                    EntityListCallback callback = o.getBody(EntityListCallback.class);
+                    callback.computeHostLink = hostLink;
+                    callback.entitiesListed = true;
+                    synchronizeListedEntities(hostLink, record, callback);
+                }));
+    }
+
+    /**
+     * Synchronizes the states of the listed entities and continues watching them from the
+     * resource versions of the list. A list dropped by the data collection, which responds with
+     * 304 while it synchronizes the entities of the host, keeps the previous resource versions.
+     */
+    private void synchronizeListedEntities(String hostLink, HostWatchRecord record,
+            EntityListCallback callback) {
+        sendRequest(Operation
+                .createPatch(this, DATA_COLLECTION_LINK)
+                .setBody(callback)
+                .setCompletion((o, ex) -> {
+                    if (ex != null || o.getStatusCode() == Operation.STATUS_CODE_NOT_MODIFIED) {
+                        adjustStat(STAT_NAME_DROPPED_LIST_COUNT, 1);
+                        logFine("Entities listed for host %s not synchronized: %s", hostLink,
+                                ex != null ? Utils.toString(ex) : "data collection in progress");
+                        // restarted on maintenance
+                        record.watching.set(false);
+                        return;
+                    }
+
+                    record.resourceVersions = callback.resourceVersions != null
+                            ? callback.resourceVersions : new HashMap<>();
+                    continueWatch(hostLink, record);
+                }));
+    }
+
+    private void continueWatch(String hostLink, HostWatchRecord record) {
+        record.watching.set(false);
+        // the watch requests are bounded, so keep one in flight per host while enabled
+        if (isEnabled() && records.get(hostLink) == record
+                && getProcessingStage() == ProcessingStage.AVAILABLE) {
+            watch(hostLink);
+        }
+    }
+
+    private void applyEvents(String hostLink, List<EntityEvent> events) {
+        // only the last event of an entity matters
+        Map<String, EntityEvent> eventsById = new LinkedHashMap<>();
+        for (EntityEvent event : events) {
+            if (event.id != null && event.type != null) {
+                eventsById.remove(event.id);
+                eventsById.put(event.id, event);
+            }
+        }
+        if (eventsById.isEmpty()) {
+            return;
+        }
+
+        QueryTask q = buildEntityStatesQuery(hostLink, eventsById.keySet());
+        Map<String, EntityEvent> addedEntities = new LinkedHashMap<>(eventsById);
+        new ServiceDocumentQuery<>(getHost(), ResourceState.class).query(q, (r) -> {
+            if (r.hasException()) {
+                logWarning("Failed to retrieve the entity states of host %s: %s", hostLink,
+                        Utils.toString(r.getException()));
+            } else if (r.hasResult()) {
+                EntityEvent event = addedEntities.remove(r.getResult().id);
+                if (event != null) {
+                    applyEvent(r.getDocumentSelfLink(), event);
+                }
+            } else {
+                createEntityStates(hostLink, addedEntities.values());
+            }
+        });
+    }
+
+    private QueryTask buildEntityStatesQuery(String hostLink, Set<String> ids) {
+        Query kindClause = new Query();
+        for (String type : ENTITY_TYPES) {
+            kindClause.addBooleanClause(new Query()
+                    .setTermPropertyName(ServiceDocument.FIELD_NAME_KIND)
+                    .setTermMatchValue(Utils.buildKind(
+                            KubernetesUtil.createKubernetesEntityState(type).getClass()))
+                    .setOccurance(Occurance.SHOULD_OCCUR));
+        }
+        kindClause.setOccurance(Occurance.MUST_OCCUR);
+
+        QueryTask q = new QueryTask();
+        q.querySpec = new QueryTask.QuerySpecification();
+        q.taskInfo.isDirect = true;
+        q.querySpec.query.addBooleanClause(kindClause);
+        q.querySpec.query.addBooleanClause(new Query()
+                .setTermPropertyName(BaseKubernetesState.FIELD_NAME_PARENT_LINK)
+                .setTermMatchValue(hostLink)
+                .setOccurance(Occurance.MUST_OCCUR));
+        QueryUtil.addListValueClause(q, BaseKubernetesState.FIELD_NAME_ID, ids);
+        q.documentExpirationTimeMicros = ServiceDocumentQuery.getDefaultQueryExpiration();
+        QueryUtil.addExpandOption(q);
+        return q;
+    }
+
+    private void applyEvent(String entityLink, EntityEvent event) {
+        if (EVENT_TYPE_DELETED.equals(event.type)) {
+            sendRequest(Operation
+                    .createDelete(this, entityLink)
+                    .setBody(new ServiceDocument())
+                    .setCompletion((o, ex) -> {
+                        if (ex != null) {
+                            logWarning("Failed deleting KubernetesState of deleted entity %s: %s",
+                                    entityLink, Utils.toString(ex));
+                        }
+                    }));
+            return;
+        }
+
+        if (event.entity == null || event.data == null) {
+            return;
+        }
+        BaseKubernetesState patch = KubernetesUtil.createKubernetesEntityState(event.data.kind);
+        if (patch == null) {
+            return;
+        }
+        patch.setKubernetesEntityFromJson(event.entity);
+        patch.kubernetesSelfLink = event.data.selfLink;
+        sendRequest(Operation
+                .createPatch(this, entityLink)
+                .setBody(patch)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logWarning("Failed updating KubernetesState of modified entity %s: %s",
+                                entityLink, Utils.toString(ex));
+                    }
+                }));
+    }
+
+    private void createEntityStates(String hostLink, Iterable<EntityEvent> events) {
+        EntityListCallback body = new EntityListCallback();
+        body.computeHostLink = hostLink;
+        body.entitiesAdded = true;
+        for (EntityEvent event : events) {
+            if (!EVENT_TYPE_DELETED.equals(event.type) && event.data != null) {
+                body.idToEntityData.put(event.id, event.data);
+            }
+        }
+        if (!body.idToEntityData.isEmpty()) {
+            sendDataCollectionRequest(body);
+        }
+    }
+
+    private void sendDataCollectionRequest(EntityListCallback body) {
+        sendRequest(Operation
+                .createPatch(this, DATA_COLLECTION_LINK)
+                .setBody(body)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logWarning(Utils.toString(ex));
+                    }
+                }));
+    }
+}
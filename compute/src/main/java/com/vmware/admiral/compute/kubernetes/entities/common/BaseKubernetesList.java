@@ -26,4 +26,9 @@ public class BaseKubernetesList {
      */
     public String kind;
 
+    /**
+     * Standard list metadata.
+     */
+    public ListMeta metadata;
+
 }
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.kubernetes.entities.common;
+
+public class ListMeta {
+
+    /**
+     * SelfLink is a URL representing this list. Populated by the system. Read-only.
+     */
+    public String selfLink;
+
+    /**
+     * String that identifies the internal version of this list. Watching the list from this
+     * version returns the changes made after the list was retrieved. Populated by the system.
+     * Read-only.
+     */
+    public String resourceVersion;
+
+}
@@ -45,6 +45,12 @@ public class ObjectMeta {
      */
     public String uid;
 
+    /**
+     * An opaque value that represents the internal version of this object. Used to watch the
+     * changes of a list of objects. Populated by the system. Read-only.
+     */
+    public String resourceVersion;
+
     /**
      * Map of string keys and values that can be used to organize and categorize
      * (scope and select) objects. May match selectors of replication controllers and services.
@@ -20,6 +20,7 @@ import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.KubernetesOperationType;
 import com.vmware.admiral.common.DeploymentProfileConfig;
 import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService;
 import com.vmware.admiral.compute.kubernetes.service.BaseKubernetesState;
 import com.vmware.admiral.service.common.ServiceTaskCallback;
 import com.vmware.xenon.common.Operation;
@@ -95,8 +96,10 @@ public class KubernetesMaintenance {
      */
     private boolean inspectEntityIfNeeded(BaseKubernetesState kubernetesState, Operation post) {
         long nowMicrosUtc = Utils.getSystemNowMicrosUtc();
-        long updatePeriod = isUpdatedRecently(kubernetesState, nowMicrosUtc)
-                ? MAINTENANCE_PERIOD_MICROS : MAINTENANCE_SLOW_DOWN_PERIOD_MICROS;
+        // watched entities are updated from their events, inspecting them is a reconciliation
+        long updatePeriod = !KubernetesEntityWatchService.isEnabled()
+                && isUpdatedRecently(kubernetesState, nowMicrosUtc)
+                        ? MAINTENANCE_PERIOD_MICROS : MAINTENANCE_SLOW_DOWN_PERIOD_MICROS;
 
         // check whether the update period has passed
         if (lastInspectMaintenanceInMicros + updatePeriod < nowMicrosUtc) {
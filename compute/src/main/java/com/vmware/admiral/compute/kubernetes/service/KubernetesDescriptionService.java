@@ -13,7 +13,6 @@ package com.vmware.admiral.compute.kubernetes.service;
 
 import static com.vmware.admiral.common.util.AssertUtil.assertNotNull;
 import static com.vmware.admiral.common.util.AssertUtil.assertNotNullOrEmpty;
-import static com.vmware.admiral.common.util.YamlMapper.isValidYaml;
 
 import java.io.IOException;
 import java.util.Map;
@@ -112,13 +111,19 @@ public class KubernetesDescriptionService extends StatefulService {
     }
 
     private void validateDescription(KubernetesDescription description) throws IOException {
-        if (!isValidYaml(description.kubernetesEntity)) {
-            throw new LocalizableValidationException("Invalid YAML input.",
-                    "compute.template.yaml.invalid");
+        // JSON content is valid YAML too, but is not accepted
+        if (description.kubernetesEntity == null
+                || description.kubernetesEntity.startsWith("{")) {
+            throw invalidYaml();
         }
 
-        BaseKubernetesObject kubernetesEntity = description
-                .getKubernetesEntity(BaseKubernetesObject.class);
+        // the entity is parsed once, content which is not a YAML object fails here
+        BaseKubernetesObject kubernetesEntity;
+        try {
+            kubernetesEntity = description.getKubernetesEntity(BaseKubernetesObject.class);
+        } catch (IOException e) {
+            throw invalidYaml();
+        }
 
         assertNotNullOrEmpty(kubernetesEntity.apiVersion, "apiVersion");
         assertNotNullOrEmpty(kubernetesEntity.kind, "kind");
@@ -129,6 +134,11 @@ public class KubernetesDescriptionService extends StatefulService {
         description.name = kubernetesEntity.metadata.name;
     }
 
+    private static LocalizableValidationException invalidYaml() {
+        return new LocalizableValidationException("Invalid YAML input.",
+                "compute.template.yaml.invalid");
+    }
+
     @Override
     public void handlePut(Operation put) {
         if (!checkForBody(put)) {
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.commons.net.util.SubnetUtils;
+
+import com.vmware.photon.controller.model.util.IpHelper;
+
+/**
+ * The free address space of a network, managed as a buddy allocator of CIDR blocks.
+ *
+ * The free blocks are kept in sorted sets per prefix length. A subnet is allocated at the lowest
+ * address of the smallest free block it fits in, splitting the block in halves down to the
+ * requested prefix length, and a released subnet is merged back with its free buddies. Reserving
+ * a CIDR which is in use already, e.g. by an existing subnet, removes it from the free blocks.
+ */
+class CIDRFreeSpace {
+    private static final int MAX_PREFIX_LENGTH = 32;
+
+    private final String networkCIDR;
+    private final long networkAddress;
+    private final int networkPrefixLength;
+    private final List<TreeSet<Long>> freeBlocks = new ArrayList<>(MAX_PREFIX_LENGTH + 1);
+
+    CIDRFreeSpace(String networkCIDR) {
+        this.networkCIDR = networkCIDR;
+        this.networkPrefixLength = getPrefixLength(networkCIDR);
+        this.networkAddress = getAddress(networkCIDR) & mask(networkPrefixLength);
+        for (int i = 0; i <= MAX_PREFIX_LENGTH; i++) {
+            freeBlocks.add(new TreeSet<>());
+        }
+        freeBlocks.get(networkPrefixLength).add(networkAddress);
+    }
+
+    String getNetworkCIDR() {
+        return networkCIDR;
+    }
+
+    /**
+     * Allocates a subnet with the given prefix length and returns its CIDR, or <code>null</code>
+     * if there is no free block big enough.
+     */
+    String allocate(int prefixLength) {
+        if (prefixLength < networkPrefixLength || prefixLength > MAX_PREFIX_LENGTH) {
+            return null;
+        }
+        for (int p = prefixLength; p >= networkPrefixLength; p--) {
+            Long base = freeBlocks.get(p).pollFirst();
+            if (base != null) {
+                split(base, p, base, prefixLength);
+                return IpHelper.calculateCidrFromIpV4Range(base,
+                        base + blockSize(prefixLength) - 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks the given CIDR as used. CIDRs outside of the network are ignored.
+     */
+    void reserve(String cidr) {
+        int prefixLength = getPrefixLength(cidr);
+        long address = getAddress(cidr) & mask(prefixLength);
+        if (prefixLength <= networkPrefixLength) {
+            if ((networkAddress & mask(prefixLength)) == address) {
+                // the CIDR covers the whole network
+                freeBlocks.forEach(TreeSet::clear);
+            }
+            return;
+        }
+        if (!isInNetwork(address)) {
+            return;
+        }
+
+        for (int p = prefixLength; p >= networkPrefixLength; p--) {
+            long base = address & mask(p);
+            if (freeBlocks.get(p).remove(base)) {
+                split(base, p, address, prefixLength);
+                return;
+            }
+        }
+        // no free block contains the CIDR, it may still overlap smaller free blocks
+        removeFreeBlocksWithin(address, prefixLength);
+    }
+
+    /**
+     * Marks the given CIDR as free again. CIDRs outside of the network are ignored.
+     */
+    void release(String cidr) {
+        int prefixLength = getPrefixLength(cidr);
+        long address = getAddress(cidr) & mask(prefixLength);
+        if (prefixLength < networkPrefixLength || !isInNetwork(address)) {
+            return;
+        }
+        for (int p = prefixLength; p >= networkPrefixLength; p--) {
+            if (freeBlocks.get(p).contains(address & mask(p))) {
+                // already free
+                return;
+            }
+        }
+        removeFreeBlocksWithin(address, prefixLength);
+
+        int p = prefixLength;
+        while (p > networkPrefixLength) {
+            long buddy = address ^ blockSize(p);
+            if (!freeBlocks.get(p).remove(buddy)) {
+                break;
+            }
+            address = Math.min(address, buddy);
+            p--;
+        }
+        freeBlocks.get(p).add(address);
+    }
+
+    /**
+     * Splits the free block at the given base in halves, until the block of the target with the
+     * target prefix length is reached. The halves which don't contain the target remain free.
+     */
+    private void split(long base, int prefixLength, long target, int targetPrefixLength) {
+        for (int p = prefixLength + 1; p <= targetPrefixLength; p++) {
+            long half = target & mask(p);
+            freeBlocks.get(p).add(half ^ blockSize(p));
+        }
+    }
+
+    private void removeFreeBlocksWithin(long address, int prefixLength) {
+        long high = address + blockSize(prefixLength) - 1;
+        for (int p = prefixLength; p <= MAX_PREFIX_LENGTH; p++) {
+            freeBlocks.get(p).subSet(address, true, high, true).clear();
+        }
+    }
+
+    private boolean isInNetwork(long address) {
+        return (address & mask(networkPrefixLength)) == networkAddress;
+    }
+
+    private static long blockSize(int prefixLength) {
+        return 1L << (MAX_PREFIX_LENGTH - prefixLength);
+    }
+
+    private static long mask(int prefixLength) {
+        return (0xFFFFFFFFL << (MAX_PREFIX_LENGTH - prefixLength)) & 0xFFFFFFFFL;
+    }
+
+    private static long getAddress(String cidr) {
+        SubnetUtils subnetUtils = new SubnetUtils(cidr);
+        subnetUtils.setInclusiveHostCount(true);
+        return IpHelper.ipStringToLong(subnetUtils.getInfo().getLowAddress());
+    }
+
+    private static int getPrefixLength(String cidr) {
+        return Integer.parseInt(cidr.substring(cidr.indexOf('/') + 1).trim());
+    }
+}
@@ -11,31 +11,24 @@
 
 package com.vmware.admiral.compute.network;
 
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.net.util.SubnetUtils;
 
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.AssertUtil;
+import com.vmware.admiral.compute.network.ComputeNetworkCIDRAllocationService.ComputeNetworkCIDRAllocationRequest.RequestType;
+import com.vmware.admiral.compute.network.SubnetCIDRCache.NetworkSubnets;
 import com.vmware.admiral.service.common.MultiTenantDocument;
-import com.vmware.photon.controller.model.query.QueryStrategy;
-import com.vmware.photon.controller.model.query.QueryUtils.QueryByPages;
 import com.vmware.photon.controller.model.resources.NetworkService.NetworkState;
-import com.vmware.photon.controller.model.resources.SubnetService.SubnetState;
-import com.vmware.photon.controller.model.support.LifecycleState;
-import com.vmware.photon.controller.model.util.IpHelper;
 import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOption;
 import com.vmware.xenon.common.StatefulService;
-import com.vmware.xenon.services.common.QueryTask.Query;
 
 /**
  * Service responsible to allocate and deallocate subnet CIDRs for a network.
@@ -47,7 +40,14 @@ import com.vmware.xenon.services.common.QueryTask.Query;
  * {@link ComputeNetworkCIDRAllocationRequest}.</li>
  * <li>Deallocate a subnet CIDR by issuing a PATCH request and providing a
  * {@link ComputeNetworkCIDRAllocationRequest}.</li>
+ * <li>Allocate and deallocate several subnet CIDRs at once by issuing a PATCH request and
+ * providing a {@link ComputeNetworkCIDRAllocationRequest#batchRequest(List) batch request}.</li>
  * </ol>
+ *
+ * The owner of the service keeps the free address space of the network in a
+ * {@link CIDRFreeSpace}, which is updated with each allocation, and takes the CIDRs of the
+ * existing subnets from the {@link SubnetCIDRCache}, so the allocations don't have to query
+ * them. The network itself is read on each allocation, since its CIDR may change.
  */
 public class ComputeNetworkCIDRAllocationService extends StatefulService {
     public static final String FACTORY_LINK = ManagementUriParts.COMPUTE_NETWORK_CIDR_ALLOCATIONS;
@@ -75,7 +75,8 @@ public class ComputeNetworkCIDRAllocationService extends StatefulService {
     public static class ComputeNetworkCIDRAllocationRequest {
         public enum RequestType {
             ALLOCATE,
-            DEALLOCATE
+            DEALLOCATE,
+            BATCH
         }
 
         /**
@@ -101,6 +102,12 @@ public class ComputeNetworkCIDRAllocationService extends StatefulService {
          */
         public String networkCIDR;
 
+        /**
+         * In case of batch request: the allocation and deallocation requests to perform. Either
+         * all of them succeed or none is applied.
+         */
+        public List<ComputeNetworkCIDRAllocationRequest> requests;
+
         public static ComputeNetworkCIDRAllocationRequest allocationRequest(String subnetId,
                 int subnetPrefixLength) {
             return new ComputeNetworkCIDRAllocationRequest(RequestType.ALLOCATE, subnetId,
@@ -118,6 +125,14 @@ public class ComputeNetworkCIDRAllocationService extends StatefulService {
                     null, null);
         }
 
+        public static ComputeNetworkCIDRAllocationRequest batchRequest(
+                List<ComputeNetworkCIDRAllocationRequest> requests) {
+            ComputeNetworkCIDRAllocationRequest request = new ComputeNetworkCIDRAllocationRequest(
+                    RequestType.BATCH, null, null, null);
+            request.requests = requests;
+            return request;
+        }
+
         private ComputeNetworkCIDRAllocationRequest(RequestType requestType, String subnetId,
                 Integer subnetPrefixLength, String networkCIDR) {
             this.requestType = requestType;
@@ -127,6 +142,12 @@ public class ComputeNetworkCIDRAllocationService extends StatefulService {
         }
     }
 
+    // The free address space of the network, used by the owner only.
+    private CIDRFreeSpace freeSpace;
+    private Map<String, String> indexedAllocatedCIDRs;
+    private NetworkSubnets indexedSubnets;
+    private long indexedSubnetsVersion;
+
     public ComputeNetworkCIDRAllocationService() {
         super(ComputeNetworkCIDRAllocationState.class);
         super.toggleOption(ServiceOption.PERSISTENCE, true);
@@ -162,21 +183,16 @@ public class ComputeNetworkCIDRAllocationService extends StatefulService {
         ComputeNetworkCIDRAllocationRequest request = patch.getBody(
                 ComputeNetworkCIDRAllocationRequest.class);
 
-        if (!isValidRequest(request)) {
+        List<ComputeNetworkCIDRAllocationRequest> requests = getRequests(request);
+        if (requests == null) {
             patch.fail(Operation.STATUS_CODE_BAD_REQUEST);
             return;
         }
 
-        switch (request.requestType) {
-        case ALLOCATE:
-            handleAllocation(patch, state, request);
-            break;
-        case DEALLOCATE:
-            handleDeallocation(patch, state, request);
-            break;
-        default:
-            logWarning(() -> "Unsupported request type.");
-            patch.fail(Operation.STATUS_CODE_BAD_REQUEST);
+        if (requests.stream().anyMatch(r -> r.requestType == RequestType.ALLOCATE)) {
+            handleAllocation(patch, state, requests);
+        } else {
+            handleDeallocation(patch, state, requests);
         }
     }
 
@@ -191,14 +207,12 @@ public class ComputeNetworkCIDRAllocationService extends StatefulService {
     }
 
     private void handleAllocation(Operation patch, ComputeNetworkCIDRAllocationState state,
-            ComputeNetworkCIDRAllocationRequest request) {
+            List<ComputeNetworkCIDRAllocationRequest> requests) {
 
-        logFine(() -> "Allocate CIDR for subnet id: [" + request.subnetId + "].");
-
-        DeferredResult.completed(new AllocationContext(request, state))
+        DeferredResult.completed(new AllocationContext(requests, state))
                 .thenCompose(this::populateNetwork)
-                .thenCompose(this::prepareAvailableCIDRRangeList)
-                .thenCompose(this::allocateCIDR)
+                .thenCompose(this::populateSubnets)
+                .thenCompose(this::performRequests)
                 .whenComplete((context, throwable) -> {
                     if (throwable != null) {
                         patch.fail(throwable);
@@ -210,11 +224,11 @@ public class ComputeNetworkCIDRAllocationService extends StatefulService {
     }
 
     private void handleDeallocation(Operation patch, ComputeNetworkCIDRAllocationState state,
-            ComputeNetworkCIDRAllocationRequest request) {
+            List<ComputeNetworkCIDRAllocationRequest> requests) {
 
-        logFine(() -> "Deallocate subnet id: [" + request.subnetId + "].");
-
-        deallocateCIDR(state, request);
+        for (ComputeNetworkCIDRAllocationRequest request : requests) {
+            deallocateCIDR(state, request);
+        }
         patch.setBody(state).complete();
     }
 
@@ -223,186 +237,125 @@ public class ComputeNetworkCIDRAllocationService extends StatefulService {
 
         return this.sendWithDeferredResult(
                 Operation.createGet(this, context.state.networkLink), NetworkState.class)
+                .whenComplete((network, e) -> {
+                    if (e != null) {
+                        // e.g. the network is deleted, its subnets are loaded again on next use
+                        SubnetCIDRCache.forHost(getHost()).evict(context.state.networkLink);
+                    }
+                })
                 .thenApply(network -> {
                     context.network = network;
                     return context;
                 });
     }
 
-    // Add already allocated subnets IP ranges and allocated IP ranges to the Context.availableCIDRRanges
-    private DeferredResult<AllocationContext> prepareAvailableCIDRRangeList(
-            AllocationContext context) {
-
-        return DeferredResult.completed(context)
-                // 1. Start with 1 free range that covers the whole network IP range.
-                .thenCompose(this::seedWithOneAvailableSubnet)
-                // 2. Query all network subnets and remove their IP range from the free list.
-                .thenCompose(this::preAllocateWithExistingSubnets)
-                // 3. Remove IP range of all already allocated CIDRs.
-                .thenCompose(this::preAllocateAllocatedCIDRs);
+    private DeferredResult<AllocationContext> populateSubnets(AllocationContext context) {
+        return SubnetCIDRCache.forHost(getHost()).getSubnets(context.network)
+                .thenApply(subnets -> {
+                    context.subnets = subnets;
+                    return context;
+                });
+    }
+
+    // Performs all requests, or none of them if one fails.
+    private DeferredResult<AllocationContext> performRequests(AllocationContext context) {
+        Map<String, String> previousCIDRs = new HashMap<>();
+        try {
+            for (ComputeNetworkCIDRAllocationRequest request : context.requests) {
+                if (!previousCIDRs.containsKey(request.subnetId)) {
+                    previousCIDRs.put(request.subnetId,
+                            context.state.allocatedCIDRs.get(request.subnetId));
+                }
+                if (request.requestType == RequestType.ALLOCATE) {
+                    allocateCIDR(context, request);
+                } else {
+                    deallocateCIDR(context.state, request);
+                }
+            }
+        } catch (RuntimeException e) {
+            previousCIDRs.forEach((subnetId, cidr) -> {
+                if (cidr == null) {
+                    context.state.allocatedCIDRs.remove(subnetId);
+                } else {
+                    context.state.allocatedCIDRs.put(subnetId, cidr);
+                }
+            });
+            this.freeSpace = null;
+            throw e;
+        }
+        return DeferredResult.completed(context);
     }
 
-    private DeferredResult<AllocationContext> allocateCIDR(AllocationContext context) {
-        AssertUtil.assertNotNull(context, "context");
-        AssertUtil.assertNotNull(context.request, "context.request");
+    private void allocateCIDR(AllocationContext context,
+            ComputeNetworkCIDRAllocationRequest request) {
         AssertUtil.assertNotNull(context.state, "context.state");
         AssertUtil.assertNotNull(context.network, "context.network");
 
-        int prefixLength = context.request.subnetPrefixLength;
-        long requestedSize = 1 << (32 - prefixLength);
-
-        // Select ranges large enough to accommodate requested subnet size.
-        // Sort them by size (descending) so that we try filling the smallest ranges first.
-        List<IpV4Range> candidateRanges = context.availableCIDRRanges.stream()
-                .filter(ipV4Range -> (ipV4Range.high - ipV4Range.low) >= requestedSize - 1)
-                .sorted(Comparator.comparingLong(item -> (item.high - item.low)))
-                .collect(Collectors.toList());
-        int inverseSubnetMask = IpHelper.safeLongToInt(requestedSize - 1);
-        int subnetMask = ~(inverseSubnetMask);
-
-        IpV4Range createdIpv4Range = null;
-        IpV4Range selectedIpv4Range = null;
-
-        for (IpV4Range ipV4Range : candidateRanges) {
-            long currentLow = ipV4Range.low;
-
-            // Increase the low value to the appropriate start of the requested subnet mask.
-            // Example: /24 sized subnets always start with last 8 bits equal to zero.
-            while ((currentLow & subnetMask) != currentLow) {
-                currentLow++;
-            }
+        logFine(() -> "Allocate CIDR for subnet id: [" + request.subnetId + "].");
 
-            // Adjust the high value based on the currentLow + requested subnet size.
-            long currentHigh = currentLow + inverseSubnetMask;
+        AssertUtil.assertTrue(
+                !StringUtils.isEmpty(context.network.subnetCIDR) ||
+                        !StringUtils.isEmpty(request.networkCIDR),
+                "Either parent network should have a CIDR or an explicit CIDR should be provided");
 
-            // Does this range still fit after adjusting the low and high end?
-            if (currentHigh <= ipV4Range.high) {
-                createdIpv4Range = new IpV4Range(currentLow, currentHigh);
-                selectedIpv4Range = ipV4Range;
-                break;
-            }
+        String networkCIDR = request.networkCIDR;
+        if (StringUtils.isEmpty(networkCIDR)) {
+            networkCIDR = context.network.subnetCIDR;
         }
 
-        if (createdIpv4Range == null) {
+        int prefixLength = request.subnetPrefixLength;
+        String allocatedSubnetCIDR = getFreeSpace(context, networkCIDR).allocate(prefixLength);
+
+        if (allocatedSubnetCIDR == null) {
             String msg = "Network [" + context.network.name + "] doesn't have an available block "
                     + "of IP addresses that is big enough to allocate /" + prefixLength + "subnet.";
             throw new IllegalStateException(msg);
         }
 
-        updateAvailableCIDRRangesList(selectedIpv4Range, createdIpv4Range,
-                context.availableCIDRRanges);
-
-        String allocatedSubnetCIDR = IpHelper.calculateCidrFromIpV4Range(createdIpv4Range.low,
-                createdIpv4Range.high);
-
         logFine(() -> "Newly allocated CIDR: [" + allocatedSubnetCIDR + "] for subnet "
-                + "id: [" + context.request.subnetId + "].");
+                + "id: [" + request.subnetId + "].");
 
         AssertUtil.assertTrue(!context.state.allocatedCIDRs.containsValue(allocatedSubnetCIDR),
                 "Attempt to double allocate the same subnet CIDR: [" +
                         allocatedSubnetCIDR + "].");
 
         // Update service document state.
-        context.state.allocatedCIDRs.put(context.request.subnetId, allocatedSubnetCIDR);
-        return DeferredResult.completed(context);
-    }
-
-    private DeferredResult<AllocationContext> seedWithOneAvailableSubnet(
-            AllocationContext context) {
-
-        AssertUtil.assertTrue(
-                !StringUtils.isEmpty(context.network.subnetCIDR) ||
-                        !StringUtils.isEmpty(context.request.networkCIDR),
-                "Either parent network should have a CIDR or an explicit CIDR should be provided");
-
-        String networkCIDR = context.request.networkCIDR;
-        if (StringUtils.isEmpty(networkCIDR)) {
-            networkCIDR = context.network.subnetCIDR;
+        String previousCIDR = context.state.allocatedCIDRs.put(request.subnetId,
+                allocatedSubnetCIDR);
+        if (previousCIDR != null) {
+            releaseCIDR(context.state, previousCIDR);
         }
-
-        SubnetUtils subnetUtils = new SubnetUtils(networkCIDR);
-
-        subnetUtils.setInclusiveHostCount(true);
-        SubnetUtils.SubnetInfo subnetInfo = subnetUtils.getInfo();
-        Long lowIp = IpHelper.ipStringToLong(subnetInfo.getLowAddress());
-        Long highIp = IpHelper.ipStringToLong(subnetInfo.getHighAddress());
-        IpV4Range ipV4Range = new IpV4Range(lowIp, highIp);
-
-        context.availableCIDRRanges.clear();
-        context.availableCIDRRanges.add(ipV4Range);
-
-        return DeferredResult.completed(context);
-    }
-
-    private DeferredResult<AllocationContext> preAllocateWithExistingSubnets(
-            AllocationContext context) {
-
-        Query.Builder qBuilder = Query.Builder.create()
-                .addKindFieldClause(SubnetState.class)
-                .addFieldClause(SubnetState.FIELD_NAME_NETWORK_LINK, context.state.networkLink)
-                .addFieldClause(SubnetState.FIELD_NAME_LIFECYCLE_STATE,
-                        LifecycleState.READY.name());
-
-        QueryStrategy<SubnetState> querySubnets = new QueryByPages<>(
-                this.getHost(),
-                qBuilder.build(),
-                SubnetState.class,
-                context.network.tenantLinks,
-                context.network.endpointLink
-        );
-
-        return querySubnets.queryDocuments(subnetState ->
-                preAllocateCidr(subnetState.subnetCIDR, context.availableCIDRRanges))
-                .thenApply(aVoid -> context);
     }
 
-    private DeferredResult<AllocationContext> preAllocateAllocatedCIDRs(
-            AllocationContext context) {
-
-        context.state.allocatedCIDRs.values()
-                .forEach(cidr -> preAllocateCidr(cidr, context.availableCIDRRanges));
-        return DeferredResult.completed(context);
-    }
-
-    private void preAllocateCidr(String cidr, List<IpV4Range> availableCIDRRanges) {
-        SubnetUtils subnetUtils = new SubnetUtils(cidr);
-        subnetUtils.setInclusiveHostCount(true);
-        SubnetUtils.SubnetInfo subnetInfo = subnetUtils.getInfo();
-        Long lowIp = IpHelper.ipStringToLong(subnetInfo.getLowAddress());
-        Long highIp = IpHelper.ipStringToLong(subnetInfo.getHighAddress());
-        IpV4Range ipV4Range = new IpV4Range(lowIp, highIp);
-
-        IpV4Range containingRange = availableCIDRRanges.stream()
-                .filter(range -> (range.low <= ipV4Range.low && range.high >= ipV4Range.high))
-                .findFirst()
-                .orElse(null);
-
-        if (containingRange == null) {
-            // Already preallocated.
-            return;
-        }
-
-        updateAvailableCIDRRangesList(containingRange, ipV4Range, availableCIDRRanges);
-    }
-
-    private void updateAvailableCIDRRangesList(IpV4Range selectedRange, IpV4Range createdRange,
-            List<IpV4Range> availableCIDRRanges) {
-
-        availableCIDRRanges.remove(selectedRange);
-
-        // Create a new free range before the createdRange if selectedRange starts
-        // lower than the createdRange.
-        if (createdRange.low > selectedRange.low) {
-            IpV4Range lowRange = new IpV4Range(selectedRange.low, createdRange.low - 1);
-            availableCIDRRanges.add(lowRange);
+    /**
+     * Returns the free address space of the network. It is built from the existing subnets and
+     * the allocated CIDRs when the network CIDR or the allocated CIDRs of the state change or
+     * when subnets are removed, and otherwise only the added subnets are applied to it.
+     */
+    private CIDRFreeSpace getFreeSpace(AllocationContext context, String networkCIDR) {
+        NetworkSubnets subnets = context.subnets;
+        // read the version first, so that no change is missed
+        long subnetsVersion = subnets.getVersion();
+
+        List<String> addedSubnetCIDRs = null;
+        if (this.freeSpace != null && this.freeSpace.getNetworkCIDR().equals(networkCIDR)
+                && this.indexedAllocatedCIDRs == context.state.allocatedCIDRs
+                && this.indexedSubnets == subnets) {
+            addedSubnetCIDRs = subnets.getCIDRsAddedSince(this.indexedSubnetsVersion);
         }
 
-        // Create a new free range after the createdRange if selectedRange finish higher than the
-        // createdRange.
-        if (createdRange.high < selectedRange.high) {
-            IpV4Range highRange = new IpV4Range(createdRange.high + 1, selectedRange.high);
-            availableCIDRRanges.add(highRange);
+        if (addedSubnetCIDRs != null) {
+            addedSubnetCIDRs.forEach(this.freeSpace::reserve);
+        } else {
+            CIDRFreeSpace space = new CIDRFreeSpace(networkCIDR);
+            subnets.getCIDRs().forEach(space::reserve);
+            context.state.allocatedCIDRs.values().forEach(space::reserve);
+            this.freeSpace = space;
+            this.indexedAllocatedCIDRs = context.state.allocatedCIDRs;
+            this.indexedSubnets = subnets;
         }
+        this.indexedSubnetsVersion = subnetsVersion;
+        return this.freeSpace;
     }
 
     private void deallocateCIDR(ComputeNetworkCIDRAllocationState state,
@@ -411,12 +364,28 @@ public class ComputeNetworkCIDRAllocationService extends StatefulService {
         AssertUtil.assertNotNull(state, "state");
         AssertUtil.assertNotNull(request, "request");
 
+        logFine(() -> "Deallocate subnet id: [" + request.subnetId + "].");
+
         // Update service document state.
         String deallocatedCIDR = state.allocatedCIDRs.remove(request.subnetId);
         if (deallocatedCIDR == null) {
             this.logWarning(() -> "Unable to deallocate CIDR for subnet id [" + request.subnetId
                     + "]. No previous allocation record for this subnet.");
+            return;
         }
+        releaseCIDR(state, deallocatedCIDR);
+    }
+
+    // Returns the CIDR to the free address space, unless it is still used.
+    private void releaseCIDR(ComputeNetworkCIDRAllocationState state, String cidr) {
+        if (this.freeSpace == null || this.indexedAllocatedCIDRs != state.allocatedCIDRs) {
+            // the free address space is built again on the next allocation
+            return;
+        }
+        if (this.indexedSubnets.contains(cidr) || state.allocatedCIDRs.containsValue(cidr)) {
+            return;
+        }
+        this.freeSpace.release(cidr);
     }
 
     private void validateStateOnCreate(ComputeNetworkCIDRAllocationState state) {
@@ -424,6 +393,29 @@ public class ComputeNetworkCIDRAllocationService extends StatefulService {
         AssertUtil.assertTrue(state.allocatedCIDRs == null, "allocatedCIDRs");
     }
 
+    // Returns the requests to perform, or null if the request is not valid.
+    private List<ComputeNetworkCIDRAllocationRequest> getRequests(
+            ComputeNetworkCIDRAllocationRequest request) {
+        if (request == null || request.requestType != RequestType.BATCH) {
+            return isValidRequest(request) ? Collections.singletonList(request) : null;
+        }
+
+        if (request.requests == null || request.requests.isEmpty()) {
+            logWarning(() -> "Batch request without requests.");
+            return null;
+        }
+        for (ComputeNetworkCIDRAllocationRequest r : request.requests) {
+            if (!isValidRequest(r)) {
+                return null;
+            }
+            if (r.requestType == RequestType.BATCH) {
+                logWarning(() -> "Nested batch requests are not supported.");
+                return null;
+            }
+        }
+        return request.requests;
+    }
+
     private boolean isValidRequest(ComputeNetworkCIDRAllocationRequest request) {
         if (request == null) {
             logWarning(() -> "Request is null.");
@@ -445,25 +437,15 @@ public class ComputeNetworkCIDRAllocationService extends StatefulService {
 
     // Helper class to store allocation context variables.
     private static class AllocationContext {
-        ComputeNetworkCIDRAllocationRequest request;
+        List<ComputeNetworkCIDRAllocationRequest> requests;
         ComputeNetworkCIDRAllocationState state;
         NetworkState network;
-        List<IpV4Range> availableCIDRRanges = new LinkedList<>();
+        NetworkSubnets subnets;
 
-        AllocationContext(ComputeNetworkCIDRAllocationRequest request,
+        AllocationContext(List<ComputeNetworkCIDRAllocationRequest> requests,
                 ComputeNetworkCIDRAllocationState state) {
-            this.request = request;
+            this.requests = requests;
             this.state = state;
         }
     }
-
-    private static class IpV4Range {
-        IpV4Range(Long low, Long high) {
-            this.low = low;
-            this.high = high;
-        }
-
-        Long low;
-        Long high;
-    }
 }
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.vmware.admiral.compute.CommonContinuousQueries;
+import com.vmware.admiral.compute.CommonContinuousQueries.ContinuousQueryId;
+import com.vmware.photon.controller.model.query.QueryStrategy;
+import com.vmware.photon.controller.model.query.QueryUtils.QueryByPages;
+import com.vmware.photon.controller.model.resources.NetworkService.NetworkState;
+import com.vmware.photon.controller.model.resources.SubnetService.SubnetState;
+import com.vmware.photon.controller.model.support.LifecycleState;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service.Action;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+
+/**
+ * Node local cache of the CIDRs of the ready subnets of the networks, used by the
+ * {@link ComputeNetworkCIDRAllocationService} instead of querying the subnets on each allocation.
+ *
+ * The subnets of a network are queried when the network is first used, and then kept up to date
+ * by the {@link ContinuousQueryId#SUBNETS} continuous query. Each network has a version which
+ * increases on each change of its CIDRs, so that the users can apply the added CIDRs
+ * incrementally, and start over when a CIDR is removed.
+ *
+ * Only the subnets of the tenants and the endpoint of the network are kept, as by the query. The
+ * subnets of a network are evicted when it is not used for {@link #IDLE_EVICTION_MICROS}, e.g.
+ * when it is deleted, or when the network cannot be read.
+ */
+class SubnetCIDRCache {
+    private static final int MAX_TRACKED_CHANGES = 256;
+
+    static final long IDLE_EVICTION_MICROS = Long.getLong(
+            "dcp.management.network.subnet.cache.idle.micros", TimeUnit.MINUTES.toMicros(30));
+
+    private static final Map<String, SubnetCIDRCache> CACHES = new ConcurrentHashMap<>();
+
+    private final ServiceHost host;
+    private final Map<String, NetworkSubnets> networks = new HashMap<>();
+
+    /** The CIDRs of the ready subnets of a network. */
+    static class NetworkSubnets {
+        private final List<String> tenantLinks;
+        private final String endpointLink;
+        private volatile long lastUsedMicros;
+        private final Map<String, String> cidrBySubnetLink = new HashMap<>();
+        private final Map<String, Integer> subnetCountByCIDR = new HashMap<>();
+        /** The CIDRs added since the version of the first of them. */
+        private final List<String> addedCIDRs = new ArrayList<>();
+        private long addedCIDRsBaseVersion;
+        private long version;
+        /** The changes notified while the subnets are being loaded. */
+        private List<SubnetState> changesDuringLoad = new ArrayList<>();
+        private final DeferredResult<NetworkSubnets> loaded = new DeferredResult<>();
+
+        NetworkSubnets(NetworkState network) {
+            this.tenantLinks = network.tenantLinks;
+            this.endpointLink = network.endpointLink;
+        }
+
+        synchronized long getVersion() {
+            return version;
+        }
+
+        synchronized Collection<String> getCIDRs() {
+            return new ArrayList<>(subnetCountByCIDR.keySet());
+        }
+
+        synchronized boolean contains(String cidr) {
+            return subnetCountByCIDR.containsKey(cidr);
+        }
+
+        /**
+         * Returns the CIDRs added after the given version, or <code>null</code> if CIDRs were
+         * removed since then or the changes are not tracked anymore.
+         */
+        synchronized List<String> getCIDRsAddedSince(long sinceVersion) {
+            if (sinceVersion < addedCIDRsBaseVersion || sinceVersion > version) {
+                return null;
+            }
+            return new ArrayList<>(addedCIDRs.subList(
+                    (int) (sinceVersion - addedCIDRsBaseVersion), addedCIDRs.size()));
+        }
+
+        private synchronized void load(Map<String, String> cidrs) {
+            cidrs.forEach((subnetLink, cidr) -> {
+                cidrBySubnetLink.put(subnetLink, cidr);
+                subnetCountByCIDR.merge(cidr, 1, Integer::sum);
+            });
+            changesDuringLoad.forEach(this::update);
+            changesDuringLoad = null;
+        }
+
+        private synchronized void onChange(SubnetState subnet) {
+            if (changesDuringLoad != null) {
+                changesDuringLoad.add(subnet);
+            } else {
+                update(subnet);
+            }
+        }
+
+        /**
+         * Whether the subnets are loaded for the tenants and the endpoint of the given network.
+         */
+        private boolean isScopedTo(NetworkState network) {
+            return Objects.equals(tenantLinks, network.tenantLinks)
+                    && Objects.equals(endpointLink, network.endpointLink);
+        }
+
+        private boolean isInScope(SubnetState subnet) {
+            if (endpointLink != null && !endpointLink.equals(subnet.endpointLink)) {
+                return false;
+            }
+            return tenantLinks == null || tenantLinks.isEmpty() || (subnet.tenantLinks != null
+                    && !Collections.disjoint(tenantLinks, subnet.tenantLinks));
+        }
+
+        private void update(SubnetState subnet) {
+            boolean ready = !Action.DELETE.name().equals(subnet.documentUpdateAction)
+                    && subnet.lifecycleState == LifecycleState.READY
+                    && subnet.subnetCIDR != null
+                    && isInScope(subnet);
+            String previous = ready
+                    ? cidrBySubnetLink.put(subnet.documentSelfLink, subnet.subnetCIDR)
+                    : cidrBySubnetLink.remove(subnet.documentSelfLink);
+            if (ready && subnet.subnetCIDR.equals(previous)) {
+                return;
+            }
+            if (previous != null && subnetCountByCIDR.merge(previous, -1, Integer::sum) == 0) {
+                subnetCountByCIDR.remove(previous);
+                version++;
+                addedCIDRsBaseVersion = version;
+                addedCIDRs.clear();
+            }
+            if (ready && subnetCountByCIDR.merge(subnet.subnetCIDR, 1, Integer::sum) == 1) {
+                addedCIDRs.add(subnet.subnetCIDR);
+                version++;
+                if (addedCIDRs.size() > MAX_TRACKED_CHANGES) {
+                    int dropped = addedCIDRs.size() / 2;
+                    addedCIDRs.subList(0, dropped).clear();
+                    addedCIDRsBaseVersion += dropped;
+                }
+            }
+        }
+    }
+
+    private SubnetCIDRCache(ServiceHost host) {
+        this.host = host;
+    }
+
+    /**
+     * Returns the subnet cache of the given host, subscribing it for the subnet changes on first
+     * use.
+     */
+    static SubnetCIDRCache forHost(ServiceHost host) {
+        return CACHES.computeIfAbsent(host.getId(), id -> {
+            SubnetCIDRCache cache = new SubnetCIDRCache(host);
+            CommonContinuousQueries.subscribeTo(host, ContinuousQueryId.SUBNETS,
+                    cache::onSubnetChange);
+            return cache;
+        });
+    }
+
+    /**
+     * Returns the ready subnets of the given network, which are loaded on first use, and again
+     * when the tenants or the endpoint of the network change.
+     */
+    DeferredResult<NetworkSubnets> getSubnets(NetworkState network) {
+        long nowMicros = Utils.getSystemNowMicrosUtc();
+        NetworkSubnets subnets;
+        synchronized (networks) {
+            networks.values().removeIf(s -> s.lastUsedMicros + IDLE_EVICTION_MICROS < nowMicros);
+
+            subnets = networks.get(network.documentSelfLink);
+            if (subnets != null && subnets.isScopedTo(network)) {
+                subnets.lastUsedMicros = nowMicros;
+                return subnets.loaded;
+            }
+            subnets = new NetworkSubnets(network);
+            subnets.lastUsedMicros = nowMicros;
+            networks.put(network.documentSelfLink, subnets);
+        }
+        load(network, subnets);
+        return subnets.loaded;
+    }
+
+    /**
+     * Evicts the subnets of the given network, e.g. when it is deleted.
+     */
+    void evict(String networkLink) {
+        synchronized (networks) {
+            networks.remove(networkLink);
+        }
+    }
+
+    private void load(NetworkState network, NetworkSubnets subnets) {
+        Query query = Query.Builder.create()
+                .addKindFieldClause(SubnetState.class)
+                .addFieldClause(SubnetState.FIELD_NAME_NETWORK_LINK, network.documentSelfLink)
+                .addFieldClause(SubnetState.FIELD_NAME_LIFECYCLE_STATE,
+                        LifecycleState.READY.name())
+                .build();
+
+        QueryStrategy<SubnetState> querySubnets = new QueryByPages<>(host, query,
+                SubnetState.class, network.tenantLinks, network.endpointLink);
+
+        Map<String, String> cidrs = new ConcurrentHashMap<>();
+        querySubnets.queryDocuments(subnet -> {
+            if (subnet.subnetCIDR != null) {
+                cidrs.put(subnet.documentSelfLink, subnet.subnetCIDR);
+            }
+        }).whenComplete((ignore, e) -> {
+            if (e != null) {
+                host.log(Level.WARNING, "Failed to load the subnets of network %s: %s",
+                        network.documentSelfLink, Utils.toString(e));
+                synchronized (networks) {
+                    networks.remove(network.documentSelfLink, subnets);
+                }
+                subnets.loaded.fail(e);
+                return;
+            }
+            subnets.load(cidrs);
+            subnets.loaded.complete(subnets);
+        });
+    }
+
+    private void onSubnetChange(Operation op) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
+        }
+
+        for (Object json : queryTask.results.documents.values()) {
+            SubnetState subnet = Utils.fromJson(json, SubnetState.class);
+            if (subnet.networkLink == null) {
+                continue;
+            }
+            NetworkSubnets subnets;
+            synchronized (networks) {
+                subnets = networks.get(subnet.networkLink);
+            }
+            if (subnets != null) {
+                subnets.onChange(subnet);
+            }
+        }
+    }
+}
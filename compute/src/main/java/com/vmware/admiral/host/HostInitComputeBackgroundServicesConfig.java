@@ -13,7 +13,10 @@ package com.vmware.admiral.host;
 
 import com.vmware.admiral.compute.EpzComputeEnumerationPeriodicService;
 import com.vmware.admiral.compute.PlacementCapacityUpdatePeriodicService;
+import com.vmware.admiral.compute.container.ContainerHostEventsCollectionService;
+import com.vmware.admiral.compute.container.maintenance.ContainerMaintenanceScheduler;
 import com.vmware.admiral.compute.endpoint.EndpointHealthCheckPeriodicService;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService;
 import com.vmware.xenon.common.ServiceHost;
 
 /**
@@ -29,6 +32,9 @@ public class HostInitComputeBackgroundServicesConfig extends HostInitServiceHelp
         startServices(host,
                 EpzComputeEnumerationPeriodicService.class,
                 PlacementCapacityUpdatePeriodicService.class,
-                EndpointHealthCheckPeriodicService.class);
+                EndpointHealthCheckPeriodicService.class,
+                ContainerMaintenanceScheduler.class,
+                ContainerHostEventsCollectionService.class,
+                KubernetesEntityWatchService.class);
     }
 }
@@ -38,7 +38,9 @@ import com.vmware.admiral.compute.container.ContainerHostDataCollectionService;
 import com.vmware.admiral.compute.container.ContainerLogService;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ContainerShellService;
+import com.vmware.admiral.compute.container.ContainerStatsHistoryService;
 import com.vmware.admiral.compute.container.DeploymentPolicyService;
+import com.vmware.admiral.compute.container.GroupResourcePlacementLeaseService;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService;
 import com.vmware.admiral.compute.container.HostContainerListDataCollection;
 import com.vmware.admiral.compute.container.HostNetworkListDataCollection;
@@ -108,6 +110,8 @@ public class HostInitComputeServicesConfig extends HostInitServiceHelper {
                 CompositeDescriptionContentService.class, TemplateSearchService.class,
                 CompositeComponentFactoryService.class, ContainerLogService.class,
                 ContainerShellService.class, ShellContainerExecutorService.class,
+                ContainerStatsHistoryService.class,
+                GroupResourcePlacementLeaseService.class,
                 HostConfigCertificateDistributionService.class,
                 RegistryConfigCertificateDistributionService.class,
                 ComputeInitialBootService.class,
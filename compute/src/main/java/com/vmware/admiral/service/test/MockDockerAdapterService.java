@@ -37,6 +37,8 @@ import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerOperationType;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerHostEventsCollectionService;
+import com.vmware.admiral.compute.container.ContainerHostEventsCollectionService.HostEvent;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
 import com.vmware.admiral.compute.container.PortBinding;
@@ -72,6 +74,9 @@ public class MockDockerAdapterService extends BaseMockAdapterService {
     // Map of container ids and image by hostId. hostId -> Map of containerId -> container image
     private static final Map<String, Map<String, String>> CONTAINER_IDS_AND_IMAGE = new ConcurrentHashMap<>();
 
+    // hostId -> events not yet retrieved by the events collection
+    private static final Map<String, List<HostEvent>> HOST_EVENTS = new ConcurrentHashMap<>();
+
     private static class MockAdapterRequest extends AdapterRequest {
 
         public boolean isProvisioning() {
@@ -431,6 +436,7 @@ public class MockDockerAdapterService extends BaseMockAdapterService {
         CONTAINER_IDS.clear();
         CONTAINER_IDS_AND_NAMES.clear();
         CONTAINER_IDS_AND_IMAGE.clear();
+        HOST_EVENTS.clear();
     }
 
     public static synchronized int getNumberOfContainers() {
@@ -458,6 +464,8 @@ public class MockDockerAdapterService extends BaseMockAdapterService {
                     if (CONTAINER_IDS_AND_IMAGE.containsKey(hostId)) {
                         CONTAINER_IDS_AND_IMAGE.get(hostId).remove(entry.getKey());
                     }
+                    addHostEvent(hostId, ContainerHostEventsCollectionService.EVENT_TYPE_CONTAINER,
+                            "destroy", entry.getKey());
                     iterator.remove();
                     return;
                 }
@@ -476,6 +484,27 @@ public class MockDockerAdapterService extends BaseMockAdapterService {
             CONTAINER_IDS.put(hostId, new ConcurrentHashMap<>());
         }
         CONTAINER_IDS.get(hostId).put(containerId, containerReference);
+        addHostEvent(hostId, ContainerHostEventsCollectionService.EVENT_TYPE_CONTAINER, "create",
+                containerId);
+    }
+
+    public static synchronized void addHostEvent(String hostId, String type, String action,
+            String id) {
+        HostEvent event = new HostEvent();
+        event.type = type;
+        event.action = action;
+        event.id = id;
+        event.time = System.currentTimeMillis() / 1000;
+        HOST_EVENTS.computeIfAbsent(hostId, (k) -> new ArrayList<>()).add(event);
+    }
+
+    /**
+     * Returns and clears the events of the given host, the same way a docker daemon returns each
+     * event only for the time frame it was recorded in.
+     */
+    public static synchronized List<HostEvent> pollHostEvents(String hostId) {
+        List<HostEvent> events = HOST_EVENTS.remove(hostId);
+        return events != null ? events : new ArrayList<>();
     }
 
     public static synchronized Set<String> getContainerIds() {
@@ -20,6 +20,7 @@ import com.vmware.admiral.adapter.common.ContainerHostOperationType;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.compute.ContainerHostService;
 import com.vmware.admiral.compute.ContainerHostService.ContainerHostType;
+import com.vmware.admiral.compute.container.ContainerHostEventsCollectionService.HostEventsCallback;
 import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerListCallback;
 import com.vmware.admiral.compute.container.HostNetworkListDataCollection.NetworkListCallback;
 import com.vmware.admiral.compute.container.HostVolumeListDataCollection.VolumeListCallback;
@@ -106,6 +107,13 @@ public class MockDockerHostAdapterService extends BaseMockAdapterService {
             patchTaskStage(request, null, callbackResponse);
             op.setBody(callbackResponse);
             op.complete();
+        } else if (ContainerHostOperationType.EVENTS.id == request.operationTypeId) {
+            HostEventsCallback callbackResponse = new HostEventsCallback();
+            callbackResponse.containerHostLink = request.resourceReference.getPath();
+            String hostId = Service.getId(request.resourceReference.getPath());
+            callbackResponse.events = MockDockerAdapterService.pollHostEvents(hostId);
+            op.setBody(callbackResponse);
+            op.complete();
         } else if (ContainerHostOperationType.INFO.id == request.operationTypeId) {
             sendRequest(Operation
                     .createGet(request.resourceReference)
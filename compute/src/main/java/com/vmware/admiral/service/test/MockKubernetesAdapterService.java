@@ -11,7 +11,9 @@
 
 package com.vmware.admiral.service.test;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -19,6 +21,9 @@ import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.KubernetesOperationType;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.compute.container.CompositeComponentRegistry;
+import com.vmware.admiral.compute.content.kubernetes.KubernetesUtil;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService.EntityEvent;
 import com.vmware.admiral.compute.kubernetes.entities.common.BaseKubernetesObject;
 import com.vmware.admiral.compute.kubernetes.service.BaseKubernetesState;
 import com.vmware.admiral.compute.kubernetes.service.KubernetesDescriptionService.KubernetesDescription;
@@ -45,6 +50,10 @@ public class MockKubernetesAdapterService extends BaseMockAdapterService {
 
     private static final Map<String, BaseKubernetesState> KUBERNETES_ENTITIES = new ConcurrentHashMap<>();
 
+    // watch events of the entities, in the order of their resource versions
+    private static final List<EntityEvent> ENTITY_EVENTS = new ArrayList<>();
+    private static boolean watchExpired;
+
     private static class MockAdapterRequest extends AdapterRequest {
 
         public boolean isProvisioning() {
@@ -188,6 +197,19 @@ public class MockKubernetesAdapterService extends BaseMockAdapterService {
 
     public static void addEntity(BaseKubernetesState entity) {
         KUBERNETES_ENTITIES.put(entity.id, entity);
+        addEntityEvent(KubernetesEntityWatchService.EVENT_TYPE_ADDED, entity);
+    }
+
+    public static void modifyEntity(BaseKubernetesState entity) {
+        KUBERNETES_ENTITIES.put(entity.id, entity);
+        addEntityEvent(KubernetesEntityWatchService.EVENT_TYPE_MODIFIED, entity);
+    }
+
+    public static void removeEntity(String id) {
+        BaseKubernetesState entity = KUBERNETES_ENTITIES.remove(id);
+        if (entity != null) {
+            addEntityEvent(KubernetesEntityWatchService.EVENT_TYPE_DELETED, entity);
+        }
     }
 
     public static Collection<BaseKubernetesState> getKubernetesEntities() {
@@ -196,5 +218,56 @@ public class MockKubernetesAdapterService extends BaseMockAdapterService {
 
     public static void clearKubernetesEntities() {
         KUBERNETES_ENTITIES.clear();
+        synchronized (ENTITY_EVENTS) {
+            ENTITY_EVENTS.clear();
+            watchExpired = false;
+        }
+    }
+
+    private static void addEntityEvent(String type, BaseKubernetesState entity) {
+        EntityEvent event = new EntityEvent();
+        event.type = type;
+        event.id = entity.id;
+        BaseKubernetesObject object = entity.getEntityAsBaseKubernetesObject();
+        if (object != null) {
+            event.data = KubernetesUtil.createEntityData(object, entity.getType());
+            event.entity = Utils.toJson(object);
+        }
+        synchronized (ENTITY_EVENTS) {
+            ENTITY_EVENTS.add(event);
+        }
+    }
+
+    /**
+     * The resource version of the entities is the number of their events.
+     */
+    public static String getResourceVersion() {
+        synchronized (ENTITY_EVENTS) {
+            return Integer.toString(ENTITY_EVENTS.size());
+        }
+    }
+
+    /**
+     * Returns the events after the given resource version, or <code>null</code> if the resource
+     * version has expired.
+     */
+    public static List<EntityEvent> getEntityEvents(String resourceVersion) {
+        synchronized (ENTITY_EVENTS) {
+            if (watchExpired) {
+                watchExpired = false;
+                return null;
+            }
+            int from = Math.min(Integer.parseInt(resourceVersion), ENTITY_EVENTS.size());
+            return new ArrayList<>(ENTITY_EVENTS.subList(from, ENTITY_EVENTS.size()));
+        }
+    }
+
+    /**
+     * Makes the next watch of the entities fail with an expired resource version.
+     */
+    public static void expireWatch() {
+        synchronized (ENTITY_EVENTS) {
+            watchExpired = true;
+        }
     }
 }
\ No newline at end of file
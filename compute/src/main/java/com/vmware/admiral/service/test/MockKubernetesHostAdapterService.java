@@ -15,12 +15,17 @@ import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.creat
 
 import java.net.HttpURLConnection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerHostOperationType;
 import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.compute.content.kubernetes.KubernetesUtil;
 import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListCallback;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService.EntityEvent;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService.EntityWatchCallback;
 import com.vmware.admiral.compute.kubernetes.service.BaseKubernetesState;
 import com.vmware.photon.controller.model.resources.ComputeService;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
@@ -71,10 +76,32 @@ public class MockKubernetesHostAdapterService extends BaseMockAdapterService {
                         .put(entity.id, createEntityData(entity.getEntityAsBaseKubernetesObject(),
                                 entity.getType()));
             }
+            String resourceVersion = MockKubernetesAdapterService.getResourceVersion();
+            KubernetesEntityWatchService.ENTITY_TYPES.forEach(
+                    type -> callbackResponse.resourceVersions.put(type, resourceVersion));
             patchTaskStage(request, null, callbackResponse);
             op.setBody(callbackResponse);
             op.complete();
 
+        } else if (ContainerHostOperationType.WATCH_ENTITIES.id.equals(request.operationTypeId)) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> resourceVersions = Utils.fromJson(request.customProperties.get(
+                    KubernetesEntityWatchService.RESOURCE_VERSIONS_PROP_NAME), Map.class);
+            EntityWatchCallback callbackResponse = new EntityWatchCallback();
+            callbackResponse.computeHostLink = request.resourceReference.getPath();
+            List<EntityEvent> events = MockKubernetesAdapterService.getEntityEvents(
+                    resourceVersions.get(KubernetesUtil.POD_TYPE));
+            if (events == null) {
+                callbackResponse.expired = true;
+            } else {
+                callbackResponse.events = events;
+                String resourceVersion = MockKubernetesAdapterService.getResourceVersion();
+                KubernetesEntityWatchService.ENTITY_TYPES.forEach(
+                        type -> callbackResponse.resourceVersions.put(type, resourceVersion));
+            }
+            op.setBody(callbackResponse);
+            op.complete();
+
         } else if (ContainerHostOperationType.INFO.id.equals(request.operationTypeId)) {
             sendRequest(Operation
                     .createGet(request.resourceReference)
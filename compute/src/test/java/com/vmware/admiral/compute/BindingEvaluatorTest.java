@@ -610,6 +610,66 @@ public class BindingEvaluatorTest {
         assertEquals("10.0.0.1:2376", secondDescription.hostname);
     }
 
+    @Test
+    public void testEvaluateSameBindingsOfDifferentTemplates() {
+        // the second template is evaluated by the cached plan of the first one
+        for (String hostname : Arrays.asList("firstHostname", "secondHostname")) {
+            ContainerDescription firstDescription = new ContainerDescription();
+            firstDescription.name = "A";
+
+            ContainerDescription secondDescription = new ContainerDescription();
+            secondDescription.name = "B";
+
+            ContainerDescription thirdDescription = new ContainerDescription();
+            thirdDescription.name = "C";
+            thirdDescription.hostname = hostname;
+
+            List<Binding> aBindings = Arrays
+                    .asList(binding(Arrays.asList("hostname"), "B~hostname"));
+            List<Binding> bBindings = Arrays
+                    .asList(binding(Arrays.asList("hostname"), "C~hostname"));
+
+            CompositeTemplate compositeTemplate = createCompositeTemplate(Arrays
+                            .asList(firstDescription, secondDescription, thirdDescription),
+                    Arrays.asList(new Binding.ComponentBinding("A", aBindings),
+                            new Binding.ComponentBinding("B", bBindings)));
+
+            BindingEvaluator.evaluateBindings(compositeTemplate);
+
+            firstDescription = (ContainerDescription) compositeTemplate.components.get("A").data;
+            secondDescription = (ContainerDescription) compositeTemplate.components.get("B").data;
+
+            assertEquals(hostname, firstDescription.hostname);
+            assertEquals(hostname, secondDescription.hostname);
+        }
+    }
+
+    @Test
+    public void testEvaluateBindingToFieldSetByBindingOfSameComponent() {
+        ContainerDescription firstDescription = new ContainerDescription();
+        firstDescription.name = "A";
+
+        ContainerDescription secondDescription = new ContainerDescription();
+        secondDescription.name = "B";
+        secondDescription.hostname = "test-host";
+
+        // the domain name of A is bound to its host name, which is set by the first binding
+        List<Binding> aBindings = Arrays.asList(
+                binding(Arrays.asList("hostname"), "B~hostname"),
+                binding(Arrays.asList("domainName"), "A~hostname"));
+
+        CompositeTemplate compositeTemplate = createCompositeTemplate(
+                Arrays.asList(firstDescription, secondDescription),
+                Arrays.asList(new Binding.ComponentBinding("A", aBindings)));
+
+        BindingEvaluator.evaluateBindings(compositeTemplate);
+
+        firstDescription = (ContainerDescription) compositeTemplate.components.get("A").data;
+
+        assertEquals("test-host", firstDescription.hostname);
+        assertEquals("test-host", firstDescription.domainName);
+    }
+
     private static Binding binding(List<String> targetFieldPath, String placeholder) {
         return new Binding(targetFieldPath, String.format("${%s}", placeholder),
                 new BindingPlaceholder(placeholder));
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.compute.container.ContainerHostEventsCollectionService.HostEventsCallback;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.HostContainerListDataCollection.HostContainerListDataCollectionState;
+import com.vmware.admiral.compute.container.network.ContainerNetworkService;
+import com.vmware.admiral.compute.container.network.ContainerNetworkService.ContainerNetworkState;
+import com.vmware.admiral.service.test.MockDockerAdapterService;
+import com.vmware.admiral.service.test.MockDockerHostAdapterService;
+import com.vmware.admiral.service.test.MockDockerNetworkAdapterService;
+import com.vmware.photon.controller.model.resources.ComputeDescriptionService;
+import com.vmware.photon.controller.model.resources.ComputeDescriptionService.ComputeDescription;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.common.test.TestContext;
+import com.vmware.xenon.services.common.QueryTask;
+
+public class ContainerHostEventsCollectionServiceTest extends ComputeBaseTest {
+    private static final String TEST_HOST_ID = "test-events-host-id:2376";
+    private static final String COMPUTE_HOST_LINK = UriUtils.buildUriPath(
+            ComputeService.FACTORY_LINK, TEST_HOST_ID);
+    private static final String TEST_CONTAINER_ID = "event-container-id";
+    private static final String TEST_NETWORK_ID = "event-network-id";
+
+    @Before
+    public void setUp() throws Throwable {
+        host.startService(Operation.createPost(UriUtils.buildUri(host,
+                MockDockerAdapterService.class)), new MockDockerAdapterService());
+        host.startService(Operation.createPost(UriUtils.buildUri(host,
+                MockDockerNetworkAdapterService.class)), new MockDockerNetworkAdapterService());
+        host.startService(Operation.createPost(UriUtils.buildUri(host,
+                MockDockerHostAdapterService.class)), new MockDockerHostAdapterService());
+        host.startService(Operation.createPost(UriUtils.buildUri(host,
+                ContainerHostEventsCollectionService.class)),
+                new ContainerHostEventsCollectionService());
+
+        waitForServiceAvailability(ComputeService.FACTORY_LINK);
+        waitForServiceAvailability(ContainerFactoryService.SELF_LINK);
+        waitForServiceAvailability(ContainerNetworkService.FACTORY_LINK);
+        waitForServiceAvailability(MockDockerAdapterService.SELF_LINK);
+        waitForServiceAvailability(MockDockerNetworkAdapterService.SELF_LINK);
+        waitForServiceAvailability(MockDockerHostAdapterService.SELF_LINK);
+        waitForServiceAvailability(ContainerHostEventsCollectionService.SELF_LINK);
+        waitForServiceAvailability(
+                HostContainerListDataCollection.DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK);
+        waitForServiceAvailability(
+                HostNetworkListDataCollection.DEFAULT_HOST_NETWORK_LIST_DATA_COLLECTION_LINK);
+
+        ComputeDescription computeDesc = new ComputeDescription();
+        computeDesc = doPost(computeDesc, ComputeDescriptionService.FACTORY_LINK);
+
+        ComputeState cs = new ComputeState();
+        cs.id = TEST_HOST_ID;
+        cs.documentSelfLink = TEST_HOST_ID;
+        cs.descriptionLink = computeDesc.documentSelfLink;
+        cs.customProperties = new HashMap<String, String>();
+        doPost(cs, ComputeService.FACTORY_LINK);
+
+        // the first collection only subscribes for the events of the host
+        collectEvents();
+        waitForContainerDataCollectionFinished();
+    }
+
+    @After
+    public void tearDown() throws Throwable {
+        MockDockerAdapterService.resetContainers();
+        MockDockerNetworkAdapterService.resetNetworks();
+    }
+
+    @Test
+    public void testContainerCreateEventDiscoversContainer() throws Throwable {
+        // creating the container emits a create event for the host
+        MockDockerAdapterService.addContainerId(TEST_HOST_ID, TEST_CONTAINER_ID,
+                TEST_CONTAINER_ID);
+        MockDockerAdapterService.addContainerNames(TEST_HOST_ID, TEST_CONTAINER_ID,
+                "event-container");
+
+        collectEvents();
+
+        waitFor("Container was not discovered from the create event", () -> {
+            List<ContainerState> containers = findDocuments(ContainerState.class,
+                    ContainerState.FIELD_NAME_ID, TEST_CONTAINER_ID);
+            return containers.size() == 1
+                    && COMPUTE_HOST_LINK.equals(containers.get(0).parentLink);
+        });
+    }
+
+    @Test
+    public void testNetworkCreateEventDiscoversNetwork() throws Throwable {
+        MockDockerNetworkAdapterService.addNetworkId(TEST_HOST_ID, TEST_NETWORK_ID,
+                "event-network");
+        MockDockerNetworkAdapterService.addNetworkName(TEST_HOST_ID, TEST_NETWORK_ID,
+                "event-network");
+        MockDockerAdapterService.addHostEvent(TEST_HOST_ID,
+                ContainerHostEventsCollectionService.EVENT_TYPE_NETWORK, "create",
+                TEST_NETWORK_ID);
+
+        collectEvents();
+
+        waitFor("Network was not discovered from the create event", () -> {
+            List<ContainerNetworkState> networks = findDocuments(ContainerNetworkState.class,
+                    ContainerNetworkState.FIELD_NAME_ID, TEST_NETWORK_ID);
+            return networks.size() == 1
+                    && networks.get(0).parentLinks.contains(COMPUTE_HOST_LINK);
+        });
+    }
+
+    private void collectEvents() throws Throwable {
+        HostEventsCallback body = new HostEventsCallback();
+        body.containerHostLink = COMPUTE_HOST_LINK;
+        host.testStart(1);
+        host.sendRequest(Operation
+                .createPatch(UriUtils.buildUri(host, ContainerHostEventsCollectionService.SELF_LINK))
+                .setBody(body)
+                .setReferer(host.getUri())
+                .setCompletion(host.getCompletion()));
+        host.testWait();
+    }
+
+    private <T extends ServiceDocument> List<T> findDocuments(Class<T> type, String propName,
+            String propValue) {
+        List<T> result = new ArrayList<>();
+        TestContext ctx = testCreate(1);
+        QueryTask queryTask = QueryUtil.buildPropertyQuery(type, propName, propValue);
+        QueryUtil.addExpandOption(queryTask);
+        new ServiceDocumentQuery<>(host, type).query(queryTask, (r) -> {
+            if (r.hasException()) {
+                ctx.fail(r.getException());
+            } else if (r.hasResult()) {
+                result.add(r.getResult());
+            } else {
+                ctx.complete();
+            }
+        });
+        ctx.await();
+        return result;
+    }
+
+    private void waitForContainerDataCollectionFinished() throws Throwable {
+        waitFor(() -> {
+            List<Boolean> finished = new ArrayList<>();
+            TestContext ctx = testCreate(1);
+            new ServiceDocumentQuery<>(host, HostContainerListDataCollectionState.class)
+                    .queryDocument(
+                            HostContainerListDataCollection.DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK,
+                            (r) -> {
+                                if (r.hasException()) {
+                                    host.log("Exception while retrieving data collection: "
+                                            + (r.getException() instanceof CancellationException
+                                                    ? r.getException().getMessage()
+                                                    : Utils.toString(r.getException())));
+                                } else if (r.hasResult()) {
+                                    finished.add(r.getResult().containerHostLinks.isEmpty());
+                                }
+                                ctx.complete();
+                            });
+            ctx.await();
+            return !finished.isEmpty() && finished.get(0);
+        });
+    }
+}
@@ -31,7 +31,10 @@ import com.vmware.admiral.compute.container.HealthChecker.HealthConfig.HttpVersi
 import com.vmware.admiral.compute.container.HealthChecker.HealthConfig.RequestProtocol;
 import com.vmware.admiral.compute.container.maintenance.ContainerStats;
 import com.vmware.admiral.compute.container.maintenance.ContainerStatsEvaluator;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory.Resolution;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory.StatsSamples;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.Service.Action;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.ServiceStats;
@@ -47,6 +50,7 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
         waitForServiceAvailability(ContainerDescriptionService.FACTORY_LINK);
         waitForServiceAvailability(CompositeDescriptionFactoryService.SELF_LINK);
         waitForServiceAvailability(ContainerFactoryService.SELF_LINK);
+        waitForServiceAvailability(ContainerStatsHistoryService.SELF_LINK);
         containerState = new ContainerState();
         containerState.image = "test-image";
         containerState = doPost(containerState, ContainerFactoryService.SELF_LINK);
@@ -68,6 +72,25 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
         assertEquals(5000000, containerStats.memLimit);
     }
 
+    @Test
+    public void testStatsHistory() throws Throwable {
+        patchStats(ContainerStatsEvaluator.calculateStatsValues(buildContainerStatsJson()));
+        ContainerStats healthCheck = new ContainerStats();
+        healthCheck.healthCheckSuccess = true;
+        patchStats(healthCheck);
+
+        // the health check results are not part of the history
+        StatsSamples samples = getStatsHistory(Resolution.RAW);
+        assertEquals(1, samples.timeMicros.length);
+        assertEquals(29.92d, samples.cpuUsage[0], 0);
+        assertEquals(3042080, samples.memUsage[0]);
+        assertEquals(34887, samples.networkIn[0]);
+
+        samples = getStatsHistory(Resolution.HOUR);
+        assertEquals(1, samples.timeMicros.length);
+        assertEquals(579367, samples.networkOut[0]);
+    }
+
     @Test
     public void testPatchHealthStatusHealthConfigNotSet() throws Throwable {
         containerStats = patchStats(containerStats);
@@ -250,6 +273,31 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
         return ContainerStats.transform(serviceStats);
     }
 
+    private StatsSamples getStatsHistory(Resolution resolution) throws Throwable {
+        StatsSamples[] result = new StatsSamples[] { null };
+
+        host.testStart(1);
+        host.send(Operation.createGet(
+                UriUtils.buildUri(host, ContainerStatsHistoryService.SELF_LINK,
+                        UriUtils.buildUriQuery(
+                                ContainerStatsHistoryService.CONTAINER_ID_QUERY_PARAM,
+                                Service.getId(containerState.documentSelfLink),
+                                ContainerStatsHistoryService.RESOLUTION_QUERY_PARAM,
+                                resolution.value)))
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        host.failIteration(e);
+                        return;
+                    }
+                    result[0] = o.getBody(StatsSamples.class);
+                    host.completeIteration();
+                }));
+        host.testWait();
+
+        assertNotNull(result[0]);
+        return result[0];
+    }
+
     private ContainerDescription createContainerDescription() {
         ContainerDescription containerDesc = new ContainerDescription();
         containerDesc.image = "image:latest";
@@ -43,6 +43,8 @@ import com.vmware.admiral.compute.container.ContainerDescriptionService.Containe
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService.GroupResourcePlacementPoolState;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService.GroupResourcePlacementState;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.PlacementLease;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.PlacementLeaseRequest;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService.ResourcePlacementReservationRequest;
 import com.vmware.photon.controller.model.resources.ResourcePoolService;
 import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
@@ -64,6 +66,7 @@ public class GroupResourcePlacementServiceTest extends ComputeBaseTest {
     private ContainerDescription containerDescription;
     private URI requestReservationTaskURI;
     private ResourcePoolState resourcePool;
+    private long leaseSequence;
     private static final String TENANT = "/tenants/coke";
     private static final String BUSINESS_GROUP = "/coke/dev";
     private static long CONTAINER_MEMORY;
@@ -692,6 +695,208 @@ public class GroupResourcePlacementServiceTest extends ComputeBaseTest {
         assertEquals(1, placementStateAfterProvisioning.allocatedInstancesCount);
     }
 
+    @Test
+    public void testReservationWithResourceMemory() throws Throwable {
+        GroupResourcePlacementState placementState = createAndStoreGroupResourcePlacement();
+
+        // the description is not read when the memory of the resources is set
+        ResourcePlacementReservationRequest request = new ResourcePlacementReservationRequest();
+        request.resourceCount = 2;
+        request.resourceDescriptionLink = "/missing-description";
+        request.resourceMemoryBytes = CONTAINER_MEMORY;
+        request.referer = requestReservationTaskURI.getPath();
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        assertEquals(8, placementState.availableInstancesCount);
+        assertEquals(2, placementState.allocatedInstancesCount);
+        assertEquals(6 * CONTAINER_MEMORY + CONTAINER_MEMORY / 2, placementState.availableMemory);
+
+        request.resourceMemoryBytes = ResourcePlacementReservationRequest.NO_MEMORY_LIMIT;
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        assertEquals(6, placementState.availableInstancesCount);
+        assertEquals(6 * CONTAINER_MEMORY + CONTAINER_MEMORY / 2, placementState.availableMemory);
+    }
+
+    @Test
+    public void testPlacementLease() throws Throwable {
+        GroupResourcePlacementState placementState = createAndStoreGroupResourcePlacement();
+        String nodeId = host.getId();
+
+        // the lease is limited by the memory of the placement
+        ResourcePlacementReservationRequest request = makeLeaseRequest(nodeId, 1, 10, 0, 0);
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        PlacementLease lease = placementState.leases.get(nodeId);
+        assertEquals(8, lease.instances);
+        assertEquals(8 * CONTAINER_MEMORY, lease.memoryBytes);
+        assertEquals(2, placementState.availableInstancesCount);
+        assertEquals(0, placementState.allocatedInstancesCount);
+        assertEquals(CONTAINER_MEMORY / 2, placementState.availableMemory);
+
+        // the usage of the lease is settled on renewal
+        request = makeLeaseRequest(nodeId, 1, 2, 3, 3 * CONTAINER_MEMORY);
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        lease = placementState.leases.get(nodeId);
+        assertEquals(2, lease.instances);
+        assertEquals(5, placementState.availableInstancesCount);
+        assertEquals(3, placementState.allocatedInstancesCount);
+        assertEquals(3 * CONTAINER_MEMORY + CONTAINER_MEMORY / 2, placementState.availableMemory);
+
+        // no lease is granted when there is not enough quota, the usage is settled anyway
+        request = makeLeaseRequest(nodeId, 6, 6, 1, CONTAINER_MEMORY);
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        assertEquals(0, placementState.leases.get(nodeId).instances);
+        assertEquals(6, placementState.availableInstancesCount);
+        assertEquals(4, placementState.allocatedInstancesCount);
+        assertEquals(4 * CONTAINER_MEMORY + CONTAINER_MEMORY / 2, placementState.availableMemory);
+
+        // expired leases are reclaimed
+        request = makeLeaseRequest(nodeId, 1, 2, 0, 0);
+        request.lease.durationMicros = 0;
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        assertEquals(4, placementState.availableInstancesCount);
+
+        request = makeLeaseRequest("other-node", 0, 0, 0, 0);
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        assertEquals(0, placementState.leases.get(nodeId).instances);
+        assertEquals(6, placementState.availableInstancesCount);
+        assertEquals(4 * CONTAINER_MEMORY + CONTAINER_MEMORY / 2, placementState.availableMemory);
+    }
+
+    @Test
+    public void testReservationFromLease() throws Throwable {
+        GroupResourcePlacementState placementState = createAndStoreGroupResourcePlacement();
+        String leaseServiceLink = GroupResourcePlacementLeaseService.SELF_LINK + "-test";
+        host.startServiceAndWait(new GroupResourcePlacementLeaseService(4,
+                TimeUnit.MINUTES.toMicros(1)), leaseServiceLink, null);
+        URI reservationUri = UriUtils.extendUriWithQuery(UriUtils.buildUri(host,
+                leaseServiceLink), GroupResourcePlacementLeaseService.PLACEMENT_LINK_QUERY_PARAM,
+                placementState.documentSelfLink);
+
+        ResourcePlacementReservationRequest request = new ResourcePlacementReservationRequest();
+        request.resourceCount = 1;
+        request.resourceMemoryBytes = CONTAINER_MEMORY;
+        request.referer = requestReservationTaskURI.getPath();
+
+        // the first reservation leases 4 instances, the next ones are reserved locally
+        for (int i = 0; i < 4; i++) {
+            patch(reservationUri, request);
+        }
+        placementState = getDocument(GroupResourcePlacementState.class,
+                placementState.documentSelfLink);
+        assertEquals(4, placementState.leases.get(host.getId()).instances);
+        assertEquals(6, placementState.availableInstancesCount);
+        assertEquals(0, placementState.allocatedInstancesCount);
+
+        // the fifth reservation settles the usage and renews the lease
+        patch(reservationUri, request);
+        placementState = getDocument(GroupResourcePlacementState.class,
+                placementState.documentSelfLink);
+        assertEquals(4, placementState.leases.get(host.getId()).instances);
+        assertEquals(2, placementState.availableInstancesCount);
+        assertEquals(4, placementState.allocatedInstancesCount);
+
+        // reservations beyond the memory quota fail
+        request.resourceCount = 4;
+        host.testStart(1);
+        host.send(Operation.createPatch(reservationUri)
+                .setBody(request)
+                .setCompletion(host.getExpectedFailureCompletion()));
+        host.testWait();
+    }
+
+    @Test
+    public void testLeaseIsReturnedOnStop() throws Throwable {
+        GroupResourcePlacementState placementState = createAndStoreGroupResourcePlacement();
+        String leaseServiceLink = GroupResourcePlacementLeaseService.SELF_LINK + "-stop-test";
+        GroupResourcePlacementLeaseService leaseService = new GroupResourcePlacementLeaseService(
+                4, TimeUnit.MINUTES.toMicros(1));
+        host.startServiceAndWait(leaseService, leaseServiceLink, null);
+        URI reservationUri = UriUtils.extendUriWithQuery(UriUtils.buildUri(host,
+                leaseServiceLink), GroupResourcePlacementLeaseService.PLACEMENT_LINK_QUERY_PARAM,
+                placementState.documentSelfLink);
+
+        ResourcePlacementReservationRequest request = new ResourcePlacementReservationRequest();
+        request.resourceCount = 1;
+        request.resourceMemoryBytes = CONTAINER_MEMORY;
+        request.referer = requestReservationTaskURI.getPath();
+        patch(reservationUri, request);
+
+        // the usage is settled and the unused instances are returned
+        stopService(leaseService);
+        placementState = getDocument(GroupResourcePlacementState.class,
+                placementState.documentSelfLink);
+        assertEquals(0, placementState.leases.get(host.getId()).instances);
+        assertEquals(9, placementState.availableInstancesCount);
+        assertEquals(1, placementState.allocatedInstancesCount);
+    }
+
+    @Test
+    public void testPlacementLeaseSettlementIsCountedOnce() throws Throwable {
+        GroupResourcePlacementState placementState = createAndStoreGroupResourcePlacement();
+        String nodeId = host.getId();
+
+        ResourcePlacementReservationRequest request = makeLeaseRequest(nodeId, 1, 2, 0, 0);
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        assertEquals(8, placementState.availableInstancesCount);
+
+        // a settlement retried after a lost response is counted once
+        request = makeLeaseRequest(nodeId, 1, 2, 2, 2 * CONTAINER_MEMORY);
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        assertEquals(2, placementState.leases.get(nodeId).instances);
+        assertEquals(6, placementState.availableInstancesCount);
+        assertEquals(2, placementState.allocatedInstancesCount);
+
+        // an older settlement is ignored
+        request.lease.sequence--;
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        assertEquals(6, placementState.availableInstancesCount);
+        assertEquals(2, placementState.allocatedInstancesCount);
+
+        // the usage of an expired lease is counted when it is settled late
+        request = makeLeaseRequest(nodeId, 1, 2, 0, 0);
+        request.lease.durationMicros = 0;
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        request = makeLeaseRequest("other-node", 0, 0, 0, 0);
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        assertEquals(8, placementState.availableInstancesCount);
+
+        request = makeLeaseRequest(nodeId, 0, 0, 2, 2 * CONTAINER_MEMORY);
+        placementState = patchPlacement(placementState.documentSelfLink, request);
+        assertEquals(0, placementState.leases.get(nodeId).instances);
+        assertEquals(6, placementState.availableInstancesCount);
+        assertEquals(4, placementState.allocatedInstancesCount);
+    }
+
+    private ResourcePlacementReservationRequest makeLeaseRequest(String nodeId, long count,
+            long instances, long usedInstances, long usedMemoryBytes) {
+        ResourcePlacementReservationRequest request = new ResourcePlacementReservationRequest();
+        request.resourceCount = count;
+        request.resourceMemoryBytes = CONTAINER_MEMORY;
+        request.referer = GroupResourcePlacementLeaseService.SELF_LINK;
+        request.lease = new PlacementLeaseRequest();
+        request.lease.nodeId = nodeId;
+        request.lease.instances = instances;
+        request.lease.usedInstances = usedInstances;
+        request.lease.usedMemoryBytes = usedMemoryBytes;
+        request.lease.durationMicros = TimeUnit.MINUTES.toMicros(1);
+        request.lease.sequence = ++leaseSequence;
+        return request;
+    }
+
+    private GroupResourcePlacementState patchPlacement(String placementLink,
+            ResourcePlacementReservationRequest request) throws Throwable {
+        patch(UriUtils.buildUri(host, placementLink), request);
+        return getDocument(GroupResourcePlacementState.class, placementLink);
+    }
+
+    private void patch(URI uri, ResourcePlacementReservationRequest request) throws Throwable {
+        host.testStart(1);
+        host.send(Operation.createPatch(uri)
+                .setBody(request)
+                .setCompletion(host.getCompletion()));
+        host.testWait();
+    }
+
     private GroupResourcePlacementState makeResourcePlacementReservationRequest(
             GroupResourcePlacementState placementState, int count) throws Throwable {
         return makeResourcePlacementReservationRequest(count, containerDescription.documentSelfLink,
@@ -23,6 +23,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.vmware.admiral.common.DeploymentProfileConfig;
+import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
@@ -38,6 +39,7 @@ import com.vmware.photon.controller.model.resources.ResourcePoolService;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
 
 public class HostContainerListDataCollectionTest extends ComputeBaseTest {
     private static final String TEST_PREEXISTING_CONTAINER_ID = "preexisting-container";
@@ -255,6 +257,80 @@ public class HostContainerListDataCollectionTest extends ComputeBaseTest {
         assertEquals(Boolean.TRUE, systemContainer.system);
     }
 
+    @Test
+    public void testUnchangedContainerSurvivesIncrementalDataCollection() throws Throwable {
+        MockDockerAdapterService.addContainerId(TEST_HOST_ID, TEST_PREEXISTING_CONTAINER_ID,
+                TEST_PREEXISTING_CONTAINER_ID);
+        MockDockerAdapterService.addContainerNames(TEST_HOST_ID, TEST_PREEXISTING_CONTAINER_ID,
+                "TestName");
+
+        // the first run is a full data collection which discovers the container
+        startAndWaitHostContainerListDataCollection();
+        ContainerState discovered = waitForContainerWithId(TEST_PREEXISTING_CONTAINER_ID);
+
+        // the state is updated since the last run, but the container hasn't changed on the host
+        ContainerState patch = new ContainerState();
+        patch.powerState = PowerState.RUNNING;
+        doPatch(patch, discovered.documentSelfLink);
+
+        // the second run is incremental
+        startAndWaitHostContainerListDataCollection();
+
+        ContainerState container = getDocument(ContainerState.class,
+                discovered.documentSelfLink);
+        assertEquals(PowerState.RUNNING, container.powerState);
+    }
+
+    @Test
+    public void testResetFingerprintForcesFullDataCollection() throws Throwable {
+        MockDockerAdapterService.addContainerId(TEST_HOST_ID, TEST_PREEXISTING_CONTAINER_ID,
+                TEST_PREEXISTING_CONTAINER_ID);
+        MockDockerAdapterService.addContainerNames(TEST_HOST_ID, TEST_PREEXISTING_CONTAINER_ID,
+                "TestName");
+
+        startAndWaitHostContainerListDataCollection();
+        ContainerState discovered = waitForContainerWithId(TEST_PREEXISTING_CONTAINER_ID);
+
+        // an unchanged container is discovered again only by a full data collection
+        doDelete(UriUtils.buildUri(host, discovered.documentSelfLink), false);
+        ContainerListCallback reset = new ContainerListCallback();
+        reset.containerHostLink = COMPUTE_HOST_LINK;
+        reset.resetFingerprintForHost = true;
+        host.testStart(1);
+        host.sendRequest(Operation
+                .createPatch(host, HostContainerListDataCollection
+                        .DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK)
+                .setBody(reset)
+                .setReferer(host.getUri())
+                .setCompletion(host.getCompletion()));
+        host.testWait();
+
+        startAndWaitHostContainerListDataCollection();
+        waitForContainerWithId(TEST_PREEXISTING_CONTAINER_ID);
+    }
+
+    private ContainerState waitForContainerWithId(String id) throws Throwable {
+        ContainerState[] result = new ContainerState[1];
+        waitFor(() -> {
+            QueryTask queryTask = QueryUtil.buildPropertyQuery(ContainerState.class,
+                    ContainerState.FIELD_NAME_ID, id);
+            QueryUtil.addExpandOption(queryTask);
+            host.testStart(1);
+            new ServiceDocumentQuery<>(host, ContainerState.class).query(queryTask, (r) -> {
+                if (r.hasException()) {
+                    host.failIteration(r.getException());
+                } else if (r.hasResult()) {
+                    result[0] = r.getResult();
+                } else {
+                    host.completeIteration();
+                }
+            });
+            host.testWait();
+            return result[0] != null;
+        });
+        return result[0];
+    }
+
     private void startAndWaitHostContainerListDataCollection() throws Throwable {
         host.testStart(1);
         host.sendRequest(Operation
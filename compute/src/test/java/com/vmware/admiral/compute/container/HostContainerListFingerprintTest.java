@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerListCallback;
+
+public class HostContainerListFingerprintTest {
+
+    @Test
+    public void testMatchingFingerprints() {
+        ContainerListCallback callback = createCallback();
+        HostContainerListFingerprint first = HostContainerListFingerprint.create(callback, 1);
+        HostContainerListFingerprint second = HostContainerListFingerprint.create(
+                createCallback(), 2);
+
+        assertTrue(second.matches(first));
+        assertTrue(second.getAddedOrChanged(first).isEmpty());
+        assertTrue(second.getRemoved(first).isEmpty());
+        assertEquals(2, second.getCreatedTimeMicros());
+    }
+
+    @Test
+    public void testAddedChangedAndRemovedContainers() {
+        HostContainerListFingerprint previous = HostContainerListFingerprint.create(
+                createCallback(), 1);
+
+        ContainerListCallback callback = createCallback();
+        callback.containerIdsAndState.put("id1", "exited");
+        callback.containerIdsAndNames.remove("id2");
+        callback.addIdAndNames("id3", new String[] { "/name3" });
+        HostContainerListFingerprint current = HostContainerListFingerprint.create(callback, 2);
+
+        assertFalse(current.matches(previous));
+        Set<String> expectedChanged = new HashSet<>();
+        expectedChanged.add("id1");
+        expectedChanged.add("id3");
+        assertEquals(expectedChanged, current.getAddedOrChanged(previous));
+        assertEquals(Collections.singleton("id2"), current.getRemoved(previous));
+        assertTrue(current.contains("id3"));
+        assertFalse(current.contains("id2"));
+    }
+
+    private static ContainerListCallback createCallback() {
+        ContainerListCallback callback = new ContainerListCallback();
+        callback.containerHostLink = "/resources/compute/host";
+        callback.addIdAndNames("id1", new String[] { "/name1" });
+        callback.addIdAndNames("id2", new String[] { "/name2", "/alias2" });
+        callback.containerIdsAndImage.put("id1", "image1");
+        callback.containerIdsAndImage.put("id2", "image2");
+        callback.containerIdsAndState.put("id1", "running");
+        callback.containerIdsAndState.put("id2", "running");
+        return callback;
+    }
+}
@@ -15,6 +15,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -225,6 +226,86 @@ public class HostPortProfileServiceTest extends ComputeBaseTest {
         assertTrue(result.reservedPorts.containsValue(allocateRequest.containerLink));
     }
 
+    @Test
+    public void testPatchBatchAllocate() throws Throwable {
+        HostPortProfileService.HostPortProfileState profile = createHostPortProfile();
+        profile.startPort = 20000;
+        profile = doPost(profile, HostPortProfileService.FACTORY_LINK);
+
+        HostPortProfileService.HostPortProfileReservationRequest firstRequest =
+                new HostPortProfileService.HostPortProfileReservationRequest();
+        firstRequest.containerLink = UUID.randomUUID().toString();
+        firstRequest.mode = HostPortProfileService.HostPortProfileReservationRequestMode.ALLOCATE;
+        firstRequest.additionalHostPortCount = 2;
+        firstRequest.specificHostPorts = new HashSet<>();
+        firstRequest.specificHostPorts.add(new Long(20001));
+
+        HostPortProfileService.HostPortProfileReservationRequest secondRequest =
+                new HostPortProfileService.HostPortProfileReservationRequest();
+        secondRequest.containerLink = UUID.randomUUID().toString();
+        secondRequest.mode = HostPortProfileService.HostPortProfileReservationRequestMode.ALLOCATE;
+        secondRequest.additionalHostPortCount = 1;
+
+        HostPortProfileService.HostPortProfileReservationRequest batchRequest =
+                new HostPortProfileService.HostPortProfileReservationRequest();
+        batchRequest.mode = HostPortProfileService.HostPortProfileReservationRequestMode.BATCH;
+        batchRequest.reservations = Arrays.asList(firstRequest, secondRequest);
+
+        HostPortProfileService.HostPortProfileState result = patch(profile, batchRequest, false);
+        assertEquals(4, result.reservedPorts.size());
+        assertEquals(firstRequest.containerLink, result.reservedPorts.get(new Long(20000)));
+        assertEquals(firstRequest.containerLink, result.reservedPorts.get(new Long(20001)));
+        assertEquals(firstRequest.containerLink, result.reservedPorts.get(new Long(20002)));
+        assertEquals(secondRequest.containerLink, result.reservedPorts.get(new Long(20003)));
+
+        // released ports are allocated again
+        HostPortProfileService.HostPortProfileReservationRequest releaseRequest =
+                new HostPortProfileService.HostPortProfileReservationRequest();
+        releaseRequest.containerLink = firstRequest.containerLink;
+        releaseRequest.mode = HostPortProfileService.HostPortProfileReservationRequestMode.RELEASE;
+        patch(profile, releaseRequest, false);
+
+        result = patch(profile, secondRequest, false);
+        assertEquals(2, result.reservedPorts.size());
+        assertEquals(secondRequest.containerLink, result.reservedPorts.get(new Long(20000)));
+        assertEquals(secondRequest.containerLink, result.reservedPorts.get(new Long(20003)));
+    }
+
+    @Test
+    public void testPatchBatchNoAvailablePorts() throws Throwable {
+        HostPortProfileService.HostPortProfileState profile = createHostPortProfile();
+        profile.startPort = 20000;
+        profile.endPort = 20002;
+        HostPortProfileService.HostPortProfileState result =
+                doPost(profile, HostPortProfileService.FACTORY_LINK);
+
+        HostPortProfileService.HostPortProfileReservationRequest firstRequest =
+                new HostPortProfileService.HostPortProfileReservationRequest();
+        firstRequest.containerLink = UUID.randomUUID().toString();
+        firstRequest.mode = HostPortProfileService.HostPortProfileReservationRequestMode.ALLOCATE;
+        firstRequest.additionalHostPortCount = 2;
+
+        HostPortProfileService.HostPortProfileReservationRequest secondRequest =
+                new HostPortProfileService.HostPortProfileReservationRequest();
+        secondRequest.containerLink = UUID.randomUUID().toString();
+        secondRequest.mode = HostPortProfileService.HostPortProfileReservationRequestMode.ALLOCATE;
+        secondRequest.additionalHostPortCount = 1;
+
+        HostPortProfileService.HostPortProfileReservationRequest batchRequest =
+                new HostPortProfileService.HostPortProfileReservationRequest();
+        batchRequest.mode = HostPortProfileService.HostPortProfileReservationRequestMode.BATCH;
+        batchRequest.reservations = Arrays.asList(firstRequest, secondRequest);
+
+        validateLocalizableException(() -> {
+            patch(result, batchRequest, true);
+        }, "There are no available ports left");
+
+        // none of the requests of the failed batch is applied
+        HostPortProfileService.HostPortProfileState profileState = getDocument(
+                HostPortProfileService.HostPortProfileState.class, result.documentSelfLink);
+        assertTrue(profileState.reservedPorts.isEmpty());
+    }
+
     private HostPortProfileService.HostPortProfileState createHostPortProfile() {
         HostPortProfileService.HostPortProfileState profile =
                 new HostPortProfileService.HostPortProfileState();
@@ -17,7 +17,9 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
@@ -32,6 +34,7 @@ import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.common.test.TestContext;
 import com.vmware.xenon.services.common.QueryTask;
 import com.vmware.xenon.services.common.QueryTask.Query;
 import com.vmware.xenon.services.common.QueryTask.QuerySpecification;
@@ -308,6 +311,79 @@ public class ServiceDocumentQueryTest extends ComputeBaseTest {
         });
     }
 
+    @Test
+    public void testStreamInPages() throws Throwable {
+        int count = 5;
+        for (int i = 0; i < count; i++) {
+            ContainerDescription desc = new ContainerDescription();
+            desc.name = "stream-desc-" + i;
+            desc.image = image1;
+            doPost(desc, ContainerDescriptionService.FACTORY_LINK);
+        }
+
+        QueryTask qt = QueryUtil.buildPropertyQuery(ContainerDescription.class,
+                ContainerDescription.FIELD_NAME_IMAGE, image1);
+        QueryUtil.addSelectFieldsOption(qt, ContainerDescription.FIELD_NAME_NAME);
+
+        List<Integer> pageSizes = new ArrayList<>();
+        TestContext ctx = testCreate(1);
+        query.stream(qt, 2, (page) -> {
+            if (page.hasException()) {
+                ctx.fail(page.getException());
+                return;
+            }
+            pageSizes.add(page.getDocuments().size());
+            descs.addAll(page.getDocuments());
+            if (page.hasNextPage()) {
+                page.requestNextPage();
+            } else {
+                ctx.complete();
+            }
+        });
+        ctx.await();
+
+        assertEquals(Arrays.asList(2, 2, 1), pageSizes);
+        assertEquals(count, descs.size());
+        for (ContainerDescription desc : descs) {
+            assertNotNull(desc.documentSelfLink);
+            assertTrue(desc.name.startsWith("stream-desc-"));
+            // only the selected fields are retrieved
+            assertNull(desc.image);
+        }
+    }
+
+    @Test
+    public void testStreamWithoutDemand() throws Throwable {
+        for (int i = 0; i < 3; i++) {
+            ContainerDescription desc = new ContainerDescription();
+            desc.image = image2;
+            doPost(desc, ContainerDescriptionService.FACTORY_LINK);
+        }
+
+        QueryTask qt = QueryUtil.buildPropertyQuery(ContainerDescription.class,
+                ContainerDescription.FIELD_NAME_IMAGE, image2);
+
+        AtomicInteger pageCount = new AtomicInteger();
+        List<String> links = new ArrayList<>();
+        TestContext ctx = testCreate(1);
+        query.stream(qt, 1, (page) -> {
+            if (page.hasException()) {
+                ctx.fail(page.getException());
+                return;
+            }
+            pageCount.incrementAndGet();
+            links.addAll(page.getDocumentLinks());
+            // the next page is not requested
+            ctx.complete();
+        });
+        ctx.await();
+
+        // no other pages are retrieved without demand
+        Thread.sleep(500);
+        assertEquals(1, pageCount.get());
+        assertEquals(1, links.size());
+    }
+
     private List<ContainerDescription> queryDocument(String documentSelfLink) throws Throwable {
         host.testStart(1);
         query.queryDocument(documentSelfLink, handler(true));
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container.maintenance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.vmware.admiral.adapter.common.ContainerOperationType;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.compute.container.maintenance.ContainerMaintenanceScheduler.MaintenanceCounters;
+import com.vmware.admiral.compute.container.maintenance.ContainerMaintenanceScheduler.MaintenanceRecord;
+import com.vmware.xenon.common.Utils;
+
+public class ContainerMaintenanceSchedulerTest {
+
+    @Test
+    public void testInspectBeforeStats() {
+        long now = Utils.getSystemNowMicrosUtc();
+        ContainerState container = createContainer("/c1", "/hosts/h1", now);
+        MaintenanceRecord record = new MaintenanceRecord();
+        MaintenanceCounters counters = new MaintenanceCounters();
+
+        assertEquals(ContainerOperationType.INSPECT,
+                ContainerMaintenanceScheduler.selectCheck(container, record, now, counters));
+        // recently updated containers have their stats collected on every visit
+        assertEquals(ContainerOperationType.STATS,
+                ContainerMaintenanceScheduler.selectCheck(container, record, now + 1, counters));
+
+        assertEquals(1, counters.scheduledInspects.get());
+        assertEquals(1, counters.scheduledStats.get());
+        assertEquals(0, counters.late.get());
+    }
+
+    @Test
+    public void testSlowDownForOldContainers() {
+        long now = Utils.getSystemNowMicrosUtc();
+        ContainerState container = createContainer("/c1", "/hosts/h1",
+                now - TimeUnit.DAYS.toMicros(1));
+        MaintenanceRecord record = new MaintenanceRecord();
+        record.lastInspectMicros = now;
+        record.lastStatsMicros = now;
+        MaintenanceCounters counters = new MaintenanceCounters();
+
+        assertNull(ContainerMaintenanceScheduler.selectCheck(container, record,
+                now + ContainerMaintenance.MAINTENANCE_INTERVAL_MICROS, counters));
+        assertEquals(1, counters.skipped.get());
+
+        long nextVisit = now + ContainerMaintenance.MAINTENANCE_PERIOD_MICROS;
+        assertEquals(ContainerOperationType.STATS,
+                ContainerMaintenanceScheduler.selectCheck(container, record, nextVisit,
+                        counters));
+    }
+
+    @Test
+    public void testLateAndSkippedChecks() {
+        long now = Utils.getSystemNowMicrosUtc();
+        ContainerState container = createContainer("/c1", "/hosts/h1",
+                now - TimeUnit.DAYS.toMicros(1));
+        MaintenanceRecord record = new MaintenanceRecord();
+        record.lastInspectMicros = now - TimeUnit.DAYS.toMicros(1);
+        MaintenanceCounters counters = new MaintenanceCounters();
+
+        assertEquals(ContainerOperationType.INSPECT,
+                ContainerMaintenanceScheduler.selectCheck(container, record, now, counters));
+        assertEquals(1, counters.late.get());
+
+        ContainerState provisioning = createContainer("/c2", "/hosts/h1", now);
+        provisioning.powerState = PowerState.PROVISIONING;
+        assertNull(ContainerMaintenanceScheduler.selectCheck(provisioning,
+                new MaintenanceRecord(), now, counters));
+        assertEquals(1, counters.skipped.get());
+    }
+
+    @Test
+    public void testGroupByHost() {
+        long now = Utils.getSystemNowMicrosUtc();
+        List<ContainerState> containers = Arrays.asList(
+                createContainer("/c1", "/hosts/h1", now),
+                createContainer("/c2", "/hosts/h2", now),
+                createContainer("/c3", "/hosts/h1", now),
+                createContainer("/c4", null, now));
+
+        Map<String, List<ContainerState>> byHost = ContainerMaintenanceScheduler
+                .groupByHost(containers);
+        assertEquals(2, byHost.size());
+        assertEquals(2, byHost.get("/hosts/h1").size());
+        assertEquals(1, byHost.get("/hosts/h2").size());
+
+        int window = ContainerMaintenanceScheduler.getWindow("/hosts/h1");
+        assertTrue(window >= 0 && window < ContainerMaintenanceScheduler.MAINTENANCE_WINDOWS);
+        assertEquals(window, ContainerMaintenanceScheduler.getWindow("/hosts/h1"));
+    }
+
+    private static ContainerState createContainer(String link, String parentLink,
+            long updateTimeMicros) {
+        ContainerState container = new ContainerState();
+        container.documentSelfLink = link;
+        container.parentLink = parentLink;
+        container.powerState = PowerState.RUNNING;
+        container.adapterManagementReference = URI.create("http://localhost/adapter");
+        container.documentUpdateTimeMicros = updateTimeMicros;
+        return container;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container.maintenance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ContainerStatsEvaluatorTest {
+    private static final String STATS_JSON = "{"
+            + "\"read\":\"2017-03-01T10:15:30.123456789Z\","
+            + "\"pids_stats\":{\"current\":3},"
+            + "\"networks\":{"
+            + "\"eth0\":{\"rx_bytes\":100,\"rx_packets\":1,\"tx_bytes\":200,\"tx_packets\":2},"
+            + "\"eth1\":{\"rx_bytes\":10,\"tx_bytes\":20,\"rx_dropped\":null}},"
+            + "\"memory_stats\":{\"stats\":{\"cache\":1,\"rss\":2},\"usage\":300,"
+            + "\"limit\":1000},"
+            + "\"cpu_stats\":{\"cpu_usage\":{\"total_usage\":900,\"percpu_usage\":[450,450],"
+            + "\"usage_in_kernelmode\":10},\"system_cpu_usage\":2000,"
+            + "\"throttling_data\":{\"periods\":0}},"
+            + "\"precpu_stats\":{\"cpu_usage\":{\"total_usage\":400,\"percpu_usage\":[200,200]},"
+            + "\"system_cpu_usage\":1000}}";
+
+    @Test
+    public void testCalculateStatsValues() {
+        ContainerStats stats = ContainerStatsEvaluator.calculateStatsValues(STATS_JSON);
+
+        // (900 - 400) / (2000 - 1000) * 2 CPUs
+        assertEquals(100d, stats.cpuUsage, 0);
+        assertEquals(110, stats.networkIn);
+        assertEquals(220, stats.networkOut);
+        assertEquals(300, stats.memUsage);
+        assertEquals(1000, stats.memLimit);
+        assertFalse(stats.containerStopped);
+    }
+
+    @Test
+    public void testCalculateStatsValuesOfStoppedContainer() {
+        ContainerStats stats = ContainerStatsEvaluator.calculateStatsValues(
+                "{\"read\":\"0001-01-01T00:00:00Z\",\"cpu_stats\":{\"cpu_usage\":{"
+                        + "\"total_usage\":0}},\"precpu_stats\":null,\"networks\":null}");
+
+        assertTrue(stats.containerStopped);
+        assertEquals(0d, stats.cpuUsage, 0);
+        assertEquals(0, stats.networkIn);
+        assertEquals(0, stats.memLimit);
+    }
+
+    @Test
+    public void testCalculateStatsValuesOfInvalidJson() {
+        ContainerStats stats = ContainerStatsEvaluator.calculateStatsValues(
+                "{\"memory_stats\":{\"usage\":300");
+        assertEquals(0, stats.memUsage);
+        assertNull(stats.containerStopped);
+
+        stats = ContainerStatsEvaluator.calculateStatsValues("[]");
+        assertNull(stats.containerStopped);
+
+        // the values of a previous parsing are not reused
+        ContainerStatsEvaluator.calculateStatsValues(STATS_JSON);
+        stats = ContainerStatsEvaluator.calculateStatsValues("{}");
+        assertEquals(0d, stats.cpuUsage, 0);
+        assertEquals(0, stats.networkOut);
+        assertNull(stats.containerStopped);
+    }
+}
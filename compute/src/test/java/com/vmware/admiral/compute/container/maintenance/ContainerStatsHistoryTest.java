@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container.maintenance;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory.Resolution;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory.SmoothedLoad;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory.StatsSamples;
+
+public class ContainerStatsHistoryTest {
+    private static final String CONTAINER_LINK = "/resources/containers/container1";
+    private static final long SECOND_MICROS = TimeUnit.SECONDS.toMicros(1);
+    private static final long MINUTE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRawSamplesAreBounded() {
+        ContainerStatsHistory history = new ContainerStatsHistory(10, null, 0);
+        int count = Resolution.RAW.capacity + 5;
+        for (int i = 0; i < count; i++) {
+            history.record(CONTAINER_LINK, stats(i, i), i * SECOND_MICROS);
+        }
+
+        StatsSamples samples = history.getSamples(CONTAINER_LINK, Resolution.RAW);
+        assertEquals(Resolution.RAW.capacity, samples.timeMicros.length);
+        // the oldest samples are overwritten
+        assertEquals(5 * SECOND_MICROS, samples.timeMicros[0]);
+        assertEquals(count - 1, samples.cpuUsage[samples.cpuUsage.length - 1], 0);
+    }
+
+    @Test
+    public void testRollups() {
+        ContainerStatsHistory history = new ContainerStatsHistory(10, null, 0);
+        // two samples in the first minute and one in the second
+        history.record(CONTAINER_LINK, stats(10, 100), 0);
+        history.record(CONTAINER_LINK, stats(20, 300), 30 * SECOND_MICROS);
+        history.record(CONTAINER_LINK, stats(40, 400), MINUTE_MICROS);
+
+        StatsSamples samples = history.getSamples(CONTAINER_LINK, Resolution.MINUTE);
+        assertArrayEquals(new long[] { 0, MINUTE_MICROS }, samples.timeMicros);
+        assertArrayEquals(new double[] { 15, 40 }, samples.cpuUsage, 0);
+        assertArrayEquals(new long[] { 200, 400 }, samples.memUsage);
+        // the network traffic is a counter, the latest value is kept
+        assertArrayEquals(new long[] { 300, 400 }, samples.networkIn);
+
+        samples = history.getSamples(CONTAINER_LINK, Resolution.HOUR);
+        assertArrayEquals(new long[] { 0 }, samples.timeMicros);
+        assertArrayEquals(new double[] { 70d / 3 }, samples.cpuUsage, 0.001);
+        assertArrayEquals(new long[] { 400 }, samples.networkOut);
+    }
+
+    @Test
+    public void testSmoothedLoad() {
+        ContainerStatsHistory history = new ContainerStatsHistory(10, null, 0);
+        assertNull(history.getSmoothedLoad(CONTAINER_LINK));
+
+        // only the latest minutes are averaged
+        int minutes = ContainerStatsHistory.SMOOTHING_MINUTES + 2;
+        for (int i = 0; i < minutes; i++) {
+            history.record(CONTAINER_LINK, stats(i < 2 ? 1000 : 10, 100), i * MINUTE_MICROS);
+        }
+        history.record(CONTAINER_LINK, stats(30, 300), (minutes - 1) * MINUTE_MICROS);
+
+        SmoothedLoad load = history.getSmoothedLoad(CONTAINER_LINK);
+        int count = ContainerStatsHistory.SMOOTHING_MINUTES;
+        assertEquals((10d * (count - 1) + 20) / count, load.cpuUsage, 0.001);
+        assertEquals((100 * (count - 1) + 200) / count, load.memUsage);
+    }
+
+    @Test
+    public void testContainersAreBounded() {
+        ContainerStatsHistory history = new ContainerStatsHistory(2, null, 0);
+        history.record("container1", stats(1, 1), 0);
+        history.record("container2", stats(2, 2), 0);
+        history.record("container1", stats(1, 1), SECOND_MICROS);
+        history.record("container3", stats(3, 3), 0);
+
+        assertEquals(2, history.size());
+        // the least recently updated container is evicted
+        assertEquals(0, history.getSamples("container2", Resolution.RAW).timeMicros.length);
+        assertEquals(2, history.getSamples("container1", Resolution.RAW).timeMicros.length);
+
+        history.remove("container1");
+        assertEquals(1, history.size());
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        Path spillFile = folder.getRoot().toPath().resolve(ContainerStatsHistory.SPILL_FILE_NAME);
+        ContainerStatsHistory history = new ContainerStatsHistory(10, spillFile, 1024 * 1024);
+        for (int i = 0; i < 3; i++) {
+            history.record(CONTAINER_LINK, stats(i, i), i * MINUTE_MICROS);
+        }
+
+        // the closed minutes are written
+        List<String> lines = Files.readAllLines(spillFile, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals(CONTAINER_LINK + ",0,0.0,0,0,0", lines.get(0));
+        assertEquals(CONTAINER_LINK + "," + MINUTE_MICROS + ",1.0,1,1,1", lines.get(1));
+
+        // the file is rotated when it reaches its maximum size
+        history = new ContainerStatsHistory(10, spillFile, 1);
+        history.record(CONTAINER_LINK, stats(0, 0), 0);
+        history.record(CONTAINER_LINK, stats(1, 1), MINUTE_MICROS);
+        assertTrue(new File(spillFile + ".1").exists());
+    }
+
+    @Test
+    public void testClosedHistoryIsNotSpilled() throws Exception {
+        Path spillFile = folder.getRoot().toPath().resolve(ContainerStatsHistory.SPILL_FILE_NAME);
+        ContainerStatsHistory history = new ContainerStatsHistory(10, spillFile, 1024 * 1024);
+        history.record(CONTAINER_LINK, stats(0, 0), 0);
+        history.record(CONTAINER_LINK, stats(1, 1), MINUTE_MICROS);
+        history.close();
+
+        history.record(CONTAINER_LINK, stats(2, 2), 2 * MINUTE_MICROS);
+        assertEquals(1, Files.readAllLines(spillFile, StandardCharsets.UTF_8).size());
+    }
+
+    private static ContainerStats stats(double cpuUsage, long value) {
+        ContainerStats stats = new ContainerStats();
+        stats.cpuUsage = cpuUsage;
+        stats.memUsage = value;
+        stats.networkIn = value;
+        stats.networkOut = value;
+        return stats;
+    }
+}
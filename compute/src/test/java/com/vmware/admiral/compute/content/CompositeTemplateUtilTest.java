@@ -24,6 +24,7 @@ import static com.vmware.admiral.compute.content.CompositeTemplateUtil.deseriali
 import static com.vmware.admiral.compute.content.CompositeTemplateUtil.fromCompositeTemplateToDockerCompose;
 import static com.vmware.admiral.compute.content.CompositeTemplateUtil.fromDockerComposeToCompositeTemplate;
 import static com.vmware.admiral.compute.content.CompositeTemplateUtil.getYamlType;
+import static com.vmware.admiral.compute.content.CompositeTemplateUtil.parseYaml;
 import static com.vmware.admiral.compute.content.CompositeTemplateUtil.serializeCompositeTemplate;
 import static com.vmware.admiral.compute.content.CompositeTemplateUtil.serializeDockerCompose;
 
@@ -43,6 +44,7 @@ import com.vmware.admiral.compute.container.CompositeDescriptionService.Composit
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.HealthChecker.HealthConfig;
 import com.vmware.admiral.compute.container.LogConfig;
+import com.vmware.admiral.compute.content.CompositeTemplateUtil.ParsedYaml;
 import com.vmware.admiral.compute.content.CompositeTemplateUtil.YamlType;
 import com.vmware.admiral.compute.content.compose.DockerCompose;
 import com.vmware.admiral.compute.network.ComputeNetworkDescriptionService.ComputeNetworkDescription;
@@ -833,6 +835,23 @@ public class CompositeTemplateUtilTest {
         }
     }
 
+    @Test
+    public void testDeserializeParsedYaml() throws IOException {
+        String compositeTemplateYaml = getContent("composite.simple.yaml");
+        ParsedYaml parsedTemplate = parseYaml(compositeTemplateYaml);
+        assertEquals(YamlType.COMPOSITE_TEMPLATE, parsedTemplate.type);
+        CompositeTemplate template = deserializeCompositeTemplate(compositeTemplateYaml);
+        assertEquals(serializeCompositeTemplate(template),
+                serializeCompositeTemplate(deserializeCompositeTemplate(parsedTemplate.document)));
+
+        String dockerComposeYaml = getContent("docker.simple.network.yaml");
+        ParsedYaml parsedCompose = parseYaml(dockerComposeYaml);
+        assertEquals(YamlType.DOCKER_COMPOSE, parsedCompose.type);
+        DockerCompose compose = deserializeDockerCompose(dockerComposeYaml);
+        assertEquals(serializeDockerCompose(compose),
+                serializeDockerCompose(deserializeDockerCompose(parsedCompose.document)));
+    }
+
     /**
      * The test should verify the case where we try to get the YAML type of
      * multi yaml docker compose or composite template.
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.DeploymentProfileConfig;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.compute.container.ComputeBaseTest;
+import com.vmware.admiral.compute.content.kubernetes.KubernetesUtil;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.KubernetesEntityDataCollectionState;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityWatchService.EntityWatchCallback;
+import com.vmware.admiral.compute.kubernetes.entities.common.BaseKubernetesObject;
+import com.vmware.admiral.compute.kubernetes.entities.common.ObjectMeta;
+import com.vmware.admiral.compute.kubernetes.service.BaseKubernetesState;
+import com.vmware.admiral.compute.kubernetes.service.PodService;
+import com.vmware.admiral.compute.kubernetes.service.PodService.PodState;
+import com.vmware.admiral.service.test.MockKubernetesAdapterService;
+import com.vmware.admiral.service.test.MockKubernetesHostAdapterService;
+import com.vmware.photon.controller.model.resources.ComputeDescriptionService;
+import com.vmware.photon.controller.model.resources.ComputeDescriptionService.ComputeDescription;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.ServiceStats;
+import com.vmware.xenon.common.ServiceStats.ServiceStat;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.common.test.TestContext;
+import com.vmware.xenon.services.common.QueryTask;
+
+public class KubernetesEntityWatchServiceTest extends ComputeBaseTest {
+    private static final String COMPUTE_HOST_ID = "k8s-watch-host";
+    private static final String COMPUTE_HOST_LINK = UriUtils.buildUriPath(
+            ComputeService.FACTORY_LINK, COMPUTE_HOST_ID);
+
+    @Before
+    public void setUp() throws Throwable {
+        DeploymentProfileConfig.getInstance().setTest(true);
+        host.startService(Operation.createPost(UriUtils.buildUri(host,
+                MockKubernetesAdapterService.class)), new MockKubernetesAdapterService());
+        host.startService(Operation.createPost(UriUtils.buildUri(host,
+                MockKubernetesHostAdapterService.class)), new MockKubernetesHostAdapterService());
+        host.startService(Operation.createPost(UriUtils.buildUri(host,
+                KubernetesEntityWatchService.class)), new KubernetesEntityWatchService());
+
+        waitForServiceAvailability(
+                ComputeService.FACTORY_LINK,
+                ComputeDescriptionService.FACTORY_LINK,
+                KubernetesEntityDataCollection.DEFAULT_KUBERNETES_ENTITY_DATA_COLLECTION_LINK,
+                PodService.FACTORY_LINK,
+                MockKubernetesAdapterService.SELF_LINK,
+                MockKubernetesHostAdapterService.SELF_LINK,
+                KubernetesEntityWatchService.SELF_LINK);
+
+        ComputeDescription computeDesc = new ComputeDescription();
+        computeDesc = doPost(computeDesc, ComputeDescriptionService.FACTORY_LINK);
+
+        ComputeState cs = new ComputeState();
+        cs.id = COMPUTE_HOST_ID;
+        cs.documentSelfLink = COMPUTE_HOST_ID;
+        cs.descriptionLink = computeDesc.documentSelfLink;
+        cs.customProperties = new HashMap<>();
+        doPost(cs, ComputeService.FACTORY_LINK);
+    }
+
+    @After
+    public void tearDown() {
+        MockKubernetesAdapterService.clearKubernetesEntities();
+    }
+
+    @Test
+    public void testWatchAppliesEntityEvents() throws Throwable {
+        MockKubernetesAdapterService.addEntity(makePod("pod-1", "first", "/pods/first"));
+
+        // the first watch lists the entities
+        watch();
+        waitForPods("pod-1");
+
+        MockKubernetesAdapterService.addEntity(makePod("pod-2", "second", "/pods/second"));
+        MockKubernetesAdapterService.modifyEntity(makePod("pod-1", "first", "/pods/modified"));
+        watch();
+        waitForPods("pod-1", "pod-2");
+        waitFor(() -> getPods().stream().anyMatch(
+                p -> "pod-1".equals(p.id) && "/pods/modified".equals(p.kubernetesSelfLink)));
+
+        MockKubernetesAdapterService.removeEntity("pod-1");
+        watch();
+        waitForPods("pod-2");
+
+        assertEquals(1, getStatValue(KubernetesEntityWatchService.STAT_NAME_RELIST_COUNT), 0);
+        assertEquals(3, getStatValue(KubernetesEntityWatchService.STAT_NAME_EVENTS_COUNT), 0);
+    }
+
+    @Test
+    public void testExpiredWatchListsEntitiesAgain() throws Throwable {
+        MockKubernetesAdapterService.addEntity(makePod("pod-1", "first", "/pods/first"));
+        watch();
+        waitForPods("pod-1");
+
+        MockKubernetesAdapterService.expireWatch();
+        MockKubernetesAdapterService.addEntity(makePod("pod-2", "second", "/pods/second"));
+        watch();
+
+        // the entities are listed again instead of watched
+        waitForPods("pod-1", "pod-2");
+        assertEquals(2, getStatValue(KubernetesEntityWatchService.STAT_NAME_RELIST_COUNT), 0);
+        assertEquals(0, getStatValue(KubernetesEntityWatchService.STAT_NAME_EVENTS_COUNT), 0);
+    }
+
+    @Test
+    public void testDroppedListKeepsResourceVersions() throws Throwable {
+        MockKubernetesAdapterService.addEntity(makePod("pod-1", "first", "/pods/first"));
+        watch();
+        waitForPods("pod-1");
+
+        // the list is dropped while a data collection of the host is in progress
+        lockDataCollection(COMPUTE_HOST_LINK);
+        MockKubernetesAdapterService.expireWatch();
+        MockKubernetesAdapterService.addEntity(makePod("pod-2", "second", "/pods/second"));
+        watch();
+        waitFor(() -> getStatValue(KubernetesEntityWatchService.STAT_NAME_DROPPED_LIST_COUNT)
+                == 1);
+        waitForPods("pod-1");
+
+        // the watch continues from the resource version before the dropped list, so the pod
+        // added meanwhile is not skipped
+        lockDataCollection();
+        waitFor(() -> {
+            watch();
+            return getPods().stream().anyMatch(p -> "pod-2".equals(p.id));
+        });
+        waitForPods("pod-1", "pod-2");
+        assertEquals(2, getStatValue(KubernetesEntityWatchService.STAT_NAME_RELIST_COUNT), 0);
+        assertEquals(1, getStatValue(KubernetesEntityWatchService.STAT_NAME_EVENTS_COUNT), 0);
+    }
+
+    private void lockDataCollection(String... computeHostLinks) throws Throwable {
+        // wait for the data collections started by the watch to unlock the hosts
+        waitFor(() -> getDataCollectionState().computeHostLinks.isEmpty()
+                || computeHostLinks.length == 0);
+        KubernetesEntityDataCollectionState state = getDataCollectionState();
+        state.computeHostLinks = new HashSet<>(Arrays.asList(computeHostLinks));
+        doPut(state);
+    }
+
+    private KubernetesEntityDataCollectionState getDataCollectionState() throws Throwable {
+        return getDocument(KubernetesEntityDataCollectionState.class,
+                KubernetesEntityDataCollection.DEFAULT_KUBERNETES_ENTITY_DATA_COLLECTION_LINK);
+    }
+
+    private void watch() throws Throwable {
+        EntityWatchCallback body = new EntityWatchCallback();
+        body.computeHostLink = COMPUTE_HOST_LINK;
+        host.testStart(1);
+        host.sendRequest(Operation
+                .createPatch(UriUtils.buildUri(host, KubernetesEntityWatchService.SELF_LINK))
+                .setBody(body)
+                .setReferer(host.getUri())
+                .setCompletion(host.getCompletion()));
+        host.testWait();
+    }
+
+    private void waitForPods(String... ids) throws Throwable {
+        List<String> expected = Arrays.asList(ids);
+        waitFor(() -> {
+            List<String> found = new ArrayList<>();
+            getPods().forEach(p -> found.add(p.id));
+            return found.size() == expected.size() && found.containsAll(expected);
+        });
+    }
+
+    private List<PodState> getPods() throws Throwable {
+        List<PodState> entitiesFound = new ArrayList<>();
+        TestContext ctx = testCreate(1);
+        QueryTask queryTask = QueryUtil.buildPropertyQuery(PodState.class,
+                BaseKubernetesState.FIELD_NAME_PARENT_LINK, COMPUTE_HOST_LINK);
+        QueryUtil.addExpandOption(queryTask);
+
+        new ServiceDocumentQuery<>(host, PodState.class).query(queryTask, (r) -> {
+            if (r.hasException()) {
+                host.log("Exception while retrieving PodState: "
+                        + (r.getException() instanceof CancellationException
+                                ? r.getException().getMessage()
+                                : Utils.toString(r.getException())));
+                ctx.fail(r.getException());
+            } else if (r.hasResult()) {
+                entitiesFound.add(r.getResult());
+            } else {
+                ctx.complete();
+            }
+        });
+        ctx.await();
+        return entitiesFound;
+    }
+
+    private double getStatValue(String name) throws Throwable {
+        ServiceStats stats = getDocument(ServiceStats.class,
+                KubernetesEntityWatchService.SELF_LINK + ServiceHost.SERVICE_URI_SUFFIX_STATS);
+        ServiceStat stat = stats.entries.get(name);
+        return stat == null ? 0 : stat.latestValue;
+    }
+
+    private PodState makePod(String id, String name, String selfLink) {
+        PodState pod = (PodState) KubernetesUtil.createKubernetesEntityState(
+                KubernetesUtil.POD_TYPE);
+        pod.id = id;
+        pod.name = name;
+        pod.parentLink = COMPUTE_HOST_LINK;
+        ObjectMeta metadata = new ObjectMeta();
+        metadata.name = name;
+        metadata.selfLink = selfLink;
+        metadata.namespace = "test";
+        metadata.uid = id;
+        BaseKubernetesObject object = new BaseKubernetesObject();
+        object.metadata = metadata;
+        object.kind = KubernetesUtil.POD_TYPE;
+        pod.setKubernetesEntityFromJson(Utils.toJson(object));
+        return pod;
+    }
+}
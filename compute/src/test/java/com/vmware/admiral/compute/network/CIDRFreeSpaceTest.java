@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class CIDRFreeSpaceTest {
+
+    @Test
+    public void testAllocateFromSmallestFreeBlock() {
+        CIDRFreeSpace freeSpace = new CIDRFreeSpace("10.0.0.0/16");
+
+        assertEquals("10.0.0.0/24", freeSpace.allocate(24));
+        assertEquals("10.0.1.0/28", freeSpace.allocate(28));
+        assertEquals("10.0.2.0/24", freeSpace.allocate(24));
+        assertEquals("10.0.1.16/28", freeSpace.allocate(28));
+        assertNull(freeSpace.allocate(8));
+    }
+
+    @Test
+    public void testReleasedBlocksAreMerged() {
+        CIDRFreeSpace freeSpace = new CIDRFreeSpace("10.0.0.0/16");
+
+        String first = freeSpace.allocate(28);
+        String second = freeSpace.allocate(28);
+        assertNull(freeSpace.allocate(16));
+
+        freeSpace.release(first);
+        freeSpace.release(second);
+        // releasing twice has no effect
+        freeSpace.release(second);
+
+        assertEquals("10.0.0.0/16", freeSpace.allocate(16));
+        assertNull(freeSpace.allocate(28));
+    }
+
+    @Test
+    public void testReserve() {
+        CIDRFreeSpace freeSpace = new CIDRFreeSpace("10.0.0.0/16");
+        freeSpace.allocate(28);
+
+        // overlaps the allocated block
+        freeSpace.reserve("10.0.0.0/24");
+        // outside of the network
+        freeSpace.reserve("10.1.0.0/24");
+
+        assertEquals("10.0.1.0/24", freeSpace.allocate(24));
+        assertEquals("10.0.2.0/25", freeSpace.allocate(25));
+
+        freeSpace.reserve("10.0.0.0/8");
+        assertNull(freeSpace.allocate(32));
+    }
+}
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import static com.vmware.admiral.compute.network.ComputeNetworkCIDRAllocationService.ComputeNetworkCIDRAllocationRequest.allocationRequest;
+import static com.vmware.admiral.compute.network.ComputeNetworkCIDRAllocationService.ComputeNetworkCIDRAllocationRequest.batchRequest;
 import static com.vmware.admiral.compute.network.ComputeNetworkCIDRAllocationService.ComputeNetworkCIDRAllocationRequest.deallocationRequest;
 
 import java.util.ArrayList;
@@ -394,6 +395,96 @@ public class ComputeNetworkCIDRAllocationServiceTest extends Suite {
             assertEquals("192.168.0.0/24", allocation.allocatedCIDRs.get(subnet.id));
         }
 
+        @Test
+        public void testBatchAllocation() throws Throwable {
+            ComputeNetworkCIDRAllocationState allocation = doPatch(
+                    batchRequest(Arrays.asList(allocationRequest("subnet1", 24),
+                            allocationRequest("subnet2", 28))),
+                    ComputeNetworkCIDRAllocationState.class, cidrAllocationLink);
+
+            assertEquals("192.168.0.0/24", allocation.allocatedCIDRs.get("subnet1"));
+            assertEquals("192.168.1.0/28", allocation.allocatedCIDRs.get("subnet2"));
+
+            // the failed batch is not applied
+            try {
+                doPatch(batchRequest(Arrays.asList(deallocationRequest("subnet1"),
+                        allocationRequest("subnet3", 8))),
+                        ComputeNetworkCIDRAllocationState.class, cidrAllocationLink);
+                fail();
+            } catch (CompletionException ex) {
+                assertTrue(ex.getCause() instanceof IllegalStateException);
+            }
+
+            allocation = doPatch(batchRequest(Arrays.asList(deallocationRequest("subnet1"),
+                    allocationRequest("subnet3", 24))),
+                    ComputeNetworkCIDRAllocationState.class, cidrAllocationLink);
+
+            assertEquals(2, allocation.allocatedCIDRs.size());
+            assertEquals("192.168.0.0/24", allocation.allocatedCIDRs.get("subnet3"));
+        }
+
+        @Test
+        public void testChangedNetworkCIDRIsUsed() throws Throwable {
+            ComputeNetworkCIDRAllocationState allocation = doPatch(
+                    allocationRequest("subnet1", 24), ComputeNetworkCIDRAllocationState.class,
+                    cidrAllocationLink);
+            assertEquals("192.168.0.0/24", allocation.allocatedCIDRs.get("subnet1"));
+
+            NetworkState patch = new NetworkState();
+            patch.subnetCIDR = "10.0.0.0/16";
+            doPatch(patch, networkState.documentSelfLink);
+
+            allocation = doPatch(allocationRequest("subnet2", 24),
+                    ComputeNetworkCIDRAllocationState.class, cidrAllocationLink);
+            assertEquals("10.0.0.0/24", allocation.allocatedCIDRs.get("subnet2"));
+        }
+
+        @Test
+        public void testSubnetsOfOtherEndpointsAreIgnored() throws Throwable {
+            NetworkState network = new NetworkState();
+            network.subnetCIDR = "192.168.0.0/16";
+            network.name = "IsolatedNetwork3";
+            network.instanceAdapterReference = UriUtils.buildUri("/instance-adapter-reference");
+            network.resourcePoolLink = "/dummy-resource-pool-link";
+            network.regionId = "dummy-region-id";
+            network.endpointLink = "/endpoints/endpoint1";
+            network = doPost(network, NetworkService.FACTORY_LINK);
+            String allocationLink = createNetworkCIDRAllocationState(network.documentSelfLink);
+
+            // load the subnets of the network before the subnets are created
+            ComputeNetworkCIDRAllocationState allocation = doPatch(
+                    allocationRequest("subnet1", 24), ComputeNetworkCIDRAllocationState.class,
+                    allocationLink);
+            assertEquals("192.168.0.0/24", allocation.allocatedCIDRs.get("subnet1"));
+
+            createReadySubnet(network.documentSelfLink, "/endpoints/endpoint2",
+                    "192.168.2.0/24");
+            createReadySubnet(network.documentSelfLink, network.endpointLink,
+                    "192.168.1.0/24");
+
+            // wait for the subnet of the network's endpoint to be applied
+            String[] allocatedCIDR = new String[1];
+            waitFor(() -> {
+                allocatedCIDR[0] = doPatch(allocationRequest("subnet2", 24),
+                        ComputeNetworkCIDRAllocationState.class, allocationLink)
+                        .allocatedCIDRs.get("subnet2");
+                return !"192.168.1.0/24".equals(allocatedCIDR[0]);
+            });
+            assertEquals("192.168.2.0/24", allocatedCIDR[0]);
+        }
+
+        private void createReadySubnet(String networkLink, String endpointLink, String cidr)
+                throws Throwable {
+            SubnetState subnet = new SubnetState();
+            subnet.id = UUID.randomUUID().toString();
+            subnet.name = subnet.id;
+            subnet.networkLink = networkLink;
+            subnet.endpointLink = endpointLink;
+            subnet.subnetCIDR = cidr;
+            subnet.lifecycleState = LifecycleState.READY;
+            doPost(subnet, SubnetService.FACTORY_LINK);
+        }
+
         @Test
         public void testExceptionIfNoSpaceForAllocation() throws Throwable {
             SubnetState subnet = new SubnetState();
@@ -37,4 +37,20 @@ public class LogServiceTest extends ComputeBaseTest {
 
         assertEquals(new String(logState.logs), new String(newLogState.logs));
     }
+
+    @Test
+    public void testAppendAndTailLog() throws Throwable {
+        LogServiceState logState = new LogServiceState();
+        logState.logs = "line1\n".getBytes();
+        logState = doPost(logState, LogService.FACTORY_LINK);
+
+        LogServiceState appendState = new LogServiceState();
+        appendState.logs = "line2\n".getBytes();
+        LogServiceState updatedState = doPatch(appendState, logState.documentSelfLink);
+        assertEquals("line1\nline2\n", new String(updatedState.logs));
+
+        LogServiceState tailState = getDocument(LogServiceState.class,
+                logState.documentSelfLink, LogService.QUERY_PARAM_TAIL, "6");
+        assertEquals("line2\n", new String(tailState.logs));
+    }
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.vmware.xenon.common.Utils;
+
+/**
+ * The start of the service configs of the management host, declared as phases which depend on
+ * each other. The phases whose dependencies are started are started in parallel.
+ *
+ * The background phases, i.e. the periodic and event driven services which the node does not need
+ * in order to serve requests, are started separately, once the node is available. The start time
+ * and the duration of each phase are kept for the startup report.
+ */
+class HostStartupPlan {
+
+    /** Starts the services of a phase. */
+    @FunctionalInterface
+    interface PhaseAction {
+        void start() throws Throwable;
+    }
+
+    private static class Phase {
+        final String name;
+        final PhaseAction action;
+        final List<String> dependencies;
+        final boolean background;
+        volatile long startMicros = -1;
+        volatile long durationMicros = -1;
+
+        Phase(String name, PhaseAction action, List<String> dependencies, boolean background) {
+            this.name = name;
+            this.action = action;
+            this.dependencies = dependencies;
+            this.background = background;
+        }
+    }
+
+    private final ManagementHost host;
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final long createdMicros = Utils.getSystemNowMicrosUtc();
+
+    HostStartupPlan(ManagementHost host) {
+        this.host = host;
+    }
+
+    /**
+     * Adds a phase which is started after the given phases.
+     */
+    HostStartupPlan addPhase(String name, PhaseAction action, String... dependencies) {
+        return add(new Phase(name, action, Arrays.asList(dependencies), false));
+    }
+
+    /**
+     * Adds a phase which is started by {@link #startBackground()}, after the given phases.
+     */
+    HostStartupPlan addBackgroundPhase(String name, PhaseAction action, String... dependencies) {
+        return add(new Phase(name, action, Arrays.asList(dependencies), true));
+    }
+
+    private HostStartupPlan add(Phase phase) {
+        if (phases.putIfAbsent(phase.name, phase) != null) {
+            throw new IllegalArgumentException("Duplicate startup phase: " + phase.name);
+        }
+        return this;
+    }
+
+    /**
+     * Starts the phases which are not background phases, on up to the given number of threads,
+     * and returns when all of them are started. The dependencies on phases which are not in the
+     * plan, or which are background phases, are ignored.
+     *
+     * With a single thread the phases are started in the calling thread, in the order they were
+     * added unless a dependency comes later. Otherwise each phase is started with the system
+     * authorization context.
+     */
+    void start(int parallelism) throws Throwable {
+        List<Phase> pending = new ArrayList<>();
+        phases.values().stream().filter(p -> !p.background).forEach(pending::add);
+        Set<String> started = new HashSet<>();
+
+        if (parallelism <= 1) {
+            while (!pending.isEmpty()) {
+                Phase phase = pollReady(pending, started);
+                if (phase == null) {
+                    throw cyclicDependencies(pending);
+                }
+                run(phase);
+                started.add(phase.name);
+            }
+            return;
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, Math.max(pending.size(), 1)),
+                r -> new Thread(r, "host-startup-" + threadCount.incrementAndGet()));
+        CompletionService<Phase> completion = new ExecutorCompletionService<>(executor);
+        int running = 0;
+        try {
+            while (!pending.isEmpty() || running > 0) {
+                Phase phase;
+                while ((phase = pollReady(pending, started)) != null) {
+                    Phase ready = phase;
+                    completion.submit(() -> {
+                        host.setAuthorizationContext(host.getSystemAuthorizationContext());
+                        try {
+                            run(ready);
+                        } catch (Exception | Error e) {
+                            throw e;
+                        } catch (Throwable t) {
+                            throw new Exception(t);
+                        } finally {
+                            host.setAuthorizationContext(null);
+                        }
+                        return ready;
+                    });
+                    running++;
+                }
+                if (running == 0) {
+                    throw cyclicDependencies(pending);
+                }
+                try {
+                    started.add(completion.take().get().name);
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                }
+                running--;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts the background phases in the calling thread, in the order they were added.
+     */
+    void startBackground() throws Throwable {
+        for (Phase phase : phases.values()) {
+            if (phase.background) {
+                run(phase);
+            }
+        }
+    }
+
+    /**
+     * Returns the start time, relative to the creation of the plan, and the duration of each
+     * phase.
+     */
+    String getReport() {
+        StringBuilder report = new StringBuilder("Startup phases (start ms, duration ms):");
+        for (Phase phase : phases.values()) {
+            report.append(String.format("%n  %-24s", phase.name));
+            if (phase.durationMicros < 0) {
+                report.append(phase.background ? " pending" : " not started");
+            } else {
+                report.append(String.format(" %8d %8d",
+                        TimeUnit.MICROSECONDS.toMillis(phase.startMicros),
+                        TimeUnit.MICROSECONDS.toMillis(phase.durationMicros)));
+            }
+        }
+        return report.toString();
+    }
+
+    private void run(Phase phase) throws Throwable {
+        long startMicros = Utils.getSystemNowMicrosUtc();
+        phase.startMicros = startMicros - createdMicros;
+        phase.action.start();
+        phase.durationMicros = Utils.getSystemNowMicrosUtc() - startMicros;
+    }
+
+    private Phase pollReady(List<Phase> pending, Set<String> started) {
+        for (Iterator<Phase> it = pending.iterator(); it.hasNext();) {
+            Phase phase = it.next();
+            boolean ready = phase.dependencies.stream().allMatch(d -> started.contains(d)
+                    || !phases.containsKey(d) || phases.get(d).background);
+            if (ready) {
+                it.remove();
+                return phase;
+            }
+        }
+        return null;
+    }
+
+    private IllegalStateException cyclicDependencies(List<Phase> pending) {
+        List<String> names = new ArrayList<>();
+        pending.forEach(p -> names.add(p.name));
+        return new IllegalStateException("Cyclic startup phase dependencies: " + names);
+    }
+}
@@ -15,6 +15,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.net.ssl.SSLContext;
@@ -28,6 +29,7 @@ import com.vmware.admiral.host.interceptor.ComputePlacementZoneInterceptor;
 import com.vmware.admiral.host.interceptor.EndpointInterceptor;
 import com.vmware.admiral.host.interceptor.InUsePlacementZoneInterceptor;
 import com.vmware.admiral.host.interceptor.OperationInterceptorRegistry;
+import com.vmware.admiral.host.interceptor.OperationMetrics;
 import com.vmware.admiral.host.interceptor.PhotonModelMockRequestInterceptor;
 import com.vmware.admiral.host.interceptor.ProfileInterceptor;
 import com.vmware.admiral.host.interceptor.ResourceGroupInterceptor;
@@ -36,6 +38,7 @@ import com.vmware.admiral.service.common.AuthBootstrapService;
 import com.vmware.admiral.service.common.ConfigurationService;
 import com.vmware.admiral.service.common.ConfigurationService.ConfigurationState;
 import com.vmware.admiral.service.common.ExtensibilitySubscriptionManager;
+import com.vmware.admiral.service.common.NodeHealthCheckService;
 import com.vmware.admiral.service.common.NodeMigrationService;
 import com.vmware.photon.controller.model.security.util.CertificateUtil;
 import com.vmware.xenon.common.CommandLineArgumentParser;
@@ -48,6 +51,7 @@ import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.ServiceClient;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.common.http.netty.NettyHttpListener;
 import com.vmware.xenon.common.http.netty.NettyHttpServiceClient;
 import com.vmware.xenon.services.common.MigrationTaskService;
@@ -106,6 +110,34 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
      */
     public Path certificateFile;
 
+    /**
+     * The number of threads starting the service configs in parallel.
+     */
+    private static final int STARTUP_PARALLELISM = Integer.getInteger(
+            "com.vmware.admiral.host.startup.parallelism",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The interval of checking whether the node is available before starting the background
+     * services.
+     */
+    private static final long STARTUP_AVAILABILITY_CHECK_INTERVAL_MICROS = TimeUnit.SECONDS
+            .toMicros(Long.getLong("com.vmware.admiral.host.startup.availability.check.seconds",
+                    1));
+
+    private static final String FABRIC_PHASE = "fabric";
+    private static final String COMPUTE_PHASE = "compute";
+    private static final String COMPUTE_BACKGROUND_PHASE = "compute-background";
+    private static final String REQUEST_PHASE = "request";
+    private static final String IMAGE_PHASE = "image";
+    private static final String UI_PHASE = "ui";
+    private static final String DOCKER_ADAPTER_PHASE = "docker-adapter";
+    private static final String KUBERNETES_ADAPTER_PHASE = "kubernetes-adapter";
+    private static final String CONTINUOUS_DELIVERY_PHASE = "continuous-delivery";
+    private static final String REGISTRY_ADAPTER_PHASE = "registry-adapter";
+    private static final String CLOSURE_PHASE = "closure";
+    private static final String SWAGGER_PHASE = "swagger";
+
     private ExtensibilitySubscriptionManager extensibilityRegistry;
 
     private OperationInterceptorRegistry interceptors = new OperationInterceptorRegistry();
@@ -142,6 +174,11 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
         log(Level.INFO, "Initializing ...");
         initialize(args);
 
+        if (OperationMetrics.ENABLED) {
+            log(Level.INFO, "Enabling operation metrics ...");
+            interceptors.setOperationMetrics(OperationMetrics.forHost(this));
+        }
+
         log(Level.INFO, "Registering service interceptors ...");
         registerOperationInterceptors();
 
@@ -154,12 +191,16 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
 
         log(Level.INFO, "**** Management host starting ... ****");
 
-        startFabricServices();
-        startManagementServices();
-        startClosureServices(this, startMockHostAdapterInstance);
-        startSwaggerService();
+        HostStartupPlan plan = new HostStartupPlan(this)
+                .addPhase(FABRIC_PHASE, this::startFabricServices);
+        addManagementPhases(plan);
+        plan.addPhase(CLOSURE_PHASE,
+                () -> startClosureServices(this, startMockHostAdapterInstance), COMPUTE_PHASE)
+                .addPhase(SWAGGER_PHASE, this::startSwaggerService);
+        plan.start(STARTUP_PARALLELISM);
 
         log(Level.INFO, "**** Management host started. ****");
+        log(Level.INFO, plan.getReport());
 
         log(Level.INFO, "**** Enabling dynamic service loading... ****");
 
@@ -174,9 +215,45 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
         // Clean up authorization context to avoid privileged access.
         setAuthorizationContext(null);
 
+        startBackgroundServicesWhenAvailable(plan);
+
         return this;
     }
 
+    /**
+     * Starts the background phases of the given plan once the health check reports that the
+     * services of the node are available.
+     */
+    private void startBackgroundServicesWhenAvailable(HostStartupPlan plan) {
+        sendRequest(Operation.createGet(UriUtils.buildUri(this, NodeHealthCheckService.SELF_LINK))
+                .setReferer(getUri())
+                .setCompletion((o, e) -> {
+                    if (!isStarted()) {
+                        return;
+                    }
+                    if (e != null) {
+                        log(Level.FINE, "Node not available yet: %s", e.getMessage());
+                        schedule(() -> startBackgroundServicesWhenAvailable(plan),
+                                STARTUP_AVAILABILITY_CHECK_INTERVAL_MICROS,
+                                TimeUnit.MICROSECONDS);
+                        return;
+                    }
+
+                    log(Level.INFO, "**** Background services starting... ****");
+                    setAuthorizationContext(getSystemAuthorizationContext());
+                    try {
+                        plan.startBackground();
+                        log(Level.INFO, "**** Background services started. ****");
+                    } catch (Throwable t) {
+                        log(Level.SEVERE, "Failed to start the background services: %s",
+                                Utils.toString(t));
+                    } finally {
+                        setAuthorizationContext(null);
+                    }
+                    log(Level.INFO, plan.getReport());
+                }));
+    }
+
     @Override
     public ServiceHost initialize(String[] args) throws Throwable {
         CommandLineArgumentParser.parse(this, args);
@@ -232,22 +309,42 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
     protected void startManagementServices() throws Throwable {
         this.log(Level.INFO, "Management service starting ...");
 
-        registerForServiceAvailability(CaSigningCertService.startTask(this), true,
-                CaSigningCertService.FACTORY_LINK);
-
-        HostInitComputeServicesConfig.startServices(this, false);
-        HostInitComputeBackgroundServicesConfig.startServices(this);
-        HostInitRequestServicesConfig.startServices(this);
-        HostInitImageServicesConfig.startServices(this);
-        HostInitUiServicesConfig.startServices(this);
-        HostInitDockerAdapterServiceConfig.startServices(this, startMockHostAdapterInstance);
-        HostInitKubernetesAdapterServiceConfig.startServices(this, startMockHostAdapterInstance);
-        HostInitContinuousDeliveryServicesConfig.startServices(this);
-        HostInitRegistryAdapterServiceConfig.startServices(this);
+        HostStartupPlan plan = new HostStartupPlan(this);
+        addManagementPhases(plan);
+        plan.start(1);
+        plan.startBackground();
 
         this.log(Level.INFO, "Management services started.");
     }
 
+    private void addManagementPhases(HostStartupPlan plan) {
+        plan.addPhase(COMPUTE_PHASE, () -> {
+            registerForServiceAvailability(CaSigningCertService.startTask(this), true,
+                    CaSigningCertService.FACTORY_LINK);
+            HostInitComputeServicesConfig.startServices(this, false);
+        }, FABRIC_PHASE)
+                .addPhase(REQUEST_PHASE,
+                        () -> HostInitRequestServicesConfig.startServices(this), COMPUTE_PHASE)
+                .addPhase(IMAGE_PHASE,
+                        () -> HostInitImageServicesConfig.startServices(this), COMPUTE_PHASE)
+                .addPhase(UI_PHASE, () -> HostInitUiServicesConfig.startServices(this))
+                .addPhase(DOCKER_ADAPTER_PHASE,
+                        () -> HostInitDockerAdapterServiceConfig.startServices(this,
+                                startMockHostAdapterInstance), COMPUTE_PHASE)
+                .addPhase(KUBERNETES_ADAPTER_PHASE,
+                        () -> HostInitKubernetesAdapterServiceConfig.startServices(this,
+                                startMockHostAdapterInstance), COMPUTE_PHASE)
+                .addPhase(CONTINUOUS_DELIVERY_PHASE,
+                        () -> HostInitContinuousDeliveryServicesConfig.startServices(this),
+                        REQUEST_PHASE)
+                .addPhase(REGISTRY_ADAPTER_PHASE,
+                        () -> HostInitRegistryAdapterServiceConfig.startServices(this),
+                        COMPUTE_PHASE)
+                .addBackgroundPhase(COMPUTE_BACKGROUND_PHASE,
+                        () -> HostInitComputeBackgroundServicesConfig.startServices(this),
+                        COMPUTE_PHASE, REQUEST_PHASE);
+    }
+
     /**
      * Start Swagger service.
      */
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.vmware.xenon.common.Operation.AuthorizationContext;
+
+public class HostStartupPlanTest {
+
+    private static class TestManagementHost extends ManagementHost {
+        final AtomicInteger authorizationContextChanges = new AtomicInteger();
+
+        @Override
+        public AuthorizationContext getSystemAuthorizationContext() {
+            return null;
+        }
+
+        @Override
+        public void setAuthorizationContext(AuthorizationContext context) {
+            authorizationContextChanges.incrementAndGet();
+        }
+    }
+
+    private final TestManagementHost host = new TestManagementHost();
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testStartInDependencyOrder() throws Throwable {
+        HostStartupPlan plan = new HostStartupPlan(host)
+                .addPhase("a", () -> started.add("a"))
+                .addPhase("b", () -> started.add("b"), "c")
+                .addPhase("c", () -> started.add("c"), "missing")
+                .addBackgroundPhase("d", () -> started.add("d"), "b");
+
+        plan.start(1);
+        assertEquals(Arrays.asList("a", "c", "b"), started);
+        assertTrue(plan.getReport().contains("pending"));
+
+        plan.startBackground();
+        assertEquals(Arrays.asList("a", "c", "b", "d"), started);
+        assertEquals(0, host.authorizationContextChanges.get());
+    }
+
+    @Test
+    public void testStartInParallel() throws Throwable {
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        HostStartupPlan.PhaseAction waitForOther = () -> {
+            bothRunning.countDown();
+            if (!bothRunning.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("The phases are not started in parallel");
+            }
+        };
+        HostStartupPlan plan = new HostStartupPlan(host)
+                .addPhase("a", () -> {
+                    waitForOther.start();
+                    started.add("a");
+                })
+                .addPhase("b", () -> {
+                    waitForOther.start();
+                    started.add("b");
+                })
+                .addPhase("c", () -> started.add("c"), "a", "b");
+
+        plan.start(4);
+        assertEquals(3, started.size());
+        assertEquals("c", started.get(2));
+        // the system authorization context is set and cleared on each phase
+        assertEquals(6, host.authorizationContextChanges.get());
+    }
+
+    @Test
+    public void testStartFailure() throws Throwable {
+        HostStartupPlan plan = new HostStartupPlan(host)
+                .addPhase("a", () -> {
+                    throw new IllegalArgumentException("failure");
+                })
+                .addPhase("b", () -> started.add("b"), "a");
+
+        try {
+            plan.start(2);
+            fail("Expected the start to fail");
+        } catch (IllegalArgumentException e) {
+            assertEquals("failure", e.getMessage());
+        }
+        assertTrue(started.isEmpty());
+    }
+
+    @Test
+    public void testCyclicDependencies() throws Throwable {
+        HostStartupPlan plan = new HostStartupPlan(host)
+                .addPhase("a", () -> started.add("a"), "b")
+                .addPhase("b", () -> started.add("b"), "a");
+
+        try {
+            plan.start(2);
+            fail("Expected the start to fail");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("Cyclic"));
+        }
+        assertTrue(started.isEmpty());
+    }
+}
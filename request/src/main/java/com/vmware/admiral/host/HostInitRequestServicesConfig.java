@@ -29,6 +29,7 @@ import com.vmware.admiral.request.ContainerVolumeAllocationTaskService;
 import com.vmware.admiral.request.ContainerVolumeProvisionTaskService;
 import com.vmware.admiral.request.ContainerVolumeRemovalTaskService;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService;
+import com.vmware.admiral.request.PlacementIndexService;
 import com.vmware.admiral.request.RequestBrokerFactoryService;
 import com.vmware.admiral.request.RequestBrokerGraphService;
 import com.vmware.admiral.request.RequestStatusFactoryService;
@@ -77,7 +78,8 @@ public class HostInitRequestServicesConfig extends HostInitServiceHelper {
                 NotificationsService.class,
                 RequestInitialBootService.class,
                 TagAssignmentService.class,
-                RequestBrokerGraphService.class);
+                RequestBrokerGraphService.class,
+                PlacementIndexService.class);
 
         startServiceFactories(host,
                 ProvisionContainerHostsTaskService.class,
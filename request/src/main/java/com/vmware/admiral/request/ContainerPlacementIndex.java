@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.request;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+
+/**
+ * In-memory index of the placement related fields of the {@link ContainerState}s: the host
+ * (<code>parentLink</code>), the description, the composite component and the names of the
+ * containers. The containers are indexed by host and by composite component, so that the affinity
+ * filters can find the containers of a placement context without querying the document index.
+ *
+ * Updates are applied only if they are not older than the indexed version of the container. The
+ * index tracks the latest update time of the applied changes, so that it can tell whether it has
+ * caught up with the changes a lookup depends on. The index is not thread safe.
+ */
+class ContainerPlacementIndex {
+
+    /**
+     * The indexed fields of a container.
+     */
+    static class IndexedContainer {
+        String documentSelfLink;
+        long documentVersion;
+        String parentLink;
+        String descriptionLink;
+        String compositeComponentLink;
+        List<String> names;
+    }
+
+    private final Map<String, IndexedContainer> containersByLink = new HashMap<>();
+    private final Map<String, Set<String>> containerLinksByHost = new HashMap<>();
+    private final Map<String, Set<String>> containerLinksByContext = new HashMap<>();
+    private long indexedUpToMicros;
+
+    /**
+     * Adds or updates a container. Returns <code>false</code> if the index has a newer version of
+     * the container.
+     */
+    boolean update(ContainerState state) {
+        advanceTo(state.documentUpdateTimeMicros);
+        IndexedContainer existing = containersByLink.get(state.documentSelfLink);
+        if (existing != null) {
+            if (existing.documentVersion > state.documentVersion) {
+                return false;
+            }
+            unlink(existing);
+        }
+
+        IndexedContainer container = new IndexedContainer();
+        container.documentSelfLink = state.documentSelfLink;
+        container.documentVersion = state.documentVersion;
+        container.parentLink = state.parentLink;
+        container.descriptionLink = state.descriptionLink;
+        container.compositeComponentLink = state.compositeComponentLink;
+        container.names = state.names == null ? null : new ArrayList<>(state.names);
+
+        containersByLink.put(container.documentSelfLink, container);
+        link(containerLinksByHost, container.parentLink, container.documentSelfLink);
+        link(containerLinksByContext, container.compositeComponentLink,
+                container.documentSelfLink);
+        return true;
+    }
+
+    void remove(String containerLink) {
+        IndexedContainer existing = containersByLink.remove(containerLink);
+        if (existing != null) {
+            unlink(existing);
+        }
+    }
+
+    /**
+     * Records that the changes up to the given time have been applied, e.g. a removal of a
+     * container updated at that time, or a load of all containers started at that time.
+     */
+    void advanceTo(long updateTimeMicros) {
+        indexedUpToMicros = Math.max(indexedUpToMicros, updateTimeMicros);
+    }
+
+    /**
+     * Returns the latest update time of the changes applied to the index.
+     */
+    long getIndexedUpToMicros() {
+        return indexedUpToMicros;
+    }
+
+    int size() {
+        return containersByLink.size();
+    }
+
+    /**
+     * Finds the containers matching all of the given criteria. A <code>null</code> criteria
+     * matches all containers.
+     *
+     * @param compositeComponentLink
+     *            The composite component of the containers
+     * @param descriptionLinks
+     *            The descriptions of the containers
+     * @param hostLinks
+     *            The hosts of the containers
+     * @return {@link ContainerState}s with the indexed fields only
+     */
+    List<ContainerState> find(String compositeComponentLink, Collection<String> descriptionLinks,
+            Collection<String> hostLinks) {
+        Collection<String> candidateLinks;
+        if (compositeComponentLink != null) {
+            candidateLinks = containerLinksByContext.getOrDefault(compositeComponentLink,
+                    Collections.emptySet());
+        } else if (hostLinks != null) {
+            candidateLinks = new ArrayList<>();
+            for (String hostLink : hostLinks) {
+                candidateLinks.addAll(containerLinksByHost.getOrDefault(hostLink,
+                        Collections.emptySet()));
+            }
+        } else {
+            candidateLinks = containersByLink.keySet();
+        }
+
+        List<ContainerState> result = new ArrayList<>();
+        for (String containerLink : candidateLinks) {
+            IndexedContainer container = containersByLink.get(containerLink);
+            if ((descriptionLinks == null || descriptionLinks.contains(container.descriptionLink))
+                    && (hostLinks == null || hostLinks.contains(container.parentLink))) {
+                result.add(toContainerState(container));
+            }
+        }
+        return result;
+    }
+
+    private void unlink(IndexedContainer container) {
+        unlink(containerLinksByHost, container.parentLink, container.documentSelfLink);
+        unlink(containerLinksByContext, container.compositeComponentLink,
+                container.documentSelfLink);
+    }
+
+    private static void link(Map<String, Set<String>> links, String key, String containerLink) {
+        if (key != null) {
+            links.computeIfAbsent(key, k -> new HashSet<>()).add(containerLink);
+        }
+    }
+
+    private static void unlink(Map<String, Set<String>> links, String key,
+            String containerLink) {
+        if (key == null) {
+            return;
+        }
+        Set<String> containerLinks = links.get(key);
+        if (containerLinks != null) {
+            containerLinks.remove(containerLink);
+            if (containerLinks.isEmpty()) {
+                links.remove(key);
+            }
+        }
+    }
+
+    private static ContainerState toContainerState(IndexedContainer container) {
+        ContainerState state = new ContainerState();
+        state.documentSelfLink = container.documentSelfLink;
+        state.documentVersion = container.documentVersion;
+        state.parentLink = container.parentLink;
+        state.descriptionLink = container.descriptionLink;
+        state.compositeComponentLink = container.compositeComponentLink;
+        state.names = container.names == null ? null : new ArrayList<>(container.names);
+        return state;
+    }
+}
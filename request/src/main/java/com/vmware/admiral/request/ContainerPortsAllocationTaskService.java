@@ -19,7 +19,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
@@ -148,6 +150,10 @@ public class ContainerPortsAllocationTaskService
             return;
         }
 
+        // the requests of the containers on the same host are sent in a single batch
+        Map<HostPortProfileService.HostPortProfileState,
+                List<HostPortProfileService.HostPortProfileReservationRequest>> requestsByProfile =
+                new LinkedHashMap<>();
         for (ContainerService.ContainerState containerState : containerStates) {
             HostPortProfileService.HostPortProfileState profile = hostPortProfileStates
                     .stream()
@@ -165,15 +171,24 @@ public class ContainerPortsAllocationTaskService
                 completeSubTasksCounter(taskCallback, null);
                 continue;
             }
+            requestsByProfile.computeIfAbsent(profile, p -> new ArrayList<>())
+                    .add(hostPortProfileRequest);
+        }
+
+        requestsByProfile.forEach((profile, requests) -> {
+            HostPortProfileService.HostPortProfileReservationRequest batchRequest =
+                    new HostPortProfileService.HostPortProfileReservationRequest();
+            batchRequest.mode = HostPortProfileService.HostPortProfileReservationRequestMode.BATCH;
+            batchRequest.reservations = requests;
 
             // allocate ports
             sendRequest(Operation
                     .createPatch(getHost(), profile.documentSelfLink)
-                    .setBody(hostPortProfileRequest)
+                    .setBody(batchRequest)
                     .setCompletion(
                             (op, ex) -> {
                                 if (ex != null) {
-                                    completeSubTasksCounter(taskCallback, ex);
+                                    requests.forEach(r -> completeSubTasksCounter(taskCallback, ex));
                                     return;
                                 }
                                 // update cached host port profile state
@@ -181,10 +196,10 @@ public class ContainerPortsAllocationTaskService
                                         op.getBody(
                                                 HostPortProfileService.HostPortProfileState.class);
                                 profile.reservedPorts.putAll(result.reservedPorts);
-                                completeSubTasksCounter(taskCallback, null);
+                                requests.forEach(r -> completeSubTasksCounter(taskCallback, null));
                             }));
             proceedTo(ContainerPortsAllocationTaskState.SubStage.ALLOCATING_PORTS);
-        }
+        });
     }
 
     private HostPortProfileService.HostPortProfileReservationRequest createHostPortProfileRequest(
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.request;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.compute.CommonContinuousQueries;
+import com.vmware.admiral.compute.CommonContinuousQueries.ContinuousQueryId;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service.Action;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+
+/**
+ * Maintains a {@link ContainerPlacementIndex} of all containers, fed by the
+ * {@link ContinuousQueryId#CONTAINERS} continuous query, and serves the container lookups of the
+ * placement host selection filters from it.
+ *
+ * The index is cold until the initial load of the containers completes. Lookups on a cold index
+ * are not served and the callers are expected to fall back to queries. Since the continuous query
+ * notifications are asynchronous, the index is eventually consistent with the document index. A
+ * lookup which depends on the containers changed up to a given time is not served either until
+ * the index has applied a change of that time, or until {@link #MAX_NOTIFICATION_LAG_MICROS} has
+ * passed since then, so the lookups of a recent request are queried when no other container
+ * changes.
+ */
+public class PlacementIndexService extends StatelessService {
+    public static final String SELF_LINK = ManagementUriParts.REQUEST_PLACEMENT_INDEX;
+
+    public static final String STAT_NAME_INDEXED_CONTAINER_COUNT = "indexedContainerCount";
+    public static final String STAT_NAME_LOOKUP_COUNT = "lookupCount";
+    public static final String STAT_NAME_COLD_LOOKUP_COUNT = "coldLookupCount";
+    public static final String STAT_NAME_BEHIND_LOOKUP_COUNT = "behindLookupCount";
+
+    public static final boolean PLACEMENT_INDEX_DISABLED = Boolean.getBoolean(
+            "dcp.management.placement.index.disabled");
+
+    /**
+     * The time after which the continuous query notifications of the container changes are
+     * expected to have been delivered.
+     */
+    public static final long MAX_NOTIFICATION_LAG_MICROS = Long.getLong(
+            "dcp.management.placement.index.max.notification.lag.micros",
+            TimeUnit.SECONDS.toMicros(5));
+
+    /**
+     * Container lookup. A <code>null</code> criteria matches all containers.
+     */
+    public static class PlacementIndexRequest {
+        public String compositeComponentLink;
+        public Collection<String> descriptionLinks;
+        public Collection<String> hostLinks;
+
+        /**
+         * The update time of the container changes the lookup depends on, e.g. the time the
+         * placement of the request started. No containers are returned if the index is behind.
+         */
+        public long minUpdateTimeMicros;
+    }
+
+    public static class PlacementIndexResponse {
+        /**
+         * Whether the index is loaded and up to date with the request. No containers are returned
+         * otherwise.
+         */
+        public boolean ready;
+
+        /** The matching containers with the indexed fields only. */
+        public List<ContainerState> containers;
+    }
+
+    private final ContainerPlacementIndex index = new ContainerPlacementIndex();
+    private Set<String> removedDuringLoad = new HashSet<>();
+    private volatile boolean ready;
+
+    public PlacementIndexService() {
+        super.toggleOption(ServiceOption.INSTRUMENTATION, true);
+    }
+
+    /**
+     * Finds the containers matching the request in the placement index of the given host. The
+     * handler is called with <code>null</code> if the index is cold, disabled or not available,
+     * in which case the containers should be queried.
+     */
+    public static void findContainers(ServiceHost host, PlacementIndexRequest request,
+            Consumer<List<ContainerState>> handler) {
+        if (PLACEMENT_INDEX_DISABLED) {
+            handler.accept(null);
+            return;
+        }
+
+        host.sendRequest(Operation.createPost(UriUtils.buildUri(host, SELF_LINK))
+                .setBody(request)
+                .setReferer(host.getUri())
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        host.log(Level.FINE, "Placement index not available: %s",
+                                e.getMessage());
+                        handler.accept(null);
+                        return;
+                    }
+                    PlacementIndexResponse response = o.getBody(PlacementIndexResponse.class);
+                    handler.accept(response.ready ? response.containers : null);
+                }));
+    }
+
+    @Override
+    public void handleStart(Operation startPost) {
+        startPost.complete();
+
+        // subscribe before the initial load, so that no change is missed
+        CommonContinuousQueries.subscribeTo(this.getHost(), ContinuousQueryId.CONTAINERS,
+                this::onContainerChange);
+        loadContainers();
+    }
+
+    @Override
+    public void handlePost(Operation post) {
+        if (!post.hasBody()) {
+            post.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+
+        PlacementIndexRequest request = post.getBody(PlacementIndexRequest.class);
+        PlacementIndexResponse response = new PlacementIndexResponse();
+        if (!ready) {
+            adjustStat(STAT_NAME_COLD_LOOKUP_COUNT, 1);
+            post.setBody(response).complete();
+            return;
+        }
+
+        synchronized (index) {
+            if (isBehind(request.minUpdateTimeMicros)) {
+                adjustStat(STAT_NAME_BEHIND_LOOKUP_COUNT, 1);
+                post.setBody(response).complete();
+                return;
+            }
+            response.containers = index.find(request.compositeComponentLink,
+                    request.descriptionLinks, request.hostLinks);
+        }
+        response.ready = true;
+        adjustStat(STAT_NAME_LOOKUP_COUNT, 1);
+        post.setBody(response).complete();
+    }
+
+    private boolean isBehind(long minUpdateTimeMicros) {
+        return index.getIndexedUpToMicros() < minUpdateTimeMicros
+                && Utils.getSystemNowMicrosUtc() - minUpdateTimeMicros
+                        < MAX_NOTIFICATION_LAG_MICROS;
+    }
+
+    public void onContainerChange(Operation op) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
+        }
+
+        synchronized (index) {
+            for (Object json : queryTask.results.documents.values()) {
+                ContainerState state = Utils.fromJson(json, ContainerState.class);
+                if (Action.DELETE.name().equals(state.documentUpdateAction)) {
+                    index.remove(state.documentSelfLink);
+                    index.advanceTo(state.documentUpdateTimeMicros);
+                    if (removedDuringLoad != null) {
+                        removedDuringLoad.add(state.documentSelfLink);
+                    }
+                } else {
+                    index.update(state);
+                }
+            }
+            setStat(STAT_NAME_INDEXED_CONTAINER_COUNT, index.size());
+        }
+    }
+
+    private void loadContainers() {
+        long loadStartMicros = Utils.getSystemNowMicrosUtc();
+        QueryTask q = QueryUtil.buildQuery(ContainerState.class, false);
+        QueryUtil.addSelectFieldsOption(q, ServiceDocument.FIELD_NAME_VERSION,
+                ServiceDocument.FIELD_NAME_UPDATE_TIME_MICROS,
+                ContainerState.FIELD_NAME_PARENT_LINK, ContainerState.FIELD_NAME_DESCRIPTION_LINK,
+                ContainerState.FIELD_NAME_COMPOSITE_COMPONENT_LINK,
+                ContainerState.FIELD_NAME_NAMES);
+
+        new ServiceDocumentQuery<>(getHost(), ContainerState.class)
+                .stream(q, ServiceDocumentQuery.DEFAULT_QUERY_PAGE_SIZE, (page) -> {
+                    if (page.hasException()) {
+                        logWarning("Failed to load the placement index, retrying: %s",
+                                Utils.toString(page.getException()));
+                        getHost().schedule(this::loadContainers,
+                                QueryUtil.QUERY_RETRY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                        return;
+                    }
+
+                    synchronized (index) {
+                        for (ContainerState state : page.getDocuments()) {
+                            if (!removedDuringLoad.contains(state.documentSelfLink)) {
+                                index.update(state);
+                            }
+                        }
+                        setStat(STAT_NAME_INDEXED_CONTAINER_COUNT, index.size());
+
+                        if (page.hasNextPage()) {
+                            page.requestNextPage();
+                            return;
+                        }
+
+                        index.advanceTo(loadStartMicros);
+                        removedDuringLoad = null;
+                        ready = true;
+                        logInfo("Placement index loaded with %s containers", index.size());
+                    }
+                });
+    }
+}
@@ -26,7 +26,9 @@ import org.yaml.snakeyaml.util.UriEncoder;
 import com.vmware.admiral.compute.ResourceType;
 import com.vmware.admiral.request.composition.CompositionGraph.ResourceNode;
 import com.vmware.admiral.request.composition.CompositionSubTaskService;
+import com.vmware.admiral.service.common.AbstractTaskStatefulService.TaskStatusState;
 import com.vmware.admiral.service.common.DefaultSubStage;
+import com.vmware.admiral.service.common.RequestTrackerUpdateService.TaskStatusUpdates;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.StatefulService;
@@ -98,6 +100,38 @@ public class RequestStatusService extends StatefulService {
         RequestStatus body = patch.getBody(RequestStatus.class);
         RequestStatus state = getState(patch);
 
+        if (TaskStatusUpdates.KIND.equals(body.documentKind)) {
+            // coalesced updates of several tasks, applied in the order they were received
+            TaskStatusUpdates updates = patch.getBody(TaskStatusUpdates.class);
+            for (TaskStatusState update : updates.updates) {
+                handleUpdate(state, toRequestStatus(update));
+            }
+        } else {
+            handleUpdate(state, body);
+        }
+
+        setState(patch, state);
+        patch.complete();
+    }
+
+    /**
+     * Returns a body with the fields of the given task status which are applied by
+     * {@link #handleUpdate(RequestStatus, RequestStatus)}.
+     */
+    private static RequestStatus toRequestStatus(TaskStatusState update) {
+        RequestStatus body = new RequestStatus();
+        body.documentSelfLink = update.documentSelfLink;
+        body.phase = update.phase;
+        body.taskInfo = update.taskInfo;
+        body.subStage = update.subStage;
+        body.progress = update.progress;
+        body.name = update.name;
+        body.eventLogLink = update.eventLogLink;
+        body.resourceLinks = update.resourceLinks;
+        return body;
+    }
+
+    private void handleUpdate(RequestStatus state, RequestStatus body) {
         if (body.components != null) {
             handleUpdateComponents(state, body);
         } else {
@@ -113,9 +147,6 @@ public class RequestStatusService extends StatefulService {
                 && !body.resourceLinks.isEmpty()) {
             state.resourceLinks = body.resourceLinks;
         }
-
-        setState(patch, state);
-        patch.complete();
     }
 
     private void handleUpdateProgress(RequestStatus state, RequestStatus body) {
@@ -39,6 +39,7 @@ import com.vmware.admiral.compute.container.CompositeComponentRegistry;
 import com.vmware.admiral.compute.container.CompositeComponentRegistry.ComponentMeta;
 import com.vmware.admiral.compute.container.CompositeDescriptionFactoryService;
 import com.vmware.admiral.compute.container.CompositeDescriptionService.CompositeDescription;
+import com.vmware.admiral.compute.container.GroupResourcePlacementLeaseService;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService.GroupResourcePlacementState;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService.ResourcePlacementReservationRequest;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
@@ -496,9 +497,22 @@ public class ReservationTaskService
                 reservationRequest.resourceCount, reservationRequest.resourceDescriptionLink,
                 Service.getId(placementLink));
 
-        sendRequest(Operation
-                .createPatch(this, placementLink)
-                .setBody(reservationRequest)
+        // the memory of the resources is sent along, so that the placement does not get the
+        // description on each reservation
+        getContainerDescription(state.resourceDescriptionLink, description -> {
+            Long memoryLimit = description.getCommonDescription().memoryLimit;
+            reservationRequest.resourceMemoryBytes = memoryLimit != null ? memoryLimit
+                    : ResourcePlacementReservationRequest.NO_MEMORY_LIMIT;
+            sendReservationRequest(state, placementLink, reservationRequest,
+                    resourcePoolsPerGroupPlacementLinks);
+        });
+    }
+
+    private void sendReservationRequest(ReservationTaskState state, String placementLink,
+            ResourcePlacementReservationRequest reservationRequest,
+            LinkedHashMap<String, String> resourcePoolsPerGroupPlacementLinks) {
+        sendRequest(GroupResourcePlacementLeaseService
+                .createReservationPatch(this, placementLink, reservationRequest)
                 .setCompletion(
                         (o, e) -> {
                             if (e != null) {
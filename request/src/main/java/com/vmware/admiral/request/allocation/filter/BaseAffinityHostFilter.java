@@ -22,6 +22,8 @@ import com.vmware.admiral.compute.container.CompositeComponentFactoryService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
+import com.vmware.admiral.request.PlacementIndexService;
+import com.vmware.admiral.request.PlacementIndexService.PlacementIndexRequest;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.services.common.QueryTask;
@@ -119,12 +121,38 @@ public abstract class BaseAffinityHostFilter
             final Map<String, HostSelection> initHostSelectionMap,
             final Map<String, DescName> containerDescLinksWithNames,
             final HostSelectionFilterCompletion callback) {
+        PlacementIndexRequest request = new PlacementIndexRequest();
+        request.compositeComponentLink = UriUtils.buildUriPath(
+                CompositeComponentFactoryService.SELF_LINK, state.contextId);
+        request.descriptionLinks = containerDescLinksWithNames.keySet();
+        request.hostLinks = initHostSelectionMap.keySet();
+        request.minUpdateTimeMicros = state.documentUpdateTimeMicros;
+
+        PlacementIndexService.findContainers(host, request, (containers) -> {
+            if (containers == null) {
+                queryContainers(state, initHostSelectionMap, containerDescLinksWithNames,
+                        callback);
+                return;
+            }
+
+            final Map<String, HostSelection> filteredHostSelectionMap = new HashMap<>();
+            addContainers(containers, initHostSelectionMap, filteredHostSelectionMap,
+                    containerDescLinksWithNames);
+            completeContainerSelection(state, initHostSelectionMap, filteredHostSelectionMap,
+                    callback);
+        });
+    }
+
+    private void queryContainers(final PlacementHostSelectionTaskState state,
+            final Map<String, HostSelection> initHostSelectionMap,
+            final Map<String, DescName> containerDescLinksWithNames,
+            final HostSelectionFilterCompletion callback) {
         QueryTask q = QueryUtil.buildPropertyQuery(ContainerState.class,
                 ContainerState.FIELD_NAME_COMPOSITE_COMPONENT_LINK, UriUtils.buildUriPath(
                         CompositeComponentFactoryService.SELF_LINK, state.contextId));
         q.taskInfo.isDirect = false;
-        q.querySpec.resultLimit = ServiceDocumentQuery.DEFAULT_QUERY_RESULT_LIMIT;
-        QueryUtil.addExpandOption(q);
+        QueryUtil.addSelectFieldsOption(q, ContainerState.FIELD_NAME_PARENT_LINK,
+                ContainerState.FIELD_NAME_DESCRIPTION_LINK, ContainerState.FIELD_NAME_NAMES);
 
         // Add componentDescriptions clause:
         QueryUtil.addListValueClause(q,
@@ -136,40 +164,61 @@ public abstract class BaseAffinityHostFilter
 
         final Map<String, HostSelection> filteredHostSelectionMap = new HashMap<>();
         new ServiceDocumentQuery<ContainerState>(host, ContainerState.class)
-                .query(q,
-                        (r) -> {
-                            if (r.hasException()) {
+                .stream(q, ServiceDocumentQuery.DEFAULT_QUERY_PAGE_SIZE,
+                        (page) -> {
+                            if (page.hasException()) {
                                 host.log(
                                         Level.WARNING,
                                         "Exception while selecting containers with contextId [%s]. Error: [%s]",
-                                        state.contextId, r.getException().getMessage());
-                                callback.complete(null, r.getException());
-                            } else if (r.hasResult()) {
-                                final HostSelection hostSelection = initHostSelectionMap
-                                        .get(r.getResult().parentLink);
-                                filteredHostSelectionMap.put(r.getResult().parentLink,
-                                        hostSelection);
-                                final DescName descName = containerDescLinksWithNames
-                                        .get(r.getResult().descriptionLink);
-                                DescName newDescName = new DescName(descName);
-                                newDescName.addResourceNames(r.getResult().names);
-                                hostSelection.addDesc(newDescName);
-                            } else {
-                                try {
-                                    final Map<String, HostSelection> hostSelectionMap =
-                                            applyAffinityConstraints(state,
-                                                    initHostSelectionMap, filteredHostSelectionMap);
-                                    host.log(Level.INFO, "Selected host links for %s: %s - %s",
-                                            affinityPropertyName, getAffinity(),
-                                            hostSelectionMap.keySet());
-                                    callback.complete(hostSelectionMap, null);
-                                } catch (Throwable e) {
-                                    callback.complete(null, e);
-                                }
+                                        state.contextId, page.getException().getMessage());
+                                callback.complete(null, page.getException());
+                                return;
+                            }
+
+                            addContainers(page.getDocuments(), initHostSelectionMap,
+                                    filteredHostSelectionMap, containerDescLinksWithNames);
+
+                            if (page.hasNextPage()) {
+                                page.requestNextPage();
+                                return;
                             }
+
+                            completeContainerSelection(state, initHostSelectionMap,
+                                    filteredHostSelectionMap, callback);
                         });
     }
 
+    private void addContainers(final Collection<ContainerState> containers,
+            final Map<String, HostSelection> initHostSelectionMap,
+            final Map<String, HostSelection> filteredHostSelectionMap,
+            final Map<String, DescName> containerDescLinksWithNames) {
+        for (ContainerState container : containers) {
+            final HostSelection hostSelection = initHostSelectionMap
+                    .get(container.parentLink);
+            filteredHostSelectionMap.put(container.parentLink, hostSelection);
+            final DescName descName = containerDescLinksWithNames
+                    .get(container.descriptionLink);
+            DescName newDescName = new DescName(descName);
+            newDescName.addResourceNames(container.names);
+            hostSelection.addDesc(newDescName);
+        }
+    }
+
+    private void completeContainerSelection(final PlacementHostSelectionTaskState state,
+            final Map<String, HostSelection> initHostSelectionMap,
+            final Map<String, HostSelection> filteredHostSelectionMap,
+            final HostSelectionFilterCompletion callback) {
+        try {
+            final Map<String, HostSelection> hostSelectionMap = applyAffinityConstraints(state,
+                    initHostSelectionMap, filteredHostSelectionMap);
+            host.log(Level.INFO, "Selected host links for %s: %s - %s",
+                    affinityPropertyName, getAffinity(), hostSelectionMap.keySet());
+            callback.complete(hostSelectionMap, null);
+        } catch (Throwable e) {
+            callback.complete(null, e);
+        }
+    }
+
     protected Map<String, HostSelection> applyAffinityConstraints(
             final PlacementHostSelectionTaskState state,
             final Map<String, HostSelection> initHostSelectionMap,
@@ -11,6 +11,7 @@
 
 package com.vmware.admiral.request.allocation.filter;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -24,6 +25,8 @@ import com.vmware.admiral.compute.container.CompositeComponentFactoryService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
+import com.vmware.admiral.request.PlacementIndexService;
+import com.vmware.admiral.request.PlacementIndexService.PlacementIndexRequest;
 import com.vmware.admiral.request.utils.RequestUtils;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
@@ -80,6 +83,27 @@ public class ClusterAntiAffinityHostFilter
     protected void findContainers(final PlacementHostSelectionTaskState state,
             final Map<String, HostSelection> hostSelectionMap,
             final HostSelectionFilterCompletion callback) {
+        PlacementIndexRequest request = new PlacementIndexRequest();
+        request.compositeComponentLink = UriUtils.buildUriPath(
+                CompositeComponentFactoryService.SELF_LINK, state.contextId);
+        request.descriptionLinks = Collections.singleton(desc.documentSelfLink);
+        request.hostLinks = hostSelectionMap.keySet();
+        request.minUpdateTimeMicros = state.documentUpdateTimeMicros;
+
+        PlacementIndexService.findContainers(host, request, (containers) -> {
+            if (containers == null) {
+                queryContainers(state, hostSelectionMap, callback);
+                return;
+            }
+
+            countContainers(containers, hostSelectionMap);
+            completeFilter(state, hostSelectionMap, callback);
+        });
+    }
+
+    private void queryContainers(final PlacementHostSelectionTaskState state,
+            final Map<String, HostSelection> hostSelectionMap,
+            final HostSelectionFilterCompletion callback) {
         final QueryTask q = QueryUtil.buildPropertyQuery(ContainerState.class,
                 ContainerState.FIELD_NAME_DESCRIPTION_LINK,
                 desc.documentSelfLink,
@@ -87,27 +111,38 @@ public class ClusterAntiAffinityHostFilter
                 UriUtils.buildUriPath(CompositeComponentFactoryService.SELF_LINK, state.contextId));
         QueryUtil.addListValueClause(q, ContainerState.FIELD_NAME_PARENT_LINK, hostSelectionMap.keySet());
 
-        q.querySpec.resultLimit = ServiceDocumentQuery.DEFAULT_QUERY_RESULT_LIMIT;
-        QueryUtil.addExpandOption(q);
+        QueryUtil.addSelectFieldsOption(q, ContainerState.FIELD_NAME_PARENT_LINK);
 
         new ServiceDocumentQuery<ContainerState>(host, ContainerState.class)
-                .query(q,
-                        (r) -> {
-                            if (r.hasException()) {
+                .stream(q, ServiceDocumentQuery.DEFAULT_QUERY_PAGE_SIZE,
+                        (page) -> {
+                            if (page.hasException()) {
                                 host.log(
                                         Level.WARNING,
                                         "Exception while selecting containers with contextId [%s] during cluster node filtering. Error: [%s]",
-                                        state.contextId, r.getException().getMessage());
-                                callback.complete(null, r.getException());
-                            } else if (r.hasResult()) {
-                                HostSelection hostSelection = hostSelectionMap.get(r.getResult().parentLink);
-                                hostSelection.resourceCount += 1;
+                                        state.contextId, page.getException().getMessage());
+                                callback.complete(null, page.getException());
+                                return;
+                            }
+
+                            countContainers(page.getDocuments(), hostSelectionMap);
+
+                            if (page.hasNextPage()) {
+                                page.requestNextPage();
                             } else {
                                 completeFilter(state, hostSelectionMap, callback);
                             }
                         });
     }
 
+    private void countContainers(final Collection<ContainerState> containers,
+            final Map<String, HostSelection> hostSelectionMap) {
+        for (ContainerState container : containers) {
+            HostSelection hostSelection = hostSelectionMap.get(container.parentLink);
+            hostSelection.resourceCount += 1;
+        }
+    }
+
     private void completeFilter(final PlacementHostSelectionTaskState state,
             final Map<String, HostSelection> hostSelectionMap,
             final HostSelectionFilterCompletion callback) {
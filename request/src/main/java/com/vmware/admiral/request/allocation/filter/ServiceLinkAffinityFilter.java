@@ -12,6 +12,7 @@
 package com.vmware.admiral.request.allocation.filter;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -26,6 +27,8 @@ import com.vmware.admiral.compute.container.ContainerDescriptionService.Containe
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ServiceNetwork;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
+import com.vmware.admiral.request.PlacementIndexService;
+import com.vmware.admiral.request.PlacementIndexService.PlacementIndexRequest;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.services.common.QueryTask;
@@ -64,64 +67,107 @@ public class ServiceLinkAffinityFilter extends BaseAffinityHostFilter {
             final Map<String, HostSelection> initHostSelectionMap,
             final Map<String, DescName> containerDescLinksWithNames,
             final HostSelectionFilterCompletion callback) {
+        PlacementIndexRequest request = new PlacementIndexRequest();
+        request.compositeComponentLink = UriUtils.buildUriPath(
+                CompositeComponentFactoryService.SELF_LINK, state.contextId);
+        request.descriptionLinks = containerDescLinksWithNames.keySet();
+        request.minUpdateTimeMicros = state.documentUpdateTimeMicros;
+
+        PlacementIndexService.findContainers(host, request, (containers) -> {
+            if (containers == null) {
+                queryContainers(state, initHostSelectionMap, containerDescLinksWithNames,
+                        callback);
+                return;
+            }
+
+            final Map<String, HostSelection> filteredHostSelectionMap =
+                    createFilteredHostSelectionMap(initHostSelectionMap);
+            addContainers(containers, initHostSelectionMap, filteredHostSelectionMap,
+                    containerDescLinksWithNames);
+            callback.complete(filteredHostSelectionMap, null);
+        });
+    }
+
+    private void queryContainers(final PlacementHostSelectionTaskState state,
+            final Map<String, HostSelection> initHostSelectionMap,
+            final Map<String, DescName> containerDescLinksWithNames,
+            final HostSelectionFilterCompletion callback) {
         QueryTask q = QueryUtil.buildPropertyQuery(ContainerState.class,
                 ContainerState.FIELD_NAME_COMPOSITE_COMPONENT_LINK, UriUtils.buildUriPath(
                         CompositeComponentFactoryService.SELF_LINK, state.contextId));
         q.taskInfo.isDirect = false;
-        q.querySpec.resultLimit = ServiceDocumentQuery.DEFAULT_QUERY_RESULT_LIMIT;
-        QueryUtil.addExpandOption(q);
+        QueryUtil.addSelectFieldsOption(q, ContainerState.FIELD_NAME_PARENT_LINK,
+                ContainerState.FIELD_NAME_DESCRIPTION_LINK, ContainerState.FIELD_NAME_NAMES);
 
         // Add componentDescriptions clause:
         QueryUtil.addListValueClause(q,
                 ContainerState.FIELD_NAME_DESCRIPTION_LINK, containerDescLinksWithNames.keySet());
 
-        final Map<String, HostSelection> filteredHostSelectionMap = new HashMap<>();
-
-        if (networks != null && !networks.isEmpty()) {
-            filteredHostSelectionMap.putAll(initHostSelectionMap);
-        }
+        final Map<String, HostSelection> filteredHostSelectionMap =
+                createFilteredHostSelectionMap(initHostSelectionMap);
 
         new ServiceDocumentQuery<ContainerState>(host, ContainerState.class)
-                .query(q,
-                        (r) -> {
-                            if (r.hasException()) {
+                .stream(q, ServiceDocumentQuery.DEFAULT_QUERY_PAGE_SIZE,
+                        (page) -> {
+                            if (page.hasException()) {
                                 host.log(
                                         Level.WARNING,
                                         "Exception while selecting containers with contextId [%s]. Error: [%s]",
-                                        state.contextId, r.getException().getMessage());
-                                callback.complete(null, r.getException());
-                            } else if (r.hasResult()) {
-                                ContainerState result = r.getResult();
-
-                                DescName descName = containerDescLinksWithNames
-                                        .get(result.descriptionLink);
-                                descName.addResourceNames(result.names);
-
-                                // When there are user defined networks, the dependent service can be on any host
-                                if (networks != null && !networks.isEmpty()) {
-                                    for (HostSelection hs : initHostSelectionMap.values()) {
-                                        hs.addDesc(descName);
-                                    }
-                                } else {
-                                    HostSelection hostSelection = initHostSelectionMap
-                                            .get(result.parentLink);
-
-                                    if (hostSelection != null) {
-                                        hostSelection.addDesc(descName);
-                                        filteredHostSelectionMap.put(result.parentLink,
-                                                hostSelection);
-                                    }
-                                }
-                            } else {
-                                try {
-                                    callback.complete(filteredHostSelectionMap, null);
-                                } catch (Throwable e) {
-                                    callback.complete(null, e);
-                                }
+                                        state.contextId, page.getException().getMessage());
+                                callback.complete(null, page.getException());
+                                return;
+                            }
+
+                            addContainers(page.getDocuments(), initHostSelectionMap,
+                                    filteredHostSelectionMap, containerDescLinksWithNames);
+
+                            if (page.hasNextPage()) {
+                                page.requestNextPage();
+                                return;
+                            }
+
+                            try {
+                                callback.complete(filteredHostSelectionMap, null);
+                            } catch (Throwable e) {
+                                callback.complete(null, e);
                             }
                         });
     }
 
+    private Map<String, HostSelection> createFilteredHostSelectionMap(
+            final Map<String, HostSelection> initHostSelectionMap) {
+        final Map<String, HostSelection> filteredHostSelectionMap = new HashMap<>();
+
+        if (networks != null && !networks.isEmpty()) {
+            filteredHostSelectionMap.putAll(initHostSelectionMap);
+        }
+        return filteredHostSelectionMap;
+    }
+
+    private void addContainers(final Collection<ContainerState> containers,
+            final Map<String, HostSelection> initHostSelectionMap,
+            final Map<String, HostSelection> filteredHostSelectionMap,
+            final Map<String, DescName> containerDescLinksWithNames) {
+        for (ContainerState result : containers) {
+            DescName descName = containerDescLinksWithNames.get(result.descriptionLink);
+            descName.addResourceNames(result.names);
+
+            // When there are user defined networks, the dependent service can be on any host
+            if (networks != null && !networks.isEmpty()) {
+                for (HostSelection hs : initHostSelectionMap.values()) {
+                    hs.addDesc(descName);
+                }
+            } else {
+                HostSelection hostSelection = initHostSelectionMap.get(result.parentLink);
+
+                if (hostSelection != null) {
+                    hostSelection.addDesc(descName);
+                    filteredHostSelectionMap.put(result.parentLink, hostSelection);
+                }
+            }
+        }
+    }
+
     private String extractNameFromServiceLink(String serviceLink) {
         return serviceLink.replaceAll(":.*$", "");
     }
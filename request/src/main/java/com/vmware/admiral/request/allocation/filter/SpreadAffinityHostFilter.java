@@ -27,9 +27,13 @@ import com.vmware.admiral.compute.ElasticPlacementZoneConfigurationService.Elast
 import com.vmware.admiral.compute.ElasticPlacementZoneService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory.SmoothedLoad;
 
 import com.vmware.admiral.request.PlacementHostSelectionTaskService;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
+import com.vmware.admiral.request.PlacementIndexService;
+import com.vmware.admiral.request.PlacementIndexService.PlacementIndexRequest;
 import com.vmware.admiral.request.ReservationTaskFactoryService;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceHost;
@@ -50,6 +54,10 @@ import com.vmware.xenon.services.common.QueryTask;
 *   Constraint (2) means that hosts will be sorted by number of containers in ascending order.
 *   Constraint (3) means there is exactly one host such that P(h) is true => Host with smallest number of containers will be returned.
 *
+*   The hosts with the same number of containers are sorted by the CPU usage of their containers,
+*   smoothed over the latest minutes of the stats history of this node. The containers without
+*   history add no usage.
+*
 */
 public class SpreadAffinityHostFilter implements
         HostSelectionFilter<PlacementHostSelectionTaskService.PlacementHostSelectionTaskState> {
@@ -113,7 +121,7 @@ public class SpreadAffinityHostFilter implements
                     if (epz != null && epz.epzState != null
                             && epz.epzState.placementPolicy == ElasticPlacementZoneService.PlacementPolicy.SPREAD) {
                         // First find how many resources every host has.
-                        retrieveContainers(hostSelectionMap, callback);
+                        retrieveContainers(state, hostSelectionMap, callback);
                     } else {
                         callback.complete(hostSelectionMap, null);
                     }
@@ -122,6 +130,30 @@ public class SpreadAffinityHostFilter implements
     }
 
     private void retrieveContainers(
+            PlacementHostSelectionTaskState state,
+            Map<String, HostSelection> hostSelectionMap,
+            HostSelectionFilterCompletion callback) {
+
+        PlacementIndexRequest request = new PlacementIndexRequest();
+        request.hostLinks = hostSelectionMap.keySet();
+        request.minUpdateTimeMicros = state.documentUpdateTimeMicros;
+
+        PlacementIndexService.findContainers(host, request, (containers) -> {
+            if (containers == null) {
+                queryContainers(hostSelectionMap, callback);
+                return;
+            }
+
+            Map<String, Double> hostToCpuUsage = new HashMap<>();
+            for (ContainerState container : containers) {
+                hostSelectionMap.get(container.parentLink).resourceCount += 1;
+                addCpuUsage(hostToCpuUsage, container);
+            }
+            completeFilter(hostSelectionMap, hostToCpuUsage, callback);
+        });
+    }
+
+    private void queryContainers(
             Map<String, HostSelection> hostSelectionMap,
             HostSelectionFilterCompletion callback) {
 
@@ -133,6 +165,7 @@ public class SpreadAffinityHostFilter implements
         q.querySpec.resultLimit = ServiceDocumentQuery.DEFAULT_QUERY_RESULT_LIMIT;
         QueryUtil.addExpandOption(q);
 
+        Map<String, Double> hostToCpuUsage = new HashMap<>();
         new ServiceDocumentQuery<>(host, ContainerState.class).query(q, (r) -> {
             if (r.hasException()) {
                 host.log(Level.WARNING,
@@ -145,20 +178,30 @@ public class SpreadAffinityHostFilter implements
                 HostSelection hostSelection = hostSelectionMap
                         .get(r.getResult().parentLink);
                 hostSelection.resourceCount += 1;
+                addCpuUsage(hostToCpuUsage, r.getResult());
             } else {
                 // Return the host with minimum number of containers.
-                completeFilter(hostSelectionMap, callback);
+                completeFilter(hostSelectionMap, hostToCpuUsage, callback);
             }
         });
     }
 
+    private void addCpuUsage(Map<String, Double> hostToCpuUsage, ContainerState container) {
+        SmoothedLoad load = ContainerStatsHistory.forHost(host)
+                .getSmoothedLoad(container.documentSelfLink);
+        if (load != null) {
+            hostToCpuUsage.merge(container.parentLink, load.cpuUsage, Double::sum);
+        }
+    }
+
     private void completeFilter(Map<String, HostSelection> hostSelectionMap,
-            HostSelectionFilterCompletion callback) {
+            Map<String, Double> hostToCpuUsage, HostSelectionFilterCompletion callback) {
 
-        // Sort hosts by number of resources.
+        // Sort hosts by number of resources and then by the smoothed CPU usage.
         List<HostSelection> hostSelections = new ArrayList<>(hostSelectionMap.values());
         // i.e. hosts [A(5), B(3), C(9)] -> [B(3), A(5), C(9)]
-        hostSelections.sort(Comparator.comparing(h -> h.resourceCount));
+        hostSelections.sort(Comparator.<HostSelection> comparingInt(h -> h.resourceCount)
+                .thenComparingDouble(h -> hostToCpuUsage.getOrDefault(h.hostLink, 0d)));
 
         // Host with smallest number of containers is the first element.
         HostSelection mostLoadedHost = hostSelections.get(0);
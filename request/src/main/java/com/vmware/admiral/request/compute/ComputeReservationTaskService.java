@@ -39,6 +39,7 @@ import com.vmware.admiral.common.util.PropertyUtils;
 import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.compute.ResourceType;
+import com.vmware.admiral.compute.container.GroupResourcePlacementLeaseService;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService.GroupResourcePlacementState;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService.ResourcePlacementReservationRequest;
 import com.vmware.admiral.request.allocation.filter.HostSelectionFilter.HostSelection;
@@ -626,9 +627,20 @@ public class ComputeReservationTaskService extends
                 reservationRequest.resourceCount, reservationRequest.resourceDescriptionLink,
                 Service.getId(placementLink));
 
-        sendRequest(Operation
-                .createPatch(this, placementLink)
-                .setBody(reservationRequest)
+        // the memory of the resources is sent along, so that the placement does not get the
+        // description on each reservation
+        getComputeDescription(state.resourceDescriptionLink, description -> {
+            reservationRequest.resourceMemoryBytes = description.totalMemoryBytes;
+            sendReservationRequest(state, placementLink, reservationRequest,
+                    resourcePoolsPerGroupPlacementLinks);
+        });
+    }
+
+    private void sendReservationRequest(ComputeReservationTaskState state, String placementLink,
+            ResourcePlacementReservationRequest reservationRequest,
+            LinkedHashMap<String, String> resourcePoolsPerGroupPlacementLinks) {
+        sendRequest(GroupResourcePlacementLeaseService
+                .createReservationPatch(this, placementLink, reservationRequest)
                 .setCompletion(
                         (o, e) -> {
                             if (e != null) {
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+
+public class ContainerPlacementIndexTest {
+    private static final String HOST_1 = "/resources/compute/host-1";
+    private static final String HOST_2 = "/resources/compute/host-2";
+    private static final String CONTEXT_1 = "/resources/composite-components/context-1";
+    private static final String CONTEXT_2 = "/resources/composite-components/context-2";
+    private static final String DESC_1 = "/resources/container-descriptions/desc-1";
+    private static final String DESC_2 = "/resources/container-descriptions/desc-2";
+
+    private ContainerPlacementIndex index;
+
+    @Before
+    public void setUp() {
+        index = new ContainerPlacementIndex();
+    }
+
+    @Test
+    public void testFindByContextDescriptionAndHost() {
+        index.update(createContainer("c1", 0, HOST_1, DESC_1, CONTEXT_1));
+        index.update(createContainer("c2", 0, HOST_2, DESC_1, CONTEXT_1));
+        index.update(createContainer("c3", 0, HOST_1, DESC_2, CONTEXT_1));
+        index.update(createContainer("c4", 0, HOST_1, DESC_1, CONTEXT_2));
+
+        assertEquals(links("c1", "c2", "c3"), find(CONTEXT_1, null, null));
+        assertEquals(links("c1", "c2"), find(CONTEXT_1, Collections.singleton(DESC_1), null));
+        assertEquals(links("c1"), find(CONTEXT_1, Collections.singleton(DESC_1),
+                Collections.singleton(HOST_1)));
+        assertEquals(links("c1", "c3", "c4"), find(null, null, Collections.singleton(HOST_1)));
+        assertEquals(links("c1", "c2", "c3", "c4"), find(null, null, null));
+    }
+
+    @Test
+    public void testUpdateMovesContainer() {
+        index.update(createContainer("c1", 0, HOST_1, DESC_1, CONTEXT_1));
+        assertTrue(index.update(createContainer("c1", 1, HOST_2, DESC_1, CONTEXT_2)));
+
+        assertEquals(1, index.size());
+        assertTrue(find(CONTEXT_1, null, null).isEmpty());
+        assertTrue(find(null, null, Collections.singleton(HOST_1)).isEmpty());
+        assertEquals(links("c1"), find(CONTEXT_2, null, Collections.singleton(HOST_2)));
+    }
+
+    @Test
+    public void testStaleUpdateIgnored() {
+        index.update(createContainer("c1", 2, HOST_1, DESC_1, CONTEXT_1));
+        assertFalse(index.update(createContainer("c1", 1, HOST_2, DESC_1, CONTEXT_1)));
+
+        List<ContainerState> containers = index.find(CONTEXT_1, null, null);
+        assertEquals(1, containers.size());
+        assertEquals(HOST_1, containers.get(0).parentLink);
+    }
+
+    @Test
+    public void testRemove() {
+        index.update(createContainer("c1", 0, HOST_1, DESC_1, CONTEXT_1));
+        index.update(createContainer("c2", 0, HOST_1, DESC_1, CONTEXT_1));
+        index.remove("c1");
+        index.remove("unknown");
+
+        assertEquals(1, index.size());
+        assertEquals(links("c2"), find(CONTEXT_1, null, Collections.singleton(HOST_1)));
+    }
+
+    @Test
+    public void testFoundContainersAreCopies() {
+        index.update(createContainer("c1", 0, HOST_1, DESC_1, CONTEXT_1));
+
+        ContainerState found = index.find(CONTEXT_1, null, null).get(0);
+        assertEquals(Arrays.asList("c1-name"), found.names);
+        found.names.add("other");
+        found.parentLink = HOST_2;
+
+        ContainerState foundAgain = index.find(CONTEXT_1, null, null).get(0);
+        assertEquals(Arrays.asList("c1-name"), foundAgain.names);
+        assertEquals(HOST_1, foundAgain.parentLink);
+    }
+
+    @Test
+    public void testIndexedUpToLatestAppliedChange() {
+        assertEquals(0, index.getIndexedUpToMicros());
+
+        ContainerState container = createContainer("c1", 1, HOST_1, DESC_1, CONTEXT_1);
+        container.documentUpdateTimeMicros = 20;
+        index.update(container);
+        assertEquals(20, index.getIndexedUpToMicros());
+
+        // a stale update is a change the index has caught up with as well
+        container = createContainer("c1", 0, HOST_1, DESC_1, CONTEXT_1);
+        container.documentUpdateTimeMicros = 10;
+        assertFalse(index.update(container));
+        assertEquals(20, index.getIndexedUpToMicros());
+
+        index.advanceTo(30);
+        index.advanceTo(25);
+        assertEquals(30, index.getIndexedUpToMicros());
+    }
+
+    private Set<String> find(String context, Set<String> descriptionLinks,
+            Set<String> hostLinks) {
+        return index.find(context, descriptionLinks, hostLinks).stream()
+                .map(c -> c.documentSelfLink)
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<String> links(String... links) {
+        return Arrays.stream(links).collect(Collectors.toSet());
+    }
+
+    private static ContainerState createContainer(String link, long version, String hostLink,
+            String descriptionLink, String contextLink) {
+        ContainerState state = new ContainerState();
+        state.documentSelfLink = link;
+        state.documentVersion = version;
+        state.parentLink = hostLink;
+        state.descriptionLink = descriptionLink;
+        state.compositeComponentLink = contextLink;
+        state.names = Arrays.asList(link + "-name");
+        return state;
+    }
+}
@@ -22,6 +22,7 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 import org.junit.After;
@@ -38,13 +39,20 @@ import com.vmware.admiral.request.RequestStatusService.RequestStatus;
 import com.vmware.admiral.request.composition.CompositionTaskFactoryService;
 import com.vmware.admiral.request.composition.CompositionTaskService.CompositionTaskState;
 import com.vmware.admiral.request.util.TestRequestStateFactory;
+import com.vmware.admiral.service.common.AbstractTaskStatefulService.TaskStatusState;
 import com.vmware.admiral.service.common.DefaultSubStage;
+import com.vmware.admiral.service.common.RequestTrackerUpdateService;
+import com.vmware.admiral.service.common.RequestTrackerUpdateService.RequestTrackerUpdate;
+import com.vmware.admiral.service.common.RequestTrackerUpdateService.TaskStatusUpdates;
 import com.vmware.admiral.service.test.MockDockerAdapterService;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.Service.Action;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceDocumentDescription.TypeName;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.ServiceStats;
+import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.TaskState;
 import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.UriUtils;
@@ -257,6 +265,111 @@ public class RequestStatusServiceTest extends RequestBaseTest {
         });
     }
 
+    @Test
+    public void testCoalescedTaskStatusUpdates() throws Throwable {
+        RequestStatus requestStatus = new RequestStatus();
+        requestStatus.taskInfo = TaskState.createAsStarted();
+        requestStatus.progress = 0;
+        requestStatus.addTrackedTasks(ContainerAllocationTaskService.DISPLAY_NAME,
+                ReservationTaskService.DISPLAY_NAME);
+        requestStatus = doPost(requestStatus, RequestStatusFactoryService.SELF_LINK);
+        requestId = extractId(requestStatus.documentSelfLink);
+
+        TaskStatusUpdates updates = new TaskStatusUpdates();
+        updates.updates = Arrays.asList(
+                createTaskStatus(ReservationTaskService.DISPLAY_NAME, TaskState.createAsFinished(),
+                        100),
+                createTaskStatus(ContainerAllocationTaskService.DISPLAY_NAME,
+                        TaskState.createAsStarted(), 50));
+        RequestStatus updatedStatus = doPatch(updates, RequestStatus.class,
+                requestStatus.documentSelfLink);
+
+        // the updates are applied in order, the last one determines the current phase
+        assertEquals(ContainerAllocationTaskService.DISPLAY_NAME, updatedStatus.phase);
+        assertEquals(TaskStage.STARTED, updatedStatus.taskInfo.stage);
+        assertEquals(new Integer(100), updatedStatus.requestProgressByComponent
+                .get(ReservationTaskService.DISPLAY_NAME)
+                .get(RequestStatusService.DEFAULT_COMPONENT_NAME));
+        assertEquals(new Integer(50), updatedStatus.requestProgressByComponent
+                .get(ContainerAllocationTaskService.DISPLAY_NAME)
+                .get(RequestStatusService.DEFAULT_COMPONENT_NAME));
+        assertEquals(new Integer(75), updatedStatus.progress);
+    }
+
+    @Test
+    public void testFailedCoalescedUpdatesAreRequeued() throws Throwable {
+        startFailingRequestTracker(false);
+
+        sendRequestTrackerUpdate(createTaskStatus(ContainerAllocationTaskService.DISPLAY_NAME,
+                TaskState.createAsStarted(), 50), false);
+
+        // the first PATCH fails, the update is sent again with the next window
+        waitFor(() -> FailingRequestTrackerService.receivedUpdates.size() == 2);
+        TaskStatusState received = FailingRequestTrackerService.receivedUpdates.get(1);
+        assertEquals(ContainerAllocationTaskService.DISPLAY_NAME, received.phase);
+        assertEquals(new Integer(50), received.progress);
+
+        ServiceStats stats = getDocument(ServiceStats.class,
+                RequestTrackerUpdateService.SELF_LINK + ServiceHost.SERVICE_URI_SUFFIX_STATS);
+        assertEquals(1, stats.entries.get(
+                RequestTrackerUpdateService.STAT_NAME_REQUEUED_PATCH_COUNT).latestValue, 0);
+    }
+
+    @Test
+    public void testFailedProgressIsNotRequeuedAfterImmediateUpdate() throws Throwable {
+        startFailingRequestTracker(true);
+
+        TaskStatusState progress = createTaskStatus(ContainerAllocationTaskService.DISPLAY_NAME,
+                TaskState.createAsStarted(), 50);
+        progress.documentSelfLink = "test-task";
+        sendRequestTrackerUpdate(progress, false);
+        waitFor(() -> FailingRequestTrackerService.receivedUpdates.size() == 1);
+
+        // the task finishes while the PATCH with its progress is in flight, then the PATCH fails
+        TaskStatusState finished = createTaskStatus(ContainerAllocationTaskService.DISPLAY_NAME,
+                TaskState.createAsFinished(), 100);
+        finished.documentSelfLink = progress.documentSelfLink;
+        sendRequestTrackerUpdate(finished, true);
+
+        // the progress is not sent again after the finished update
+        Thread.sleep(3 * RequestTrackerUpdateService.UPDATE_WINDOW_MILLIS);
+        assertEquals(2, FailingRequestTrackerService.receivedUpdates.size());
+        assertEquals(TaskStage.FINISHED,
+                FailingRequestTrackerService.receivedUpdates.get(1).taskInfo.stage);
+    }
+
+    private void startFailingRequestTracker(boolean holdFirstPatch) throws Throwable {
+        FailingRequestTrackerService.receivedUpdates.clear();
+        FailingRequestTrackerService.holdFirstPatch = holdFirstPatch;
+        host.startService(new FailingRequestTrackerService());
+        host.waitForServiceAvailable(FailingRequestTrackerService.SELF_LINK);
+    }
+
+    private void sendRequestTrackerUpdate(TaskStatusState taskStatus, boolean immediate)
+            throws Throwable {
+        RequestTrackerUpdate update = new RequestTrackerUpdate();
+        update.requestTrackerLink = FailingRequestTrackerService.SELF_LINK;
+        update.taskStatus = taskStatus;
+        update.immediate = immediate;
+        host.testStart(1);
+        host.send(Operation
+                .createPatch(UriUtils.buildUri(host, RequestTrackerUpdateService.SELF_LINK))
+                .setReferer(URI.create("/"))
+                .setBody(update)
+                .setCompletion(host.getCompletion()));
+        host.testWait();
+    }
+
+    private TaskStatusState createTaskStatus(String phase, TaskState taskInfo, int progress) {
+        TaskStatusState taskStatus = new TaskStatusState();
+        taskStatus.documentSelfLink = requestId;
+        taskStatus.phase = phase;
+        taskStatus.taskInfo = taskInfo;
+        taskStatus.subStage = taskInfo.stage.name();
+        taskStatus.progress = progress;
+        return taskStatus;
+    }
+
     @After
     public void logRequestHistory() throws Throwable {
         try {
@@ -407,4 +520,34 @@ public class RequestStatusServiceTest extends RequestBaseTest {
         return resultHolder[0];
     }
 
+    /**
+     * Stub request tracker which fails the first PATCH it receives, right away or once the next
+     * PATCH is completed.
+     */
+    public static class FailingRequestTrackerService extends StatelessService {
+        public static final String SELF_LINK = "/test-failing-request-tracker";
+
+        static final List<TaskStatusState> receivedUpdates = new CopyOnWriteArrayList<>();
+        static volatile boolean holdFirstPatch;
+
+        private Operation heldPatch;
+
+        @Override
+        public synchronized void handlePatch(Operation patch) {
+            receivedUpdates.add(patch.getBody(TaskStatusState.class));
+            if (receivedUpdates.size() == 1) {
+                if (holdFirstPatch) {
+                    heldPatch = patch;
+                } else {
+                    patch.fail(new IllegalStateException("request tracker is not available"));
+                }
+                return;
+            }
+            patch.complete();
+            if (heldPatch != null) {
+                heldPatch.fail(new IllegalStateException("request tracker is not available"));
+                heldPatch = null;
+            }
+        }
+    }
 }
@@ -15,12 +15,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
 import com.vmware.admiral.compute.container.ContainerDescriptionService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.request.PlacementIndexService;
 import com.vmware.admiral.request.util.TestRequestStateFactory;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.ServiceStats;
+import com.vmware.xenon.common.ServiceStats.ServiceStat;
+import com.vmware.xenon.common.Utils;
 
 public class ClusterAntiAffinityHostFilterTest extends BaseAffinityHostFilterTest {
 
@@ -167,6 +173,31 @@ public class ClusterAntiAffinityHostFilterTest extends BaseAffinityHostFilterTes
         filter(initialHostLinks);
     }
 
+    @Test
+    public void testContainersAreQueriedWhenPlacementIndexIsBehind() throws Throwable {
+        waitForServiceAvailability(PlacementIndexService.SELF_LINK);
+        ContainerDescription desc = createDescription();
+
+        createContainer(desc, expectedLinks.remove(0));
+
+        // no container is changed after the placement, so the index can't have caught up with it
+        state.documentUpdateTimeMicros = Utils.fromNowMicrosUtc(TimeUnit.SECONDS.toMicros(1));
+        double lookups = getPlacementIndexStat(PlacementIndexService.STAT_NAME_LOOKUP_COUNT);
+
+        filter = new ClusterAntiAffinityHostFilter(host, desc);
+
+        filter(expectedLinks);
+        assertEquals(lookups,
+                getPlacementIndexStat(PlacementIndexService.STAT_NAME_LOOKUP_COUNT), 0);
+    }
+
+    private double getPlacementIndexStat(String name) throws Throwable {
+        ServiceStats stats = getDocument(ServiceStats.class,
+                PlacementIndexService.SELF_LINK + ServiceHost.SERVICE_URI_SUFFIX_STATS);
+        ServiceStat stat = stats.entries.get(name);
+        return stat == null ? 0 : stat.latestValue;
+    }
+
     private ContainerDescription createDescription() throws Throwable {
         ContainerDescription desc = TestRequestStateFactory.createContainerDescription();
         desc.documentSelfLink = UUID.randomUUID().toString();
@@ -14,6 +14,8 @@ package com.vmware.admiral.request.allocation.filter;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -25,10 +27,14 @@ import com.vmware.admiral.compute.ElasticPlacementZoneService;
 import com.vmware.admiral.compute.ElasticPlacementZoneService.ElasticPlacementZoneState;
 import com.vmware.admiral.compute.container.ContainerDescriptionService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.maintenance.ContainerStats;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsHistory;
 import com.vmware.admiral.request.allocation.filter.HostSelectionFilter.HostSelection;
 import com.vmware.admiral.request.util.TestRequestStateFactory;
 import com.vmware.xenon.common.Service.Action;
 import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
 
 
 public class SpreadAffinityHostFilterTest extends BaseAffinityHostFilterTest {
@@ -85,6 +91,48 @@ public class SpreadAffinityHostFilterTest extends BaseAffinityHostFilterTest {
 
     }
 
+    @Test
+    public void testSpreadFilterPrefersHostWithLowerSmoothedCpuUsage() throws Throwable {
+
+        String firstHost = initialHostLinks.get(0);
+        String secondHost = initialHostLinks.get(1);
+        String thirdHost = initialHostLinks.get(2);
+
+        List<ContainerState> firstHostContainers = assignContainersToHost(firstHost, 2);
+        List<ContainerState> secondHostContainers = assignContainersToHost(secondHost, 2);
+        assignContainersToHost(thirdHost, 5);
+
+        updateEpzWithPlacementPolicy();
+
+        // The first and the second host have the same number of containers, the containers of
+        // the first host are more loaded.
+        recordCpuUsage(firstHostContainers, 50);
+        recordCpuUsage(secondHostContainers, 10);
+
+        filter = new SpreadAffinityHostFilter(host, containerDesc);
+        Map<String, HostSelection> selected = filter();
+
+        assertEquals(1, selected.size());
+        assertTrue(selected.containsKey(secondHost));
+
+        // The load of the second host goes up.
+        recordCpuUsage(secondHostContainers, 170);
+
+        selected = filter();
+
+        assertEquals(1, selected.size());
+        assertTrue(selected.containsKey(firstHost));
+    }
+
+    private void recordCpuUsage(List<ContainerState> containers, double cpuUsage) {
+        ContainerStats stats = new ContainerStats();
+        stats.cpuUsage = cpuUsage;
+        for (ContainerState container : containers) {
+            ContainerStatsHistory.forHost(host).record(container.documentSelfLink, stats,
+                    Utils.getSystemNowMicrosUtc());
+        }
+    }
+
     private void updateEpzWithPlacementPolicy() throws Throwable {
 
         // Create ElasticPlacementZoneState which follows SPREAD deployment policy.
@@ -106,13 +154,16 @@ public class SpreadAffinityHostFilterTest extends BaseAffinityHostFilterTest {
 
     }
 
-    private void assignContainersToHost(String hostLink, int instances) throws Throwable {
+    private List<ContainerState> assignContainersToHost(String hostLink, int instances)
+            throws Throwable {
+        List<ContainerState> containers = new ArrayList<>();
         for (int i = 0; i <= instances; i++) {
             ContainerDescription desc = TestRequestStateFactory.createContainerDescription();
             desc.documentSelfLink = UUID.randomUUID().toString();
             containerDesc = doPost(desc, ContainerDescriptionService.FACTORY_LINK);
-            createContainerWithDifferentContextId(desc, hostLink);
+            containers.add(createContainerWithDifferentContextId(desc, hostLink));
         }
+        return containers;
     }
 
 }
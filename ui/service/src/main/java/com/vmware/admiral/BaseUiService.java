@@ -23,6 +23,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 
 import com.vmware.admiral.common.util.ConfigurationUtil;
@@ -120,16 +122,17 @@ public abstract class BaseUiService extends StatelessService {
     // As defined in ServiceHost
     private void startUiFileContentServices() throws Throwable {
         Map<Path, String> pathToURIPath = new HashMap<>();
+        Set<String> assetPaths = new TreeSet<>();
 
         Path baseResourcePath = Utils.getServiceUiResourcePath(this);
         try {
-            pathToURIPath = discoverUiResources(baseResourcePath, this);
+            discoverUiResources(baseResourcePath, this, pathToURIPath, assetPaths);
         } catch (Throwable e) {
             log(Level.WARNING, "Error enumerating UI resources for %s: %s", this.getSelfLink(),
                     Utils.toString(e));
         }
 
-        if (pathToURIPath.isEmpty()) {
+        if (pathToURIPath.isEmpty() && assetPaths.isEmpty()) {
             log(Level.WARNING, "No custom UI resources found for %s", this.getClass().getName());
             return;
         }
@@ -143,12 +146,15 @@ public abstract class BaseUiService extends StatelessService {
                     e.getKey().toFile());
             getHost().startService(post, fcs);
         }
+
+        startUiAssetServices(assetPaths);
     }
 
-    // Find UI resources for this service (e.g. html, css, js)
-    private Map<Path, String> discoverUiResources(Path path, Service s)
-            throws Throwable {
-        Map<Path, String> pathToURIPath = new HashMap<>();
+    // Find UI resources for this service (e.g. html, css, js). The resources in the sandbox are
+    // served from the file system, so that they can be changed at runtime, and the resources in
+    // the jar are loaded in the asset store.
+    private void discoverUiResources(Path path, Service s, Map<Path, String> pathToURIPath,
+            Set<String> assetPaths) throws Throwable {
         Path baseUriPath = Paths.get(getSelfLink());
 
         String prefix = path.toString().replace('\\', '/');
@@ -158,24 +164,51 @@ public abstract class BaseUiService extends StatelessService {
         }
 
         if (pathToURIPath.isEmpty()) {
-            discoverJarResources(path, s, pathToURIPath, baseUriPath, prefix);
+            loadJarResources(s, assetPaths, baseUriPath, prefix);
         }
-        return pathToURIPath;
     }
 
-    private void discoverJarResources(Path path, Service s, Map<Path, String> pathToURIPath,
-            Path baseUriPath, String prefix) throws URISyntaxException, IOException {
+    private void loadJarResources(Service s, Set<String> assetPaths, Path baseUriPath,
+            String prefix) throws URISyntaxException, IOException {
+        UiAssetStore store = UiAssetStore.forHost(getHost());
         for (ResourceEntry entry : FileUtils.findResources(s.getClass(), prefix)) {
-            Path resourcePath = path.resolve(entry.suffix);
-            Path uriPath = baseUriPath.resolve(entry.suffix);
-            Path outputPath = getHost().copyResourceToSandbox(entry.url, resourcePath);
-            if (outputPath == null) {
-                // Failed to copy one resource, disable user interface for this service.
+            String uriPath = baseUriPath.resolve(entry.suffix).toString().replace('\\', '/');
+            try {
+                store.put(uriPath, entry.url.openStream());
+                assetPaths.add(uriPath);
+            } catch (IOException e) {
+                // Failed to load one resource, disable user interface for this service.
+                log(Level.WARNING, "Failed to load UI resource %s: %s", entry.url,
+                        Utils.toString(e));
                 s.toggleOption(ServiceOption.HTML_USER_INTERFACE, false);
+            }
+        }
+    }
+
+    // Start a single asset service for each directory and for each file directly under the
+    // service path, instead of a service for each file.
+    private void startUiAssetServices(Set<String> assetPaths) {
+        String basePath = getSelfLink();
+        if (!basePath.endsWith(UriUtils.URI_PATH_CHAR)) {
+            basePath += UriUtils.URI_PATH_CHAR;
+        }
+
+        Set<String> files = new TreeSet<>();
+        Set<String> directories = new TreeSet<>();
+        for (String assetPath : assetPaths) {
+            String subPath = assetPath.startsWith(basePath)
+                    ? assetPath.substring(basePath.length()) : null;
+            int slash = subPath != null ? subPath.indexOf(UriUtils.URI_PATH_CHAR) : -1;
+            if (slash > 0) {
+                directories.add(basePath + subPath.substring(0, slash));
             } else {
-                pathToURIPath.put(outputPath, uriPath.toString().replace('\\', '/'));
+                files.add(assetPath);
             }
         }
+
+        UiAssetStore store = UiAssetStore.forHost(getHost());
+        directories.forEach(d -> UiAssetService.start(getHost(), store, d, true));
+        files.forEach(f -> UiAssetService.start(getHost(), store, f, false));
     }
 
     private boolean redirectToLoginOrIndex(Operation op) {
@@ -12,6 +12,8 @@
 package com.vmware.admiral;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashSet;
@@ -19,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import com.vmware.admiral.UiAssetStore.Asset;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.ConfigurationUtil;
 import com.vmware.admiral.common.util.FileUtil;
@@ -28,6 +31,7 @@ import com.vmware.xenon.common.LocalizableValidationException;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
 
 public class ContainerImageIconService extends StatelessService {
 
@@ -99,6 +103,17 @@ public class ContainerImageIconService extends StatelessService {
                 ManagementUriParts.CONTAINER_IDENTICONS_RESOURCE_PATH,
                 expectedIdenticonName);
 
+        UiAssetStore store = UiAssetStore.forHost(getHost());
+        Asset icon = store.get(expectedImagePath);
+        if (icon == null) {
+            icon = store.get(expectedIdenticonPath);
+        }
+        if (icon != null && !UiAssetService.isHiddenRequest(get)) {
+            UiAssetService.serve(get, icon, CACHE_CONTROL_VALUE);
+            return;
+        }
+
+        // the icons served from the file system
         getIcon(expectedImagePath, get, () -> {
             getIcon(expectedIdenticonPath, get, null);
         });
@@ -144,6 +159,7 @@ public class ContainerImageIconService extends StatelessService {
 
         List<File> files = FileUtils.findFiles(iconResourcePath, new HashSet<>(), false);
 
+        UiAssetStore store = UiAssetStore.forHost(getHost());
         for (File f : files) {
             String subPath = f.getAbsolutePath().replace(
                     iconResourcePath.toAbsolutePath().toString(), "");
@@ -152,11 +168,14 @@ public class ContainerImageIconService extends StatelessService {
                     .get(ManagementUriParts.CONTAINER_ICONS_RESOURCE_PATH.substring(1), subPath);
             String servicePathString = FileUtil.getForwardSlashesPathString(servicePath);
 
-            Operation post = Operation
-                    .createPost(UriUtils.buildUri(getHost(), servicePathString));
-            RestrictiveFileContentService fcs = new RestrictiveFileContentService(f);
-            getHost().startService(post, fcs);
+            try {
+                store.put(UriUtils.buildUriPath(servicePathString), Files.readAllBytes(f.toPath()));
+            } catch (IOException e) {
+                logWarning("Failed to load container icon %s: %s", f, Utils.toString(e));
+            }
         }
 
+        UiAssetService.start(getHost(), store,
+                UriUtils.buildUriPath(ManagementUriParts.CONTAINER_ICONS_RESOURCE_PATH), true);
     }
 }
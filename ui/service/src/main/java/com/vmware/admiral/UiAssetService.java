@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral;
+
+import java.util.logging.Level;
+
+import com.vmware.admiral.UiAssetStore.Asset;
+import com.vmware.admiral.common.util.ConfigurationUtil;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Serves the static UI assets from the {@link UiAssetStore} of the host. A service started for a
+ * directory of assets owns its URI namespace and serves all the assets in the directory.
+ */
+public class UiAssetService extends StatelessService {
+    private static final int STATUS_CODE_NOT_MODIFIED = 304;
+
+    private final UiAssetStore store;
+
+    UiAssetService(UiAssetStore store, boolean directory) {
+        this.store = store;
+        if (directory) {
+            super.toggleOption(ServiceOption.URI_NAMESPACE_OWNER, true);
+        }
+    }
+
+    @Override
+    public void handleGet(Operation get) {
+        Asset asset = isHiddenRequest(get) ? null : store.get(get.getUri().getPath());
+        if (asset == null) {
+            failNotFound(get);
+            return;
+        }
+        serve(get, asset, asset.cacheControl);
+    }
+
+    /**
+     * Completes the GET with the given asset, or with no content if the browser has the asset
+     * already. The content is compressed by the host when the response has a gzip
+     * Content-Encoding.
+     */
+    static void serve(Operation get, Asset asset, String cacheControl) {
+        boolean gzip = asset.isGzipAccepted(get);
+        get.addResponseHeader(UiAssetStore.ETAG_HEADER, gzip ? asset.gzipEtag : asset.etag);
+        get.addResponseHeader(UiAssetStore.CACHE_CONTROL_HEADER, cacheControl);
+        if (asset.compressible) {
+            get.addResponseHeader(UiAssetStore.VARY_HEADER, UiAssetStore.ACCEPT_ENCODING_HEADER);
+        }
+        if (asset.isNotModified(get)) {
+            get.setStatusCode(STATUS_CODE_NOT_MODIFIED);
+            get.complete();
+            return;
+        }
+        if (gzip) {
+            get.addResponseHeader(UiAssetStore.CONTENT_ENCODING_HEADER,
+                    UiAssetStore.GZIP_ENCODING);
+        }
+        get.setContentType(asset.contentType);
+        get.setBody(asset.content);
+        get.complete();
+    }
+
+    /**
+     * In embedded mode the UI is served through the proxy only.
+     */
+    static boolean isHiddenRequest(Operation op) {
+        return ConfigurationUtil.isEmbedded()
+                && op.getRequestHeader(ConfigurationUtil.UI_PROXY_FORWARD_HEADER) == null;
+    }
+
+    /**
+     * Starts an asset service with the given path, unless there is one already.
+     */
+    static void start(ServiceHost host, UiAssetStore store, String path, boolean directory) {
+        host.startService(Operation.createPost(UriUtils.buildUri(host, path))
+                .setCompletion((o, e) -> {
+                    if (e != null && !(e instanceof ServiceHost.ServiceAlreadyStartedException)) {
+                        host.log(Level.WARNING, "Failed to start UI asset service %s: %s", path,
+                                Utils.toString(e));
+                    }
+                }), new UiAssetService(store, directory));
+    }
+
+    static void failNotFound(Operation op) {
+        Exception notFound = new ServiceHost.ServiceNotFoundException(op.getUri().toString());
+        notFound.setStackTrace(new StackTraceElement[] {});
+        op.setContentType(Operation.MEDIA_TYPE_APPLICATION_JSON).fail(
+                Operation.STATUS_CODE_NOT_FOUND, notFound, null);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceHost;
+
+/**
+ * Node local, in-memory store of the static UI assets, i.e. the files of the UI bundles and the
+ * container icons, which are served by the {@link UiAssetService}s without touching the file
+ * system.
+ *
+ * Each asset has an ETag computed from its content, so that the browsers can revalidate it. The
+ * assets with a content hash in their name never change and are cached by the browsers for a
+ * year, the other assets are revalidated on each use. The textual assets are compressed for the
+ * browsers which accept gzip.
+ */
+class UiAssetStore {
+    static final String CACHE_CONTROL_HEADER = "cache-control";
+    static final String ETAG_HEADER = "etag";
+    static final String IF_NONE_MATCH_HEADER = "if-none-match";
+    static final String ACCEPT_ENCODING_HEADER = "accept-encoding";
+    static final String CONTENT_ENCODING_HEADER = "content-encoding";
+    static final String VARY_HEADER = "vary";
+    static final String GZIP_ENCODING = "gzip";
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+
+    /**
+     * Names with the content hash of the UI bundler, e.g. main.3f2a9c1b4d5e6f7a8b9c.bundle.js or
+     * fontawesome-webfont.3f2a9c1b4d5e6f7a8b9c.woff2
+     */
+    private static final Pattern HASHED_NAME = Pattern.compile(
+            "[^/]+\\.[0-9a-f]{20}(\\.bundle)?\\.\\w+");
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("html", Operation.MEDIA_TYPE_TEXT_HTML);
+        CONTENT_TYPES.put("js", "application/javascript");
+        CONTENT_TYPES.put("css", "text/css");
+        CONTENT_TYPES.put("json", Operation.MEDIA_TYPE_APPLICATION_JSON);
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+        CONTENT_TYPES.put("ttf", "font/ttf");
+        CONTENT_TYPES.put("eot", "application/vnd.ms-fontobject");
+        CONTENT_TYPES.put("map", Operation.MEDIA_TYPE_APPLICATION_JSON);
+    }
+
+    private static final Map<String, UiAssetStore> STORES = new ConcurrentHashMap<>();
+
+    /** An asset, with the headers it is served with. */
+    static class Asset {
+        final byte[] content;
+        final String contentType;
+        final String etag;
+        /** The ETag of the compressed content, which is a different representation. */
+        final String gzipEtag;
+        final String cacheControl;
+        final boolean compressible;
+
+        private Asset(String path, byte[] content) {
+            this.content = content;
+            this.contentType = getContentType(path);
+            this.compressible = contentType.startsWith("text/")
+                    || contentType.contains("javascript") || contentType.contains("json")
+                    || contentType.contains("xml");
+            String digest = digest(content);
+            this.etag = '"' + digest + '"';
+            this.gzipEtag = '"' + digest + "-gzip\"";
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            this.cacheControl = HASHED_NAME.matcher(name).matches()
+                    ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL;
+        }
+
+        /**
+         * Returns whether the browser has the asset already, according to the
+         * <code>If-None-Match</code> header of the request.
+         */
+        boolean isNotModified(Operation get) {
+            String ifNoneMatch = get.getRequestHeader(IF_NONE_MATCH_HEADER);
+            return ifNoneMatch != null
+                    && (ifNoneMatch.contains(etag) || ifNoneMatch.contains(gzipEtag)
+                            || "*".equals(ifNoneMatch.trim()));
+        }
+
+        /**
+         * Returns whether the asset is to be compressed for the given request.
+         */
+        boolean isGzipAccepted(Operation get) {
+            String acceptEncoding = get.getRequestHeader(ACCEPT_ENCODING_HEADER);
+            return compressible && acceptEncoding != null
+                    && acceptEncoding.toLowerCase().contains(GZIP_ENCODING);
+        }
+    }
+
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the asset store of the given host.
+     */
+    static UiAssetStore forHost(ServiceHost host) {
+        return STORES.computeIfAbsent(host.getId(), id -> new UiAssetStore());
+    }
+
+    /**
+     * Returns the asset with the given URI path, or <code>null</code> if there is no such asset.
+     */
+    Asset get(String path) {
+        return assets.get(path);
+    }
+
+    /**
+     * Stores the content read from the given stream as the asset with the given URI path. The
+     * stream is closed.
+     */
+    void put(String path, InputStream content) throws IOException {
+        try (InputStream in = content) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            put(path, out.toByteArray());
+        }
+    }
+
+    void put(String path, byte[] content) {
+        assets.put(path, new Asset(path, content));
+    }
+
+    private static String getContentType(String path) {
+        String extension = path.substring(path.lastIndexOf('.') + 1).toLowerCase();
+        String contentType = CONTENT_TYPES.get(extension);
+        if (contentType == null) {
+            contentType = URLConnection.guessContentTypeFromName(path);
+        }
+        return contentType != null ? contentType : Operation.MEDIA_TYPE_APPLICATION_OCTET_STREAM;
+    }
+
+    private static String digest(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(content);
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
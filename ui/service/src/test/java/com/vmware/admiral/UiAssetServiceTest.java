@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.admiral.common.util.ConfigurationUtil;
+import com.vmware.admiral.host.HostInitCommonServiceConfig;
+import com.vmware.admiral.service.common.ConfigurationService.ConfigurationFactoryService;
+import com.vmware.admiral.service.common.ConfigurationService.ConfigurationState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.UriUtils;
+
+public class UiAssetServiceTest extends BaseTestCase {
+    private static final String UI_PATH = "/test-ui";
+    private static final String INDEX_HTML = UI_PATH + "/index.html";
+    private static final String HASHED_JS = UI_PATH + "/main.0123456789abcdef0123.bundle.js";
+    private static final String HASHED_FONT = UI_PATH + "/font.0123456789abcdef0123.woff2";
+    private static final String SHORT_HASH_CSS = UI_PATH + "/vendor-3f2a9c1b.css";
+    private static final String NESTED_CSS = UI_PATH + "/styles/nested/app.css";
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+
+    private UiAssetStore store;
+
+    @Before
+    public void setUp() throws Throwable {
+        store = UiAssetStore.forHost(host);
+        store.put(INDEX_HTML, bytes("<html></html>"));
+        store.put(HASHED_JS, bytes("console.log('main');"));
+        store.put(HASHED_FONT, new byte[] { 0, 1, 2 });
+        store.put(SHORT_HASH_CSS, bytes("body {}"));
+        store.put(NESTED_CSS, bytes("div {}"));
+
+        UiAssetService.start(host, store, UI_PATH, true);
+        waitForServiceAvailability(UI_PATH);
+    }
+
+    @After
+    public void tearDown() {
+        ConfigurationUtil.initialize();
+    }
+
+    @Test
+    public void testNotModifiedWhenETagMatches() throws Throwable {
+        Operation get = get(INDEX_HTML, null, null);
+        assertEquals(Operation.STATUS_CODE_OK, get.getStatusCode());
+        assertArrayEquals(bytes("<html></html>"), (byte[]) get.getBodyRaw());
+        String etag = get.getResponseHeader(UiAssetStore.ETAG_HEADER);
+        assertNotNull(etag);
+
+        get = get(INDEX_HTML, UiAssetStore.IF_NONE_MATCH_HEADER, etag);
+        assertEquals(304, get.getStatusCode());
+        assertEquals(etag, get.getResponseHeader(UiAssetStore.ETAG_HEADER));
+
+        get = get(INDEX_HTML, UiAssetStore.IF_NONE_MATCH_HEADER, "\"other\"");
+        assertEquals(Operation.STATUS_CODE_OK, get.getStatusCode());
+    }
+
+    @Test
+    public void testOnlyBundlerHashedNamesAreImmutable() throws Throwable {
+        assertEquals(IMMUTABLE_CACHE_CONTROL, get(HASHED_JS, null, null)
+                .getResponseHeader(UiAssetStore.CACHE_CONTROL_HEADER));
+        assertEquals(IMMUTABLE_CACHE_CONTROL, get(HASHED_FONT, null, null)
+                .getResponseHeader(UiAssetStore.CACHE_CONTROL_HEADER));
+        assertEquals(REVALIDATE_CACHE_CONTROL, get(INDEX_HTML, null, null)
+                .getResponseHeader(UiAssetStore.CACHE_CONTROL_HEADER));
+        assertEquals(REVALIDATE_CACHE_CONTROL, get(SHORT_HASH_CSS, null, null)
+                .getResponseHeader(UiAssetStore.CACHE_CONTROL_HEADER));
+    }
+
+    @Test
+    public void testDirectoryServiceServesNestedAssets() throws Throwable {
+        Operation get = get(NESTED_CSS, null, null);
+        assertEquals(Operation.STATUS_CODE_OK, get.getStatusCode());
+        assertEquals("text/css", get.getContentType());
+        assertArrayEquals(bytes("div {}"), (byte[]) get.getBodyRaw());
+
+        assertEquals(Operation.STATUS_CODE_NOT_FOUND,
+                get(UI_PATH + "/styles/missing.css", null, null).getStatusCode());
+    }
+
+    @Test
+    public void testTextualAssetsAreCompressedWhenAccepted() throws Throwable {
+        Operation get = get(HASHED_JS, UiAssetStore.ACCEPT_ENCODING_HEADER, "gzip, deflate");
+        assertEquals(UiAssetStore.GZIP_ENCODING,
+                get.getResponseHeader(UiAssetStore.CONTENT_ENCODING_HEADER));
+        assertEquals(UiAssetStore.ACCEPT_ENCODING_HEADER,
+                get.getResponseHeader(UiAssetStore.VARY_HEADER));
+        String gzipEtag = get.getResponseHeader(UiAssetStore.ETAG_HEADER);
+
+        get = get(HASHED_JS, null, null);
+        assertNull(get.getResponseHeader(UiAssetStore.CONTENT_ENCODING_HEADER));
+        assertNotEquals(gzipEtag, get.getResponseHeader(UiAssetStore.ETAG_HEADER));
+
+        get = get(HASHED_FONT, UiAssetStore.ACCEPT_ENCODING_HEADER, "gzip");
+        assertNull(get.getResponseHeader(UiAssetStore.CONTENT_ENCODING_HEADER));
+    }
+
+    @Test
+    public void testAssetsAreServedThroughProxyOnlyInEmbeddedMode() throws Throwable {
+        ConfigurationState embedded = new ConfigurationState();
+        embedded.key = "embedded";
+        embedded.value = Boolean.TRUE.toString();
+        ConfigurationUtil.initialize(embedded);
+
+        assertEquals(Operation.STATUS_CODE_NOT_FOUND,
+                get(INDEX_HTML, null, null).getStatusCode());
+        assertEquals(Operation.STATUS_CODE_OK, get(INDEX_HTML,
+                ConfigurationUtil.UI_PROXY_FORWARD_HEADER, "127.0.0.1").getStatusCode());
+    }
+
+    @Test
+    public void testContainerImageIconLookup() throws Throwable {
+        HostInitCommonServiceConfig.startServices(host);
+        waitForServiceAvailability(ConfigurationFactoryService.SELF_LINK);
+
+        store.put(UriUtils.buildUriPath(ManagementUriParts.CONTAINER_ICONS_RESOURCE_PATH,
+                "nginx.png"), bytes("nginx"));
+        int identicon = Math.abs("unknown".hashCode() % 200);
+        store.put(UriUtils.buildUriPath(ManagementUriParts.CONTAINER_IDENTICONS_RESOURCE_PATH,
+                "identicon-" + identicon + ".png"), bytes("identicon"));
+
+        host.startServiceAndWait(new ContainerImageIconService(),
+                ContainerImageIconService.SELF_LINK, null);
+
+        Operation get = getIcon("nginx");
+        assertEquals(Operation.STATUS_CODE_OK, get.getStatusCode());
+        assertArrayEquals(bytes("nginx"), (byte[]) get.getBodyRaw());
+        assertEquals("image/png", get.getContentType());
+        assertEquals("max-age=7200", get.getResponseHeader(UiAssetStore.CACHE_CONTROL_HEADER));
+
+        get = getIcon("unknown");
+        assertEquals(Operation.STATUS_CODE_OK, get.getStatusCode());
+        assertArrayEquals(bytes("identicon"), (byte[]) get.getBodyRaw());
+    }
+
+    private Operation getIcon(String image) throws Throwable {
+        URI uri = UriUtils.extendUriWithQuery(
+                UriUtils.buildUri(host, ContainerImageIconService.SELF_LINK),
+                ContainerImageIconService.CONTAINER_IMAGE_QUERY_PARAM, image);
+        return send(Operation.createGet(uri));
+    }
+
+    private Operation get(String path, String header, String value) throws Throwable {
+        Operation get = Operation.createGet(UriUtils.buildUri(host, path));
+        if (header != null) {
+            get.addRequestHeader(header, value);
+        }
+        return send(get);
+    }
+
+    private Operation send(Operation op) throws Throwable {
+        AtomicReference<Operation> result = new AtomicReference<>();
+        host.testStart(1);
+        host.send(op.setReferer(host.getUri()).setCompletion((o, e) -> {
+            result.set(o);
+            host.completeIteration();
+        }));
+        host.testWait();
+        return result.get();
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}